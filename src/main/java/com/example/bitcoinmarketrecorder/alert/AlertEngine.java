@@ -0,0 +1,174 @@
+package com.example.bitcoinmarketrecorder.alert;
+
+import com.example.bitcoinmarketrecorder.config.AlertProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 設定したルールを受信した約定・BBOごとに判定し、発火したアラートをログに出してRedisの{@code alerts.channel}に配信する。
+ *
+ * <p>起動時にルールを{@link AlertRule}に組み立て、銘柄ごと・ストリーム（約定かBBOか）ごとの索引を作る。イベントごとに
+ * その銘柄とストリームのルールだけを判定するため、ルールの数が増えても関係のない銘柄の受信は遅くならない。
+ * 配信は{@link RedisPublisherService#publish}で非同期に行う。
+ */
+@Service
+public class AlertEngine implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(AlertEngine.class);
+
+  @Autowired private AlertProperties alertProperties;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<AlertRule> rules = new ArrayList<>();
+  // 銘柄 -> その銘柄のBBO・約定で判定するルール
+  private final Map<String, List<AlertRule>> quoteRules = new HashMap<>();
+  private final Map<String, List<AlertRule>> tradeRules = new HashMap<>();
+  private final Deque<Map<String, Object>> recent = new ArrayDeque<>();
+  private final LongAdder evaluated = new LongAdder();
+  private final LongAdder fired = new LongAdder();
+
+  @PostConstruct
+  public void initialize() {
+    long defaultCooldownMs = alertProperties.getCooldown().toMillis();
+    for (AlertProperties.Rule rule : alertProperties.getRules()) {
+      AlertRule compiled;
+      try {
+        List<String> symbols = new ArrayList<>();
+        symbols.add(SymbolKey.parse(rule.getSymbol()));
+        if (rule.getOtherSymbol() != null) {
+          symbols.add(SymbolKey.parse(rule.getOtherSymbol()));
+        }
+        compiled =
+            AlertRule.compile(
+                rule.getName(),
+                rule.getType(),
+                symbols,
+                rule.getThreshold(),
+                rule.getWindow(),
+                rule.getCooldown() != null ? rule.getCooldown().toMillis() : defaultCooldownMs);
+      } catch (IllegalArgumentException | NullPointerException e) {
+        logger.warn("Skipping alert rule {}: {}", rule.getName(), e.getMessage());
+        continue;
+      }
+      rules.add(compiled);
+      for (String symbol : compiled.getQuoteSymbols()) {
+        quoteRules.computeIfAbsent(symbol, k -> new ArrayList<>()).add(compiled);
+      }
+      for (String symbol : compiled.getTradeSymbols()) {
+        tradeRules.computeIfAbsent(symbol, k -> new ArrayList<>()).add(compiled);
+      }
+    }
+    logger.info("Alert rules: {}", rules.stream().map(AlertRule::getName).toList());
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!alertProperties.isEnabled()
+        || bestBidAsk.getTimestamp() == null
+        || bestBidAsk.getBestBid() == null
+        || bestBidAsk.getBestAsk() == null) {
+      return;
+    }
+    String key = SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol());
+    List<AlertRule> matched = quoteRules.get(key);
+    if (matched == null) {
+      return;
+    }
+    double bid = bestBidAsk.getBestBid().doubleValue();
+    double ask = bestBidAsk.getBestAsk().doubleValue();
+    long timestamp = bestBidAsk.getTimestamp().toEpochMilli();
+    for (AlertRule rule : matched) {
+      Map<String, Object> alert;
+      // 2銘柄を使うルールは別々の受信スレッドから呼ばれる
+      synchronized (rule) {
+        alert = rule.onQuote(key, bid, ask, timestamp);
+      }
+      evaluated.increment();
+      if (alert != null) {
+        emit(alert);
+      }
+    }
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!alertProperties.isEnabled()
+        || trade.getTimestamp() == null
+        || trade.getPrice() == null
+        || trade.getSize() == null) {
+      return;
+    }
+    String key = SymbolKey.of(trade.getExchange(), trade.getSymbol());
+    List<AlertRule> matched = tradeRules.get(key);
+    if (matched == null) {
+      return;
+    }
+    double price = trade.getPrice().doubleValue();
+    double size = trade.getSize().doubleValue();
+    long timestamp = trade.getTimestamp().toEpochMilli();
+    for (AlertRule rule : matched) {
+      Map<String, Object> alert;
+      synchronized (rule) {
+        alert = rule.onTrade(key, price, size, trade.getSide(), timestamp);
+      }
+      evaluated.increment();
+      if (alert != null) {
+        emit(alert);
+      }
+    }
+  }
+
+  private void emit(Map<String, Object> alert) {
+    fired.increment();
+    logger.warn("Alert {}: {}", alert.get("rule"), alert.get("message"));
+    synchronized (recent) {
+      recent.addFirst(alert);
+      while (recent.size() > alertProperties.getHistorySize()) {
+        recent.removeLast();
+      }
+    }
+    String channel = alertProperties.getChannel();
+    try {
+      redisPublisherService.publish(channel, channel, objectMapper.writeValueAsString(alert));
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to serialize alert {}: {}", alert.get("rule"), e.getMessage());
+    } catch (Exception e) {
+      logger.error("Failed to publish alert {}: {}", alert.get("rule"), e.getMessage());
+    }
+  }
+
+  /** 直近に発火したアラート（新しい順）。 */
+  public List<Map<String, Object>> getRecentAlerts() {
+    synchronized (recent) {
+      return new ArrayList<>(recent);
+    }
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("rules", rules.size());
+    stats.put("evaluated", evaluated.sum());
+    stats.put("fired", fired.sum());
+    return stats;
+  }
+}
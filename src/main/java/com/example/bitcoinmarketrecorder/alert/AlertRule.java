@@ -0,0 +1,284 @@
+package com.example.bitcoinmarketrecorder.alert;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 設定から組み立てたアラートの条件。{@link #compile}で種類ごとの実装を作る。
+ *
+ * <p>判定は受信スレッドでイベントごとに呼ばれるため、各実装は状態を逐次更新してO(1)（償却）で判定する。発火した後
+ * {@code cooldownMs}の間はイベントの時刻で数えて再び発火しない。スレッドセーフではない。
+ */
+abstract class AlertRule {
+
+  private final String name;
+  private final AlertType type;
+  private final long cooldownMs;
+  private long lastFired = Long.MIN_VALUE;
+
+  AlertRule(String name, AlertType type, long cooldownMs) {
+    this.name = name;
+    this.type = type;
+    this.cooldownMs = cooldownMs;
+  }
+
+  /**
+   * 設定のルールを組み立てる。
+   *
+   * @param symbols 設定の{@code <取引所>:<銘柄>}を受信データのキーに揃えたもの。先頭が{@code symbol}、次が{@code
+   *     other-symbol}
+   * @throws IllegalArgumentException 種類や必要な設定が不正な場合
+   */
+  static AlertRule compile(
+      String name,
+      String type,
+      List<String> symbols,
+      double threshold,
+      Duration window,
+      long cooldownMs) {
+    AlertType alertType;
+    try {
+      alertType = AlertType.valueOf(type.toUpperCase());
+    } catch (IllegalArgumentException | NullPointerException e) {
+      throw new IllegalArgumentException("Unknown alert type: " + type);
+    }
+    switch (alertType) {
+      case SPREAD_BPS:
+        return new Spread(name, cooldownMs, symbols.get(0), threshold);
+      case MID_MOVE:
+        if (window == null || window.isNegative() || window.isZero()) {
+          throw new IllegalArgumentException("MID_MOVE requires a positive window");
+        }
+        return new MidMove(name, cooldownMs, symbols.get(0), threshold, window.toMillis());
+      case CROSSED_BOOK:
+        if (symbols.size() < 2) {
+          throw new IllegalArgumentException("CROSSED_BOOK requires other-symbol");
+        }
+        long maxSkewMs = window != null ? window.toMillis() : Long.MAX_VALUE;
+        return new CrossedBook(
+            name, cooldownMs, symbols.get(0), symbols.get(1), threshold, maxSkewMs);
+      case LARGE_TRADE:
+        return new LargeTrade(name, cooldownMs, symbols.get(0), threshold);
+      default:
+        throw new IllegalArgumentException("Unknown alert type: " + type);
+    }
+  }
+
+  String getName() {
+    return name;
+  }
+
+  AlertType getType() {
+    return type;
+  }
+
+  /** BBOで判定する銘柄。 */
+  List<String> getQuoteSymbols() {
+    return List.of();
+  }
+
+  /** 約定で判定する銘柄。 */
+  List<String> getTradeSymbols() {
+    return List.of();
+  }
+
+  /** BBOで判定する。発火した場合はアラート、それ以外はnull。 */
+  Map<String, Object> onQuote(String symbol, double bid, double ask, long timestamp) {
+    return null;
+  }
+
+  /** 約定で判定する。発火した場合はアラート、それ以外はnull。 */
+  Map<String, Object> onTrade(
+      String symbol, double price, double size, String side, long timestamp) {
+    return null;
+  }
+
+  /** 再発火の間隔を過ぎていればアラートを作る。 */
+  Map<String, Object> fire(
+      String symbol, double value, double threshold, long timestamp, String message) {
+    if (lastFired != Long.MIN_VALUE && timestamp - lastFired < cooldownMs) {
+      return null;
+    }
+    lastFired = timestamp;
+    Map<String, Object> alert = new LinkedHashMap<>();
+    alert.put("rule", name);
+    alert.put("type", type.name());
+    alert.put("symbol", symbol);
+    alert.put("value", value);
+    alert.put("threshold", threshold);
+    alert.put("timestamp", Instant.ofEpochMilli(timestamp).toString());
+    alert.put("message", message);
+    return alert;
+  }
+
+  private static final class Spread extends AlertRule {
+    private final String symbol;
+    private final double thresholdBps;
+
+    private Spread(String name, long cooldownMs, String symbol, double thresholdBps) {
+      super(name, AlertType.SPREAD_BPS, cooldownMs);
+      this.symbol = symbol;
+      this.thresholdBps = thresholdBps;
+    }
+
+    @Override
+    List<String> getQuoteSymbols() {
+      return List.of(symbol);
+    }
+
+    @Override
+    Map<String, Object> onQuote(String symbol, double bid, double ask, long timestamp) {
+      double mid = (bid + ask) / 2;
+      double spreadBps = mid > 0 ? (ask - bid) / mid * 10_000 : Double.NaN;
+      if (!(spreadBps > thresholdBps)) {
+        return null;
+      }
+      return fire(
+          symbol,
+          spreadBps,
+          thresholdBps,
+          timestamp,
+          String.format("%s spread %.2f bps > %.2f bps", symbol, spreadBps, thresholdBps));
+    }
+  }
+
+  private static final class MidMove extends AlertRule {
+    private final String symbol;
+    private final double thresholdPercent;
+    private final long windowMs;
+    private final RollingExtremes extremes;
+
+    private MidMove(
+        String name, long cooldownMs, String symbol, double thresholdPercent, long windowMs) {
+      super(name, AlertType.MID_MOVE, cooldownMs);
+      this.symbol = symbol;
+      this.thresholdPercent = thresholdPercent;
+      this.windowMs = windowMs;
+      this.extremes = new RollingExtremes(windowMs);
+    }
+
+    @Override
+    List<String> getQuoteSymbols() {
+      return List.of(symbol);
+    }
+
+    @Override
+    Map<String, Object> onQuote(String symbol, double bid, double ask, long timestamp) {
+      double mid = (bid + ask) / 2;
+      if (!(mid > 0)) {
+        return null;
+      }
+      extremes.add(timestamp, mid);
+      // 窓内の最安値からの上昇と最高値からの下落のうち大きい方
+      double up = (mid / extremes.getMin() - 1) * 100;
+      double down = (mid / extremes.getMax() - 1) * 100;
+      double move = up >= -down ? up : down;
+      if (Math.abs(move) < thresholdPercent) {
+        return null;
+      }
+      return fire(
+          symbol,
+          move,
+          thresholdPercent,
+          timestamp,
+          String.format(
+              "%s mid moved %+.3f%% within %d ms (threshold %.3f%%)",
+              symbol, move, windowMs, thresholdPercent));
+    }
+  }
+
+  private static final class CrossedBook extends AlertRule {
+    private final String symbolA;
+    private final String symbolB;
+    private final double threshold;
+    private final long maxSkewMs;
+    private double bidA = Double.NaN;
+    private double askA = Double.NaN;
+    private long timestampA;
+    private double bidB = Double.NaN;
+    private double askB = Double.NaN;
+    private long timestampB;
+
+    private CrossedBook(
+        String name,
+        long cooldownMs,
+        String symbolA,
+        String symbolB,
+        double threshold,
+        long maxSkewMs) {
+      super(name, AlertType.CROSSED_BOOK, cooldownMs);
+      this.symbolA = symbolA;
+      this.symbolB = symbolB;
+      this.threshold = threshold;
+      this.maxSkewMs = maxSkewMs;
+    }
+
+    @Override
+    List<String> getQuoteSymbols() {
+      return List.of(symbolA, symbolB);
+    }
+
+    @Override
+    Map<String, Object> onQuote(String symbol, double bid, double ask, long timestamp) {
+      if (symbol.equals(symbolA)) {
+        bidA = bid;
+        askA = ask;
+        timestampA = timestamp;
+      } else {
+        bidB = bid;
+        askB = ask;
+        timestampB = timestamp;
+      }
+      if (Double.isNaN(bidA)
+          || Double.isNaN(bidB)
+          || Math.abs(timestampA - timestampB) >= maxSkewMs) {
+        return null;
+      }
+      double crossAB = bidA - askB;
+      double crossBA = bidB - askA;
+      double cross = Math.max(crossAB, crossBA);
+      if (!(cross > threshold)) {
+        return null;
+      }
+      String message =
+          crossAB >= crossBA
+              ? String.format("%s bid %.0f > %s ask %.0f", symbolA, bidA, symbolB, askB)
+              : String.format("%s bid %.0f > %s ask %.0f", symbolB, bidB, symbolA, askA);
+      return fire(symbolA + "/" + symbolB, cross, threshold, timestamp, message);
+    }
+  }
+
+  private static final class LargeTrade extends AlertRule {
+    private final String symbol;
+    private final double minSize;
+
+    private LargeTrade(String name, long cooldownMs, String symbol, double minSize) {
+      super(name, AlertType.LARGE_TRADE, cooldownMs);
+      this.symbol = symbol;
+      this.minSize = minSize;
+    }
+
+    @Override
+    List<String> getTradeSymbols() {
+      return List.of(symbol);
+    }
+
+    @Override
+    Map<String, Object> onTrade(
+        String symbol, double price, double size, String side, long timestamp) {
+      if (size < minSize) {
+        return null;
+      }
+      return fire(
+          symbol,
+          size,
+          minSize,
+          timestamp,
+          String.format(
+              "%s %s trade of %s at %.0f (threshold %s)", symbol, side, size, price, minSize));
+    }
+  }
+}
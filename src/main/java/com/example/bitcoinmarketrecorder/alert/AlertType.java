@@ -0,0 +1,20 @@
+package com.example.bitcoinmarketrecorder.alert;
+
+/** アラートの条件の種類。{@code threshold}の意味は種類ごとに異なる。 */
+public enum AlertType {
+
+  /** スプレッドが{@code threshold}bpsを超えた（BBO）。 */
+  SPREAD_BPS,
+
+  /** 中値が{@code window}の間に{@code threshold}%以上動いた（BBO）。 */
+  MID_MOVE,
+
+  /**
+   * 2銘柄の気配が{@code threshold}を超えて交差した（BBO）。一方の買い気配が他方の売り気配を上回る幅で判定し、
+   * 2銘柄の気配の時刻が{@code window}以上離れている間は判定しない。
+   */
+  CROSSED_BOOK,
+
+  /** 数量が{@code threshold}以上の約定（約定）。 */
+  LARGE_TRADE
+}
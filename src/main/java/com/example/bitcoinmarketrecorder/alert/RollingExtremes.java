@@ -0,0 +1,115 @@
+package com.example.bitcoinmarketrecorder.alert;
+
+/**
+ * 直近の一定時間の最小値と最大値を、単調な両端キュー2本で逐次求める。
+ *
+ * <p>キューはプリミティブ配列のリングで、足りなくなると倍に広げる。追加は償却O(1)で、値ごとのオブジェクトは作らない。
+ * スレッドセーフではない。
+ */
+class RollingExtremes {
+
+  private final long windowMs;
+  private final Deque min = new Deque();
+  private final Deque max = new Deque();
+
+  RollingExtremes(long windowMs) {
+    this.windowMs = windowMs;
+  }
+
+  /** 値を足し、{@code timestamp - windowMs}より前の値を捨てる。時刻は前後しない前提で、戻った場合はそのまま足す。 */
+  void add(long timestamp, double value) {
+    // 後ろから、新しい値以上（最小値側）・以下（最大値側）のものは二度と最小・最大にならない
+    while (!min.isEmpty() && min.lastValue() >= value) {
+      min.removeLast();
+    }
+    min.addLast(timestamp, value);
+    while (!max.isEmpty() && max.lastValue() <= value) {
+      max.removeLast();
+    }
+    max.addLast(timestamp, value);
+    long cutoff = timestamp - windowMs;
+    // 最後に足した値は時刻がcutoff以降のため、キューは空にならない
+    while (min.firstTimestamp() < cutoff) {
+      min.removeFirst();
+    }
+    while (max.firstTimestamp() < cutoff) {
+      max.removeFirst();
+    }
+  }
+
+  /** 窓内の最小値。値がなければNaN。 */
+  double getMin() {
+    return min.isEmpty() ? Double.NaN : min.firstValue();
+  }
+
+  /** 窓内の最大値。値がなければNaN。 */
+  double getMax() {
+    return max.isEmpty() ? Double.NaN : max.firstValue();
+  }
+
+  void clear() {
+    min.clear();
+    max.clear();
+  }
+
+  /** 時刻と値の組の両端キュー。 */
+  private static final class Deque {
+    private long[] timestamps = new long[16];
+    private double[] values = new double[16];
+    private int head;
+    private int size;
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void addLast(long timestamp, double value) {
+      if (size == values.length) {
+        grow();
+      }
+      int i = (head + size) & (values.length - 1);
+      timestamps[i] = timestamp;
+      values[i] = value;
+      size++;
+    }
+
+    void removeFirst() {
+      head = (head + 1) & (values.length - 1);
+      size--;
+    }
+
+    void removeLast() {
+      size--;
+    }
+
+    double firstValue() {
+      return values[head];
+    }
+
+    long firstTimestamp() {
+      return timestamps[head];
+    }
+
+    double lastValue() {
+      return values[(head + size - 1) & (values.length - 1)];
+    }
+
+    void clear() {
+      head = 0;
+      size = 0;
+    }
+
+    private void grow() {
+      long[] newTimestamps = new long[timestamps.length * 2];
+      double[] newValues = new double[values.length * 2];
+      for (int i = 0; i < size; i++) {
+        int j = (head + i) & (values.length - 1);
+        newTimestamps[i] = timestamps[j];
+        newValues[i] = values[j];
+      }
+      timestamps = newTimestamps;
+      values = newValues;
+      head = 0;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.time.Instant;
+
+/** 確定した足。時刻はエポックミリ秒で、足の期間は[openTime, closeTime)。 */
+public class Bar {
+
+  private final String exchange;
+  private final String symbol;
+  private final String interval;
+  private final long openTime;
+  private final long closeTime;
+  private final double open;
+  private final double high;
+  private final double low;
+  private final double close;
+  private final double volume;
+  private final double vwap;
+  private final int tradeCount;
+
+  public Bar(
+      String exchange,
+      String symbol,
+      String interval,
+      long openTime,
+      long closeTime,
+      double open,
+      double high,
+      double low,
+      double close,
+      double volume,
+      double vwap,
+      int tradeCount) {
+    this.exchange = exchange;
+    this.symbol = symbol;
+    this.interval = interval;
+    this.openTime = openTime;
+    this.closeTime = closeTime;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+    this.vwap = vwap;
+    this.tradeCount = tradeCount;
+  }
+
+  /** bars_*.csvの1行（ヘッダーは{@code RecordedStream.BARS}）。 */
+  public String toCsvRow() {
+    return String.join(
+        ",",
+        exchange,
+        symbol,
+        interval,
+        Instant.ofEpochMilli(openTime).toString(),
+        Instant.ofEpochMilli(closeTime).toString(),
+        CsvValues.number(open),
+        CsvValues.number(high),
+        CsvValues.number(low),
+        CsvValues.number(close),
+        CsvValues.number(volume),
+        CsvValues.number(vwap),
+        Integer.toString(tradeCount));
+  }
+
+  public String getExchange() {
+    return exchange;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public String getInterval() {
+    return interval;
+  }
+
+  public long getOpenTime() {
+    return openTime;
+  }
+
+  public long getCloseTime() {
+    return closeTime;
+  }
+
+  public double getOpen() {
+    return open;
+  }
+
+  public double getHigh() {
+    return high;
+  }
+
+  public double getLow() {
+    return low;
+  }
+
+  public double getClose() {
+    return close;
+  }
+
+  public double getVolume() {
+    return volume;
+  }
+
+  public double getVwap() {
+    return vwap;
+  }
+
+  public int getTradeCount() {
+    return tradeCount;
+  }
+}
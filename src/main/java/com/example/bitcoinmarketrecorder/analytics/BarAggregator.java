@@ -0,0 +1,173 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 1銘柄・1種類の足を約定の時刻（取引所のタイムスタンプ）で組み立てる。
+ *
+ * <p>まだ確定していない足はプリミティブ配列のスロットに持ち、約定の追加は割り当てなしのO(1)で行う。足は
+ * {@link #advance(long)}に渡したウォーターマーク以前に終わった時点で確定し、それより前の時刻の約定は遅延として捨てる。
+ * 約定が前後して届いても、始値・終値は約定の時刻で最も早い・遅いものになる。スレッドセーフではない。
+ */
+public class BarAggregator {
+
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private final String exchange;
+  private final String symbol;
+  private final String label;
+  private final long intervalMs;
+
+  // スロットごとの未確定の足
+  private final long[] start;
+  private final long[] openTime;
+  private final long[] closeTime;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private final double[] volume;
+  private final double[] notional;
+  private final int[] count;
+
+  // これより前に始まる足は確定済み
+  private long closedBefore = EMPTY;
+  private long late;
+
+  /**
+   * @param allowedLatenessMs ウォーターマークの遅れ。同時に開いている足の数を決める
+   */
+  public BarAggregator(
+      String exchange, String symbol, String label, long intervalMs, long allowedLatenessMs) {
+    if (intervalMs <= 0) {
+      throw new IllegalArgumentException("Bar interval must be positive: " + intervalMs);
+    }
+    this.exchange = exchange;
+    this.symbol = symbol;
+    this.label = label;
+    this.intervalMs = intervalMs;
+    // ウォーターマークから最新の約定までの足と、その両端の分
+    int slots = (int) Math.min(1024, Math.max(0, allowedLatenessMs) / intervalMs + 2);
+    this.start = new long[slots];
+    this.openTime = new long[slots];
+    this.closeTime = new long[slots];
+    this.open = new double[slots];
+    this.high = new double[slots];
+    this.low = new double[slots];
+    this.close = new double[slots];
+    this.volume = new double[slots];
+    this.notional = new double[slots];
+    this.count = new int[slots];
+    Arrays.fill(start, EMPTY);
+  }
+
+  /**
+   * 約定を足に加える。確定済みの足に入る約定は遅延として数え、falseを返す。
+   *
+   * @param closed スロットが足りずに古い足を先に確定した場合の出力先
+   */
+  public boolean add(long timestamp, double price, double size, List<Bar> closed) {
+    long barStart = Math.floorDiv(timestamp, intervalMs) * intervalMs;
+    if (barStart < closedBefore) {
+      late++;
+      return false;
+    }
+    int slot = (int) Math.floorMod(Math.floorDiv(timestamp, intervalMs), (long) start.length);
+    if (start[slot] != barStart) {
+      if (start[slot] != EMPTY) {
+        if (start[slot] > barStart) {
+          // より新しい足が使っている（ウォーターマークより十分古い約定）
+          late++;
+          return false;
+        }
+        // ウォーターマークを超えて時刻が飛んだ場合は、その足までを先に確定する
+        advance(start[slot] + intervalMs, closed);
+      }
+      start[slot] = barStart;
+      openTime[slot] = timestamp;
+      closeTime[slot] = timestamp;
+      open[slot] = price;
+      high[slot] = price;
+      low[slot] = price;
+      close[slot] = price;
+      volume[slot] = size;
+      notional[slot] = price * size;
+      count[slot] = 1;
+      return true;
+    }
+    if (timestamp < openTime[slot]) {
+      openTime[slot] = timestamp;
+      open[slot] = price;
+    }
+    if (timestamp >= closeTime[slot]) {
+      closeTime[slot] = timestamp;
+      close[slot] = price;
+    }
+    high[slot] = Math.max(high[slot], price);
+    low[slot] = Math.min(low[slot], price);
+    volume[slot] += size;
+    notional[slot] += price * size;
+    count[slot]++;
+    return true;
+  }
+
+  /** ウォーターマーク以前に終わる足を確定し、古い順に{@code closed}に加える。 */
+  public void advance(long watermark, List<Bar> closed) {
+    while (true) {
+      int oldest = -1;
+      for (int i = 0; i < start.length; i++) {
+        if (start[i] != EMPTY
+            && start[i] + intervalMs <= watermark
+            && (oldest < 0 || start[i] < start[oldest])) {
+          oldest = i;
+        }
+      }
+      if (oldest < 0) {
+        break;
+      }
+      closed.add(emit(oldest));
+      start[oldest] = EMPTY;
+    }
+    long boundary = Math.floorDiv(watermark, intervalMs) * intervalMs;
+    if (boundary > closedBefore) {
+      closedBefore = boundary;
+    }
+  }
+
+  private Bar emit(int slot) {
+    return new Bar(
+        exchange,
+        symbol,
+        label,
+        start[slot],
+        start[slot] + intervalMs,
+        open[slot],
+        high[slot],
+        low[slot],
+        close[slot],
+        volume[slot],
+        volume[slot] > 0 ? notional[slot] / volume[slot] : close[slot],
+        count[slot]);
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  /** 確定済みの足に届いて捨てた約定の数。 */
+  public long getLate() {
+    return late;
+  }
+
+  /** 未確定の足の数。 */
+  public int getOpenBars() {
+    int open = 0;
+    for (long barStart : start) {
+      if (barStart != EMPTY) {
+        open++;
+      }
+    }
+    return open;
+  }
+}
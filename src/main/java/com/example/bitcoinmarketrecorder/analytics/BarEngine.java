@@ -0,0 +1,186 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.BarProperties;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 約定から銘柄ごとに足を作り、確定した足をRedisに配信してCSVに記録する。
+ *
+ * <p>足は取引所の約定時刻で区切る。銘柄ごとのウォーターマークは受信済みの最新の約定時刻から
+ * {@code bars.allowed-lateness-ms}を引いた時刻で、約定が{@code bars.idle-timeout-ms}以上途絶えた場合は経過時間の分だけ
+ * 進める。配信先は{@code <channel-prefix>:<足の長さ>:<取引所>:<銘柄>}（例: bars:1m:GMO:BTC）。約定のない時間帯の足は
+ * 出力しない。
+ */
+@Service
+public class BarEngine implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(BarEngine.class);
+
+  @Autowired private BarProperties barProperties;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, SymbolBars> symbols = new ConcurrentHashMap<>();
+  private final LongAdder emitted = new LongAdder();
+
+  /** 1銘柄分の足。 */
+  private static class SymbolBars {
+    private final BarAggregator[] aggregators;
+    private final List<Bar> closed = new ArrayList<>();
+    private long maxEventTime = Long.MIN_VALUE;
+    private long lastArrival;
+
+    SymbolBars(BarAggregator[] aggregators) {
+      this.aggregators = aggregators;
+    }
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!barProperties.isEnabled()
+        || trade.getTimestamp() == null
+        || trade.getPrice() == null
+        || trade.getSize() == null) {
+      return;
+    }
+    SymbolBars bars =
+        symbols.computeIfAbsent(
+            SymbolKey.of(trade.getExchange(), trade.getSymbol()),
+            k -> create(trade.getExchange(), trade.getSymbol()));
+    long timestamp = trade.getTimestamp().toEpochMilli();
+    double price = trade.getPrice().doubleValue();
+    double size = trade.getSize().doubleValue();
+    List<Bar> closed;
+    synchronized (bars) {
+      long now = System.currentTimeMillis();
+      bars.maxEventTime = Math.max(bars.maxEventTime, timestamp);
+      bars.lastArrival = now;
+      long watermark = watermark(bars, now);
+      for (BarAggregator aggregator : bars.aggregators) {
+        aggregator.advance(watermark, bars.closed);
+        aggregator.add(timestamp, price, size, bars.closed);
+      }
+      closed = drain(bars);
+    }
+    publish(closed);
+  }
+
+  /** 約定が途絶えた銘柄の足を確定する。 */
+  @Scheduled(fixedDelayString = "${bars.tick-interval-ms:200}")
+  public void tick() {
+    List<Bar> closed = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (SymbolBars bars : symbols.values()) {
+      synchronized (bars) {
+        long watermark = watermark(bars, now);
+        for (BarAggregator aggregator : bars.aggregators) {
+          aggregator.advance(watermark, bars.closed);
+        }
+        closed.addAll(bars.closed);
+        bars.closed.clear();
+      }
+    }
+    publish(closed);
+  }
+
+  private long watermark(SymbolBars bars, long now) {
+    if (bars.maxEventTime == Long.MIN_VALUE) {
+      return Long.MIN_VALUE;
+    }
+    // 取引所と手元の時計のずれに影響されないよう、途絶えてからの経過時間だけを加える
+    long idle = Math.max(0, now - bars.lastArrival - barProperties.getIdleTimeoutMs());
+    return bars.maxEventTime + idle - barProperties.getAllowedLatenessMs();
+  }
+
+  private static List<Bar> drain(SymbolBars bars) {
+    if (bars.closed.isEmpty()) {
+      return List.of();
+    }
+    List<Bar> closed = new ArrayList<>(bars.closed);
+    bars.closed.clear();
+    return closed;
+  }
+
+  private void publish(List<Bar> closed) {
+    if (closed.isEmpty()) {
+      return;
+    }
+    List<String> rows = new ArrayList<>(closed.size());
+    for (Bar bar : closed) {
+      String key = SymbolKey.of(bar.getExchange(), bar.getSymbol());
+      try {
+        redisPublisherService.publish(
+            key,
+            barProperties.getChannelPrefix() + ":" + bar.getInterval() + ":" + key,
+            objectMapper.writeValueAsString(bar));
+      } catch (JsonProcessingException e) {
+        logger.error(
+            "Failed to serialize {} bar for {}: {}", bar.getInterval(), key, e.getMessage());
+      } catch (Exception e) {
+        logger.error("Failed to publish {} bar for {}: {}", bar.getInterval(), key, e.getMessage());
+      }
+      rows.add(bar.toCsvRow());
+    }
+    emitted.add(closed.size());
+    if (barProperties.isPersistEnabled()) {
+      dataPersistenceService.saveRows(RecordedStream.BARS, rows);
+    }
+  }
+
+  private SymbolBars create(String exchange, String symbol) {
+    List<Duration> intervals = barProperties.getIntervals();
+    BarAggregator[] aggregators = new BarAggregator[intervals.size()];
+    for (int i = 0; i < aggregators.length; i++) {
+      aggregators[i] =
+          new BarAggregator(
+              exchange,
+              symbol,
+              BarProperties.label(intervals.get(i)),
+              intervals.get(i).toMillis(),
+              barProperties.getAllowedLatenessMs());
+    }
+    return new SymbolBars(aggregators);
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", barProperties.isEnabled());
+    stats.put("emitted", emitted.sum());
+    Map<String, Object> late = new TreeMap<>();
+    for (Map.Entry<String, SymbolBars> entry : symbols.entrySet()) {
+      SymbolBars bars = entry.getValue();
+      synchronized (bars) {
+        Map<String, Object> perInterval = new LinkedHashMap<>();
+        for (BarAggregator aggregator : bars.aggregators) {
+          perInterval.put(aggregator.getLabel(), aggregator.getLate());
+        }
+        late.put(entry.getKey(), perInterval);
+      }
+    }
+    stats.put("lateTrades", late);
+    return stats;
+  }
+}
@@ -0,0 +1,183 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import java.util.List;
+
+/**
+ * 板の更新ごとの指標（板の偏り・マイクロプライス・厚み加重の仲値・仲値から±bps以内の厚み・板の傾き）の計算。
+ *
+ * <p>板の上位{@code depth}段を価格と数量の{@code double[]}に写してから計算するため、計算中はオブジェクトを確保しない。
+ * 計算結果はインスタンスのフィールドに残り、次の{@link #compute}で上書きされる。スレッドセーフではない。
+ */
+public class BookAnalytics {
+
+  private final int depth;
+  private final double bandRatio;
+  private final double[] bidPrices;
+  private final double[] bidSizes;
+  private final double[] askPrices;
+  private final double[] askSizes;
+  private int bidLevels;
+  private int askLevels;
+
+  private double imbalance;
+  private double depthImbalance;
+  private double microprice;
+  private double weightedMid;
+  private double bidDepth;
+  private double askDepth;
+  private double bidSlope;
+  private double askSlope;
+
+  /**
+   * @param depth 計算に使う板の段数
+   * @param bandBps 厚みを数える仲値からの幅（bps）
+   */
+  public BookAnalytics(int depth, double bandBps) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("depth must be positive: " + depth);
+    }
+    this.depth = depth;
+    this.bandRatio = bandBps / 10_000;
+    this.bidPrices = new double[depth];
+    this.bidSizes = new double[depth];
+    this.askPrices = new double[depth];
+    this.askSizes = new double[depth];
+  }
+
+  /** 板から指標を計算する。買いと売りのどちらかが空の場合はfalseを返す。 */
+  public boolean compute(MarketBoard board) {
+    bidLevels = load(board.getBids(), bidPrices, bidSizes);
+    askLevels = load(board.getAsks(), askPrices, askSizes);
+    if (bidLevels == 0 || askLevels == 0) {
+      return false;
+    }
+    compute();
+    return true;
+  }
+
+  private int load(List<MarketBoard.PriceLevel> levels, double[] prices, double[] sizes) {
+    int count = 0;
+    for (int i = 0; i < levels.size() && count < depth; i++) {
+      MarketBoard.PriceLevel level = levels.get(i);
+      if (level == null || level.getPrice() == null || level.getSize() == null) {
+        continue;
+      }
+      prices[count] = level.getPrice().doubleValue();
+      sizes[count] = level.getSize().doubleValue();
+      count++;
+    }
+    return count;
+  }
+
+  private void compute() {
+    double bid = bidPrices[0];
+    double ask = askPrices[0];
+    double bidSize = bidSizes[0];
+    double askSize = askSizes[0];
+    double mid = (bid + ask) / 2;
+
+    imbalance = ratio(bidSize - askSize, bidSize + askSize);
+    // 最良気配の数量が多い側ほど反対側に近づける
+    microprice =
+        bidSize + askSize > 0 ? (bid * askSize + ask * bidSize) / (bidSize + askSize) : mid;
+
+    double bidTotal = 0;
+    double bidNotional = 0;
+    bidDepth = 0;
+    double bidFloor = mid * (1 - bandRatio);
+    for (int i = 0; i < bidLevels; i++) {
+      bidTotal += bidSizes[i];
+      bidNotional += bidPrices[i] * bidSizes[i];
+      if (bidPrices[i] >= bidFloor) {
+        bidDepth += bidSizes[i];
+      }
+    }
+    double askTotal = 0;
+    double askNotional = 0;
+    askDepth = 0;
+    double askCeiling = mid * (1 + bandRatio);
+    for (int i = 0; i < askLevels; i++) {
+      askTotal += askSizes[i];
+      askNotional += askPrices[i] * askSizes[i];
+      if (askPrices[i] <= askCeiling) {
+        askDepth += askSizes[i];
+      }
+    }
+
+    depthImbalance = ratio(bidTotal - askTotal, bidTotal + askTotal);
+    // 買いと売りそれぞれの数量加重平均価格の中点
+    weightedMid =
+        bidTotal > 0 && askTotal > 0 ? (bidNotional / bidTotal + askNotional / askTotal) / 2 : mid;
+    // 最良気配からN段目までの1bpあたりの数量。1段しかない場合は傾きを決められない
+    bidSlope = slope(bidTotal, bid - bidPrices[bidLevels - 1], mid);
+    askSlope = slope(askTotal, askPrices[askLevels - 1] - ask, mid);
+  }
+
+  private static double ratio(double numerator, double denominator) {
+    return denominator > 0 ? numerator / denominator : 0;
+  }
+
+  private static double slope(double size, double distance, double mid) {
+    return distance > 0 && mid > 0 ? size / (distance / mid * 10_000) : Double.NaN;
+  }
+
+  /** 直前の計算結果を最良気配に付ける。有限でない値は付けない。 */
+  public void applyTo(BestBidAsk bestBidAsk) {
+    bestBidAsk.setImbalance(finite(imbalance));
+    bestBidAsk.setDepthImbalance(finite(depthImbalance));
+    bestBidAsk.setMicroprice(finite(microprice));
+    bestBidAsk.setWeightedMid(finite(weightedMid));
+    bestBidAsk.setBidDepth(finite(bidDepth));
+    bestBidAsk.setAskDepth(finite(askDepth));
+    bestBidAsk.setBidSlope(finite(bidSlope));
+    bestBidAsk.setAskSlope(finite(askSlope));
+  }
+
+  private static Double finite(double value) {
+    return Double.isFinite(value) ? value : null;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  /** 最良気配の数量の偏り（-1〜1、買いが多いほど正）。 */
+  public double getImbalance() {
+    return imbalance;
+  }
+
+  /** 上位N段の数量の偏り（-1〜1、買いが多いほど正）。 */
+  public double getDepthImbalance() {
+    return depthImbalance;
+  }
+
+  public double getMicroprice() {
+    return microprice;
+  }
+
+  public double getWeightedMid() {
+    return weightedMid;
+  }
+
+  /** 仲値から±bps以内の買いの数量。 */
+  public double getBidDepth() {
+    return bidDepth;
+  }
+
+  /** 仲値から±bps以内の売りの数量。 */
+  public double getAskDepth() {
+    return askDepth;
+  }
+
+  /** 買い板の1bpあたりの数量。 */
+  public double getBidSlope() {
+    return bidSlope;
+  }
+
+  /** 売り板の1bpあたりの数量。 */
+  public double getAskSlope() {
+    return askSlope;
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.BookAnalyticsProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 板の更新ごとに{@link BookAnalytics}で指標を計算し、受信側が作るBBOに付ける。
+ *
+ * <p>受信スレッド上で呼ばれるため、計算用の配列はスレッドごとに1つ持って使い回す。指標を付けたBBOは通常どおり
+ * {@link com.example.bitcoinmarketrecorder.service.MarketDataDispatcher}で配られ、有効な場合はRedisにも配信する。
+ */
+@Service
+public class BookAnalyticsService {
+
+  private static final Logger logger = LoggerFactory.getLogger(BookAnalyticsService.class);
+
+  @Autowired private BookAnalyticsProperties bookAnalyticsProperties;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ThreadLocal<BookAnalytics> calculators =
+      ThreadLocal.withInitial(
+          () ->
+              new BookAnalytics(
+                  bookAnalyticsProperties.getDepth(), bookAnalyticsProperties.getBandBps()));
+  private final LongAdder computed = new LongAdder();
+  private final LongAdder published = new LongAdder();
+
+  /** 板から指標を計算してBBOに付ける。 */
+  public void apply(MarketBoard board, BestBidAsk bestBidAsk) {
+    if (!bookAnalyticsProperties.isEnabled()) {
+      return;
+    }
+    BookAnalytics analytics = calculators.get();
+    if (!analytics.compute(board)) {
+      return;
+    }
+    analytics.applyTo(bestBidAsk);
+    computed.increment();
+    if (bookAnalyticsProperties.isPublishEnabled()) {
+      publish(bestBidAsk);
+    }
+  }
+
+  private void publish(BestBidAsk bestBidAsk) {
+    String key = SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol());
+    Map<String, Object> message = new LinkedHashMap<>();
+    message.put("symbol", key);
+    message.put(
+        "ts", bestBidAsk.getTimestamp() != null ? bestBidAsk.getTimestamp().toEpochMilli() : null);
+    message.put("imbalance", bestBidAsk.getImbalance());
+    message.put("depthImbalance", bestBidAsk.getDepthImbalance());
+    message.put("microprice", bestBidAsk.getMicroprice());
+    message.put("weightedMid", bestBidAsk.getWeightedMid());
+    message.put("bidDepth", bestBidAsk.getBidDepth());
+    message.put("askDepth", bestBidAsk.getAskDepth());
+    message.put("bidSlope", bestBidAsk.getBidSlope());
+    message.put("askSlope", bestBidAsk.getAskSlope());
+    try {
+      redisPublisherService.publish(
+          key,
+          bookAnalyticsProperties.getChannelPrefix() + ":" + key,
+          objectMapper.writeValueAsString(message));
+      published.increment();
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to serialize book analytics for {}: {}", key, e.getMessage());
+    } catch (Exception e) {
+      logger.error("Failed to publish book analytics for {}: {}", key, e.getMessage());
+    }
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("computed", computed.sum());
+    stats.put("published", published.sum());
+    return stats;
+  }
+}
@@ -0,0 +1,21 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/** 集計値をCSVに書くときの数値の表記。 */
+final class CsvValues {
+
+  private CsvValues() {}
+
+  /** 小数点以下8桁に丸め、末尾の0を省く。NaN・無限大は空欄にする。 */
+  static String number(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return "";
+    }
+    return BigDecimal.valueOf(value)
+        .setScale(8, RoundingMode.HALF_UP)
+        .stripTrailingZeros()
+        .toPlainString();
+  }
+}
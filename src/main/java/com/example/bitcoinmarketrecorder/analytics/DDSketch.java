@@ -0,0 +1,259 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.util.Arrays;
+
+/**
+ * 相対誤差を保証する分位点のスケッチ（DDSketch方式）。
+ *
+ * <p>正の値を{@code gamma = (1 + α) / (1 - α)}の対数で区切ったビンに数え、分位点はビンの中央の値で返すため、相対誤差は
+ * α以内に収まる。ビンは最大{@code maxBins}個の{@code long[]}に持ち、値の範囲がそれを超えた場合は最も小さい側のビンを
+ * まとめる（高い分位点の精度を優先する）。0以下の値はゼロのビンに数える。同じ設定のスケッチ同士は{@link #merge}で
+ * 足し合わせられ、結果は全データを1つのスケッチに入れた場合と同じになる。スレッドセーフではない。
+ */
+public class DDSketch {
+
+  // これより小さい正の値はゼロのビンに数える
+  private static final double MIN_INDEXABLE = 1e-9;
+
+  private final double relativeAccuracy;
+  private final int maxBins;
+  private final double gamma;
+  private final double logGamma;
+  private long[] counts;
+  // counts[0]が表すビンの番号
+  private int offset;
+  private int minKey = Integer.MAX_VALUE;
+  private int maxKey = Integer.MIN_VALUE;
+  private long zeroCount;
+  private long count;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+  private double sum;
+
+  /**
+   * @param relativeAccuracy 分位点の相対誤差の上限（0 < α < 1）
+   * @param maxBins ビンの最大数
+   */
+  public DDSketch(double relativeAccuracy, int maxBins) {
+    if (!(relativeAccuracy > 0 && relativeAccuracy < 1) || maxBins < 1) {
+      throw new IllegalArgumentException(
+          "Invalid sketch parameters: accuracy=" + relativeAccuracy + ", maxBins=" + maxBins);
+    }
+    this.relativeAccuracy = relativeAccuracy;
+    this.maxBins = maxBins;
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(gamma);
+    this.counts = new long[maxBins];
+  }
+
+  /** 値を1件数える。NaNと無限大は無視する。 */
+  public void add(double value) {
+    if (!Double.isFinite(value)) {
+      return;
+    }
+    if (value < MIN_INDEXABLE) {
+      zeroCount++;
+    } else {
+      addToKey((int) Math.ceil(Math.log(value) / logGamma), 1);
+    }
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  private void addToKey(int key, long n) {
+    int index = ensure(key) - offset;
+    counts[index] += n;
+  }
+
+  /** ビンの番号が配列に収まるよう配列をずらし、実際に数えるビンの番号を返す。 */
+  private int ensure(int key) {
+    if (minKey > maxKey) {
+      offset = key - maxBins / 2;
+      minKey = key;
+      maxKey = key;
+      return key;
+    }
+    if (key >= offset && key < offset + maxBins) {
+      minKey = Math.min(minKey, key);
+      maxKey = Math.max(maxKey, key);
+      return key;
+    }
+    int low = Math.min(key, minKey);
+    int high = Math.max(key, maxKey);
+    if ((long) high - low < maxBins) {
+      // 収まる場合は使っている範囲が中央に来るようにずらす
+      shift(low - (maxBins - (high - low + 1)) / 2);
+      minKey = low;
+      maxKey = high;
+      return key;
+    }
+    if (key < minKey) {
+      // 下に外れた値は最も小さいビンにまとめる
+      shift(maxKey - maxBins + 1);
+      minKey = offset;
+      return offset;
+    }
+    // 上に外れた場合は下側のビンを最も小さいビンにまとめる
+    shift(key - maxBins + 1);
+    minKey = Math.max(minKey, offset);
+    maxKey = key;
+    return key;
+  }
+
+  private void shift(int newOffset) {
+    long[] shifted = new long[maxBins];
+    for (int key = minKey; key <= maxKey; key++) {
+      long c = counts[key - offset];
+      if (c != 0) {
+        shifted[Math.max(0, key - newOffset)] += c;
+      }
+    }
+    counts = shifted;
+    offset = newOffset;
+  }
+
+  /** 同じ設定のスケッチを足し合わせる。 */
+  public void merge(DDSketch other) {
+    if (other.relativeAccuracy != relativeAccuracy || other.maxBins != maxBins) {
+      throw new IllegalArgumentException("Cannot merge sketches with different parameters");
+    }
+    if (other.count == 0) {
+      return;
+    }
+    // 大きいビンから足すと、まとめる必要がある場合に小さい側がまとめられる
+    for (int key = other.maxKey; key >= other.minKey; key--) {
+      long c = other.counts[key - other.offset];
+      if (c != 0) {
+        addToKey(key, c);
+      }
+    }
+    zeroCount += other.zeroCount;
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /** 分位点（0〜1）の値。0と1は正確な最小値・最大値を返す。空の場合はNaN。 */
+  public double quantile(double q) {
+    if (count == 0 || q < 0 || q > 1) {
+      return Double.NaN;
+    }
+    if (q == 0) {
+      return min;
+    }
+    if (q == 1) {
+      return max;
+    }
+    double rank = q * (count - 1);
+    long seen = zeroCount;
+    if (seen > rank) {
+      return Math.max(min, 0);
+    }
+    for (int key = minKey; key <= maxKey; key++) {
+      seen += counts[key - offset];
+      if (seen > rank) {
+        double value = 2 * Math.pow(gamma, key) / (gamma + 1);
+        return Math.max(min, Math.min(max, value));
+      }
+    }
+    return max;
+  }
+
+  /** 空に戻す。 */
+  public void clear() {
+    Arrays.fill(counts, 0);
+    minKey = Integer.MAX_VALUE;
+    maxKey = Integer.MIN_VALUE;
+    zeroCount = 0;
+    count = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+    sum = 0;
+  }
+
+  /** CSVの1列に収まる（カンマを含まない）文字列にする。{@link #decode}で元に戻せる。 */
+  public String encode() {
+    StringBuilder out =
+        new StringBuilder()
+            .append(relativeAccuracy)
+            .append(';')
+            .append(maxBins)
+            .append(';')
+            .append(zeroCount)
+            .append(';')
+            .append(count == 0 ? "" : Double.toString(min))
+            .append(';')
+            .append(count == 0 ? "" : Double.toString(max))
+            .append(';')
+            .append(sum)
+            .append(';');
+    boolean first = true;
+    for (int key = minKey; key <= maxKey; key++) {
+      long c = counts[key - offset];
+      if (c != 0) {
+        if (!first) {
+          out.append(' ');
+        }
+        out.append(key).append(':').append(c);
+        first = false;
+      }
+    }
+    return out.toString();
+  }
+
+  /** {@link #encode}の文字列から復元する。形式が正しくない場合はIllegalArgumentException。 */
+  public static DDSketch decode(String encoded) {
+    String[] parts = encoded.split(";", -1);
+    if (parts.length != 7) {
+      throw new IllegalArgumentException("Malformed sketch: " + encoded);
+    }
+    try {
+      DDSketch sketch = new DDSketch(Double.parseDouble(parts[0]), Integer.parseInt(parts[1]));
+      sketch.zeroCount = Long.parseLong(parts[2]);
+      sketch.count = sketch.zeroCount;
+      if (!parts[6].isEmpty()) {
+        for (String bin : parts[6].split(" ")) {
+          int colon = bin.indexOf(':');
+          long c = Long.parseLong(bin.substring(colon + 1));
+          sketch.addToKey(Integer.parseInt(bin.substring(0, colon)), c);
+          sketch.count += c;
+        }
+      }
+      if (sketch.count > 0) {
+        sketch.min = Double.parseDouble(parts[3]);
+        sketch.max = Double.parseDouble(parts[4]);
+      }
+      sketch.sum = Double.parseDouble(parts[5]);
+      return sketch;
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Malformed sketch: " + encoded, e);
+    }
+  }
+
+  public double getRelativeAccuracy() {
+    return relativeAccuracy;
+  }
+
+  public int getMaxBins() {
+    return maxBins;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMin() {
+    return count == 0 ? Double.NaN : min;
+  }
+
+  public double getMax() {
+    return count == 0 ? Double.NaN : max;
+  }
+
+  public double getSum() {
+    return sum;
+  }
+}
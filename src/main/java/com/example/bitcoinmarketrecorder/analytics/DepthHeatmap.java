@@ -0,0 +1,323 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 1時間分の板の厚みのヒートマップ。一定の間隔（列）ごとに、価格帯（行）ごとの買い板・売り板の数量の合計を持つ。
+ *
+ * <p>価格帯は{@link Mode#RELATIVE}では仲値からの乖離（bps）、{@link Mode#ABSOLUTE}では価格を{@code bucketSize}ごとに
+ * 区切ったもの。板は受信時に{@link #capture}で1列分（{@link Column}）に集計しておき、{@link #sample}で時刻の列に
+ * 写す。行列は列ごとに連続したfloatの配列で、列ごとの仲値をdoubleの配列で持つ。{@link Mode#ABSOLUTE}では時間帯の
+ * 最初の標本の仲値を中心に行の価格を固定するため、その後に仲値が大きく動くと範囲外の数量は数えずに
+ * {@link #getClipped}で数える。スレッドセーフではない。
+ */
+public class DepthHeatmap {
+
+  /** 価格帯の取り方。 */
+  public enum Mode {
+    /** 仲値からの乖離（bps）で区切る。 */
+    RELATIVE,
+    /** 価格で区切る。 */
+    ABSOLUTE
+  }
+
+  private static final long HOUR_MS = 3_600_000L;
+
+  private final Mode mode;
+  private final double bucketSize;
+  private final int rows;
+  private final long intervalMs;
+  private final int columns;
+  private final double[] mids;
+  private final float[] depth;
+  private long start;
+  // ABSOLUTEで行0の価格帯の番号（floor(価格 / bucketSize)）
+  private long baseKey;
+  private int samples;
+  private long clipped;
+
+  /** 受信した板を1列分に集計したもの。 */
+  public static class Column {
+    private final float[] depth;
+    private double mid = Double.NaN;
+    // ABSOLUTEで中央の行の価格帯の番号
+    private long centerKey;
+    private long timestamp = Long.MIN_VALUE;
+
+    public Column(int rows) {
+      this.depth = new float[rows];
+    }
+
+    public double getMid() {
+      return mid;
+    }
+
+    /** 集計した時刻（エポックミリ秒）。まだ集計していない場合はLong.MIN_VALUE。 */
+    public long getTimestamp() {
+      return timestamp;
+    }
+  }
+
+  /**
+   * @param bucketSize 価格帯の幅。RELATIVEではbps、ABSOLUTEでは価格
+   * @param rows 価格帯の数。中央の行が仲値を含む
+   * @param intervalMs 列の間隔。1時間を割り切る値
+   */
+  public DepthHeatmap(Mode mode, double bucketSize, int rows, long intervalMs) {
+    if (!(bucketSize > 0) || rows < 2 || intervalMs <= 0 || HOUR_MS % intervalMs != 0) {
+      throw new IllegalArgumentException(
+          "Invalid depth heatmap: bucketSize="
+              + bucketSize
+              + ", rows="
+              + rows
+              + ", intervalMs="
+              + intervalMs);
+    }
+    this.mode = mode;
+    this.bucketSize = bucketSize;
+    this.rows = rows;
+    this.intervalMs = intervalMs;
+    this.columns = (int) (HOUR_MS / intervalMs);
+    this.mids = new double[columns];
+    this.depth = new float[columns * rows];
+    Arrays.fill(mids, Double.NaN);
+  }
+
+  /**
+   * 板を1列分に集計する。最良気配が揃わない板は集計せずfalseを返す。
+   *
+   * <p>板は最良気配から順に並んでいる（買い板は価格の降順、売り板は昇順）ものとして、先頭の段を最良気配とする。
+   */
+  public boolean capture(MarketBoard board, long timestamp, Column out) {
+    if (board.getBids().isEmpty() || board.getAsks().isEmpty()) {
+      return false;
+    }
+    double bestBid = board.getBids().get(0).getPrice().doubleValue();
+    double bestAsk = board.getAsks().get(0).getPrice().doubleValue();
+    if (!(bestBid > 0) || !(bestAsk > 0)) {
+      return false;
+    }
+    double mid = (bestBid + bestAsk) / 2;
+    Arrays.fill(out.depth, 0);
+    out.mid = mid;
+    out.centerKey = (long) Math.floor(mid / bucketSize);
+    out.timestamp = timestamp;
+    addLevels(board.getBids(), out);
+    addLevels(board.getAsks(), out);
+    return true;
+  }
+
+  private void addLevels(List<MarketBoard.PriceLevel> levels, Column out) {
+    int half = rows / 2;
+    for (MarketBoard.PriceLevel level : levels) {
+      double price = level.getPrice().doubleValue();
+      long offset =
+          mode == Mode.RELATIVE
+              ? (long) Math.floor((price / out.mid - 1) * 10_000 / bucketSize)
+              : (long) Math.floor(price / bucketSize) - out.centerKey;
+      if (offset >= -half && offset < rows - half) {
+        out.depth[(int) offset + half] += level.getSize().floatValue();
+      }
+    }
+  }
+
+  /** 空に戻し、{@code start}（エポックミリ秒）から1時間の行列にする。配列は使い回す。 */
+  public void reset(long start) {
+    this.start = start;
+    Arrays.fill(mids, Double.NaN);
+    Arrays.fill(depth, 0);
+    baseKey = 0;
+    samples = 0;
+    clipped = 0;
+  }
+
+  /**
+   * {@code timestamp}の列に集計済みの板を写す。時間帯の外の時刻は無視してfalseを返す。
+   *
+   * <p>同じ列に2回写した場合は後の標本で上書きする。
+   */
+  public boolean sample(long timestamp, Column column) {
+    long index = Math.floorDiv(timestamp - start, intervalMs);
+    if (index < 0 || index >= columns || Double.isNaN(column.mid)) {
+      return false;
+    }
+    int c = (int) index;
+    int from = c * rows;
+    if (mode == Mode.RELATIVE) {
+      System.arraycopy(column.depth, 0, depth, from, rows);
+    } else {
+      if (samples == 0) {
+        baseKey = column.centerKey - rows / 2;
+      }
+      Arrays.fill(depth, from, from + rows, 0);
+      // 列の行0が行列の何行目にあたるか
+      long shift = column.centerKey - rows / 2 - baseKey;
+      for (int r = 0; r < rows; r++) {
+        float size = column.depth[r];
+        if (size == 0) {
+          continue;
+        }
+        long row = r + shift;
+        if (row < 0 || row >= rows) {
+          clipped++;
+        } else {
+          depth[from + (int) row] = size;
+        }
+      }
+    }
+    if (Double.isNaN(mids[c])) {
+      samples++;
+    }
+    mids[c] = column.mid;
+    return true;
+  }
+
+  /**
+   * CSVの1列に収まる（カンマを含まない）文字列。列ごとの仲値（double）と行列（float）を並べたバイト列をdeflateで
+   * 圧縮し、Base64にする。{@link #decode}で元に戻せる。
+   */
+  public String encode() {
+    ByteBuffer buffer = ByteBuffer.allocate(columns * Double.BYTES + depth.length * Float.BYTES);
+    buffer.asDoubleBuffer().put(mids);
+    buffer.position(columns * Double.BYTES);
+    buffer.asFloatBuffer().put(depth);
+    Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(buffer.array());
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] chunk = new byte[64 * 1024];
+      while (!deflater.finished()) {
+        out.write(chunk, 0, deflater.deflate(chunk));
+      }
+      return Base64.getEncoder().encodeToString(out.toByteArray());
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * {@link #encode}の文字列から復元する。形式が正しくない場合はIllegalArgumentException。
+   *
+   * @param basePrice ABSOLUTEで行0の価格帯の下端の価格。RELATIVEでは使わない
+   */
+  public static DepthHeatmap decode(
+      String encoded,
+      Mode mode,
+      double bucketSize,
+      int rows,
+      long intervalMs,
+      long start,
+      double basePrice) {
+    DepthHeatmap heatmap = new DepthHeatmap(mode, bucketSize, rows, intervalMs);
+    heatmap.reset(start);
+    byte[] bytes = new byte[heatmap.columns * Double.BYTES + heatmap.depth.length * Float.BYTES];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(Base64.getDecoder().decode(encoded));
+      int length = 0;
+      while (length < bytes.length && !inflater.finished()) {
+        int inflated = inflater.inflate(bytes, length, bytes.length - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      if (length != bytes.length || !inflater.finished()) {
+        throw new IllegalArgumentException("Malformed depth heatmap: unexpected length");
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Malformed depth heatmap: " + e.getMessage(), e);
+    } finally {
+      inflater.end();
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    buffer.asDoubleBuffer().get(heatmap.mids);
+    buffer.position(heatmap.columns * Double.BYTES);
+    buffer.asFloatBuffer().get(heatmap.depth);
+    for (double mid : heatmap.mids) {
+      if (!Double.isNaN(mid)) {
+        heatmap.samples++;
+      }
+    }
+    if (mode == Mode.ABSOLUTE) {
+      heatmap.baseKey = Math.round(basePrice / bucketSize);
+    }
+    return heatmap;
+  }
+
+  /**
+   * 行の価格帯の下端。RELATIVEでは仲値からの乖離（bps）、ABSOLUTEでは価格。ABSOLUTEで標本がない場合はNaN。
+   */
+  public double getRowStart(int row) {
+    if (mode == Mode.RELATIVE) {
+      return (row - rows / 2) * bucketSize;
+    }
+    return samples == 0 ? Double.NaN : (baseKey + row) * bucketSize;
+  }
+
+  /** 標本のある列の時刻（エポックミリ秒、昇順）。 */
+  public List<Long> getSampleTimes() {
+    List<Long> times = new ArrayList<>(samples);
+    for (int c = 0; c < columns; c++) {
+      if (!Double.isNaN(mids[c])) {
+        times.add(start + c * intervalMs);
+      }
+    }
+    return times;
+  }
+
+  /** 列の仲値。標本がない列はNaN。 */
+  public double getMid(int column) {
+    return mids[column];
+  }
+
+  /** 列の価格帯ごとの数量（行の昇順）のコピー。 */
+  public float[] getColumn(int column) {
+    return Arrays.copyOfRange(depth, column * rows, (column + 1) * rows);
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public double getBucketSize() {
+    return bucketSize;
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public long getIntervalMs() {
+    return intervalMs;
+  }
+
+  public int getColumns() {
+    return columns;
+  }
+
+  /** 時間帯の開始時刻（エポックミリ秒）。 */
+  public long getStart() {
+    return start;
+  }
+
+  /** 標本のある列の数。 */
+  public int getSamples() {
+    return samples;
+  }
+
+  /** ABSOLUTEで行の範囲の外にあって数えなかった価格帯の数。 */
+  public long getClipped() {
+    return clipped;
+  }
+}
@@ -0,0 +1,267 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.DepthHeatmapProperties;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 銘柄ごとに、現在の時間帯の板の厚みのヒートマップ（{@link DepthHeatmap}）を作る。
+ *
+ * <p>受信した板は{@code depth-heatmap.capture-interval-ms}に1回まで1列分に集計し、{@code depth-heatmap.interval-ms}
+ * ごとに最後に集計した列を行列に写す。bitFlyerの板は全ての段を見るため、集計の回数を抑えてCPUの使用を銘柄数と
+ * 間隔で決まる量に留める。間引いた板の内容は次に集計する板で反映される。時間帯はUTCの正時で区切る。銘柄ごとに
+ * 2つの行列を交互に使い、終わった時間帯の行列は圧縮に時間がかかるため、受信スレッドを止めないようロックを離してから
+ * CSVに記録する。
+ */
+@Service
+public class DepthHeatmapService implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(DepthHeatmapService.class);
+  private static final long HOUR_MS = 3_600_000L;
+
+  @Autowired private DepthHeatmapProperties depthHeatmapProperties;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  @Autowired private RecordedDataCatalog recordedDataCatalog;
+
+  private final Map<String, SymbolHeatmap> symbols = new ConcurrentHashMap<>();
+  private final LongAdder captured = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder sampled = new LongAdder();
+  private final LongAdder persisted = new LongAdder();
+
+  /** 1銘柄分のヒートマップ。 */
+  private static class SymbolHeatmap {
+    private final String exchange;
+    private final String symbol;
+    private final DepthHeatmap.Column latest;
+    private DepthHeatmap heatmap;
+    // 前の時間帯の行列。sample()からしか触らないため、次に入れ替えるまでに記録を終えている
+    private DepthHeatmap spare;
+    private boolean started;
+
+    SymbolHeatmap(String exchange, String symbol, DepthHeatmap heatmap, DepthHeatmap spare) {
+      this.exchange = exchange;
+      this.symbol = symbol;
+      this.heatmap = heatmap;
+      this.spare = spare;
+      this.latest = new DepthHeatmap.Column(heatmap.getRows());
+    }
+  }
+
+  @Override
+  public void onMarketBoard(MarketBoard board) {
+    if (!depthHeatmapProperties.isEnabled()) {
+      return;
+    }
+    SymbolHeatmap state = heatmap(board.getExchange(), board.getSymbol());
+    long now = System.currentTimeMillis();
+    synchronized (state) {
+      long last = state.latest.getTimestamp();
+      if (last != Long.MIN_VALUE && now - last < depthHeatmapProperties.getCaptureIntervalMs()) {
+        skipped.increment();
+        return;
+      }
+      if (state.heatmap.capture(board, now, state.latest)) {
+        captured.increment();
+      }
+    }
+  }
+
+  /** 各銘柄の最後に集計した板を現在の列に写す。時間帯が変わった銘柄は終わった時間帯を記録する。 */
+  @Scheduled(fixedDelayString = "${depth-heatmap.interval-ms:1000}")
+  public void sample() {
+    if (!depthHeatmapProperties.isEnabled()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long hourStart = Math.floorDiv(now, HOUR_MS) * HOUR_MS;
+    for (SymbolHeatmap state : symbols.values()) {
+      DepthHeatmap finished = null;
+      synchronized (state) {
+        if (!state.started || state.heatmap.getStart() != hourStart) {
+          if (state.started) {
+            finished = state.heatmap;
+            state.heatmap = state.spare;
+            state.spare = finished;
+          }
+          state.heatmap.reset(hourStart);
+          state.started = true;
+        }
+        long last = state.latest.getTimestamp();
+        if (last != Long.MIN_VALUE
+            && now - last <= depthHeatmapProperties.getStaleMs()
+            && state.heatmap.sample(now, state.latest)) {
+          sampled.increment();
+        }
+      }
+      if (finished != null) {
+        persist(state, finished);
+      }
+    }
+  }
+
+  private void persist(SymbolHeatmap state, DepthHeatmap heatmap) {
+    if (!depthHeatmapProperties.isPersistEnabled() || heatmap.getSamples() == 0) {
+      return;
+    }
+    Instant start = Instant.ofEpochMilli(heatmap.getStart());
+    String row =
+        String.join(
+            ",",
+            state.exchange,
+            state.symbol,
+            start.toString(),
+            start.plusMillis(HOUR_MS).toString(),
+            heatmap.getMode().name(),
+            CsvValues.number(heatmap.getBucketSize()),
+            Integer.toString(heatmap.getRows()),
+            Long.toString(heatmap.getIntervalMs()),
+            heatmap.getMode() == DepthHeatmap.Mode.ABSOLUTE
+                ? CsvValues.number(heatmap.getRowStart(0))
+                : "",
+            Integer.toString(heatmap.getSamples()),
+            heatmap.encode());
+    dataPersistenceService.saveRows(RecordedStream.DEPTH_HEATMAPS, List.of(row));
+    persisted.increment();
+  }
+
+  private SymbolHeatmap heatmap(String exchange, String symbol) {
+    return symbols.computeIfAbsent(
+        SymbolKey.of(exchange, symbol),
+        k -> new SymbolHeatmap(exchange.toUpperCase(), symbol, create(symbol), create(symbol)));
+  }
+
+  private DepthHeatmap create(String symbol) {
+    return new DepthHeatmap(
+        depthHeatmapProperties.getMode(),
+        depthHeatmapProperties.bucketSize(symbol),
+        depthHeatmapProperties.getRows(),
+        depthHeatmapProperties.getIntervalMs());
+  }
+
+  /** 現在の時間帯のヒートマップ。 */
+  public Optional<Map<String, Object>> getSnapshot(String exchange, String symbol) {
+    SymbolHeatmap state = symbols.get(SymbolKey.of(exchange, symbol));
+    if (state == null) {
+      return Optional.empty();
+    }
+    synchronized (state) {
+      if (!state.started) {
+        return Optional.empty();
+      }
+      return Optional.of(summary(state.exchange, state.symbol, state.heatmap));
+    }
+  }
+
+  /**
+   * CSVに記録した、{@code hour}を含む時間帯のヒートマップ。
+   *
+   * @return 記録がない場合は空
+   */
+  public Optional<Map<String, Object>> getPersistedHeatmap(
+      String exchange, String symbol, Instant hour) throws IOException {
+    long start = Math.floorDiv(hour.toEpochMilli(), HOUR_MS) * HOUR_MS;
+    Instant end = Instant.ofEpochMilli(start + HOUR_MS);
+    int columnCount = RecordedStream.DEPTH_HEATMAPS.getColumns().size();
+    // 時間帯が終わってから書くため、終了時刻より後のファイルにある
+    for (Segment segment :
+        recordedDataCatalog.list(
+            RecordedStream.DEPTH_HEATMAPS, end, end.plus(RecordedDataCatalog.WRITE_LAG))) {
+      try (BufferedReader reader =
+          Files.newBufferedReader(segment.getPath(), StandardCharsets.UTF_8)) {
+        reader.readLine();
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] columns = line.split(",", -1);
+          if (columns.length != columnCount
+              || !columns[0].equalsIgnoreCase(exchange)
+              || !columns[1].equals(symbol)
+              || !end.equals(RecordedDataCatalog.parseTimestamp(columns[3]))) {
+            continue;
+          }
+          try {
+            DepthHeatmap heatmap =
+                DepthHeatmap.decode(
+                    columns[10],
+                    DepthHeatmap.Mode.valueOf(columns[4]),
+                    Double.parseDouble(columns[5]),
+                    Integer.parseInt(columns[6]),
+                    Long.parseLong(columns[7]),
+                    start,
+                    columns[8].isEmpty() ? Double.NaN : Double.parseDouble(columns[8]));
+            return Optional.of(summary(columns[0], columns[1], heatmap));
+          } catch (IllegalArgumentException e) {
+            logger.warn("Skipping depth heatmap in {}: {}", segment.getName(), e.getMessage());
+          }
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  /** 行の価格帯の下端と、標本のある列ごとの時刻・仲値・価格帯ごとの数量。 */
+  private static Map<String, Object> summary(
+      String exchange, String symbol, DepthHeatmap heatmap) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    Instant start = Instant.ofEpochMilli(heatmap.getStart());
+    summary.put("symbol", exchange + ":" + symbol);
+    summary.put("start", start.toString());
+    summary.put("end", start.plusMillis(HOUR_MS).toString());
+    summary.put("mode", heatmap.getMode().name());
+    summary.put("bucketSize", heatmap.getBucketSize());
+    summary.put("intervalMs", heatmap.getIntervalMs());
+    summary.put("samples", heatmap.getSamples());
+    double[] rowStarts = new double[heatmap.getRows()];
+    for (int r = 0; r < rowStarts.length; r++) {
+      rowStarts[r] = heatmap.getRowStart(r);
+    }
+    summary.put("rows", rowStarts);
+    List<String> times = new ArrayList<>(heatmap.getSamples());
+    List<Double> mids = new ArrayList<>(heatmap.getSamples());
+    List<float[]> depth = new ArrayList<>(heatmap.getSamples());
+    for (long time : heatmap.getSampleTimes()) {
+      int column = (int) ((time - heatmap.getStart()) / heatmap.getIntervalMs());
+      times.add(Instant.ofEpochMilli(time).toString());
+      mids.add(heatmap.getMid(column));
+      depth.add(heatmap.getColumn(column));
+    }
+    summary.put("times", times);
+    summary.put("mids", mids);
+    summary.put("depth", depth);
+    return summary;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("symbols", symbols.size());
+    stats.put("captured", captured.sum());
+    stats.put("skipped", skipped.sum());
+    stats.put("sampled", sampled.sum());
+    stats.put("persisted", persisted.sum());
+    return stats;
+  }
+}
@@ -0,0 +1,259 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.DerivedInstrumentProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 複数銘柄のBBOから乖離率・価格差・裁定幅などの系列を計算し、間引いてRedisに配信してCSVに記録する。
+ *
+ * <p>起動時に銘柄から系列への依存関係を作り、BBOが変わった銘柄を使う系列だけを計算し直す。配信は
+ * {@link com.example.bitcoinmarketrecorder.service.MarketMakeConflator}と同じく系列ごとに未送信の最新値を1件だけ持ち、
+ * 同一系列は{@code derived.conflation-interval-ms}に最大1回とする。配信先は{@code <channel-prefix>:<系列名>}。
+ */
+@Service
+public class DerivedInstrumentEngine implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(DerivedInstrumentEngine.class);
+
+  @Autowired private DerivedInstrumentProperties derivedInstrumentProperties;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, Quote> quotes = new ConcurrentHashMap<>();
+  // 銘柄 -> その銘柄を使う系列
+  private final Map<String, List<Series>> dependents = new HashMap<>();
+  private final List<Series> series = new ArrayList<>();
+  private final ScheduledExecutorService flusher =
+      Executors.newSingleThreadScheduledExecutor(
+          r -> {
+            Thread thread = new Thread(r, "derived-instruments");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** 銘柄の最新のBBO。 */
+  private static final class Quote {
+    private final double bid;
+    private final double ask;
+    private final long timestamp;
+
+    private Quote(double bid, double ask, long timestamp) {
+      this.bid = bid;
+      this.ask = ask;
+      this.timestamp = timestamp;
+    }
+  }
+
+  private static final class Series {
+    private final String name;
+    private final DerivedType type;
+    private final String legA;
+    private final String legB;
+    private final AtomicReference<DerivedValue> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final LongAdder computed = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder skewed = new LongAdder();
+    private volatile DerivedValue latest;
+    // 初回の値は待たずに送る
+    private volatile long lastSentNanos = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+
+    private Series(String name, DerivedType type, String legA, String legB) {
+      this.name = name;
+      this.type = type;
+      this.legA = legA;
+      this.legB = legB;
+    }
+  }
+
+  @PostConstruct
+  public void initialize() {
+    for (DerivedInstrumentProperties.Instrument instrument :
+        derivedInstrumentProperties.getInstruments()) {
+      DerivedType type;
+      try {
+        type = DerivedType.valueOf(instrument.getType().toUpperCase());
+      } catch (IllegalArgumentException | NullPointerException e) {
+        logger.warn(
+            "Skipping derived instrument {} with unknown type {}",
+            instrument.getName(),
+            instrument.getType());
+        continue;
+      }
+      String legA;
+      String legB;
+      try {
+        legA = SymbolKey.parse(instrument.getLegA());
+        legB = SymbolKey.parse(instrument.getLegB());
+      } catch (IllegalArgumentException e) {
+        logger.warn("Skipping derived instrument {}: {}", instrument.getName(), e.getMessage());
+        continue;
+      }
+      Series s = new Series(instrument.getName(), type, legA, legB);
+      series.add(s);
+      dependents.computeIfAbsent(s.legA, k -> new ArrayList<>()).add(s);
+      if (!s.legB.equals(s.legA)) {
+        dependents.computeIfAbsent(s.legB, k -> new ArrayList<>()).add(s);
+      }
+    }
+    logger.info("Derived instruments: {}", series.stream().map(s -> s.name).toList());
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!derivedInstrumentProperties.isEnabled()
+        || bestBidAsk.getBestBid() == null
+        || bestBidAsk.getBestAsk() == null
+        || bestBidAsk.getTimestamp() == null) {
+      return;
+    }
+    String key = SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol());
+    List<Series> affected = dependents.get(key);
+    if (affected == null) {
+      return;
+    }
+    quotes.put(
+        key,
+        new Quote(
+            bestBidAsk.getBestBid().doubleValue(),
+            bestBidAsk.getBestAsk().doubleValue(),
+            bestBidAsk.getTimestamp().toEpochMilli()));
+    for (Series s : affected) {
+      compute(s);
+    }
+  }
+
+  private void compute(Series s) {
+    Quote a = quotes.get(s.legA);
+    Quote b = quotes.get(s.legB);
+    if (a == null || b == null) {
+      return;
+    }
+    if (Math.abs(a.timestamp - b.timestamp) > derivedInstrumentProperties.getMaxLegSkewMs()) {
+      s.skewed.increment();
+      return;
+    }
+    DerivedValue value =
+        new DerivedValue(
+            s.name,
+            s.type.name(),
+            s.legA,
+            s.legB,
+            s.type.compute(a.bid, a.ask, b.bid, b.ask),
+            a.bid,
+            a.ask,
+            b.bid,
+            b.ask,
+            Math.max(a.timestamp, b.timestamp));
+    s.computed.increment();
+    s.latest = value;
+    s.pending.set(value);
+    scheduleFlush(s);
+  }
+
+  private void scheduleFlush(Series s) {
+    if (!s.scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    long intervalNanos =
+        TimeUnit.MILLISECONDS.toNanos(derivedInstrumentProperties.getConflationIntervalMs());
+    long delay = Math.max(0, s.lastSentNanos + intervalNanos - System.nanoTime());
+    try {
+      flusher.schedule(() -> flush(s), delay, TimeUnit.NANOSECONDS);
+    } catch (Exception e) {
+      s.scheduled.set(false);
+      logger.warn("Failed to schedule derived instrument flush for {}: {}", s.name, e.getMessage());
+    }
+  }
+
+  private void flush(Series s) {
+    DerivedValue value = s.pending.getAndSet(null);
+    if (value != null) {
+      try {
+        redisPublisherService.publish(
+            s.name,
+            derivedInstrumentProperties.getChannelPrefix() + ":" + s.name,
+            objectMapper.writeValueAsString(value));
+      } catch (JsonProcessingException e) {
+        logger.error("Failed to serialize derived instrument {}: {}", s.name, e.getMessage());
+      } catch (Exception e) {
+        logger.error("Failed to publish derived instrument {}: {}", s.name, e.getMessage());
+      }
+      if (derivedInstrumentProperties.isPersistEnabled()) {
+        dataPersistenceService.saveRows(RecordedStream.DERIVED, List.of(value.toCsvRow()));
+      }
+      s.published.increment();
+      s.lastSentNanos = System.nanoTime();
+    }
+    s.scheduled.set(false);
+    // フラッシュ中に計算した値があれば次の枠で送る
+    if (s.pending.get() != null) {
+      scheduleFlush(s);
+    }
+  }
+
+  /** 系列ごとの最新値。まだ計算していない系列はnull。 */
+  public Map<String, Object> getLatest() {
+    Map<String, Object> latest = new LinkedHashMap<>();
+    for (Series s : series) {
+      latest.put(s.name, s.latest);
+    }
+    return latest;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    for (Series s : series) {
+      long computed = s.computed.sum();
+      long published = s.published.sum();
+      Map<String, Object> seriesStats = new LinkedHashMap<>();
+      seriesStats.put("computed", computed);
+      seriesStats.put("published", published);
+      seriesStats.put("skewed", s.skewed.sum());
+      seriesStats.put("conflationRatio", published == 0 ? 0.0 : (double) computed / published);
+      stats.put(s.name, seriesStats);
+    }
+    return stats;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flusher.shutdown();
+    try {
+      if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+        flusher.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      flusher.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+/** 2銘柄（AとB）のBBOから計算する系列の種類。 */
+public enum DerivedType {
+
+  /** 中値の乖離率（%）。bitFlyerのSFDの乖離率はFX_BTC_JPYをA、BTC_JPYをBにする。 */
+  RATIO {
+    @Override
+    public double compute(double bidA, double askA, double bidB, double askB) {
+      return (mid(bidA, askA) / mid(bidB, askB) - 1) * 100;
+    }
+  },
+
+  /** 中値の差。 */
+  SPREAD {
+    @Override
+    public double compute(double bidA, double askA, double bidB, double askB) {
+      return mid(bidA, askA) - mid(bidB, askB);
+    }
+  },
+
+  /**
+   * 一方の買い気配が他方の売り気配を上回る幅。正の値は即時に裁定できることを表し、Aで売ってBで買う場合は
+   * {@code bidA - askB}、逆は{@code bidB - askA}で、大きい方を返す。
+   */
+  ARBITRAGE {
+    @Override
+    public double compute(double bidA, double askA, double bidB, double askB) {
+      return Math.max(bidA - askB, bidB - askA);
+    }
+  };
+
+  public abstract double compute(double bidA, double askA, double bidB, double askB);
+
+  private static double mid(double bid, double ask) {
+    return (bid + ask) / 2;
+  }
+}
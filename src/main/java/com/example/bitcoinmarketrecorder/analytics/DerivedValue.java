@@ -0,0 +1,101 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.time.Instant;
+
+/** 系列の1回分の計算結果。timestampは2銘柄のBBOのうち新しい方の時刻（エポックミリ秒）。 */
+public class DerivedValue {
+
+  // 記録ファイルの取引所の列に入れる値
+  static final String EXCHANGE = "DERIVED";
+
+  private final String name;
+  private final String type;
+  private final String legA;
+  private final String legB;
+  private final double value;
+  private final double bidA;
+  private final double askA;
+  private final double bidB;
+  private final double askB;
+  private final long timestamp;
+
+  public DerivedValue(
+      String name,
+      String type,
+      String legA,
+      String legB,
+      double value,
+      double bidA,
+      double askA,
+      double bidB,
+      double askB,
+      long timestamp) {
+    this.name = name;
+    this.type = type;
+    this.legA = legA;
+    this.legB = legB;
+    this.value = value;
+    this.bidA = bidA;
+    this.askA = askA;
+    this.bidB = bidB;
+    this.askB = askB;
+    this.timestamp = timestamp;
+  }
+
+  /** derived_*.csvの1行（ヘッダーは{@code RecordedStream.DERIVED}）。 */
+  public String toCsvRow() {
+    return String.join(
+        ",",
+        EXCHANGE,
+        name,
+        type,
+        legA,
+        legB,
+        CsvValues.number(value),
+        CsvValues.number(bidA),
+        CsvValues.number(askA),
+        CsvValues.number(bidB),
+        CsvValues.number(askB),
+        Instant.ofEpochMilli(timestamp).toString());
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getLegA() {
+    return legA;
+  }
+
+  public String getLegB() {
+    return legB;
+  }
+
+  public double getValue() {
+    return value;
+  }
+
+  public double getBidA() {
+    return bidA;
+  }
+
+  public double getAskA() {
+    return askA;
+  }
+
+  public double getBidB() {
+    return bidB;
+  }
+
+  public double getAskB() {
+    return askB;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+}
@@ -0,0 +1,184 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 約定時点の最良気配を付けた約定。気配が見つからない場合は気配から計算する値をNaN（CSVでは空欄）にする。
+ *
+ * <p>実効スプレッドは{@code 2 * |価格 - 仲値|}。価格改善は買いなら{@code 売気配 - 価格}、売りなら{@code 価格 - 買気配}で、
+ * 気配より有利に約定した場合に正になる。買い・売りは取引所の報告を使い、報告がない場合は推定した向きを使う。
+ */
+public class EnrichedTrade {
+
+  private final String exchange;
+  private final String symbol;
+  private final String tradeId;
+  private final double price;
+  private final double size;
+  private final String side;
+  private final Instant timestamp;
+  private final double bid;
+  private final double ask;
+  private final Instant quoteTimestamp;
+  private final String inferredSide;
+
+  /**
+   * @param side 取引所が報告した向き。報告がない場合は空文字
+   * @param quoteTimestamp 付けた気配の時刻。気配がない場合はnull
+   * @param inferredSide 気配と直前の約定から推定した向き（BUY/SELL）。推定できない場合は空文字
+   */
+  public EnrichedTrade(
+      String exchange,
+      String symbol,
+      String tradeId,
+      double price,
+      double size,
+      String side,
+      Instant timestamp,
+      double bid,
+      double ask,
+      Instant quoteTimestamp,
+      String inferredSide) {
+    this.exchange = exchange;
+    this.symbol = symbol;
+    this.tradeId = tradeId;
+    this.price = price;
+    this.size = size;
+    this.side = side;
+    this.timestamp = timestamp;
+    this.bid = bid;
+    this.ask = ask;
+    this.quoteTimestamp = quoteTimestamp;
+    this.inferredSide = inferredSide;
+  }
+
+  public boolean hasQuote() {
+    return quoteTimestamp != null;
+  }
+
+  public double getMid() {
+    return (bid + ask) / 2;
+  }
+
+  /** 約定の時刻から見た気配の古さ（ミリ秒）。 */
+  public double getQuoteAgeMs() {
+    if (quoteTimestamp == null) {
+      return Double.NaN;
+    }
+    return (TradeQuoteJoin.micros(timestamp) - TradeQuoteJoin.micros(quoteTimestamp)) / 1000.0;
+  }
+
+  public double getEffectiveSpread() {
+    return 2 * Math.abs(price - getMid());
+  }
+
+  public double getEffectiveSpreadBps() {
+    double mid = getMid();
+    return mid > 0 ? getEffectiveSpread() / mid * 10_000 : Double.NaN;
+  }
+
+  public double getPriceImprovement() {
+    String direction = side.isEmpty() ? inferredSide : side;
+    if ("BUY".equals(direction)) {
+      return ask - price;
+    }
+    if ("SELL".equals(direction)) {
+      return price - bid;
+    }
+    return Double.NaN;
+  }
+
+  /** enriched_trades_*.csvの1行（ヘッダーは{@code RecordedStream.ENRICHED_TRADES}）。 */
+  public String toCsvRow() {
+    return String.join(
+        ",",
+        exchange,
+        symbol,
+        tradeId,
+        CsvValues.number(price),
+        CsvValues.number(size),
+        side,
+        timestamp.toString(),
+        CsvValues.number(bid),
+        CsvValues.number(ask),
+        CsvValues.number(getMid()),
+        quoteTimestamp != null ? quoteTimestamp.toString() : "",
+        CsvValues.number(getQuoteAgeMs()),
+        CsvValues.number(getEffectiveSpread()),
+        CsvValues.number(getEffectiveSpreadBps()),
+        CsvValues.number(getPriceImprovement()),
+        inferredSide);
+  }
+
+  /** 配信用。NaNはnullにする。 */
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("exchange", exchange);
+    map.put("symbol", symbol);
+    map.put("tradeId", tradeId);
+    map.put("price", price);
+    map.put("size", size);
+    map.put("side", side.isEmpty() ? null : side);
+    map.put("timestamp", timestamp.toString());
+    map.put("bid", finite(bid));
+    map.put("ask", finite(ask));
+    map.put("mid", finite(getMid()));
+    map.put("quoteTimestamp", quoteTimestamp != null ? quoteTimestamp.toString() : null);
+    map.put("quoteAgeMs", finite(getQuoteAgeMs()));
+    map.put("effectiveSpread", finite(getEffectiveSpread()));
+    map.put("effectiveSpreadBps", finite(getEffectiveSpreadBps()));
+    map.put("priceImprovement", finite(getPriceImprovement()));
+    map.put("inferredSide", inferredSide.isEmpty() ? null : inferredSide);
+    return map;
+  }
+
+  private static Double finite(double value) {
+    return Double.isFinite(value) ? value : null;
+  }
+
+  public String getExchange() {
+    return exchange;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public String getTradeId() {
+    return tradeId;
+  }
+
+  public double getPrice() {
+    return price;
+  }
+
+  public double getSize() {
+    return size;
+  }
+
+  public String getSide() {
+    return side;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public double getBid() {
+    return bid;
+  }
+
+  public double getAsk() {
+    return ask;
+  }
+
+  public Instant getQuoteTimestamp() {
+    return quoteTimestamp;
+  }
+
+  public String getInferredSide() {
+    return inferredSide;
+  }
+}
@@ -0,0 +1,107 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * UTCの正時で区切った時間帯ごとの集計を、時間帯の数だけのリングで持つ。
+ *
+ * <p>時間帯が変わった枠は、まだ記録していなければ記録してから空にして使い回す。終わった時間帯は{@link #close}で
+ * 待ち時間の後に記録する。どの時間帯も記録は1回だけ行う。スレッドセーフではないため、呼び出し側で同期する。
+ *
+ * @param <T> 1時間分の集計
+ */
+class HourlySlots<T> {
+
+  static final long HOUR_MS = 3_600_000L;
+
+  /** 1時間分の集計。 */
+  static class Slot<T> {
+    private long hour = -1;
+    private boolean persisted;
+    private final T value;
+
+    private Slot(T value) {
+      this.value = value;
+    }
+
+    /** エポックからの時間数。まだ使っていない枠は-1。 */
+    long getHour() {
+      return hour;
+    }
+
+    Instant getStart() {
+      return Instant.ofEpochMilli(hour * HOUR_MS);
+    }
+
+    Instant getEnd() {
+      return getStart().plusMillis(HOUR_MS);
+    }
+
+    T getValue() {
+      return value;
+    }
+  }
+
+  private final List<Slot<T>> slots;
+  private final Consumer<T> clear;
+
+  /**
+   * @param size 保持する時間帯の数
+   * @param factory 枠ごとの集計を作る
+   * @param clear 新しい時間帯に使い回す前に集計を空にする
+   */
+  HourlySlots(int size, Supplier<T> factory, Consumer<T> clear) {
+    List<Slot<T>> slots = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, size); i++) {
+      slots.add(new Slot<>(factory.get()));
+    }
+    this.slots = List.copyOf(slots);
+    this.clear = clear;
+  }
+
+  /**
+   * {@code timestamp}を含む時間帯の集計を返す。枠が前の時間帯のままであれば、未記録なら{@code persist}に渡してから空にする。
+   *
+   * @return 保持している範囲より古い場合はnull
+   */
+  T get(long timestamp, Consumer<Slot<T>> persist) {
+    long hour = Math.floorDiv(timestamp, HOUR_MS);
+    Slot<T> slot = slots.get((int) Math.floorMod(hour, (long) slots.size()));
+    if (slot.hour > hour) {
+      return null;
+    }
+    if (slot.hour < hour) {
+      if (slot.hour >= 0 && !slot.persisted) {
+        persist(slot, persist);
+      }
+      clear.accept(slot.value);
+      slot.hour = hour;
+      slot.persisted = false;
+    }
+    return slot.value;
+  }
+
+  /** 終わってから{@code closeDelayMs}過ぎた、未記録の時間帯を{@code persist}に渡す。 */
+  void close(long now, long closeDelayMs, Consumer<Slot<T>> persist) {
+    long closable = Math.floorDiv(now - closeDelayMs, HOUR_MS);
+    for (Slot<T> slot : slots) {
+      if (slot.hour >= 0 && slot.hour < closable && !slot.persisted) {
+        persist(slot, persist);
+      }
+    }
+  }
+
+  /** 全ての枠（使っていない枠を含む、時間帯の順ではない）。 */
+  List<Slot<T>> getSlots() {
+    return slots;
+  }
+
+  private static <T> void persist(Slot<T> slot, Consumer<Slot<T>> persist) {
+    slot.persisted = true;
+    persist.accept(slot);
+  }
+}
@@ -0,0 +1,169 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.util.Arrays;
+
+/**
+ * 2銘柄の仲値の対数リターンの相互相関を、一定の間隔（グリッド）ごとに逐次更新する。
+ *
+ * <p>グリッドの区切りごとに、その時点の仲値から直前の区切りからのリターンを求め、直近のリターンをリングに持つ。
+ * ラグLの相関は{@code Σ a[t-L] * b[t] / sqrt(Σ a² * Σ b²)}（Aが先行）と、AとBを入れ替えたもの（Bが先行）で、和は半減期
+ * {@code halfLifeSteps}の指数加重で古いものほど軽くする。高頻度のリターンの平均はほぼ0のため、平均は引かない。
+ * 仲値が変わらない区間のリターンは0で、リングより長く更新がない場合は減衰をまとめて掛ける。スレッドセーフではない。
+ */
+public class LeadLagEstimator {
+
+  private final long gridMs;
+  private final int[] lagSteps;
+  private final double decay;
+  // 直近のリターン。添字は区切りの番号をリングの長さで割った余り
+  private final double[] returnsA;
+  private final double[] returnsB;
+  // lagSteps[i]だけAが先行（crossAB）、Bが先行（crossBA）した場合の積和
+  private final double[] crossAB;
+  private final double[] crossBA;
+  private double sumAA;
+  private double sumBB;
+  private double weight;
+  private long samples;
+  // 次に閉じる区間の番号
+  private long step = Long.MIN_VALUE;
+  private double midA = Double.NaN;
+  private double midB = Double.NaN;
+  private double previousA = Double.NaN;
+  private double previousB = Double.NaN;
+
+  /**
+   * @param gridMs グリッドの間隔
+   * @param lagSteps 相関を求めるラグ（グリッドの数、0以上）
+   * @param halfLifeSteps 指数加重の半減期（グリッドの数）
+   */
+  public LeadLagEstimator(long gridMs, int[] lagSteps, double halfLifeSteps) {
+    if (gridMs < 1 || lagSteps.length == 0 || !(halfLifeSteps > 0)) {
+      throw new IllegalArgumentException(
+          "Invalid lead-lag estimator: gridMs=" + gridMs + ", halfLifeSteps=" + halfLifeSteps);
+    }
+    this.gridMs = gridMs;
+    this.lagSteps = lagSteps.clone();
+    int maxLag = Arrays.stream(lagSteps).max().getAsInt();
+    if (Arrays.stream(lagSteps).min().getAsInt() < 0) {
+      throw new IllegalArgumentException("Lags must not be negative");
+    }
+    this.decay = Math.pow(0.5, 1 / halfLifeSteps);
+    this.returnsA = new double[maxLag + 1];
+    this.returnsB = new double[maxLag + 1];
+    this.crossAB = new double[lagSteps.length];
+    this.crossBA = new double[lagSteps.length];
+  }
+
+  /** 銘柄Aの仲値を更新する。{@code timestamp}までの区間を先に閉じる。 */
+  public void updateA(long timestamp, double mid) {
+    advance(timestamp);
+    midA = mid;
+  }
+
+  /** 銘柄Bの仲値を更新する。{@code timestamp}までの区間を先に閉じる。 */
+  public void updateB(long timestamp, double mid) {
+    advance(timestamp);
+    midB = mid;
+  }
+
+  /** {@code timestamp}を含む区間の前までを閉じる。それより前の時刻の場合は何もしない。 */
+  public void advance(long timestamp) {
+    long target = Math.floorDiv(timestamp, gridMs);
+    if (step == Long.MIN_VALUE) {
+      step = target;
+      return;
+    }
+    if (step >= target) {
+      return;
+    }
+    // 最初の区間だけ仲値が変わりうる。残りはリターン0
+    closeStep();
+    long idle = target - step;
+    if (idle >= returnsA.length) {
+      skipIdle(idle);
+    } else {
+      for (long i = 0; i < idle; i++) {
+        closeStep();
+      }
+    }
+  }
+
+  private void closeStep() {
+    double a = 0;
+    double b = 0;
+    if (midA > 0 && midB > 0 && previousA > 0 && previousB > 0) {
+      a = Math.log(midA / previousA);
+      b = Math.log(midB / previousB);
+    }
+    if (midA > 0 && midB > 0) {
+      samples++;
+      weight = weight * decay + 1;
+    }
+    previousA = midA;
+    previousB = midB;
+    int ring = returnsA.length;
+    int current = (int) Math.floorMod(step, (long) ring);
+    returnsA[current] = a;
+    returnsB[current] = b;
+    sumAA = sumAA * decay + a * a;
+    sumBB = sumBB * decay + b * b;
+    for (int i = 0; i < lagSteps.length; i++) {
+      int lagged = (int) Math.floorMod(step - lagSteps[i], (long) ring);
+      crossAB[i] = crossAB[i] * decay + returnsA[lagged] * b;
+      crossBA[i] = crossBA[i] * decay + returnsB[lagged] * a;
+    }
+    step++;
+  }
+
+  /** リターン0の区間がリングより長く続いた分をまとめて進める。 */
+  private void skipIdle(long idle) {
+    double factor = Math.pow(decay, idle);
+    sumAA *= factor;
+    sumBB *= factor;
+    for (int i = 0; i < lagSteps.length; i++) {
+      crossAB[i] *= factor;
+      crossBA[i] *= factor;
+    }
+    if (midA > 0 && midB > 0) {
+      samples += idle;
+      weight = weight * factor + (1 - factor) / (1 - decay);
+    }
+    Arrays.fill(returnsA, 0);
+    Arrays.fill(returnsB, 0);
+    step += idle;
+  }
+
+  /** lagSteps[i]だけAが先行した場合の相関。リターンがまだない場合はNaN。 */
+  public double correlationALeads(int i) {
+    return correlation(crossAB[i]);
+  }
+
+  /** lagSteps[i]だけBが先行した場合の相関。リターンがまだない場合はNaN。 */
+  public double correlationBLeads(int i) {
+    return correlation(crossBA[i]);
+  }
+
+  private double correlation(double cross) {
+    double denominator = Math.sqrt(sumAA * sumBB);
+    return denominator > 0 ? cross / denominator : Double.NaN;
+  }
+
+  /** 指数加重した標本の数（実効標本数）。 */
+  public double getEffectiveSamples() {
+    return weight;
+  }
+
+  /** 2銘柄とも仲値があった区間の数。 */
+  public long getSamples() {
+    return samples;
+  }
+
+  public long getGridMs() {
+    return gridMs;
+  }
+
+  public int[] getLagSteps() {
+    return lagSteps.clone();
+  }
+}
@@ -0,0 +1,213 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.BarProperties;
+import com.example.bitcoinmarketrecorder.config.LeadLagProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 設定した銘柄の組ごとに、仲値のリターンの相互相関を複数のラグで{@link LeadLagEstimator}により逐次更新し、
+ * どちらの銘柄が先行しているかを返す。結果は{@code lead-lag.publish-interval-ms}ごとに
+ * Redisの{@code <channel-prefix>:<組の名前>}へ配信する。
+ *
+ * <p>時刻はBBOのタイムスタンプ（受信時刻）を使う。取引所をまたぐ組では、受信までの遅れの差も先行・遅行に含まれる。
+ */
+@Service
+public class LeadLagService implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(LeadLagService.class);
+
+  @Autowired private LeadLagProperties leadLagProperties;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<PairState> pairs = new ArrayList<>();
+  // 銘柄 -> その銘柄を使う組
+  private final Map<String, List<PairState>> dependents = new HashMap<>();
+  private final LongAdder published = new LongAdder();
+
+  /** 1組分の推定。 */
+  private static final class PairState {
+    private final String name;
+    private final String legA;
+    private final String legB;
+    private final LeadLagEstimator estimator;
+
+    private PairState(String name, String legA, String legB, LeadLagEstimator estimator) {
+      this.name = name;
+      this.legA = legA;
+      this.legB = legB;
+      this.estimator = estimator;
+    }
+  }
+
+  @PostConstruct
+  public void initialize() {
+    long gridMs = Math.max(1, leadLagProperties.getGridMs());
+    // 同じグリッド数に丸められたラグは1つにまとめる
+    TreeSet<Integer> steps = new TreeSet<>();
+    steps.add(0);
+    for (Duration lag : leadLagProperties.getLags()) {
+      steps.add((int) Math.max(0, Math.round((double) lag.toMillis() / gridMs)));
+    }
+    int[] lagSteps = steps.stream().mapToInt(Integer::intValue).toArray();
+    double halfLifeSteps =
+        Math.max(1.0, (double) leadLagProperties.getHalfLife().toMillis() / gridMs);
+    for (LeadLagProperties.Pair pair : leadLagProperties.getPairs()) {
+      PairState state =
+          new PairState(
+              pair.getName(),
+              SymbolKey.parse(pair.getLegA()),
+              SymbolKey.parse(pair.getLegB()),
+              new LeadLagEstimator(gridMs, lagSteps, halfLifeSteps));
+      pairs.add(state);
+      dependents.computeIfAbsent(state.legA, k -> new ArrayList<>()).add(state);
+      if (!state.legB.equals(state.legA)) {
+        dependents.computeIfAbsent(state.legB, k -> new ArrayList<>()).add(state);
+      }
+    }
+    logger.info("Lead-lag pairs: {}", pairs.stream().map(p -> p.name).toList());
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!leadLagProperties.isEnabled()
+        || bestBidAsk.getTimestamp() == null
+        || bestBidAsk.getBestBid() == null
+        || bestBidAsk.getBestAsk() == null) {
+      return;
+    }
+    String key = SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol());
+    List<PairState> affected = dependents.get(key);
+    if (affected == null) {
+      return;
+    }
+    long timestamp = bestBidAsk.getTimestamp().toEpochMilli();
+    double mid =
+        (bestBidAsk.getBestBid().doubleValue() + bestBidAsk.getBestAsk().doubleValue()) / 2;
+    for (PairState pair : affected) {
+      synchronized (pair) {
+        if (pair.legA.equals(key)) {
+          pair.estimator.updateA(timestamp, mid);
+        }
+        if (pair.legB.equals(key)) {
+          pair.estimator.updateB(timestamp, mid);
+        }
+      }
+    }
+  }
+
+  /** 全組の推定値を配信する。 */
+  @Scheduled(fixedDelayString = "${lead-lag.publish-interval-ms:1000}")
+  public void publish() {
+    if (!leadLagProperties.isEnabled() || !leadLagProperties.isPublishEnabled()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (PairState pair : pairs) {
+      Map<String, Object> snapshot = snapshot(pair, now);
+      try {
+        redisPublisherService.publish(
+            pair.name,
+            leadLagProperties.getChannelPrefix() + ":" + pair.name,
+            objectMapper.writeValueAsString(snapshot));
+        published.increment();
+      } catch (JsonProcessingException e) {
+        logger.error("Failed to serialize lead-lag for {}: {}", pair.name, e.getMessage());
+      } catch (Exception e) {
+        logger.error("Failed to publish lead-lag for {}: {}", pair.name, e.getMessage());
+      }
+    }
+  }
+
+  /** 組ごとの推定値。 */
+  public Map<String, Object> getSnapshots() {
+    long now = System.currentTimeMillis();
+    Map<String, Object> snapshots = new LinkedHashMap<>();
+    for (PairState pair : pairs) {
+      snapshots.put(pair.name, snapshot(pair, now));
+    }
+    return snapshots;
+  }
+
+  /** 1組の推定値。 */
+  public Optional<Map<String, Object>> getSnapshot(String name) {
+    long now = System.currentTimeMillis();
+    return pairs.stream().filter(p -> p.name.equals(name)).findFirst().map(p -> snapshot(p, now));
+  }
+
+  private static Map<String, Object> snapshot(PairState pair, long now) {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("name", pair.name);
+    snapshot.put("legA", pair.legA);
+    snapshot.put("legB", pair.legB);
+    synchronized (pair) {
+      LeadLagEstimator estimator = pair.estimator;
+      // 仲値が変わらないまま時間が過ぎた分を反映する
+      estimator.advance(now);
+      long gridMs = estimator.getGridMs();
+      int[] lagSteps = estimator.getLagSteps();
+      snapshot.put("gridMs", gridMs);
+      snapshot.put("samples", estimator.getSamples());
+      snapshot.put("effectiveSamples", estimator.getEffectiveSamples());
+      // 負のラグはBが先行、正のラグはAが先行
+      Map<String, Object> correlations = new LinkedHashMap<>();
+      Long peakLagMs = null;
+      double peak = Double.NaN;
+      for (int i = lagSteps.length - 1; i >= -lagSteps.length; i--) {
+        int index = i >= 0 ? i : -i - 1;
+        if (i >= 0 && lagSteps[index] == 0) {
+          continue;
+        }
+        long lagMs = lagSteps[index] * gridMs;
+        double c =
+            i >= 0 ? estimator.correlationBLeads(index) : estimator.correlationALeads(index);
+        correlations.put((i >= 0 ? "-" : "") + label(lagMs), finite(c));
+        if (Double.isFinite(c) && (Double.isNaN(peak) || c > peak)) {
+          peak = c;
+          peakLagMs = i >= 0 ? -lagMs : lagMs;
+        }
+      }
+      snapshot.put("correlations", correlations);
+      // 相関が最も高いラグ。正ならAが先行
+      snapshot.put("leadLagMs", peakLagMs);
+      snapshot.put("peakCorrelation", finite(peak));
+    }
+    return snapshot;
+  }
+
+  private static String label(long ms) {
+    return BarProperties.label(Duration.ofMillis(ms));
+  }
+
+  private static Double finite(double value) {
+    return Double.isFinite(value) ? value : null;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("pairs", pairs.size());
+    stats.put("published", published.sum());
+    return stats;
+  }
+}
@@ -0,0 +1,143 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.MergedTapeProperties;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 全取引所の約定を{@link TapeMerger}で約定の時刻順に並べ直し、merged_tradesとしてCSVに記録し、必要に応じてRedisに配信する。
+ *
+ * <p>取引所ごとの受信スレッドから呼ばれるため、並べ直しと書き出しは1つのロックの中で行い、テープの順序を保つ。書き出しは
+ * キューへの追加と非同期の配信だけのため、ロックを持つ時間は短い。他の取引所を待つ約定は
+ * {@code merged-tape.tick-interval-ms}ごとにも確定する。
+ */
+@Service
+public class MergedTapeService implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(MergedTapeService.class);
+
+  @Autowired private MergedTapeProperties mergedTapeProperties;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private TapeMerger merger;
+
+  @PostConstruct
+  public void initialize() {
+    merger =
+        new TapeMerger(
+            mergedTapeProperties.getSources(),
+            mergedTapeProperties.getReorderWindowMs(),
+            mergedTapeProperties.getIdleTimeoutMs(),
+            mergedTapeProperties.getMaxPending());
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!mergedTapeProperties.isEnabled()
+        || trade.getTimestamp() == null
+        || trade.getPrice() == null
+        || trade.getSize() == null) {
+      return;
+    }
+    synchronized (merger) {
+      List<TapeMerger.Entry> released = new ArrayList<>();
+      merger.offer(trade, System.currentTimeMillis(), released);
+      emit(released);
+    }
+  }
+
+  /** 待ち時間を過ぎた約定と、待たなくなった取引所の分を確定する。 */
+  @Scheduled(fixedDelayString = "${merged-tape.tick-interval-ms:100}")
+  public void tick() {
+    synchronized (merger) {
+      if (merger.getPending() == 0) {
+        return;
+      }
+      List<TapeMerger.Entry> released = new ArrayList<>();
+      merger.poll(System.currentTimeMillis(), released);
+      emit(released);
+    }
+  }
+
+  private void emit(List<TapeMerger.Entry> released) {
+    if (released.isEmpty()) {
+      return;
+    }
+    if (mergedTapeProperties.isPersistEnabled()) {
+      List<String> rows = new ArrayList<>(released.size());
+      for (TapeMerger.Entry entry : released) {
+        rows.add(toCsvRow(entry));
+      }
+      dataPersistenceService.saveRows(RecordedStream.MERGED_TRADES, rows);
+    }
+    if (mergedTapeProperties.isPublishEnabled()) {
+      for (TapeMerger.Entry entry : released) {
+        publish(entry);
+      }
+    }
+  }
+
+  private static String toCsvRow(TapeMerger.Entry entry) {
+    Trade trade = entry.getTrade();
+    return String.join(
+        ",",
+        Long.toString(entry.getSeq()),
+        trade.getExchange().toUpperCase(),
+        trade.getSymbol(),
+        trade.getTradeId() != null ? trade.getTradeId() : "",
+        trade.getPrice().toPlainString(),
+        trade.getSize().toPlainString(),
+        trade.getSide() != null ? trade.getSide() : "",
+        trade.getTimestamp().toString(),
+        Instant.ofEpochMilli(entry.getReceivedAt()).toString(),
+        Long.toString(entry.getLateMs()));
+  }
+
+  private void publish(TapeMerger.Entry entry) {
+    Trade trade = entry.getTrade();
+    Map<String, Object> message = new LinkedHashMap<>();
+    message.put("seq", entry.getSeq());
+    message.put("exchange", trade.getExchange().toUpperCase());
+    message.put("symbol", trade.getSymbol());
+    message.put("tradeId", trade.getTradeId());
+    message.put("price", trade.getPrice());
+    message.put("size", trade.getSize());
+    message.put("side", trade.getSide());
+    message.put("timestamp", trade.getTimestamp().toString());
+    message.put("lateMs", entry.getLateMs());
+    String channel = mergedTapeProperties.getChannel();
+    try {
+      redisPublisherService.publish(channel, channel, objectMapper.writeValueAsString(message));
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to serialize merged trade {}: {}", entry.getSeq(), e.getMessage());
+    } catch (Exception e) {
+      logger.error("Failed to publish merged trade {}: {}", entry.getSeq(), e.getMessage());
+    }
+  }
+
+  public Map<String, Object> getStats() {
+    synchronized (merger) {
+      return merger.getStats(System.currentTimeMillis());
+    }
+  }
+}
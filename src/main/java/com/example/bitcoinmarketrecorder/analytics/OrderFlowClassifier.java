@@ -0,0 +1,388 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.analytics.OrderFlowEvent.Type;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 1銘柄の板の更新を直前の板と比べ、価格ごとの数量の変化を追加・取消・約定による減少に分類する。
+ *
+ * <p>比べるのは両方の板で見えている範囲（上位{@code depth}段）だけで、段数の打ち切りで見えなくなった価格は取消に
+ * 数えない。数量の減少は、同じ側・同じ価格の約定が{@code matchWindowMs}以内に届いていれば（前後はどちらでもよい）
+ * その分を約定による減少とし、残りを待ち時間が過ぎてから取消とする。買いの約定は売り板を、売りの約定は買い板を減らす。
+ * 段ごとに件数・数量の累計と、半減期{@code rateHalfLifeMs}で減衰させた1秒あたりの件数を持つ。スレッドセーフではない。
+ */
+public class OrderFlowClassifier {
+
+  private static final double EPSILON = 1e-12;
+
+  private final String exchange;
+  private final String symbol;
+  private final int depth;
+  private final long matchWindowMs;
+  private final double rateTimeConstantMs;
+  private final BookSide bids;
+  private final BookSide asks;
+  private boolean hasBook;
+  // 約定を待っている減少と、減少を待っている約定。いずれも届いた順
+  private final ArrayDeque<Pending> decreases = new ArrayDeque<>();
+  private final ArrayDeque<Pending> trades = new ArrayDeque<>();
+  // [種類][段]
+  private final long[][] counts;
+  private final double[][] volumes;
+  private final double[][] rates;
+  private long lastDecay = Long.MIN_VALUE;
+  private long unmatchedTrades;
+  private double unmatchedTradeVolume;
+
+  /** 板の片側の、直前と今回の上位{@code depth}段。 */
+  private static final class BookSide {
+    private final boolean bid;
+    private double[] prices;
+    private double[] sizes;
+    private int levels;
+    private double[] nextPrices;
+    private double[] nextSizes;
+    private int nextLevels;
+
+    private BookSide(boolean bid, int depth) {
+      this.bid = bid;
+      this.prices = new double[depth];
+      this.sizes = new double[depth];
+      this.nextPrices = new double[depth];
+      this.nextSizes = new double[depth];
+    }
+
+    private void load(List<MarketBoard.PriceLevel> book) {
+      int count = 0;
+      for (int i = 0; i < book.size() && count < nextPrices.length; i++) {
+        MarketBoard.PriceLevel level = book.get(i);
+        if (level == null || level.getPrice() == null || level.getSize() == null) {
+          continue;
+        }
+        nextPrices[count] = level.getPrice().doubleValue();
+        nextSizes[count] = level.getSize().doubleValue();
+        count++;
+      }
+      nextLevels = count;
+    }
+
+    private void swap() {
+      double[] p = prices;
+      double[] s = sizes;
+      prices = nextPrices;
+      sizes = nextSizes;
+      levels = nextLevels;
+      nextPrices = p;
+      nextSizes = s;
+    }
+
+    /** aがbより最良気配に近い。 */
+    private boolean better(double a, double b) {
+      return bid ? a > b : a < b;
+    }
+  }
+
+  /** 相手を待っている減少または約定の残り。 */
+  private static final class Pending {
+    private final boolean bid;
+    private final double price;
+    private final int level;
+    private final long timestamp;
+    private final long arrival;
+    private double remaining;
+
+    private Pending(
+        boolean bid, double price, double remaining, int level, long timestamp, long arrival) {
+      this.bid = bid;
+      this.price = price;
+      this.remaining = remaining;
+      this.level = level;
+      this.timestamp = timestamp;
+      this.arrival = arrival;
+    }
+  }
+
+  /**
+   * @param depth 比べる板の段数
+   * @param matchWindowMs 減少と約定を突き合わせる時間
+   * @param rateHalfLifeMs 1秒あたりの件数を減衰させる半減期
+   */
+  public OrderFlowClassifier(
+      String exchange, String symbol, int depth, long matchWindowMs, long rateHalfLifeMs) {
+    if (depth < 1 || matchWindowMs < 0 || rateHalfLifeMs < 1) {
+      throw new IllegalArgumentException(
+          "Invalid order flow classifier: depth=" + depth + ", halfLife=" + rateHalfLifeMs);
+    }
+    this.exchange = exchange;
+    this.symbol = symbol;
+    this.depth = depth;
+    this.matchWindowMs = matchWindowMs;
+    this.rateTimeConstantMs = rateHalfLifeMs / Math.log(2);
+    this.bids = new BookSide(true, depth);
+    this.asks = new BookSide(false, depth);
+    int types = Type.values().length;
+    this.counts = new long[types][depth];
+    this.volumes = new double[types][depth];
+    this.rates = new double[types][depth];
+  }
+
+  /**
+   * 板を直前の板と比べ、分類できた変化を{@code out}に足す。最初の板は比べる相手がないため記録するだけにする。
+   *
+   * @param now 受信側の現在時刻。約定との突き合わせの待ち時間に使う
+   */
+  public void onBoard(MarketBoard board, long now, List<OrderFlowEvent> out) {
+    decay(now);
+    long timestamp = board.getTs() != null ? board.getTs().toEpochMilli() : now;
+    bids.load(board.getBids());
+    asks.load(board.getAsks());
+    if (hasBook) {
+      diff(bids, timestamp, now, out);
+      diff(asks, timestamp, now, out);
+    }
+    bids.swap();
+    asks.swap();
+    hasBook = true;
+  }
+
+  /** 直前の板と今回の板の両方で見えている範囲の、価格ごとの数量の変化を分類する。 */
+  private void diff(BookSide side, long timestamp, long now, List<OrderFlowEvent> out) {
+    // 段数で打ち切られている板では、最も遠い価格より先は見えていない
+    double boundary = side.bid ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    if (side.levels == depth) {
+      boundary = side.prices[depth - 1];
+    }
+    if (side.nextLevels == depth && side.better(side.nextPrices[depth - 1], boundary)) {
+      boundary = side.nextPrices[depth - 1];
+    }
+    int i = 0;
+    int j = 0;
+    while (i < side.levels || j < side.nextLevels) {
+      if (j >= side.nextLevels
+          || (i < side.levels && side.better(side.prices[i], side.nextPrices[j]))) {
+        // 消えた価格
+        if (!side.better(boundary, side.prices[i])) {
+          decrease(side.bid, side.prices[i], side.sizes[i], i, timestamp, now, out);
+        }
+        i++;
+      } else if (i >= side.levels || side.better(side.nextPrices[j], side.prices[i])) {
+        // 現れた価格
+        if (!side.better(boundary, side.nextPrices[j])) {
+          add(side.bid, side.nextPrices[j], side.nextSizes[j], j, timestamp, out);
+        }
+        j++;
+      } else {
+        double change = side.nextSizes[j] - side.sizes[i];
+        if (change > EPSILON) {
+          add(side.bid, side.nextPrices[j], change, j, timestamp, out);
+        } else if (change < -EPSILON) {
+          decrease(side.bid, side.prices[i], -change, i, timestamp, now, out);
+        }
+        i++;
+        j++;
+      }
+    }
+  }
+
+  private void add(
+      boolean bid, double price, double size, int level, long timestamp, List<OrderFlowEvent> out) {
+    emit(bid, price, size, Type.ADD, level, timestamp, out);
+  }
+
+  private void decrease(
+      boolean bid,
+      double price,
+      double size,
+      int level,
+      long timestamp,
+      long now,
+      List<OrderFlowEvent> out) {
+    double remaining = size;
+    Iterator<Pending> iterator = trades.iterator();
+    while (iterator.hasNext() && remaining > EPSILON) {
+      Pending trade = iterator.next();
+      if (trade.bid != bid || trade.price != price) {
+        continue;
+      }
+      double matched = Math.min(trade.remaining, remaining);
+      trade.remaining -= matched;
+      remaining -= matched;
+      if (trade.remaining <= EPSILON) {
+        iterator.remove();
+      }
+    }
+    if (size - remaining > EPSILON) {
+      emit(bid, price, size - remaining, Type.EXECUTION, level, timestamp, out);
+    }
+    if (remaining > EPSILON) {
+      decreases.addLast(new Pending(bid, price, remaining, level, timestamp, now));
+    }
+  }
+
+  /**
+   * 約定を受け取り、待っている減少と突き合わせて約定による減少を{@code out}に足す。
+   *
+   * @param side 取引所が報告した向き（BUY/SELL）。ない場合はどちらの板を減らしたかを推定する
+   */
+  public void onTrade(double price, double size, String side, long now, List<OrderFlowEvent> out) {
+    decay(now);
+    Boolean inferred;
+    if ("BUY".equalsIgnoreCase(side)) {
+      inferred = false;
+    } else if ("SELL".equalsIgnoreCase(side)) {
+      inferred = true;
+    } else {
+      inferred = inferBid(price);
+    }
+    if (inferred == null) {
+      unmatchedTrades++;
+      unmatchedTradeVolume += size;
+      return;
+    }
+    boolean bid = inferred;
+    double remaining = size;
+    Iterator<Pending> iterator = decreases.iterator();
+    while (iterator.hasNext() && remaining > EPSILON) {
+      Pending decrease = iterator.next();
+      if (decrease.bid != bid || decrease.price != price) {
+        continue;
+      }
+      double matched = Math.min(decrease.remaining, remaining);
+      decrease.remaining -= matched;
+      remaining -= matched;
+      emit(bid, price, matched, Type.EXECUTION, decrease.level, decrease.timestamp, out);
+      if (decrease.remaining <= EPSILON) {
+        iterator.remove();
+      }
+    }
+    if (remaining > EPSILON) {
+      trades.addLast(new Pending(bid, price, remaining, -1, now, now));
+    }
+  }
+
+  /**
+   * 向きのない約定が減らした板の側。同じ価格の減少を待っていればその側、なければ現在の仲値より上なら売り板、下なら買い板。
+   * 決められない場合はnull。
+   */
+  private Boolean inferBid(double price) {
+    for (Pending decrease : decreases) {
+      if (decrease.price == price) {
+        return decrease.bid;
+      }
+    }
+    if (bids.levels == 0 || asks.levels == 0) {
+      return null;
+    }
+    double mid = (bids.prices[0] + asks.prices[0]) / 2;
+    return price > mid ? Boolean.FALSE : price < mid ? Boolean.TRUE : null;
+  }
+
+  /** 待ち時間を過ぎた減少を取消として{@code out}に足し、減少が見つからなかった約定を捨てる。 */
+  public void expire(long now, List<OrderFlowEvent> out) {
+    decay(now);
+    long deadline = now - matchWindowMs;
+    while (!decreases.isEmpty() && decreases.peekFirst().arrival <= deadline) {
+      Pending decrease = decreases.pollFirst();
+      emit(
+          decrease.bid,
+          decrease.price,
+          decrease.remaining,
+          Type.CANCEL,
+          decrease.level,
+          decrease.timestamp,
+          out);
+    }
+    while (!trades.isEmpty() && trades.peekFirst().arrival <= deadline) {
+      // 見えている段より深い価格や、板の更新に表れなかった約定
+      unmatchedTrades++;
+      unmatchedTradeVolume += trades.pollFirst().remaining;
+    }
+  }
+
+  private void emit(
+      boolean bid,
+      double price,
+      double size,
+      Type type,
+      int level,
+      long timestamp,
+      List<OrderFlowEvent> out) {
+    int t = type.ordinal();
+    counts[t][level]++;
+    volumes[t][level] += size;
+    rates[t][level] += 1000 / rateTimeConstantMs;
+    out.add(new OrderFlowEvent(exchange, symbol, timestamp, bid, price, size, type, level));
+  }
+
+  /** 1秒あたりの件数を{@code now}まで減衰させる。 */
+  private void decay(long now) {
+    if (lastDecay == Long.MIN_VALUE || now <= lastDecay) {
+      lastDecay = Math.max(lastDecay, now);
+      return;
+    }
+    double factor = Math.exp(-(now - lastDecay) / rateTimeConstantMs);
+    for (double[] byLevel : rates) {
+      for (int i = 0; i < depth; i++) {
+        byLevel[i] *= factor;
+      }
+    }
+    lastDecay = now;
+  }
+
+  /** 段ごとと全体の件数・数量・1秒あたりの件数、注文と約定の件数比。 */
+  public Map<String, Object> getStats(long now) {
+    decay(now);
+    int add = Type.ADD.ordinal();
+    int cancel = Type.CANCEL.ordinal();
+    int execution = Type.EXECUTION.ordinal();
+    List<Map<String, Object>> levels = new ArrayList<>(depth);
+    long[] totals = new long[Type.values().length];
+    double[] totalVolumes = new double[Type.values().length];
+    for (int i = 0; i < depth; i++) {
+      Map<String, Object> level = new LinkedHashMap<>();
+      level.put("level", i);
+      level.put("addRate", rates[add][i]);
+      level.put("cancelRate", rates[cancel][i]);
+      level.put("executionRate", rates[execution][i]);
+      level.put("adds", counts[add][i]);
+      level.put("cancels", counts[cancel][i]);
+      level.put("executions", counts[execution][i]);
+      level.put("addVolume", volumes[add][i]);
+      level.put("cancelVolume", volumes[cancel][i]);
+      level.put("executionVolume", volumes[execution][i]);
+      level.put("orderToTradeRatio", ratio(counts[add][i], counts[execution][i]));
+      levels.add(level);
+      for (int t = 0; t < totals.length; t++) {
+        totals[t] += counts[t][i];
+        totalVolumes[t] += volumes[t][i];
+      }
+    }
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("symbol", exchange + ":" + symbol);
+    stats.put("depth", depth);
+    stats.put("adds", totals[add]);
+    stats.put("cancels", totals[cancel]);
+    stats.put("executions", totals[execution]);
+    stats.put("addVolume", totalVolumes[add]);
+    stats.put("cancelVolume", totalVolumes[cancel]);
+    stats.put("executionVolume", totalVolumes[execution]);
+    stats.put("orderToTradeRatio", ratio(totals[add], totals[execution]));
+    stats.put("cancelToTradeRatio", ratio(totals[cancel], totals[execution]));
+    stats.put("unmatchedTrades", unmatchedTrades);
+    stats.put("unmatchedTradeVolume", unmatchedTradeVolume);
+    stats.put("pendingDecreases", decreases.size());
+    stats.put("pendingTrades", trades.size());
+    stats.put("levels", levels);
+    return stats;
+  }
+
+  private static Double ratio(long numerator, long denominator) {
+    return denominator > 0 ? (double) numerator / denominator : null;
+  }
+}
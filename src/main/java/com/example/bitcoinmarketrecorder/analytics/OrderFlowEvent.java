@@ -0,0 +1,95 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.time.Instant;
+
+/** 板の1価格の数量の変化を分類したもの。 */
+public class OrderFlowEvent {
+
+  /** 変化の種類。CSVには頭文字の1文字で書く。 */
+  public enum Type {
+    /** 注文が増えた。 */
+    ADD,
+    /** 約定なしに注文が減った（取消・訂正）。 */
+    CANCEL,
+    /** 約定で注文が減った。 */
+    EXECUTION
+  }
+
+  private final String exchange;
+  private final String symbol;
+  private final long timestamp;
+  private final boolean bid;
+  private final double price;
+  private final double size;
+  private final Type type;
+  private final int level;
+
+  /**
+   * @param timestamp 変化が見えた板の時刻（エポックミリ秒）
+   * @param level 変化した価格の最良気配からの段数（0が最良気配）
+   */
+  public OrderFlowEvent(
+      String exchange,
+      String symbol,
+      long timestamp,
+      boolean bid,
+      double price,
+      double size,
+      Type type,
+      int level) {
+    this.exchange = exchange;
+    this.symbol = symbol;
+    this.timestamp = timestamp;
+    this.bid = bid;
+    this.price = price;
+    this.size = size;
+    this.type = type;
+    this.level = level;
+  }
+
+  public String getExchange() {
+    return exchange;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public boolean isBid() {
+    return bid;
+  }
+
+  public double getPrice() {
+    return price;
+  }
+
+  public double getSize() {
+    return size;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  /** l2_eventsの1行。種類と板の側は1文字（A/C/T、B/S）にして行を短くする。 */
+  public String toCsvRow() {
+    return String.join(
+        ",",
+        exchange,
+        symbol,
+        Instant.ofEpochMilli(timestamp).toString(),
+        bid ? "B" : "S",
+        CsvValues.number(price),
+        CsvValues.number(size),
+        type == Type.EXECUTION ? "T" : type.name().substring(0, 1),
+        Integer.toString(level));
+  }
+}
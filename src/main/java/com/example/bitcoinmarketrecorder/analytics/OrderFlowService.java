@@ -0,0 +1,125 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.OrderFlowProperties;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 銘柄ごとに板の更新と約定を{@link OrderFlowClassifier}に渡し、分類した変化をl2_eventsとしてCSVに記録する。
+ *
+ * <p>bitFlyerの差分を反映した板も、GMOのスナップショットも、直前に受け取った板との差で分類する。約定を待っている減少は
+ * {@code order-flow.tick-interval-ms}ごとに待ち時間を確かめ、過ぎたものを取消として記録する。
+ */
+@Service
+public class OrderFlowService implements MarketDataListener {
+
+  @Autowired private OrderFlowProperties orderFlowProperties;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  private final Map<String, OrderFlowClassifier> classifiers = new ConcurrentHashMap<>();
+  private final LongAdder boards = new LongAdder();
+  private final LongAdder recorded = new LongAdder();
+
+  @Override
+  public void onMarketBoard(MarketBoard board) {
+    if (!orderFlowProperties.isEnabled()) {
+      return;
+    }
+    OrderFlowClassifier classifier = classifier(board.getExchange(), board.getSymbol());
+    List<OrderFlowEvent> events = new ArrayList<>();
+    synchronized (classifier) {
+      classifier.onBoard(board, System.currentTimeMillis(), events);
+    }
+    boards.increment();
+    persist(events);
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!orderFlowProperties.isEnabled() || trade.getPrice() == null || trade.getSize() == null) {
+      return;
+    }
+    OrderFlowClassifier classifier = classifier(trade.getExchange(), trade.getSymbol());
+    List<OrderFlowEvent> events = new ArrayList<>();
+    synchronized (classifier) {
+      classifier.onTrade(
+          trade.getPrice().doubleValue(),
+          trade.getSize().doubleValue(),
+          trade.getSide(),
+          System.currentTimeMillis(),
+          events);
+    }
+    persist(events);
+  }
+
+  /** 待ち時間を過ぎた減少を取消として確定する。 */
+  @Scheduled(fixedDelayString = "${order-flow.tick-interval-ms:100}")
+  public void tick() {
+    long now = System.currentTimeMillis();
+    List<OrderFlowEvent> events = new ArrayList<>();
+    for (OrderFlowClassifier classifier : classifiers.values()) {
+      synchronized (classifier) {
+        classifier.expire(now, events);
+      }
+    }
+    persist(events);
+  }
+
+  private void persist(List<OrderFlowEvent> events) {
+    if (events.isEmpty() || !orderFlowProperties.isPersistEnabled()) {
+      return;
+    }
+    List<String> rows = new ArrayList<>(events.size());
+    for (OrderFlowEvent event : events) {
+      rows.add(event.toCsvRow());
+    }
+    dataPersistenceService.saveRows(RecordedStream.L2_EVENTS, rows);
+    recorded.add(rows.size());
+  }
+
+  private OrderFlowClassifier classifier(String exchange, String symbol) {
+    return classifiers.computeIfAbsent(
+        SymbolKey.of(exchange, symbol),
+        k ->
+            new OrderFlowClassifier(
+                exchange.toUpperCase(),
+                symbol,
+                orderFlowProperties.getDepth(),
+                orderFlowProperties.getMatchWindowMs(),
+                orderFlowProperties.getRateHalfLifeMs()));
+  }
+
+  /** 段ごとの追加・取消・約定の件数と1秒あたりの件数、注文と約定の件数比。 */
+  public Optional<Map<String, Object>> getSnapshot(String exchange, String symbol) {
+    OrderFlowClassifier classifier = classifiers.get(SymbolKey.of(exchange, symbol));
+    if (classifier == null) {
+      return Optional.empty();
+    }
+    synchronized (classifier) {
+      return Optional.of(classifier.getStats(System.currentTimeMillis()));
+    }
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("symbols", classifiers.size());
+    stats.put("boards", boards.sum());
+    stats.put("recorded", recorded.sum());
+    return stats;
+  }
+}
@@ -0,0 +1,312 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.QuantileSketchProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 銘柄ごとに約定数量・約定間隔・スプレッドの分布を1時間ごとの{@link DDSketch}で数え、分位点を返す。
+ *
+ * <p>時間帯はデータの時刻（UTC）の正時で区切り、直近{@code quantiles.retain-hours}時間分をメモリに持つ。終わった時間帯は
+ * {@code quantiles.close-delay-ms}待ってからCSVに記録し、記録したスケッチは日をまたいで足し合わせて問い合わせられる。
+ */
+@Service
+public class QuantileSketchService implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(QuantileSketchService.class);
+  private static final double[] PERSISTED_QUANTILES = {0.5, 0.9, 0.99};
+
+  @Autowired private QuantileSketchProperties quantileSketchProperties;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  @Autowired private RecordedDataCatalog recordedDataCatalog;
+
+  private final Map<String, SymbolSketches> symbols = new ConcurrentHashMap<>();
+  private final LongAdder late = new LongAdder();
+  private final LongAdder persisted = new LongAdder();
+
+  /** 分布を数える値。 */
+  public enum Metric {
+    TRADE_SIZE("trade_size"),
+    INTER_TRADE_MS("inter_trade_ms"),
+    SPREAD("spread");
+
+    private final String label;
+
+    Metric(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    public static Optional<Metric> fromName(String name) {
+      return Arrays.stream(values())
+          .filter(m -> m.label.equalsIgnoreCase(name) || m.name().equalsIgnoreCase(name))
+          .findFirst();
+    }
+  }
+
+  /** 1銘柄分の時間帯のリング。 */
+  private static class SymbolSketches {
+    private final String exchange;
+    private final String symbol;
+    // 指標ごとのスケッチ（Metricの順）
+    private final HourlySlots<DDSketch[]> slots;
+    private long lastTradeTime = Long.MIN_VALUE;
+
+    SymbolSketches(String exchange, String symbol, HourlySlots<DDSketch[]> slots) {
+      this.exchange = exchange;
+      this.symbol = symbol;
+      this.slots = slots;
+    }
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!quantileSketchProperties.isEnabled()
+        || trade.getTimestamp() == null
+        || trade.getSize() == null) {
+      return;
+    }
+    SymbolSketches sketches = sketches(trade.getExchange(), trade.getSymbol());
+    long timestamp = trade.getTimestamp().toEpochMilli();
+    synchronized (sketches) {
+      add(sketches, Metric.TRADE_SIZE, timestamp, trade.getSize().doubleValue());
+      // 前後して届いた約定の間隔は数えない
+      if (sketches.lastTradeTime != Long.MIN_VALUE && timestamp >= sketches.lastTradeTime) {
+        add(sketches, Metric.INTER_TRADE_MS, timestamp, timestamp - sketches.lastTradeTime);
+      }
+      sketches.lastTradeTime = Math.max(sketches.lastTradeTime, timestamp);
+    }
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!quantileSketchProperties.isEnabled()
+        || bestBidAsk.getTimestamp() == null
+        || bestBidAsk.getBestBid() == null
+        || bestBidAsk.getBestAsk() == null) {
+      return;
+    }
+    SymbolSketches sketches = sketches(bestBidAsk.getExchange(), bestBidAsk.getSymbol());
+    double spread = bestBidAsk.getBestAsk().doubleValue() - bestBidAsk.getBestBid().doubleValue();
+    synchronized (sketches) {
+      add(sketches, Metric.SPREAD, bestBidAsk.getTimestamp().toEpochMilli(), spread);
+    }
+  }
+
+  private SymbolSketches sketches(String exchange, String symbol) {
+    return symbols.computeIfAbsent(
+        SymbolKey.of(exchange, symbol),
+        k ->
+            new SymbolSketches(
+                exchange.toUpperCase(),
+                symbol,
+                new HourlySlots<>(
+                    quantileSketchProperties.getRetainHours(),
+                    this::newSketches,
+                    sketches -> {
+                      for (DDSketch sketch : sketches) {
+                        sketch.clear();
+                      }
+                    })));
+  }
+
+  private DDSketch[] newSketches() {
+    DDSketch[] sketches = new DDSketch[Metric.values().length];
+    for (int i = 0; i < sketches.length; i++) {
+      sketches[i] = newSketch();
+    }
+    return sketches;
+  }
+
+  private DDSketch newSketch() {
+    return new DDSketch(
+        quantileSketchProperties.getRelativeAccuracy(), quantileSketchProperties.getMaxBins());
+  }
+
+  private void add(SymbolSketches sketches, Metric metric, long timestamp, double value) {
+    DDSketch[] hour = sketches.slots.get(timestamp, slot -> persist(sketches, slot));
+    if (hour == null) {
+      // 保持している範囲より古い
+      late.increment();
+      return;
+    }
+    hour[metric.ordinal()].add(value);
+  }
+
+  /** 終わってから{@code quantiles.close-delay-ms}過ぎた時間帯を記録する。 */
+  @Scheduled(fixedDelayString = "${quantiles.flush-interval-ms:10000}")
+  public void closeHours() {
+    long now = System.currentTimeMillis();
+    for (SymbolSketches sketches : symbols.values()) {
+      synchronized (sketches) {
+        sketches.slots.close(
+            now, quantileSketchProperties.getCloseDelayMs(), slot -> persist(sketches, slot));
+      }
+    }
+  }
+
+  private void persist(SymbolSketches sketches, HourlySlots.Slot<DDSketch[]> slot) {
+    if (!quantileSketchProperties.isPersistEnabled()) {
+      return;
+    }
+    List<String> rows = new ArrayList<>();
+    Instant start = slot.getStart();
+    Instant end = slot.getEnd();
+    for (Metric metric : Metric.values()) {
+      DDSketch sketch = slot.getValue()[metric.ordinal()];
+      if (sketch.getCount() == 0) {
+        continue;
+      }
+      StringBuilder row =
+          new StringBuilder()
+              .append(sketches.exchange)
+              .append(',')
+              .append(sketches.symbol)
+              .append(',')
+              .append(metric.getLabel())
+              .append(',')
+              .append(start)
+              .append(',')
+              .append(end)
+              .append(',')
+              .append(sketch.getCount())
+              .append(',')
+              .append(CsvValues.number(sketch.getMin()))
+              .append(',')
+              .append(CsvValues.number(sketch.getMax()))
+              .append(',')
+              .append(CsvValues.number(sketch.getSum()));
+      for (double q : PERSISTED_QUANTILES) {
+        row.append(',').append(CsvValues.number(sketch.quantile(q)));
+      }
+      rows.add(row.append(',').append(sketch.encode()).toString());
+    }
+    dataPersistenceService.saveRows(RecordedStream.SKETCHES, rows);
+    persisted.add(rows.size());
+  }
+
+  /** メモリに保持している直近{@code hours}時間（現在の時間帯を含む）を足し合わせた分布。 */
+  public Optional<Map<String, Object>> getQuantiles(
+      String exchange, String symbol, Metric metric, int hours, double[] quantiles) {
+    SymbolSketches sketches = symbols.get(SymbolKey.of(exchange, symbol));
+    if (sketches == null) {
+      return Optional.empty();
+    }
+    long from = Math.floorDiv(System.currentTimeMillis(), HourlySlots.HOUR_MS) - hours + 1;
+    DDSketch merged = newSketch();
+    int merges = 0;
+    synchronized (sketches) {
+      for (HourlySlots.Slot<DDSketch[]> slot : sketches.slots.getSlots()) {
+        if (slot.getHour() >= from) {
+          merged.merge(slot.getValue()[metric.ordinal()]);
+          merges++;
+        }
+      }
+    }
+    return Optional.of(
+        summary(sketches.exchange + ":" + symbol, metric, merged, merges, quantiles));
+  }
+
+  /** CSVに記録したスケッチのうち、時間帯が[from, to)に収まるものを足し合わせた分布。 */
+  public Map<String, Object> getPersistedQuantiles(
+      String exchange, String symbol, Metric metric, Instant from, Instant to, double[] quantiles)
+      throws IOException {
+    DDSketch merged = null;
+    int merges = 0;
+    for (Segment segment : recordedDataCatalog.list(RecordedStream.SKETCHES, from, to)) {
+      try (BufferedReader reader =
+          Files.newBufferedReader(segment.getPath(), StandardCharsets.UTF_8)) {
+        reader.readLine();
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] columns = line.split(",", -1);
+          if (columns.length != RecordedStream.SKETCHES.getColumns().size()
+              || !columns[0].equalsIgnoreCase(exchange)
+              || !columns[1].equals(symbol)
+              || !columns[2].equals(metric.getLabel())) {
+            continue;
+          }
+          Instant start = RecordedDataCatalog.parseTimestamp(columns[3]);
+          Instant end = RecordedDataCatalog.parseTimestamp(columns[4]);
+          if (start == null || end == null || start.isBefore(from) || end.isAfter(to)) {
+            continue;
+          }
+          try {
+            DDSketch sketch = DDSketch.decode(columns[12]);
+            if (merged == null) {
+              merged = sketch;
+            } else {
+              merged.merge(sketch);
+            }
+            merges++;
+          } catch (IllegalArgumentException e) {
+            logger.warn("Skipping sketch in {}: {}", segment.getName(), e.getMessage());
+          }
+        }
+      }
+    }
+    return summary(
+        SymbolKey.of(exchange, symbol),
+        metric,
+        merged != null ? merged : newSketch(),
+        merges,
+        quantiles);
+  }
+
+  private static Map<String, Object> summary(
+      String key, Metric metric, DDSketch sketch, int hours, double[] quantiles) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("symbol", key);
+    summary.put("metric", metric.getLabel());
+    summary.put("hours", hours);
+    summary.put("count", sketch.getCount());
+    if (sketch.getCount() > 0) {
+      summary.put("min", sketch.getMin());
+      summary.put("max", sketch.getMax());
+      summary.put("mean", sketch.getSum() / sketch.getCount());
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (double q : quantiles) {
+        values.put(Double.toString(q), sketch.quantile(q));
+      }
+      summary.put("quantiles", values);
+    }
+    return summary;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("symbols", symbols.size());
+    stats.put("late", late.sum());
+    stats.put("persisted", persisted.sum());
+    return stats;
+  }
+}
@@ -0,0 +1,185 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.BarProperties;
+import com.example.bitcoinmarketrecorder.config.QuoteStatsProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 銘柄ごとに最良気配の時間加重平均のスプレッド・仲値、気配の寿命の分布、更新・ちらつきの頻度を集計する。
+ *
+ * <p>BBOを受けるたびに、直前の気配が出ていた時間の分を移動窓とカレンダー窓（UTC）の{@link QuoteWindow}に足す。参照した
+ * 時点で出ている気配は、その時点までの分を足してから集計する。時刻はBBOのタイムスタンプ（受信時刻）を使う。
+ */
+@Service
+public class QuoteStatsService implements MarketDataListener {
+
+  @Autowired private QuoteStatsProperties quoteStatsProperties;
+
+  private final Map<String, SymbolQuotes> symbols = new ConcurrentHashMap<>();
+
+  /** 1銘柄分の窓と直前の気配。 */
+  private static class SymbolQuotes {
+    private final QuoteWindow[] rolling;
+    private final long[] horizons;
+    private final QuoteWindow[] calendar;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private double bid;
+    private double ask;
+    // 現在の価格の組が出始めた時刻
+    private long quoteStart;
+
+    SymbolQuotes(QuoteWindow[] rolling, long[] horizons, QuoteWindow[] calendar) {
+      this.rolling = rolling;
+      this.horizons = horizons;
+      this.calendar = calendar;
+    }
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!quoteStatsProperties.isEnabled()
+        || bestBidAsk.getTimestamp() == null
+        || bestBidAsk.getBestBid() == null
+        || bestBidAsk.getBestAsk() == null) {
+      return;
+    }
+    SymbolQuotes quotes =
+        symbols.computeIfAbsent(
+            SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol()), k -> create());
+    double bid = bestBidAsk.getBestBid().doubleValue();
+    double ask = bestBidAsk.getBestAsk().doubleValue();
+    synchronized (quotes) {
+      // 前後して届いた場合は直前の時刻に揃える
+      long timestamp = Math.max(bestBidAsk.getTimestamp().toEpochMilli(), quotes.lastTimestamp);
+      boolean first = quotes.lastTimestamp == Long.MIN_VALUE;
+      boolean priceChanged = !first && (bid != quotes.bid || ask != quotes.ask);
+      if (!first) {
+        advance(quotes, timestamp);
+      }
+      long lifetime = timestamp - quotes.quoteStart;
+      boolean flicker = lifetime < quoteStatsProperties.getFlickerThresholdMs();
+      for (QuoteWindow window : quotes.rolling) {
+        record(window, timestamp, priceChanged, lifetime, flicker);
+      }
+      for (QuoteWindow window : quotes.calendar) {
+        record(window, timestamp, priceChanged, lifetime, flicker);
+      }
+      if (first || priceChanged) {
+        quotes.quoteStart = timestamp;
+      }
+      quotes.bid = bid;
+      quotes.ask = ask;
+      quotes.lastTimestamp = timestamp;
+    }
+  }
+
+  private static void record(
+      QuoteWindow window, long timestamp, boolean priceChanged, long lifetime, boolean flicker) {
+    window.addUpdate(timestamp, priceChanged);
+    if (priceChanged) {
+      window.addLifetime(timestamp, lifetime, flicker);
+    }
+  }
+
+  /** 直前の気配がtoまで出ていた分を足す。 */
+  private static void advance(SymbolQuotes quotes, long to) {
+    if (to <= quotes.lastTimestamp) {
+      return;
+    }
+    double spread = quotes.ask - quotes.bid;
+    double mid = (quotes.ask + quotes.bid) / 2;
+    for (QuoteWindow window : quotes.rolling) {
+      window.addQuote(quotes.lastTimestamp, to, spread, mid);
+    }
+    for (QuoteWindow window : quotes.calendar) {
+      window.addQuote(quotes.lastTimestamp, to, spread, mid);
+    }
+    quotes.lastTimestamp = to;
+  }
+
+  private SymbolQuotes create() {
+    int resolution = Math.max(1, quoteStatsProperties.getResolution());
+    List<Duration> rollingWindows = quoteStatsProperties.getRollingWindows();
+    QuoteWindow[] rolling = new QuoteWindow[rollingWindows.size()];
+    long[] horizons = new long[rolling.length];
+    for (int i = 0; i < rolling.length; i++) {
+      horizons[i] = rollingWindows.get(i).toMillis();
+      rolling[i] = new QuoteWindow(Math.max(1, horizons[i] / resolution), resolution + 1);
+    }
+    List<Duration> calendarWindows = quoteStatsProperties.getCalendarWindows();
+    QuoteWindow[] calendar = new QuoteWindow[calendarWindows.size()];
+    for (int i = 0; i < calendar.length; i++) {
+      // 現在と直前の期間
+      calendar[i] = new QuoteWindow(calendarWindows.get(i).toMillis(), 2);
+    }
+    return new SymbolQuotes(rolling, horizons, calendar);
+  }
+
+  /** 1銘柄の窓ごとの集計値。 */
+  public Optional<Map<String, Object>> getSnapshot(String exchange, String symbol) {
+    SymbolQuotes quotes = symbols.get(SymbolKey.of(exchange, symbol));
+    if (quotes == null) {
+      return Optional.empty();
+    }
+    return Optional.of(snapshot(quotes, System.currentTimeMillis()));
+  }
+
+  /** 全銘柄の集計値。 */
+  public Map<String, Object> getSnapshots() {
+    long now = System.currentTimeMillis();
+    Map<String, Object> snapshots = new TreeMap<>();
+    for (Map.Entry<String, SymbolQuotes> entry : symbols.entrySet()) {
+      snapshots.put(entry.getKey(), snapshot(entry.getValue(), now));
+    }
+    return snapshots;
+  }
+
+  private static Map<String, Object> snapshot(SymbolQuotes quotes, long now) {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    synchronized (quotes) {
+      advance(quotes, now);
+      long timestamp = Math.max(now, quotes.lastTimestamp);
+      snapshot.put("timestamp", timestamp);
+      Map<String, Object> rolling = new LinkedHashMap<>();
+      for (int i = 0; i < quotes.rolling.length; i++) {
+        QuoteWindow window = quotes.rolling[i];
+        // 現在の区間を含めて窓に収まる区間を足す
+        long from = window.slotStart(timestamp) - (quotes.horizons[i] - window.getSlotMs());
+        rolling.put(
+            BarProperties.label(Duration.ofMillis(quotes.horizons[i])),
+            window.aggregate(from, Long.MAX_VALUE).toMap());
+      }
+      snapshot.put("rolling", rolling);
+      Map<String, Object> calendar = new LinkedHashMap<>();
+      for (QuoteWindow window : quotes.calendar) {
+        long start = window.slotStart(timestamp);
+        long previous = start - window.getSlotMs();
+        Map<String, Object> periods = new LinkedHashMap<>();
+        periods.put("current", period(window, start));
+        periods.put("previous", period(window, previous));
+        calendar.put(BarProperties.label(Duration.ofMillis(window.getSlotMs())), periods);
+      }
+      snapshot.put("calendar", calendar);
+    }
+    return snapshot;
+  }
+
+  private static Map<String, Object> period(QuoteWindow window, long start) {
+    Map<String, Object> period = new LinkedHashMap<>();
+    period.put("start", Instant.ofEpochMilli(start).toString());
+    period.putAll(window.aggregate(start, start + window.getSlotMs()).toMap());
+    return period;
+  }
+}
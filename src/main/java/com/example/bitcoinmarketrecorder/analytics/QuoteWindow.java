@@ -0,0 +1,267 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最良気配の時間加重の集計を、一定の長さの区間ごとにプリミティブ配列で持つリング。
+ *
+ * <p>気配が出ていた時間だけ重み付けしてスプレッドと仲値を足し込むため、更新の多い時間帯に偏らない。区間をまたいで出ていた
+ * 気配は区間ごとに分けて足す。更新はいずれもO(1)（長く出ていた気配は最大で区間の数だけ）で、集計は区間を足し合わせる。
+ * 気配の寿命は1ミリ秒から√2倍ずつの{@value #LIFETIME_BUCKETS}個のビンで数える。スレッドセーフではない。
+ */
+public class QuoteWindow {
+
+  static final int LIFETIME_BUCKETS = 48;
+
+  private final long slotMs;
+  private final int slots;
+  private final long[] slotStart;
+  private final double[] time;
+  private final double[] spreadTime;
+  private final double[] spreadBpsTime;
+  private final double[] midTime;
+  private final long[] updates;
+  private final long[] priceChanges;
+  private final long[] flickers;
+  private final double[] lifetimeSum;
+  // 区間ごとにLIFETIME_BUCKETS個ずつ並べる
+  private final long[] lifetimes;
+
+  /**
+   * @param slotMs 区間の長さ
+   * @param slots 保持する区間の数
+   */
+  public QuoteWindow(long slotMs, int slots) {
+    if (slotMs < 1 || slots < 1) {
+      throw new IllegalArgumentException("Invalid window: slotMs=" + slotMs + ", slots=" + slots);
+    }
+    this.slotMs = slotMs;
+    this.slots = slots;
+    this.slotStart = new long[slots];
+    this.time = new double[slots];
+    this.spreadTime = new double[slots];
+    this.spreadBpsTime = new double[slots];
+    this.midTime = new double[slots];
+    this.updates = new long[slots];
+    this.priceChanges = new long[slots];
+    this.flickers = new long[slots];
+    this.lifetimeSum = new double[slots];
+    this.lifetimes = new long[slots * LIFETIME_BUCKETS];
+    Arrays.fill(slotStart, Long.MIN_VALUE);
+  }
+
+  /** 時刻を含む区間の添字。保持している範囲より古い場合は-1。 */
+  private int slot(long timestamp) {
+    long index = Math.floorDiv(timestamp, slotMs);
+    int i = (int) Math.floorMod(index, (long) slots);
+    long start = index * slotMs;
+    if (slotStart[i] != start) {
+      if (slotStart[i] > start) {
+        return -1;
+      }
+      reset(i, start);
+    }
+    return i;
+  }
+
+  private void reset(int i, long start) {
+    slotStart[i] = start;
+    time[i] = 0;
+    spreadTime[i] = 0;
+    spreadBpsTime[i] = 0;
+    midTime[i] = 0;
+    updates[i] = 0;
+    priceChanges[i] = 0;
+    flickers[i] = 0;
+    lifetimeSum[i] = 0;
+    Arrays.fill(lifetimes, i * LIFETIME_BUCKETS, (i + 1) * LIFETIME_BUCKETS, 0);
+  }
+
+  /** [from, to)の間出ていた気配を足す。 */
+  public void addQuote(long from, long to, double spread, double mid) {
+    // リングに収まらない古い部分は足してもすぐに上書きされる
+    from = Math.max(from, to - slotMs * slots);
+    double spreadBps = mid > 0 ? spread / mid * 10_000 : 0;
+    while (from < to) {
+      long end = Math.min(to, Math.floorDiv(from, slotMs) * slotMs + slotMs);
+      int i = slot(from);
+      if (i >= 0) {
+        double dt = end - from;
+        time[i] += dt;
+        spreadTime[i] += spread * dt;
+        spreadBpsTime[i] += spreadBps * dt;
+        midTime[i] += mid * dt;
+      }
+      from = end;
+    }
+  }
+
+  /** 最良気配の更新を1件数える。 */
+  public void addUpdate(long timestamp, boolean priceChanged) {
+    int i = slot(timestamp);
+    if (i < 0) {
+      return;
+    }
+    updates[i]++;
+    if (priceChanged) {
+      priceChanges[i]++;
+    }
+  }
+
+  /** 価格が変わって終わった気配の寿命を数える。 */
+  public void addLifetime(long timestamp, long lifetimeMs, boolean flicker) {
+    int i = slot(timestamp);
+    if (i < 0) {
+      return;
+    }
+    lifetimeSum[i] += lifetimeMs;
+    lifetimes[i * LIFETIME_BUCKETS + lifetimeBucket(lifetimeMs)]++;
+    if (flicker) {
+      flickers[i]++;
+    }
+  }
+
+  static int lifetimeBucket(long lifetimeMs) {
+    if (lifetimeMs < 1) {
+      return 0;
+    }
+    int bucket = 1 + (int) Math.floor(2 * Math.log(lifetimeMs) / Math.log(2));
+    return Math.min(LIFETIME_BUCKETS - 1, bucket);
+  }
+
+  /** ビンの代表値（ビンの上下端の幾何平均）。 */
+  static double lifetimeValue(int bucket) {
+    return bucket == 0 ? 0.5 : Math.pow(2, (bucket - 0.5) / 2);
+  }
+
+  /** 開始時刻が[from, to)の区間を足し合わせる。 */
+  public Stats aggregate(long from, long to) {
+    Stats stats = new Stats();
+    for (int i = 0; i < slots; i++) {
+      if (slotStart[i] < from || slotStart[i] >= to) {
+        continue;
+      }
+      stats.timeMs += time[i];
+      stats.spreadTime += spreadTime[i];
+      stats.spreadBpsTime += spreadBpsTime[i];
+      stats.midTime += midTime[i];
+      stats.updates += updates[i];
+      stats.priceChanges += priceChanges[i];
+      stats.flickers += flickers[i];
+      stats.lifetimeSum += lifetimeSum[i];
+      for (int b = 0; b < LIFETIME_BUCKETS; b++) {
+        stats.lifetimes[b] += lifetimes[i * LIFETIME_BUCKETS + b];
+      }
+    }
+    return stats;
+  }
+
+  /** 時刻を含む区間の開始時刻。 */
+  public long slotStart(long timestamp) {
+    return Math.floorDiv(timestamp, slotMs) * slotMs;
+  }
+
+  public long getSlotMs() {
+    return slotMs;
+  }
+
+  /** 集計結果。 */
+  public static class Stats {
+    private double timeMs;
+    private double spreadTime;
+    private double spreadBpsTime;
+    private double midTime;
+    private long updates;
+    private long priceChanges;
+    private long flickers;
+    private double lifetimeSum;
+    private final long[] lifetimes = new long[LIFETIME_BUCKETS];
+
+    public double getTimeMs() {
+      return timeMs;
+    }
+
+    /** 時間加重平均のスプレッド。 */
+    public double getSpread() {
+      return timeMs > 0 ? spreadTime / timeMs : Double.NaN;
+    }
+
+    /** 時間加重平均のスプレッド（仲値に対するbps）。 */
+    public double getSpreadBps() {
+      return timeMs > 0 ? spreadBpsTime / timeMs : Double.NaN;
+    }
+
+    /** 時間加重平均の仲値。 */
+    public double getMid() {
+      return timeMs > 0 ? midTime / timeMs : Double.NaN;
+    }
+
+    public long getUpdates() {
+      return updates;
+    }
+
+    public long getPriceChanges() {
+      return priceChanges;
+    }
+
+    public long getFlickers() {
+      return flickers;
+    }
+
+    /** 寿命を数えた気配の数。 */
+    public long getQuotes() {
+      long quotes = 0;
+      for (long c : lifetimes) {
+        quotes += c;
+      }
+      return quotes;
+    }
+
+    /** 気配の寿命の分位点（ミリ秒、ビンの代表値）。 */
+    public double getLifetimeQuantile(double q) {
+      long quotes = getQuotes();
+      if (quotes == 0) {
+        return Double.NaN;
+      }
+      double rank = q * (quotes - 1);
+      long seen = 0;
+      for (int b = 0; b < LIFETIME_BUCKETS; b++) {
+        seen += lifetimes[b];
+        if (seen > rank) {
+          return lifetimeValue(b);
+        }
+      }
+      return lifetimeValue(LIFETIME_BUCKETS - 1);
+    }
+
+    public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      double seconds = timeMs / 1000;
+      long quotes = getQuotes();
+      map.put("coveredSeconds", seconds);
+      map.put("spread", finite(getSpread()));
+      map.put("spreadBps", finite(getSpreadBps()));
+      map.put("mid", finite(getMid()));
+      map.put("updates", updates);
+      map.put("updateRate", seconds > 0 ? updates / seconds : 0.0);
+      map.put("priceChanges", priceChanges);
+      map.put("priceChangeRate", seconds > 0 ? priceChanges / seconds : 0.0);
+      map.put("flickers", flickers);
+      map.put("flickerRatio", quotes > 0 ? (double) flickers / quotes : 0.0);
+      Map<String, Object> lifetime = new LinkedHashMap<>();
+      lifetime.put("quotes", quotes);
+      lifetime.put("meanMs", quotes > 0 ? lifetimeSum / quotes : null);
+      lifetime.put("p50Ms", finite(getLifetimeQuantile(0.5)));
+      lifetime.put("p90Ms", finite(getLifetimeQuantile(0.9)));
+      lifetime.put("p99Ms", finite(getLifetimeQuantile(0.99)));
+      map.put("lifetime", lifetime);
+      return map;
+    }
+
+    private static Double finite(double value) {
+      return Double.isFinite(value) ? value : null;
+    }
+  }
+}
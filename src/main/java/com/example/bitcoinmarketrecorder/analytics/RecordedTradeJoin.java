@@ -0,0 +1,209 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import com.example.bitcoinmarketrecorder.service.RecordedSegmentReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 記録済みの約定とBBOのマージスキャンによるas-of結合（{@link TradeEnrichmentService#join}の読み込み位置）。
+ *
+ * <p>約定のファイルとBBOのファイルをそれぞれ先頭から1回だけ読み、約定を1件読むごとにその時刻までのBBOを銘柄ごとの
+ * {@link TradeQuoteJoin}に足してから結合する。約定ごとにBBOを探し直さないため、読む量は2つのファイルの大きさに比例する。
+ * スレッドセーフではない。
+ */
+class RecordedTradeJoin {
+
+  private static final Logger logger = LoggerFactory.getLogger(RecordedTradeJoin.class);
+  // 1回に返す塊の目安
+  private static final int CHUNK_BYTES = 64 * 1024;
+
+  private final Rows trades;
+  private final Rows quotes;
+  private final Instant from;
+  private final Instant to;
+  private final String exchange;
+  private final String symbol;
+  private final long limit;
+  private final int quoteHistory;
+  private final long maxQuoteAgeMs;
+  private final Map<String, TradeQuoteJoin> joins = new HashMap<>();
+  // 読んだがまだ足していないBBO
+  private String[] nextQuote;
+  private Instant nextQuoteTime;
+  private long emitted;
+  private boolean headerWritten;
+  private boolean done;
+
+  /**
+   * @param quoteFrom BBOを読み始める時刻
+   * @param exchange nullの場合はすべて
+   * @param symbol nullの場合はすべて
+   */
+  RecordedTradeJoin(
+      List<Segment> tradeSegments,
+      List<Segment> quoteSegments,
+      Instant from,
+      Instant to,
+      Instant quoteFrom,
+      String exchange,
+      String symbol,
+      long limit,
+      int quoteHistory,
+      long maxQuoteAgeMs) {
+    this.trades = new Rows(RecordedStream.TRADES, tradeSegments, from);
+    this.quotes = new Rows(RecordedStream.BEST_BID_ASK, quoteSegments, quoteFrom);
+    this.from = from;
+    this.to = to;
+    this.exchange = exchange;
+    this.symbol = symbol;
+    this.limit = limit;
+    this.quoteHistory = quoteHistory;
+    this.maxQuoteAgeMs = maxQuoteAgeMs;
+  }
+
+  /** 次に返すCSVの塊。1つ目はヘッダー行から始まる。これ以上ない場合はnull。 */
+  byte[] nextChunk() throws IOException {
+    StringBuilder out = new StringBuilder();
+    if (!headerWritten) {
+      out.append(String.join(",", RecordedStream.ENRICHED_TRADES.getColumns())).append('\n');
+      headerWritten = true;
+    }
+    while (!done && out.length() < CHUNK_BYTES) {
+      String[] values = trades.next();
+      if (values == null) {
+        done = true;
+        break;
+      }
+      Instant timestamp = RecordedDataCatalog.parseTimestamp(values[6]);
+      if (timestamp == null) {
+        continue;
+      }
+      if (!timestamp.isBefore(to.plus(RecordedDataCatalog.WRITE_LAG))) {
+        // 受信順の前後を考慮しても範囲を過ぎたので、このファイルは読み終える
+        trades.skipSegment();
+        continue;
+      }
+      if (timestamp.isBefore(from) || !timestamp.isBefore(to) || !matches(values)) {
+        continue;
+      }
+      double price;
+      double size;
+      try {
+        price = Double.parseDouble(values[3]);
+        size = Double.parseDouble(values[4]);
+      } catch (NumberFormatException e) {
+        continue;
+      }
+      advanceQuotes(timestamp);
+      out.append(
+              join(values[0], values[1])
+                  .enrich(values[0], values[1], values[2], price, size, values[5], timestamp)
+                  .toCsvRow())
+          .append('\n');
+      if (++emitted >= limit) {
+        done = true;
+      }
+    }
+    if (out.length() == 0) {
+      return null;
+    }
+    return out.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** 時刻までのBBOを足す。 */
+  private void advanceQuotes(Instant timestamp) throws IOException {
+    while (true) {
+      if (nextQuote == null && !readQuote()) {
+        return;
+      }
+      if (nextQuoteTime.isAfter(timestamp)) {
+        return;
+      }
+      try {
+        join(nextQuote[0], nextQuote[1])
+            .addQuote(
+                nextQuoteTime,
+                Double.parseDouble(nextQuote[2]),
+                Double.parseDouble(nextQuote[4]));
+      } catch (NumberFormatException e) {
+        logger.debug("Skipping malformed best bid/ask row: {}", String.join(",", nextQuote));
+      }
+      nextQuote = null;
+    }
+  }
+
+  private boolean readQuote() throws IOException {
+    String[] values;
+    while ((values = quotes.next()) != null) {
+      Instant timestamp = RecordedDataCatalog.parseTimestamp(values[6]);
+      if (timestamp != null && matches(values)) {
+        nextQuote = values;
+        nextQuoteTime = timestamp;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean matches(String[] values) {
+    return (exchange == null || exchange.equalsIgnoreCase(values[0]))
+        && (symbol == null || symbol.equals(values[1]));
+  }
+
+  private TradeQuoteJoin join(String exchange, String symbol) {
+    return joins.computeIfAbsent(
+        SymbolKey.of(exchange, symbol),
+        k -> new TradeQuoteJoin(quoteHistory, maxQuoteAgeMs));
+  }
+
+  void close() {
+    trades.close();
+    quotes.close();
+  }
+
+  /** 1つのストリームの書き終わった行を列に分けて返す。 */
+  private static class Rows {
+    private final int columnCount;
+    private final RecordedSegmentReader lines;
+
+    Rows(RecordedStream stream, List<Segment> segments, Instant start) {
+      this.columnCount = stream.getColumns().size();
+      this.lines = new RecordedSegmentReader(segments, start);
+    }
+
+    /** 次の行の列。これ以上ない場合はnull。列の足りない行は飛ばす。 */
+    String[] next() throws IOException {
+      String row;
+      while ((row = lines.nextLine()) != null) {
+        String[] values = row.split(",", -1);
+        if (values.length >= columnCount) {
+          return values;
+        }
+      }
+      return null;
+    }
+
+    /** 開いているファイルを閉じ、次のファイルに進む。 */
+    void skipSegment() throws IOException {
+      lines.skipSegment();
+    }
+
+    void close() {
+      try {
+        lines.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close recorded file: {}", e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.model.Trade;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 取引所（ソース）ごとに別々に届く約定を、約定の時刻順の1本のテープに並べ直す。
+ *
+ * <p>ソースごとに受け取った約定の時刻の最大値（ウォーターマーク）を持ち、すべてのソースのウォーターマーク以下の約定から
+ * 順に確定する。{@code idleTimeoutMs}の間約定が届いていないソースは待たない。ウォーターマークが進まなくても、届いてから
+ * {@code reorderWindowMs}過ぎた約定はそれより前の時刻の約定とあわせて確定するため、遅れは最大でもこの時間に収まる。
+ * 確定済みの時刻より前の約定（遅着）は待たずにすぐ出し、遅れた時間を付ける。スレッドセーフではない。
+ */
+class TapeMerger {
+
+  private final long reorderWindowMs;
+  private final long idleTimeoutMs;
+  private final int maxPending;
+  private final Map<String, Source> sources = new LinkedHashMap<>();
+  // 時刻順、同じ時刻は届いた順
+  private final PriorityQueue<Pending> pending =
+      new PriorityQueue<>(
+          Comparator.comparingLong((Pending p) -> p.micros).thenComparingLong(p -> p.arrivalSeq));
+  // 届いた順。待ち時間を過ぎた約定の時刻を求めるのに使う
+  private final Deque<Pending> arrivals = new ArrayDeque<>();
+  private long arrivalSeq;
+  private long seq;
+  private long emittedMicros = Long.MIN_VALUE;
+  private long received;
+  private long late;
+  private long maxLateMs;
+  private long forced;
+  private long overflowed;
+
+  /** テープに出した約定。 */
+  static final class Entry {
+    private final long seq;
+    private final Trade trade;
+    private final long receivedAt;
+    private final long lateMs;
+
+    private Entry(long seq, Trade trade, long receivedAt, long lateMs) {
+      this.seq = seq;
+      this.trade = trade;
+      this.receivedAt = receivedAt;
+      this.lateMs = lateMs;
+    }
+
+    long getSeq() {
+      return seq;
+    }
+
+    Trade getTrade() {
+      return trade;
+    }
+
+    /** 受信した時刻（エポックミリ秒）。 */
+    long getReceivedAt() {
+      return receivedAt;
+    }
+
+    /** 遅着の場合、確定済みの時刻からどれだけ前の約定か。遅着でなければ0。 */
+    long getLateMs() {
+      return lateMs;
+    }
+  }
+
+  private static final class Source {
+    private long watermark = Long.MIN_VALUE;
+    private long lastArrival = Long.MIN_VALUE;
+  }
+
+  private static final class Pending {
+    private final Trade trade;
+    private final long micros;
+    private final long arrival;
+    private final long arrivalSeq;
+
+    private Pending(Trade trade, long micros, long arrival, long arrivalSeq) {
+      this.trade = trade;
+      this.micros = micros;
+      this.arrival = arrival;
+      this.arrivalSeq = arrivalSeq;
+    }
+  }
+
+  /**
+   * @param sources 待ち合わせるソース。ここにないソースも受け付け、届いた時点で待ち合わせに加える
+   */
+  TapeMerger(List<String> sources, long reorderWindowMs, long idleTimeoutMs, int maxPending) {
+    this.reorderWindowMs = reorderWindowMs;
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.maxPending = maxPending;
+    for (String source : sources) {
+      this.sources.put(source.toUpperCase(), new Source());
+    }
+  }
+
+  /** 約定を受け取り、確定できるようになった約定を{@code out}に足す。 */
+  void offer(Trade trade, long now, List<Entry> out) {
+    long micros = micros(trade.getTimestamp());
+    received++;
+    Source source = sources.computeIfAbsent(trade.getExchange().toUpperCase(), k -> new Source());
+    source.watermark = Math.max(source.watermark, micros);
+    source.lastArrival = now;
+    if (micros < emittedMicros) {
+      long lateMs = Math.max(1, (emittedMicros - micros) / 1000);
+      late++;
+      maxLateMs = Math.max(maxLateMs, lateMs);
+      out.add(new Entry(++seq, trade, now, lateMs));
+      return;
+    }
+    Pending entry = new Pending(trade, micros, now, arrivalSeq++);
+    pending.add(entry);
+    arrivals.addLast(entry);
+    while (pending.size() > maxPending) {
+      emit(pending.poll(), out);
+      overflowed++;
+    }
+    poll(now, out);
+  }
+
+  /** ウォーターマーク以下の約定と、待ち時間を過ぎた約定までを{@code out}に足す。 */
+  void poll(long now, List<Entry> out) {
+    long watermark = watermark(now);
+    long forcedUpTo = Long.MIN_VALUE;
+    long deadline = now - reorderWindowMs;
+    while (!arrivals.isEmpty() && arrivals.peekFirst().arrival <= deadline) {
+      forcedUpTo = Math.max(forcedUpTo, arrivals.pollFirst().micros);
+    }
+    while (!pending.isEmpty()) {
+      long micros = pending.peek().micros;
+      if (micros <= watermark) {
+        emit(pending.poll(), out);
+      } else if (micros <= forcedUpTo) {
+        emit(pending.poll(), out);
+        forced++;
+      } else {
+        break;
+      }
+    }
+    if (pending.isEmpty()) {
+      arrivals.clear();
+    }
+  }
+
+  /** 待ち合わせ中のソースのウォーターマークの最小値。待ち合わせるソースがなければ最大値。 */
+  private long watermark(long now) {
+    long watermark = Long.MAX_VALUE;
+    for (Source source : sources.values()) {
+      if (source.lastArrival != Long.MIN_VALUE && now - source.lastArrival < idleTimeoutMs) {
+        watermark = Math.min(watermark, source.watermark);
+      }
+    }
+    return watermark;
+  }
+
+  private void emit(Pending entry, List<Entry> out) {
+    emittedMicros = Math.max(emittedMicros, entry.micros);
+    out.add(new Entry(++seq, entry.trade, entry.arrival, 0));
+  }
+
+  int getPending() {
+    return pending.size();
+  }
+
+  Map<String, Object> getStats(long now) {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("received", received);
+    stats.put("emitted", seq);
+    stats.put("pending", pending.size());
+    stats.put("late", late);
+    stats.put("maxLateMs", maxLateMs);
+    stats.put("forced", forced);
+    stats.put("overflowed", overflowed);
+    Map<String, Object> watermarks = new LinkedHashMap<>();
+    for (Map.Entry<String, Source> entry : sources.entrySet()) {
+      Source source = entry.getValue();
+      Map<String, Object> sourceStats = new LinkedHashMap<>();
+      if (source.watermark != Long.MIN_VALUE) {
+        sourceStats.put("watermark", instant(source.watermark).toString());
+        sourceStats.put("idleMs", now - source.lastArrival);
+      }
+      watermarks.put(entry.getKey(), sourceStats);
+    }
+    stats.put("sources", watermarks);
+    return stats;
+  }
+
+  static long micros(Instant timestamp) {
+    return timestamp.getEpochSecond() * 1_000_000L + timestamp.getNano() / 1000;
+  }
+
+  private static Instant instant(long micros) {
+    return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L))
+        .plusNanos(Math.floorMod(micros, 1_000_000L) * 1000);
+  }
+}
@@ -0,0 +1,277 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.EnrichedTradeProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 約定に約定時点の最良気配を付け（as-of結合）、enriched_tradesとしてCSVに記録し、必要に応じてRedisに配信する。
+ *
+ * <p>約定はいったん銘柄ごとの待ち行列に入れ、約定の時刻以降のBBOが届いた時点で確定する。届かない場合は
+ * {@code enriched-trades.reorder-window-ms}待ってから手元の気配で確定する。約定の時刻は取引所の時刻、BBOの時刻は受信時刻
+ * のため、両者の時計のずれは{@code quote_age_ms}に表れる。記録済みのファイルに対しては{@link #join}で同じ結合を行う。
+ */
+@Service
+public class TradeEnrichmentService implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(TradeEnrichmentService.class);
+
+  @Autowired private EnrichedTradeProperties enrichedTradeProperties;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  @Autowired private RecordedDataCatalog recordedDataCatalog;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, SymbolJoin> symbols = new ConcurrentHashMap<>();
+  private final LongAdder enriched = new LongAdder();
+  private final LongAdder unquoted = new LongAdder();
+  private final LongAdder timedOut = new LongAdder();
+  private final LongAdder overflowed = new LongAdder();
+
+  /** 確定待ちの約定。 */
+  private static final class PendingTrade {
+    private final Trade trade;
+    private final long micros;
+    private final long arrival;
+
+    private PendingTrade(Trade trade, long arrival) {
+      this.trade = trade;
+      this.micros = TradeQuoteJoin.micros(trade.getTimestamp());
+      this.arrival = arrival;
+    }
+  }
+
+  /** 1銘柄分の結合の状態。 */
+  private static final class SymbolJoin {
+    private final TradeQuoteJoin join;
+    private final Deque<PendingTrade> pending = new ArrayDeque<>();
+
+    private SymbolJoin(TradeQuoteJoin join) {
+      this.join = join;
+    }
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!enrichedTradeProperties.isEnabled()
+        || trade.getTimestamp() == null
+        || trade.getPrice() == null
+        || trade.getSize() == null) {
+      return;
+    }
+    SymbolJoin symbolJoin = symbolJoin(trade.getExchange(), trade.getSymbol());
+    List<EnrichedTrade> released = new ArrayList<>();
+    synchronized (symbolJoin) {
+      symbolJoin.pending.addLast(new PendingTrade(trade, System.currentTimeMillis()));
+      while (symbolJoin.pending.size() > enrichedTradeProperties.getMaxPending()) {
+        released.add(enrich(symbolJoin, symbolJoin.pending.pollFirst()));
+        overflowed.increment();
+      }
+      releaseQuoted(symbolJoin, released);
+    }
+    emit(released);
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!enrichedTradeProperties.isEnabled()
+        || bestBidAsk.getTimestamp() == null
+        || bestBidAsk.getBestBid() == null
+        || bestBidAsk.getBestAsk() == null) {
+      return;
+    }
+    SymbolJoin symbolJoin = symbolJoin(bestBidAsk.getExchange(), bestBidAsk.getSymbol());
+    List<EnrichedTrade> released = new ArrayList<>();
+    synchronized (symbolJoin) {
+      symbolJoin.join.addQuote(
+          bestBidAsk.getTimestamp(),
+          bestBidAsk.getBestBid().doubleValue(),
+          bestBidAsk.getBestAsk().doubleValue());
+      releaseQuoted(symbolJoin, released);
+    }
+    emit(released);
+  }
+
+  /** 待ち時間を過ぎた約定を確定する。 */
+  @Scheduled(fixedDelayString = "${enriched-trades.tick-interval-ms:100}")
+  public void tick() {
+    release(System.currentTimeMillis());
+  }
+
+  void release(long now) {
+    long deadline = now - enrichedTradeProperties.getReorderWindowMs();
+    List<EnrichedTrade> released = new ArrayList<>();
+    for (SymbolJoin symbolJoin : symbols.values()) {
+      synchronized (symbolJoin) {
+        // 到着順に並んでいるので、先頭から期限を過ぎたものだけを確定する
+        while (!symbolJoin.pending.isEmpty()
+            && symbolJoin.pending.peekFirst().arrival <= deadline) {
+          released.add(enrich(symbolJoin, symbolJoin.pending.pollFirst()));
+          timedOut.increment();
+        }
+      }
+    }
+    emit(released);
+  }
+
+  /** 約定の時刻以降の気配が届いている約定を先頭から確定する。 */
+  private void releaseQuoted(SymbolJoin symbolJoin, List<EnrichedTrade> released) {
+    long latest = symbolJoin.join.latestQuoteMicros();
+    while (!symbolJoin.pending.isEmpty() && symbolJoin.pending.peekFirst().micros <= latest) {
+      released.add(enrich(symbolJoin, symbolJoin.pending.pollFirst()));
+    }
+  }
+
+  private EnrichedTrade enrich(SymbolJoin symbolJoin, PendingTrade pending) {
+    Trade trade = pending.trade;
+    EnrichedTrade enrichedTrade =
+        symbolJoin.join.enrich(
+            trade.getExchange(),
+            trade.getSymbol(),
+            trade.getTradeId(),
+            trade.getPrice().doubleValue(),
+            trade.getSize().doubleValue(),
+            trade.getSide(),
+            trade.getTimestamp());
+    if (!enrichedTrade.hasQuote()) {
+      unquoted.increment();
+    }
+    return enrichedTrade;
+  }
+
+  private void emit(List<EnrichedTrade> released) {
+    if (released.isEmpty()) {
+      return;
+    }
+    List<String> rows = new ArrayList<>(released.size());
+    for (EnrichedTrade trade : released) {
+      rows.add(trade.toCsvRow());
+      if (enrichedTradeProperties.isPublishEnabled()) {
+        publish(trade);
+      }
+    }
+    enriched.add(released.size());
+    if (enrichedTradeProperties.isPersistEnabled()) {
+      dataPersistenceService.saveRows(RecordedStream.ENRICHED_TRADES, rows);
+    }
+  }
+
+  private void publish(EnrichedTrade trade) {
+    String key = SymbolKey.of(trade.getExchange(), trade.getSymbol());
+    try {
+      redisPublisherService.publish(
+          key,
+          enrichedTradeProperties.getChannelPrefix() + ":" + key,
+          objectMapper.writeValueAsString(trade.toMap()));
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to serialize enriched trade for {}: {}", key, e.getMessage());
+    } catch (Exception e) {
+      logger.error("Failed to publish enriched trade for {}: {}", key, e.getMessage());
+    }
+  }
+
+  private SymbolJoin symbolJoin(String exchange, String symbol) {
+    return symbols.computeIfAbsent(
+        SymbolKey.of(exchange, symbol),
+        k ->
+            new SymbolJoin(
+                new TradeQuoteJoin(
+                    enrichedTradeProperties.getQuoteHistory(),
+                    enrichedTradeProperties.getMaxQuoteAgeMs())));
+  }
+
+  /**
+   * 記録済みのtrades・best_bid_askのファイルを時刻順に並行して読み、[from, to)の約定に気配を付けたCSVを返す。
+   *
+   * <p>約定を1件読むごとに、その時刻までのBBOを読み進めて銘柄ごとの直近の気配に足す（マージスキャン）。BBOのファイルは
+   * 約定の範囲より{@code max-quote-age-ms}前から読む。ファイルの読み込みは購読したスレッドではなくboundedElasticで行う。
+   *
+   * @param exchange nullの場合はすべて
+   * @param symbol nullの場合はすべて
+   */
+  public Flux<DataBuffer> join(
+      Instant from,
+      Instant to,
+      String exchange,
+      String symbol,
+      long limit,
+      DataBufferFactory bufferFactory) {
+    return Flux.<DataBuffer, RecordedTradeJoin>generate(
+            () -> {
+              Instant quoteFrom = from.minusMillis(enrichedTradeProperties.getMaxQuoteAgeMs());
+              return new RecordedTradeJoin(
+                  recordedDataCatalog.list(RecordedStream.TRADES, from, to),
+                  recordedDataCatalog.list(RecordedStream.BEST_BID_ASK, quoteFrom, to),
+                  from,
+                  to,
+                  quoteFrom,
+                  exchange,
+                  symbol,
+                  limit,
+                  enrichedTradeProperties.getQuoteHistory(),
+                  enrichedTradeProperties.getMaxQuoteAgeMs());
+            },
+            (cursor, sink) -> {
+              try {
+                byte[] chunk = cursor.nextChunk();
+                if (chunk == null) {
+                  sink.complete();
+                } else {
+                  sink.next(bufferFactory.wrap(chunk));
+                }
+              } catch (IOException e) {
+                logger.error("Failed to join recorded trades: {}", e.getMessage());
+                sink.error(e);
+              }
+              return cursor;
+            },
+            RecordedTradeJoin::close)
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    int pending = 0;
+    for (SymbolJoin symbolJoin : symbols.values()) {
+      synchronized (symbolJoin) {
+        pending += symbolJoin.pending.size();
+      }
+    }
+    stats.put("enriched", enriched.sum());
+    stats.put("unquoted", unquoted.sum());
+    stats.put("timedOut", timedOut.sum());
+    stats.put("overflowed", overflowed.sum());
+    stats.put("pending", pending);
+    return stats;
+  }
+}
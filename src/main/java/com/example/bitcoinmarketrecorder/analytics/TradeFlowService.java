@@ -0,0 +1,154 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.BarProperties;
+import com.example.bitcoinmarketrecorder.config.TradeFlowProperties;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 銘柄ごとに約定の移動窓を複数の期間で持ち、売買の偏りや実現ボラティリティを常に最新に保つ。
+ *
+ * <p>窓は取引所の約定時刻で区切る。約定が途絶えた銘柄は、参照した時点で最後の約定からの経過時間の分だけ窓を進める。
+ */
+@Service
+public class TradeFlowService implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(TradeFlowService.class);
+  // 約定の多い銘柄で最初の数秒に配列を広げ直さないための初期容量
+  private static final int INITIAL_CAPACITY = 1024;
+
+  @Autowired private TradeFlowProperties tradeFlowProperties;
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, SymbolFlow> symbols = new ConcurrentHashMap<>();
+
+  /** 1銘柄分の窓。 */
+  private static class SymbolFlow {
+    private final TradeFlowWindow[] windows;
+    private final String[] labels;
+    private long maxEventTime = Long.MIN_VALUE;
+    private long lastArrival;
+
+    SymbolFlow(TradeFlowWindow[] windows, String[] labels) {
+      this.windows = windows;
+      this.labels = labels;
+    }
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!tradeFlowProperties.isEnabled()
+        || trade.getTimestamp() == null
+        || trade.getPrice() == null
+        || trade.getSize() == null) {
+      return;
+    }
+    SymbolFlow flow =
+        symbols.computeIfAbsent(
+            SymbolKey.of(trade.getExchange(), trade.getSymbol()), k -> create());
+    long timestamp = trade.getTimestamp().toEpochMilli();
+    double price = trade.getPrice().doubleValue();
+    double size = trade.getSize().doubleValue();
+    int side = "BUY".equals(trade.getSide()) ? 1 : "SELL".equals(trade.getSide()) ? -1 : 0;
+    synchronized (flow) {
+      flow.maxEventTime = Math.max(flow.maxEventTime, timestamp);
+      flow.lastArrival = System.currentTimeMillis();
+      for (TradeFlowWindow window : flow.windows) {
+        window.add(timestamp, price, size, side);
+      }
+    }
+  }
+
+  private SymbolFlow create() {
+    List<Duration> horizons = tradeFlowProperties.getHorizons();
+    TradeFlowWindow[] windows = new TradeFlowWindow[horizons.size()];
+    String[] labels = new String[horizons.size()];
+    for (int i = 0; i < windows.length; i++) {
+      windows[i] = new TradeFlowWindow(horizons.get(i).toMillis(), INITIAL_CAPACITY);
+      labels[i] = BarProperties.label(horizons.get(i));
+    }
+    return new SymbolFlow(windows, labels);
+  }
+
+  /** 1銘柄の期間ごとの集計値。 */
+  public Optional<Map<String, Object>> getSnapshot(String exchange, String symbol) {
+    SymbolFlow flow = symbols.get(SymbolKey.of(exchange, symbol));
+    if (flow == null) {
+      return Optional.empty();
+    }
+    return Optional.of(snapshot(flow, System.currentTimeMillis()));
+  }
+
+  /** 全銘柄の集計値。 */
+  public Map<String, Object> getSnapshots() {
+    long now = System.currentTimeMillis();
+    Map<String, Object> snapshots = new TreeMap<>();
+    for (Map.Entry<String, SymbolFlow> entry : symbols.entrySet()) {
+      snapshots.put(entry.getKey(), snapshot(entry.getValue(), now));
+    }
+    return snapshots;
+  }
+
+  private static Map<String, Object> snapshot(SymbolFlow flow, long now) {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    synchronized (flow) {
+      // 取引所と手元の時計のずれに影響されないよう、最後の約定からの経過時間だけ進める
+      long eventTime = flow.maxEventTime + Math.max(0, now - flow.lastArrival);
+      snapshot.put("timestamp", eventTime);
+      for (int i = 0; i < flow.windows.length; i++) {
+        TradeFlowWindow window = flow.windows[i];
+        window.evict(eventTime - window.getHorizonMs());
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trades", window.getCount());
+        stats.put("tradeRate", window.getTradeRate());
+        stats.put("buyVolume", window.getBuyVolume());
+        stats.put("sellVolume", window.getSellVolume());
+        stats.put("imbalance", window.getImbalance());
+        stats.put("averageSize", window.getAverageSize());
+        stats.put("maxSize", window.getMaxSize());
+        stats.put("realizedVolatility", window.getRealizedVolatility());
+        snapshot.put(flow.labels[i], stats);
+      }
+    }
+    return snapshot;
+  }
+
+  @Scheduled(fixedDelayString = "${trade-flow.publish-interval-ms:1000}")
+  public void publish() {
+    if (!tradeFlowProperties.isEnabled() || !tradeFlowProperties.isPublishEnabled()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, SymbolFlow> entry : symbols.entrySet()) {
+      String key = entry.getKey();
+      try {
+        redisPublisherService.publish(
+            key,
+            tradeFlowProperties.getChannelPrefix() + ":" + key,
+            objectMapper.writeValueAsString(snapshot(entry.getValue(), now)));
+      } catch (JsonProcessingException e) {
+        logger.error("Failed to serialize trade flow for {}: {}", key, e.getMessage());
+      } catch (Exception e) {
+        logger.error("Failed to publish trade flow for {}: {}", key, e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+/**
+ * 1銘柄・1期間分の約定の移動窓。
+ *
+ * <p>約定はプリミティブ配列のリングに持ち、合計値は追加・削除のたびに差分で更新する（どちらも償却O(1)）。最大の約定数量は
+ * 単調減少の両端キューで求める。実現ボラティリティは連続する約定の対数収益率の二乗和の平方根で、窓の先頭の約定の収益率は
+ * 窓の外の直前の約定との間のもの。窓が空になった時点で合計値を0に戻し、浮動小数点の誤差をためない。スレッドセーフではない。
+ */
+public class TradeFlowWindow {
+
+  private final long horizonMs;
+
+  // 約定のリング。連番sの約定は位置(s & mask)にある
+  private long[] timestamps;
+  private double[] sizes;
+  private double[] signedSizes;
+  private double[] squaredReturns;
+  private int mask;
+  private long headSeq;
+  private long tailSeq;
+
+  // 最大数量の候補（連番）。数量の降順に並ぶ
+  private long[] maxCandidates;
+  private long maxHead;
+  private long maxTail;
+
+  private double totalSize;
+  private double buyVolume;
+  private double sellVolume;
+  private double sumSquaredReturns;
+  private double lastPrice = Double.NaN;
+
+  public TradeFlowWindow(long horizonMs, int initialCapacity) {
+    this.horizonMs = horizonMs;
+    int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    timestamps = new long[capacity];
+    sizes = new double[capacity];
+    signedSizes = new double[capacity];
+    squaredReturns = new double[capacity];
+    maxCandidates = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  /**
+   * 約定を加え、期間より古い約定を捨てる。
+   *
+   * @param side 買いは1、売りは-1、不明は0
+   */
+  public void add(long timestamp, double price, double size, int side) {
+    evict(timestamp - horizonMs);
+    if (tailSeq - headSeq == timestamps.length) {
+      grow();
+    }
+    double squaredReturn = 0;
+    if (lastPrice > 0 && price > 0) {
+      double logReturn = Math.log(price / lastPrice);
+      squaredReturn = logReturn * logReturn;
+    }
+    lastPrice = price;
+
+    int position = (int) (tailSeq & mask);
+    timestamps[position] = timestamp;
+    sizes[position] = size;
+    signedSizes[position] = side * size;
+    squaredReturns[position] = squaredReturn;
+    totalSize += size;
+    if (side > 0) {
+      buyVolume += size;
+    } else if (side < 0) {
+      sellVolume += size;
+    }
+    sumSquaredReturns += squaredReturn;
+
+    while (maxTail > maxHead && sizeAt(maxCandidates[(int) ((maxTail - 1) & mask)]) <= size) {
+      maxTail--;
+    }
+    maxCandidates[(int) (maxTail & mask)] = tailSeq;
+    maxTail++;
+    tailSeq++;
+  }
+
+  /** タイムスタンプが{@code cutoff}より前の約定を捨てる。 */
+  public void evict(long cutoff) {
+    while (headSeq < tailSeq) {
+      int position = (int) (headSeq & mask);
+      if (timestamps[position] >= cutoff) {
+        break;
+      }
+      totalSize -= sizes[position];
+      double signedSize = signedSizes[position];
+      if (signedSize > 0) {
+        buyVolume -= signedSize;
+      } else if (signedSize < 0) {
+        sellVolume += signedSize;
+      }
+      sumSquaredReturns -= squaredReturns[position];
+      if (maxTail > maxHead && maxCandidates[(int) (maxHead & mask)] == headSeq) {
+        maxHead++;
+      }
+      headSeq++;
+    }
+    if (headSeq == tailSeq) {
+      totalSize = 0;
+      buyVolume = 0;
+      sellVolume = 0;
+      sumSquaredReturns = 0;
+    }
+  }
+
+  private double sizeAt(long seq) {
+    return sizes[(int) (seq & mask)];
+  }
+
+  private void grow() {
+    long[] oldTimestamps = timestamps;
+    double[] oldSizes = sizes;
+    double[] oldSignedSizes = signedSizes;
+    double[] oldSquaredReturns = squaredReturns;
+    long[] oldMaxCandidates = maxCandidates;
+    int oldMask = mask;
+    allocate(timestamps.length * 2);
+    for (long seq = headSeq; seq < tailSeq; seq++) {
+      int from = (int) (seq & oldMask);
+      int to = (int) (seq & mask);
+      timestamps[to] = oldTimestamps[from];
+      sizes[to] = oldSizes[from];
+      signedSizes[to] = oldSignedSizes[from];
+      squaredReturns[to] = oldSquaredReturns[from];
+    }
+    for (long i = maxHead; i < maxTail; i++) {
+      maxCandidates[(int) (i & mask)] = oldMaxCandidates[(int) (i & oldMask)];
+    }
+  }
+
+  public long getHorizonMs() {
+    return horizonMs;
+  }
+
+  public int getCount() {
+    return (int) (tailSeq - headSeq);
+  }
+
+  public double getBuyVolume() {
+    return Math.max(0, buyVolume);
+  }
+
+  public double getSellVolume() {
+    return Math.max(0, sellVolume);
+  }
+
+  /** 買いと売りの出来高の差を合計で割った値（-1〜1）。約定がなければ0。 */
+  public double getImbalance() {
+    double buy = getBuyVolume();
+    double sell = getSellVolume();
+    return buy + sell > 0 ? (buy - sell) / (buy + sell) : 0;
+  }
+
+  /** 1秒あたりの約定回数。 */
+  public double getTradeRate() {
+    return getCount() * 1000.0 / horizonMs;
+  }
+
+  public double getAverageSize() {
+    int count = getCount();
+    return count > 0 ? Math.max(0, totalSize) / count : 0;
+  }
+
+  public double getMaxSize() {
+    return maxTail > maxHead ? sizeAt(maxCandidates[(int) (maxHead & mask)]) : 0;
+  }
+
+  /** 窓内の対数収益率の二乗和の平方根（年率換算しない）。 */
+  public double getRealizedVolatility() {
+    return Math.sqrt(Math.max(0, sumSquaredReturns));
+  }
+}
@@ -0,0 +1,139 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.time.Instant;
+
+/**
+ * 1銘柄分の約定と最良気配のas-of結合。約定の時刻以前で最も新しい気配を付ける。
+ *
+ * <p>直近の気配をプリミティブ配列のリングに時刻順に持ち、約定の時刻で二分探索するため、少し前後して届いた約定にも
+ * その時点の気配を付けられる。向きはLee-Readyの方法で推定する（仲値より上なら買い、下なら売り、仲値ちょうどか気配が
+ * ない場合は直前の約定との価格の比較、同値なら直前の推定を引き継ぐ）。配信中の結合と記録ファイルの結合で共通に使う。
+ * スレッドセーフではない。
+ */
+class TradeQuoteJoin {
+
+  private final long[] timestamps;
+  private final double[] bids;
+  private final double[] asks;
+  private final long maxQuoteAgeMicros;
+  // 次に書く位置
+  private int head;
+  private int size;
+  private double lastPrice = Double.NaN;
+  private String lastInferredSide = "";
+
+  /**
+   * @param capacity 保持する気配の件数
+   * @param maxQuoteAgeMs 約定の時刻よりこれ以上古い気配は付けない
+   */
+  TradeQuoteJoin(int capacity, long maxQuoteAgeMs) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid quote history: " + capacity);
+    }
+    this.timestamps = new long[capacity];
+    this.bids = new double[capacity];
+    this.asks = new double[capacity];
+    this.maxQuoteAgeMicros = maxQuoteAgeMs * 1000;
+  }
+
+  /** 気配を足す。直前の気配より古い時刻の場合は直前の時刻に揃える。 */
+  void addQuote(Instant timestamp, double bid, double ask) {
+    long micros = micros(timestamp);
+    if (size > 0) {
+      micros = Math.max(micros, latestQuoteMicros());
+    }
+    timestamps[head] = micros;
+    bids[head] = bid;
+    asks[head] = ask;
+    head = (head + 1) % timestamps.length;
+    size = Math.min(size + 1, timestamps.length);
+  }
+
+  /** 最も新しい気配の時刻（エポックマイクロ秒）。気配がない場合はLong.MIN_VALUE。 */
+  long latestQuoteMicros() {
+    if (size == 0) {
+      return Long.MIN_VALUE;
+    }
+    return timestamps[(head - 1 + timestamps.length) % timestamps.length];
+  }
+
+  /** 時刻以前で最も新しい気配のリング上の位置。ない場合は-1。 */
+  private int asOf(long micros) {
+    int lo = 0;
+    int hi = size;
+    // 古い順にi番目の気配の時刻がmicros以下となる最大のiを探す
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (timestamps[physical(mid)] <= micros) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo == 0 ? -1 : physical(lo - 1);
+  }
+
+  private int physical(int i) {
+    return (head - size + i + timestamps.length) % timestamps.length;
+  }
+
+  /** 約定に気配を付ける。 */
+  EnrichedTrade enrich(
+      String exchange,
+      String symbol,
+      String tradeId,
+      double price,
+      double size,
+      String side,
+      Instant timestamp) {
+    long micros = micros(timestamp);
+    int quote = asOf(micros);
+    if (quote >= 0 && micros - timestamps[quote] > maxQuoteAgeMicros) {
+      quote = -1;
+    }
+    double bid = quote >= 0 ? bids[quote] : Double.NaN;
+    double ask = quote >= 0 ? asks[quote] : Double.NaN;
+    String inferredSide = inferSide(price, bid, ask);
+    lastPrice = price;
+    lastInferredSide = inferredSide;
+    return new EnrichedTrade(
+        exchange,
+        symbol,
+        tradeId,
+        price,
+        size,
+        side == null ? "" : side.toUpperCase(),
+        timestamp,
+        bid,
+        ask,
+        quote >= 0 ? instant(timestamps[quote]) : null,
+        inferredSide);
+  }
+
+  private String inferSide(double price, double bid, double ask) {
+    double mid = (bid + ask) / 2;
+    if (price > mid) {
+      return "BUY";
+    }
+    if (price < mid) {
+      return "SELL";
+    }
+    // 仲値ちょうど、または気配がない（NaNとの比較はfalse）場合はティックルール
+    if (price > lastPrice) {
+      return "BUY";
+    }
+    if (price < lastPrice) {
+      return "SELL";
+    }
+    return lastInferredSide;
+  }
+
+  static long micros(Instant instant) {
+    return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1000;
+  }
+
+  private static Instant instant(long micros) {
+    return Instant.ofEpochSecond(
+        Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000);
+  }
+}
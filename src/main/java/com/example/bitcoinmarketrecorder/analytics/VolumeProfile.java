@@ -0,0 +1,327 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 価格帯別出来高（ボリュームプロファイル）。価格を{@code bucketSize}ごとの帯に区切り、帯ごとの買い・売りの出来高を持つ。
+ * 売買の向きが分からない約定は向き不明の出来高として数え、帯の出来高に含める。
+ *
+ * <p>帯の番号は{@code floor(価格 / bucketSize)}で、出来高は帯の番号を添字とするプリミティブ配列に足す。価格の範囲が広がった
+ * 場合は配列を倍に広げ、最大{@code maxBuckets}個を超える価格の出来高は数えずに{@link #getDroppedVolume}に足す。同じ帯の
+ * 大きさのプロファイル同士は{@link #merge}で足し合わせられる。スレッドセーフではない。
+ */
+public class VolumeProfile {
+
+  private static final int INITIAL_BUCKETS = 64;
+
+  private final double bucketSize;
+  private final int maxBuckets;
+  private double[] buy = new double[0];
+  private double[] sell = new double[0];
+  private double[] unknown = new double[0];
+  // buy[0]・sell[0]の帯の番号
+  private long offset;
+  private long minKey = Long.MAX_VALUE;
+  private long maxKey = Long.MIN_VALUE;
+  private long tradeCount;
+  private double droppedVolume;
+
+  /**
+   * @param bucketSize 価格帯の幅
+   * @param maxBuckets 帯の数の上限
+   */
+  public VolumeProfile(double bucketSize, int maxBuckets) {
+    if (!(bucketSize > 0) || maxBuckets < 1) {
+      throw new IllegalArgumentException(
+          "Invalid volume profile: bucketSize=" + bucketSize + ", maxBuckets=" + maxBuckets);
+    }
+    this.bucketSize = bucketSize;
+    this.maxBuckets = maxBuckets;
+  }
+
+  /**
+   * 約定を1件足す。
+   *
+   * @param side BUY/SELL。それ以外（nullを含む）は向き不明として数える
+   */
+  public void add(double price, double size, String side) {
+    if (!(price > 0) || !Double.isFinite(size)) {
+      return;
+    }
+    int index = index(key(price));
+    if (index < 0) {
+      droppedVolume += size;
+      return;
+    }
+    if ("BUY".equalsIgnoreCase(side)) {
+      buy[index] += size;
+    } else if ("SELL".equalsIgnoreCase(side)) {
+      sell[index] += size;
+    } else {
+      unknown[index] += size;
+    }
+    tradeCount++;
+  }
+
+  private long key(double price) {
+    return (long) Math.floor(price / bucketSize);
+  }
+
+  /** 帯の番号の添字。必要なら配列を広げる。上限を超える場合は-1。 */
+  private int index(long key) {
+    if (key < offset || key >= offset + buy.length) {
+      long low = Math.min(key, minKey);
+      long high = Math.max(key, maxKey);
+      if (high - low >= maxBuckets) {
+        return -1;
+      }
+      grow(low, high);
+    }
+    minKey = Math.min(minKey, key);
+    maxKey = Math.max(maxKey, key);
+    return (int) (key - offset);
+  }
+
+  /** [low, high]の帯が収まるよう、倍に広げた配列の中央に移す。 */
+  private void grow(long low, long high) {
+    int length = Math.max(INITIAL_BUCKETS, buy.length);
+    while (length < high - low + 1) {
+      length *= 2;
+    }
+    length = Math.min(length, maxBuckets);
+    long newOffset = low - (length - (high - low + 1)) / 2;
+    double[] newBuy = new double[length];
+    double[] newSell = new double[length];
+    double[] newUnknown = new double[length];
+    if (minKey <= maxKey) {
+      int from = (int) (minKey - offset);
+      int to = (int) (minKey - newOffset);
+      int count = (int) (maxKey - minKey + 1);
+      System.arraycopy(buy, from, newBuy, to, count);
+      System.arraycopy(sell, from, newSell, to, count);
+      System.arraycopy(unknown, from, newUnknown, to, count);
+    }
+    buy = newBuy;
+    sell = newSell;
+    unknown = newUnknown;
+    offset = newOffset;
+  }
+
+  /** 同じ帯の幅のプロファイルを足し合わせる。 */
+  public void merge(VolumeProfile other) {
+    if (other.bucketSize != bucketSize) {
+      throw new IllegalArgumentException(
+          "Cannot merge volume profiles with bucket sizes "
+              + bucketSize
+              + " and "
+              + other.bucketSize);
+    }
+    for (long key = other.minKey; key <= other.maxKey; key++) {
+      int from = (int) (key - other.offset);
+      addToKey(key, other.buy[from], other.sell[from], other.unknown[from]);
+    }
+    tradeCount += other.tradeCount;
+    droppedVolume += other.droppedVolume;
+  }
+
+  private void addToKey(long key, double buyVolume, double sellVolume, double unknownVolume) {
+    if (buyVolume == 0 && sellVolume == 0 && unknownVolume == 0) {
+      return;
+    }
+    int index = index(key);
+    if (index < 0) {
+      droppedVolume += buyVolume + sellVolume + unknownVolume;
+      return;
+    }
+    buy[index] += buyVolume;
+    sell[index] += sellVolume;
+    unknown[index] += unknownVolume;
+  }
+
+  /** 空に戻す。配列は使い回す。 */
+  public void clear() {
+    if (minKey <= maxKey) {
+      int from = (int) (minKey - offset);
+      int to = (int) (maxKey - offset) + 1;
+      Arrays.fill(buy, from, to, 0);
+      Arrays.fill(sell, from, to, 0);
+      Arrays.fill(unknown, from, to, 0);
+    }
+    minKey = Long.MAX_VALUE;
+    maxKey = Long.MIN_VALUE;
+    tradeCount = 0;
+    droppedVolume = 0;
+  }
+
+  public double getBuyVolume() {
+    double total = 0;
+    for (long key = minKey; key <= maxKey; key++) {
+      total += buy[(int) (key - offset)];
+    }
+    return total;
+  }
+
+  public double getSellVolume() {
+    double total = 0;
+    for (long key = minKey; key <= maxKey; key++) {
+      total += sell[(int) (key - offset)];
+    }
+    return total;
+  }
+
+  /** 売買の向きが分からない約定の出来高。 */
+  public double getUnknownVolume() {
+    double total = 0;
+    for (long key = minKey; key <= maxKey; key++) {
+      total += unknown[(int) (key - offset)];
+    }
+    return total;
+  }
+
+  /** 向き不明を含む全体の出来高。 */
+  public double getVolume() {
+    double total = 0;
+    for (long key = minKey; key <= maxKey; key++) {
+      total += volume(key);
+    }
+    return total;
+  }
+
+  /** 出来高が最も多い帯の下端の価格（POC）。空の場合はNaN。 */
+  public double getPointOfControl() {
+    long poc = pocKey();
+    return poc == Long.MIN_VALUE ? Double.NaN : poc * bucketSize;
+  }
+
+  private long pocKey() {
+    long poc = Long.MIN_VALUE;
+    double best = 0;
+    for (long key = minKey; key <= maxKey; key++) {
+      double volume = volume(key);
+      if (volume > best) {
+        best = volume;
+        poc = key;
+      }
+    }
+    return poc;
+  }
+
+  private double volume(long key) {
+    int i = (int) (key - offset);
+    return buy[i] + sell[i] + unknown[i];
+  }
+
+  /**
+   * POCから出来高の多い側へ帯を広げ、全体の{@code ratio}以上を含む価格帯（バリューエリア）。
+   *
+   * @return {下端の価格, 上端の価格}。空の場合はnull
+   */
+  public double[] getValueArea(double ratio) {
+    long poc = pocKey();
+    if (poc == Long.MIN_VALUE) {
+      return null;
+    }
+    double target = getVolume() * ratio;
+    long low = poc;
+    long high = poc;
+    double covered = volume(poc);
+    while (covered < target && (low > minKey || high < maxKey)) {
+      double below = low > minKey ? volume(low - 1) : -1;
+      double above = high < maxKey ? volume(high + 1) : -1;
+      if (above >= below) {
+        covered += volume(++high);
+      } else {
+        covered += volume(--low);
+      }
+    }
+    return new double[] {low * bucketSize, (high + 1) * bucketSize};
+  }
+
+  /**
+   * CSVの1列に収まる（カンマを含まない）文字列。出来高のある帯だけを{@code 帯の番号:買い:売り}の空白区切りで書き、
+   * 向き不明の出来高がある帯は{@code :向き不明}を続ける。{@link #decode}で元に戻せる。
+   */
+  public String encode() {
+    StringBuilder out = new StringBuilder();
+    for (long key = minKey; key <= maxKey; key++) {
+      int i = (int) (key - offset);
+      if (volume(key) == 0) {
+        continue;
+      }
+      if (out.length() > 0) {
+        out.append(' ');
+      }
+      out.append(key)
+          .append(':')
+          .append(CsvValues.number(buy[i]))
+          .append(':')
+          .append(CsvValues.number(sell[i]));
+      if (unknown[i] != 0) {
+        out.append(':').append(CsvValues.number(unknown[i]));
+      }
+    }
+    return out.toString();
+  }
+
+  /** {@link #encode}の文字列から復元する。形式が正しくない場合はIllegalArgumentException。 */
+  public static VolumeProfile decode(
+      String encoded, double bucketSize, long tradeCount, int maxBuckets) {
+    VolumeProfile profile = new VolumeProfile(bucketSize, maxBuckets);
+    if (!encoded.isEmpty()) {
+      try {
+        for (String bucket : encoded.split(" ")) {
+          String[] parts = bucket.split(":");
+          if (parts.length != 3 && parts.length != 4) {
+            throw new IllegalArgumentException("Malformed volume profile: " + encoded);
+          }
+          profile.addToKey(
+              Long.parseLong(parts[0]),
+              Double.parseDouble(parts[1]),
+              Double.parseDouble(parts[2]),
+              parts.length == 4 ? Double.parseDouble(parts[3]) : 0);
+        }
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Malformed volume profile: " + encoded, e);
+      }
+    }
+    profile.tradeCount = tradeCount;
+    return profile;
+  }
+
+  /** 価格の昇順の帯ごとの出来高。出来高のない帯は省く。 */
+  public List<Map<String, Object>> getLevels() {
+    List<Map<String, Object>> levels = new ArrayList<>();
+    for (long key = minKey; key <= maxKey; key++) {
+      int i = (int) (key - offset);
+      double volume = volume(key);
+      if (volume == 0) {
+        continue;
+      }
+      Map<String, Object> level = new LinkedHashMap<>();
+      level.put("price", key * bucketSize);
+      level.put("buy", buy[i]);
+      level.put("sell", sell[i]);
+      level.put("unknown", unknown[i]);
+      level.put("volume", volume);
+      levels.add(level);
+    }
+    return levels;
+  }
+
+  public double getBucketSize() {
+    return bucketSize;
+  }
+
+  public long getTradeCount() {
+    return tradeCount;
+  }
+
+  /** 帯の数の上限を超えて数えなかった出来高。約定を足した場合も、プロファイルを足し合わせた場合も出来高で数える。 */
+  public double getDroppedVolume() {
+    return droppedVolume;
+  }
+}
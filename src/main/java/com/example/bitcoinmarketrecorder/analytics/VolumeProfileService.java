@@ -0,0 +1,252 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.config.VolumeProfileProperties;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 銘柄ごとに、現在のセッションの価格帯別出来高（{@link VolumeProfile}）を約定のたびに更新する。
+ *
+ * <p>セッションは約定の時刻で{@code volume-profile.session-length}ごとに区切り、新しいセッションの約定が届いた時点で
+ * 空に戻す。あわせてUTCの正時で区切った1時間ごとのプロファイルを持ち、終わった時間帯は
+ * {@code volume-profile.close-delay-ms}待ってからCSVに記録する。記録したプロファイルは日をまたいで足し合わせられる。
+ */
+@Service
+public class VolumeProfileService implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(VolumeProfileService.class);
+
+  @Autowired private VolumeProfileProperties volumeProfileProperties;
+
+  @Autowired private DataPersistenceService dataPersistenceService;
+
+  @Autowired private RecordedDataCatalog recordedDataCatalog;
+
+  private final Map<String, SymbolProfiles> symbols = new ConcurrentHashMap<>();
+  private final LongAdder late = new LongAdder();
+  private final LongAdder persisted = new LongAdder();
+
+  /** 1銘柄分のプロファイル。 */
+  private static class SymbolProfiles {
+    private final String exchange;
+    private final String symbol;
+    private final VolumeProfile session;
+    private long sessionStart = Long.MIN_VALUE;
+    // 現在と直前の時間帯
+    private final HourlySlots<VolumeProfile> slots;
+
+    SymbolProfiles(
+        String exchange, String symbol, VolumeProfile session, HourlySlots<VolumeProfile> slots) {
+      this.exchange = exchange;
+      this.symbol = symbol;
+      this.session = session;
+      this.slots = slots;
+    }
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!volumeProfileProperties.isEnabled()
+        || trade.getTimestamp() == null
+        || trade.getPrice() == null
+        || trade.getSize() == null) {
+      return;
+    }
+    SymbolProfiles profiles = profiles(trade.getExchange(), trade.getSymbol());
+    long timestamp = trade.getTimestamp().toEpochMilli();
+    double price = trade.getPrice().doubleValue();
+    double size = trade.getSize().doubleValue();
+    synchronized (profiles) {
+      long sessionStart = sessionStart(timestamp);
+      if (sessionStart > profiles.sessionStart) {
+        profiles.session.clear();
+        profiles.sessionStart = sessionStart;
+      }
+      if (sessionStart == profiles.sessionStart) {
+        profiles.session.add(price, size, trade.getSide());
+      }
+      VolumeProfile hour = profiles.slots.get(timestamp, slot -> persist(profiles, slot));
+      if (hour == null) {
+        // 保持している範囲より古い
+        late.increment();
+        return;
+      }
+      hour.add(price, size, trade.getSide());
+    }
+  }
+
+  private long sessionStart(long timestamp) {
+    long length = Math.max(1, volumeProfileProperties.getSessionLength().toMillis());
+    long offset = volumeProfileProperties.getSessionOffset().toMillis();
+    return Math.floorDiv(timestamp - offset, length) * length + offset;
+  }
+
+  private SymbolProfiles profiles(String exchange, String symbol) {
+    return symbols.computeIfAbsent(
+        SymbolKey.of(exchange, symbol),
+        k ->
+            new SymbolProfiles(
+                exchange.toUpperCase(),
+                symbol,
+                newProfile(symbol),
+                new HourlySlots<>(2, () -> newProfile(symbol), VolumeProfile::clear)));
+  }
+
+  private VolumeProfile newProfile(String symbol) {
+    return new VolumeProfile(
+        volumeProfileProperties.bucketSize(symbol), volumeProfileProperties.getMaxBuckets());
+  }
+
+  /** 終わってから{@code volume-profile.close-delay-ms}過ぎた時間帯を記録する。 */
+  @Scheduled(fixedDelayString = "${volume-profile.flush-interval-ms:10000}")
+  public void closeHours() {
+    long now = System.currentTimeMillis();
+    for (SymbolProfiles profiles : symbols.values()) {
+      synchronized (profiles) {
+        profiles.slots.close(
+            now, volumeProfileProperties.getCloseDelayMs(), slot -> persist(profiles, slot));
+      }
+    }
+  }
+
+  private void persist(SymbolProfiles profiles, HourlySlots.Slot<VolumeProfile> slot) {
+    VolumeProfile profile = slot.getValue();
+    if (!volumeProfileProperties.isPersistEnabled() || profile.getTradeCount() == 0) {
+      return;
+    }
+    Instant start = slot.getStart();
+    String row =
+        String.join(
+            ",",
+            profiles.exchange,
+            profiles.symbol,
+            start.toString(),
+            slot.getEnd().toString(),
+            CsvValues.number(profile.getBucketSize()),
+            Long.toString(profile.getTradeCount()),
+            CsvValues.number(profile.getVolume()),
+            CsvValues.number(profile.getBuyVolume()),
+            CsvValues.number(profile.getSellVolume()),
+            CsvValues.number(profile.getPointOfControl()),
+            profile.encode());
+    dataPersistenceService.saveRows(RecordedStream.VOLUME_PROFILES, List.of(row));
+    persisted.increment();
+  }
+
+  /** 現在のセッションのプロファイル。 */
+  public Optional<Map<String, Object>> getSnapshot(String exchange, String symbol) {
+    SymbolProfiles profiles = symbols.get(SymbolKey.of(exchange, symbol));
+    if (profiles == null) {
+      return Optional.empty();
+    }
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    synchronized (profiles) {
+      snapshot.put("symbol", profiles.exchange + ":" + profiles.symbol);
+      Instant start = Instant.ofEpochMilli(profiles.sessionStart);
+      snapshot.put("sessionStart", start.toString());
+      snapshot.put(
+          "sessionEnd", start.plus(volumeProfileProperties.getSessionLength()).toString());
+      snapshot.putAll(summary(profiles.session));
+    }
+    return Optional.of(snapshot);
+  }
+
+  /** CSVに記録した1時間ごとのプロファイルのうち、時間帯が[from, to)に収まるものを足し合わせる。 */
+  public Map<String, Object> getPersistedProfile(
+      String exchange, String symbol, Instant from, Instant to) throws IOException {
+    VolumeProfile merged = null;
+    int hours = 0;
+    int columnCount = RecordedStream.VOLUME_PROFILES.getColumns().size();
+    for (Segment segment : recordedDataCatalog.list(RecordedStream.VOLUME_PROFILES, from, to)) {
+      try (BufferedReader reader =
+          Files.newBufferedReader(segment.getPath(), StandardCharsets.UTF_8)) {
+        reader.readLine();
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] columns = line.split(",", -1);
+          if (columns.length != columnCount
+              || !columns[0].equalsIgnoreCase(exchange)
+              || !columns[1].equals(symbol)) {
+            continue;
+          }
+          Instant start = RecordedDataCatalog.parseTimestamp(columns[2]);
+          Instant end = RecordedDataCatalog.parseTimestamp(columns[3]);
+          if (start == null || end == null || start.isBefore(from) || end.isAfter(to)) {
+            continue;
+          }
+          try {
+            VolumeProfile profile =
+                VolumeProfile.decode(
+                    columns[10],
+                    Double.parseDouble(columns[4]),
+                    Long.parseLong(columns[5]),
+                    volumeProfileProperties.getMaxBuckets());
+            if (merged == null) {
+              merged = profile;
+            } else {
+              merged.merge(profile);
+            }
+            hours++;
+          } catch (IllegalArgumentException e) {
+            logger.warn("Skipping volume profile in {}: {}", segment.getName(), e.getMessage());
+          }
+        }
+      }
+    }
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("symbol", SymbolKey.of(exchange, symbol));
+    result.put("from", from.toString());
+    result.put("to", to.toString());
+    result.put("hours", hours);
+    result.putAll(summary(merged != null ? merged : newProfile(symbol)));
+    return result;
+  }
+
+  private Map<String, Object> summary(VolumeProfile profile) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("bucketSize", profile.getBucketSize());
+    summary.put("tradeCount", profile.getTradeCount());
+    summary.put("volume", profile.getVolume());
+    summary.put("buyVolume", profile.getBuyVolume());
+    summary.put("sellVolume", profile.getSellVolume());
+    summary.put("unknownVolume", profile.getUnknownVolume());
+    double[] valueArea = profile.getValueArea(volumeProfileProperties.getValueAreaRatio());
+    if (valueArea != null) {
+      summary.put("pointOfControl", profile.getPointOfControl());
+      summary.put("valueAreaLow", valueArea[0]);
+      summary.put("valueAreaHigh", valueArea[1]);
+    }
+    summary.put("droppedVolume", profile.getDroppedVolume());
+    summary.put("levels", profile.getLevels());
+    return summary;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("symbols", symbols.size());
+    stats.put("late", late.sum());
+    stats.put("persisted", persisted.sum());
+    return stats;
+  }
+}
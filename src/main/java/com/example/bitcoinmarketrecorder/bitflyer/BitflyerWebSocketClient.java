@@ -1,5 +1,6 @@
 package com.example.bitcoinmarketrecorder.bitflyer;
 
+import com.example.bitcoinmarketrecorder.analytics.BookAnalyticsService;
 import com.example.bitcoinmarketrecorder.bitflyer.model.BitflyerBoard;
 import com.example.bitcoinmarketrecorder.bitflyer.model.BitflyerExecution;
 import com.example.bitcoinmarketrecorder.model.BestBidAsk;
@@ -7,6 +8,7 @@ import com.example.bitcoinmarketrecorder.model.MarketBoard;
 import com.example.bitcoinmarketrecorder.model.Trade;
 import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
 import com.example.bitcoinmarketrecorder.service.ExchSimService;
+import com.example.bitcoinmarketrecorder.service.MarketDataDispatcher;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -51,6 +53,10 @@ public class BitflyerWebSocketClient {
   private final ObjectMapper objectMapper = new ObjectMapper();
   private final DataPersistenceService persistenceService;
   private final ExchSimService exchSimService;
+  private final MarketDataDispatcher marketDataDispatcher;
+
+  @Autowired private BookAnalyticsService bookAnalyticsService;
+
   private Disposable connectionDisposable;
   private final AtomicLong jsonRpcId = new AtomicLong(1);
 
@@ -67,9 +73,13 @@ public class BitflyerWebSocketClient {
   private final Map<String, MarketBoard> latestBoards = new ConcurrentHashMap<>();
 
   @Autowired
-  public BitflyerWebSocketClient(DataPersistenceService persistenceService, ExchSimService exchSimService) {
+  public BitflyerWebSocketClient(
+      DataPersistenceService persistenceService,
+      ExchSimService exchSimService,
+      MarketDataDispatcher marketDataDispatcher) {
     this.persistenceService = persistenceService;
     this.exchSimService = exchSimService;
+    this.marketDataDispatcher = marketDataDispatcher;
   }
 
   @PostConstruct
@@ -214,6 +224,7 @@ public class BitflyerWebSocketClient {
     List<Trade> trades =
         executions.stream().map(exec -> convertToDomainTrade(exec, symbol)).toList();
     persistenceService.saveTrades(trades);
+    marketDataDispatcher.dispatchTrades(trades);
     
     // Send trades to ExchSim
     trades.forEach(trade -> exchSimService.processTradeData(trade));
@@ -226,6 +237,7 @@ public class BitflyerWebSocketClient {
     MarketBoard marketBoard = convertToDomainMarketBoard(board, symbol);
     latestBoards.put(symbol, marketBoard);
     persistenceService.saveMarketBoard(marketBoard);
+    marketDataDispatcher.dispatchMarketBoard(marketBoard);
     updateBestBidAsk(marketBoard);
     
     exchSimService.processMarketBoard(marketBoard);
@@ -252,6 +264,7 @@ public class BitflyerWebSocketClient {
     latestBoard.setTs(Instant.now());
 
     persistenceService.saveMarketBoard(latestBoard);
+    marketDataDispatcher.dispatchMarketBoard(latestBoard);
     updateBestBidAsk(latestBoard);
     
     exchSimService.processMarketBoard(latestBoard);
@@ -315,7 +328,9 @@ public class BitflyerWebSocketClient {
       bestBidAsk.setBestAsk(board.getAsks().get(0).getPrice());
       bestBidAsk.setBestAskVolume(board.getAsks().get(0).getSize());
       bestBidAsk.setTimestamp(Instant.now());
+      bookAnalyticsService.apply(board, bestBidAsk);
       persistenceService.saveBestBidAsk(bestBidAsk);
+      marketDataDispatcher.dispatchBestBidAsk(bestBidAsk);
     }
   }
 
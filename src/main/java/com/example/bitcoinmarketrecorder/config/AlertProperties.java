@@ -0,0 +1,175 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "alerts")
+public class AlertProperties {
+
+  // 受信した約定・BBOごとに条件を判定するアラート
+  private boolean enabled = true;
+  // 発火したアラートを配信するRedisのチャンネル
+  private String channel = "alerts";
+  // 同じルールが再び発火するまでの間隔（ルールごとに上書きできる）
+  private Duration cooldown = Duration.ofMinutes(1);
+  // GET /api/analytics/alertsで返す直近のアラートの件数
+  private int historySize = 100;
+  private List<Rule> rules =
+      new ArrayList<>(
+          List.of(
+              new Rule("gmo_wide_spread", "SPREAD_BPS", "GMO:BTC", null, 10, null),
+              new Rule(
+                  "bitflyer_fx_fast_move",
+                  "MID_MOVE",
+                  "BITFLYER:FX_BTC_JPY",
+                  null,
+                  0.5,
+                  Duration.ofSeconds(10)),
+              new Rule(
+                  "bitflyer_gmo_crossed",
+                  "CROSSED_BOOK",
+                  "BITFLYER:BTC_JPY",
+                  "GMO:BTC",
+                  0,
+                  Duration.ofSeconds(5)),
+              new Rule(
+                  "bitflyer_fx_large_trade",
+                  "LARGE_TRADE",
+                  "BITFLYER:FX_BTC_JPY",
+                  null,
+                  10,
+                  null)));
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getChannel() {
+    return channel;
+  }
+
+  public void setChannel(String channel) {
+    this.channel = channel;
+  }
+
+  public Duration getCooldown() {
+    return cooldown;
+  }
+
+  public void setCooldown(Duration cooldown) {
+    this.cooldown = cooldown;
+  }
+
+  public int getHistorySize() {
+    return historySize;
+  }
+
+  public void setHistorySize(int historySize) {
+    this.historySize = historySize;
+  }
+
+  public List<Rule> getRules() {
+    return rules;
+  }
+
+  public void setRules(List<Rule> rules) {
+    this.rules = rules;
+  }
+
+  public static class Rule {
+    private String name;
+    // SPREAD_BPS, MID_MOVE, CROSSED_BOOK, LARGE_TRADE
+    private String type;
+    // <取引所>:<銘柄>
+    private String symbol;
+    // CROSSED_BOOKの相手の銘柄
+    private String otherSymbol;
+    // SPREAD_BPS: bps、MID_MOVE: %、CROSSED_BOOK: 交差の幅、LARGE_TRADE: 数量
+    private double threshold;
+    // MID_MOVE: 動きを見る時間、CROSSED_BOOK: 2銘柄の気配の時刻の差の上限
+    private Duration window;
+    // 省略した場合はalerts.cooldown
+    private Duration cooldown;
+
+    public Rule() {}
+
+    public Rule(
+        String name,
+        String type,
+        String symbol,
+        String otherSymbol,
+        double threshold,
+        Duration window) {
+      this.name = name;
+      this.type = type;
+      this.symbol = symbol;
+      this.otherSymbol = otherSymbol;
+      this.threshold = threshold;
+      this.window = window;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public void setType(String type) {
+      this.type = type;
+    }
+
+    public String getSymbol() {
+      return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+      this.symbol = symbol;
+    }
+
+    public String getOtherSymbol() {
+      return otherSymbol;
+    }
+
+    public void setOtherSymbol(String otherSymbol) {
+      this.otherSymbol = otherSymbol;
+    }
+
+    public double getThreshold() {
+      return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+      this.threshold = threshold;
+    }
+
+    public Duration getWindow() {
+      return window;
+    }
+
+    public void setWindow(Duration window) {
+      this.window = window;
+    }
+
+    public Duration getCooldown() {
+      return cooldown;
+    }
+
+    public void setCooldown(Duration cooldown) {
+      this.cooldown = cooldown;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "bars")
+public class BarProperties {
+
+  // 約定から足（OHLCV・VWAP・約定回数）を作る
+  private boolean enabled = true;
+  private List<Duration> intervals =
+      new ArrayList<>(
+          List.of(
+              Duration.ofSeconds(1),
+              Duration.ofMinutes(1),
+              Duration.ofMinutes(5),
+              Duration.ofHours(1)));
+  // 受信済みの最新の約定時刻からこの時間遅れて届いた約定までは足に含める
+  private long allowedLatenessMs = 1000;
+  // 約定が途絶えてからこの時間が過ぎたら、経過時間の分だけ時刻を進めて足を確定する
+  private long idleTimeoutMs = 5000;
+  private String channelPrefix = "bars";
+  // 確定した足をCSV（bars_yyyyMMdd_HH.csv）に記録する
+  private boolean persistEnabled = true;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public List<Duration> getIntervals() {
+    return intervals;
+  }
+
+  public void setIntervals(List<Duration> intervals) {
+    this.intervals = intervals;
+  }
+
+  public long getAllowedLatenessMs() {
+    return allowedLatenessMs;
+  }
+
+  public void setAllowedLatenessMs(long allowedLatenessMs) {
+    this.allowedLatenessMs = allowedLatenessMs;
+  }
+
+  public long getIdleTimeoutMs() {
+    return idleTimeoutMs;
+  }
+
+  public void setIdleTimeoutMs(long idleTimeoutMs) {
+    this.idleTimeoutMs = idleTimeoutMs;
+  }
+
+  public String getChannelPrefix() {
+    return channelPrefix;
+  }
+
+  public void setChannelPrefix(String channelPrefix) {
+    this.channelPrefix = channelPrefix;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+
+  /** 足の長さの表記（1s、1m、5m、1h、1d等）。 */
+  public static String label(Duration interval) {
+    long seconds = interval.getSeconds();
+    if (seconds > 0 && seconds % 86400 == 0) {
+      return seconds / 86400 + "d";
+    }
+    if (seconds > 0 && seconds % 3600 == 0) {
+      return seconds / 3600 + "h";
+    }
+    if (seconds > 0 && seconds % 60 == 0) {
+      return seconds / 60 + "m";
+    }
+    if (interval.getNano() == 0) {
+      return seconds + "s";
+    }
+    return interval.toMillis() + "ms";
+  }
+}
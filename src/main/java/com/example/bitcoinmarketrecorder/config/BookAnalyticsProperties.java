@@ -0,0 +1,59 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "book-analytics")
+public class BookAnalyticsProperties {
+
+  // 板の更新ごとに偏り・マイクロプライス・厚み加重の仲値・厚み・傾きを計算してBBOに付ける
+  private boolean enabled = true;
+  // 計算に使う板の段数（GMOは上位8段のみ受信する）
+  private int depth = 8;
+  // 厚みを数える仲値からの幅（bps）
+  private double bandBps = 10;
+  // 更新ごとにRedisへ配信する（book-analytics:<取引所>:<銘柄>）
+  private boolean publishEnabled = false;
+  private String channelPrefix = "book-analytics";
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public void setDepth(int depth) {
+    this.depth = depth;
+  }
+
+  public double getBandBps() {
+    return bandBps;
+  }
+
+  public void setBandBps(double bandBps) {
+    this.bandBps = bandBps;
+  }
+
+  public boolean isPublishEnabled() {
+    return publishEnabled;
+  }
+
+  public void setPublishEnabled(boolean publishEnabled) {
+    this.publishEnabled = publishEnabled;
+  }
+
+  public String getChannelPrefix() {
+    return channelPrefix;
+  }
+
+  public void setChannelPrefix(String channelPrefix) {
+    this.channelPrefix = channelPrefix;
+  }
+}
@@ -0,0 +1,120 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import com.example.bitcoinmarketrecorder.analytics.DepthHeatmap;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "depth-heatmap")
+public class DepthHeatmapProperties {
+
+  // 銘柄ごとの板の厚みのヒートマップ
+  private boolean enabled = true;
+  // 価格帯の取り方。RELATIVE（仲値からの乖離）またはABSOLUTE（価格）
+  private DepthHeatmap.Mode mode = DepthHeatmap.Mode.RELATIVE;
+  // RELATIVEの価格帯の幅（bps）
+  private double bucketBps = 5;
+  // ABSOLUTEの価格帯の幅（既定）
+  private double bucketSize = 1000;
+  // 銘柄ごとのABSOLUTEの価格帯の幅（キーは銘柄名。例: ETH_JPY=100）
+  private Map<String, Double> bucketSizes = new HashMap<>();
+  // 価格帯の数（1銘柄の1時間分の行列は 行数 × 3600000 / interval-ms × 4バイト）
+  private int rows = 100;
+  // 標本を取る間隔（1時間を割り切る値）
+  private long intervalMs = 1000;
+  // 受信した板を集計する最短の間隔。これより短い間隔で届いた板は集計しない
+  private long captureIntervalMs = 100;
+  // 最後に集計した板がこれより古い銘柄は標本を取らない
+  private long staleMs = 10000;
+  // 時間帯が終わったらCSV（depth_heatmaps_yyyyMMdd_HH.csv）に記録する
+  private boolean persistEnabled = true;
+
+  /** 銘柄の価格帯の幅。RELATIVEではbps。 */
+  public double bucketSize(String symbol) {
+    return mode == DepthHeatmap.Mode.RELATIVE
+        ? bucketBps
+        : bucketSizes.getOrDefault(symbol, bucketSize);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public DepthHeatmap.Mode getMode() {
+    return mode;
+  }
+
+  public void setMode(DepthHeatmap.Mode mode) {
+    this.mode = mode;
+  }
+
+  public double getBucketBps() {
+    return bucketBps;
+  }
+
+  public void setBucketBps(double bucketBps) {
+    this.bucketBps = bucketBps;
+  }
+
+  public double getBucketSize() {
+    return bucketSize;
+  }
+
+  public void setBucketSize(double bucketSize) {
+    this.bucketSize = bucketSize;
+  }
+
+  public Map<String, Double> getBucketSizes() {
+    return bucketSizes;
+  }
+
+  public void setBucketSizes(Map<String, Double> bucketSizes) {
+    this.bucketSizes = bucketSizes;
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public void setRows(int rows) {
+    this.rows = rows;
+  }
+
+  public long getIntervalMs() {
+    return intervalMs;
+  }
+
+  public void setIntervalMs(long intervalMs) {
+    this.intervalMs = intervalMs;
+  }
+
+  public long getCaptureIntervalMs() {
+    return captureIntervalMs;
+  }
+
+  public void setCaptureIntervalMs(long captureIntervalMs) {
+    this.captureIntervalMs = captureIntervalMs;
+  }
+
+  public long getStaleMs() {
+    return staleMs;
+  }
+
+  public void setStaleMs(long staleMs) {
+    this.staleMs = staleMs;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+}
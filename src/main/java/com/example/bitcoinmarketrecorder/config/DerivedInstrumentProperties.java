@@ -0,0 +1,126 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "derived")
+public class DerivedInstrumentProperties {
+
+  // 複数銘柄のBBOから計算する系列（乖離率・価格差・裁定幅）
+  private boolean enabled = true;
+  // 同一系列の配信・記録の間隔の下限（ミリ秒）
+  private long conflationIntervalMs = 100;
+  // 2銘柄のBBOの時刻がこれ以上離れている間は計算しない
+  private long maxLegSkewMs = 5000;
+  private String channelPrefix = "derived";
+  // 配信した値をCSV（derived_yyyyMMdd_HH.csv）に記録する
+  private boolean persistEnabled = true;
+  private List<Instrument> instruments =
+      new ArrayList<>(
+          List.of(
+              new Instrument("sfd", "RATIO", "BITFLYER:FX_BTC_JPY", "BITFLYER:BTC_JPY"),
+              new Instrument("gmo_basis", "SPREAD", "GMO:BTC_JPY", "GMO:BTC"),
+              new Instrument("cross_mid_spread", "SPREAD", "BITFLYER:BTC_JPY", "GMO:BTC"),
+              new Instrument("cross_arbitrage", "ARBITRAGE", "BITFLYER:BTC_JPY", "GMO:BTC")));
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getConflationIntervalMs() {
+    return conflationIntervalMs;
+  }
+
+  public void setConflationIntervalMs(long conflationIntervalMs) {
+    this.conflationIntervalMs = conflationIntervalMs;
+  }
+
+  public long getMaxLegSkewMs() {
+    return maxLegSkewMs;
+  }
+
+  public void setMaxLegSkewMs(long maxLegSkewMs) {
+    this.maxLegSkewMs = maxLegSkewMs;
+  }
+
+  public String getChannelPrefix() {
+    return channelPrefix;
+  }
+
+  public void setChannelPrefix(String channelPrefix) {
+    this.channelPrefix = channelPrefix;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+
+  public List<Instrument> getInstruments() {
+    return instruments;
+  }
+
+  public void setInstruments(List<Instrument> instruments) {
+    this.instruments = instruments;
+  }
+
+  public static class Instrument {
+    private String name;
+    // RATIO: (A中値 / B中値 - 1) * 100、SPREAD: A中値 - B中値、ARBITRAGE: 交差した気配の幅
+    private String type;
+    // <取引所>:<銘柄>
+    private String legA;
+    private String legB;
+
+    public Instrument() {}
+
+    public Instrument(String name, String type, String legA, String legB) {
+      this.name = name;
+      this.type = type;
+      this.legA = legA;
+      this.legB = legB;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public void setType(String type) {
+      this.type = type;
+    }
+
+    public String getLegA() {
+      return legA;
+    }
+
+    public void setLegA(String legA) {
+      this.legA = legA;
+    }
+
+    public String getLegB() {
+      return legB;
+    }
+
+    public void setLegB(String legB) {
+      this.legB = legB;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "enriched-trades")
+public class EnrichedTradeProperties {
+
+  // 約定にその時点の最良気配を付けたストリーム（enriched_trades）
+  private boolean enabled = true;
+  // 約定より後の時刻のBBOが届かない場合に、この時間待ってから手元の気配で確定する
+  private long reorderWindowMs = 500;
+  // 確定待ちの約定の上限（銘柄ごと）。超えた分は古いものから待たずに確定する
+  private int maxPending = 10000;
+  // 約定の時刻を遡って引けるよう銘柄ごとに保持するBBOの件数
+  private int quoteHistory = 256;
+  // 約定の時刻よりこれ以上古い気配は付けない
+  private long maxQuoteAgeMs = 60000;
+  // CSV（enriched_trades_yyyyMMdd_HH.csv）に記録する
+  private boolean persistEnabled = true;
+  // Redisの<channel-prefix>:<取引所>:<銘柄>に配信する
+  private boolean publishEnabled = false;
+  private String channelPrefix = "enriched-trades";
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getReorderWindowMs() {
+    return reorderWindowMs;
+  }
+
+  public void setReorderWindowMs(long reorderWindowMs) {
+    this.reorderWindowMs = reorderWindowMs;
+  }
+
+  public int getMaxPending() {
+    return maxPending;
+  }
+
+  public void setMaxPending(int maxPending) {
+    this.maxPending = maxPending;
+  }
+
+  public int getQuoteHistory() {
+    return quoteHistory;
+  }
+
+  public void setQuoteHistory(int quoteHistory) {
+    this.quoteHistory = quoteHistory;
+  }
+
+  public long getMaxQuoteAgeMs() {
+    return maxQuoteAgeMs;
+  }
+
+  public void setMaxQuoteAgeMs(long maxQuoteAgeMs) {
+    this.maxQuoteAgeMs = maxQuoteAgeMs;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+
+  public boolean isPublishEnabled() {
+    return publishEnabled;
+  }
+
+  public void setPublishEnabled(boolean publishEnabled) {
+    this.publishEnabled = publishEnabled;
+  }
+
+  public String getChannelPrefix() {
+    return channelPrefix;
+  }
+
+  public void setChannelPrefix(String channelPrefix) {
+    this.channelPrefix = channelPrefix;
+  }
+}
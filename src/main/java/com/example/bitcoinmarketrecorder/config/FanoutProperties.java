@@ -0,0 +1,49 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "fanout")
+public class FanoutProperties {
+
+  // WebSocket/SSEでのライブ配信
+  private boolean enabled = true;
+  private String websocketPath = "/ws/market-data";
+  // 配信する板の段数
+  private int bookDepth = 8;
+  // クライアントごとに保持する未送信の約定の上限（超えた分は破棄する）
+  private int tradeBufferSize = 1024;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getWebsocketPath() {
+    return websocketPath;
+  }
+
+  public void setWebsocketPath(String websocketPath) {
+    this.websocketPath = websocketPath;
+  }
+
+  public int getBookDepth() {
+    return bookDepth;
+  }
+
+  public void setBookDepth(int bookDepth) {
+    this.bookDepth = bookDepth;
+  }
+
+  public int getTradeBufferSize() {
+    return tradeBufferSize;
+  }
+
+  public void setTradeBufferSize(int tradeBufferSize) {
+    this.tradeBufferSize = tradeBufferSize;
+  }
+}
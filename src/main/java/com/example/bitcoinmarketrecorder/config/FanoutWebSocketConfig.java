@@ -0,0 +1,19 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import com.example.bitcoinmarketrecorder.stream.MarketDataWebSocketHandler;
+import java.util.Map;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+@Configuration
+public class FanoutWebSocketConfig {
+
+  @Bean
+  public HandlerMapping marketDataWebSocketMapping(
+      MarketDataWebSocketHandler handler, FanoutProperties fanoutProperties) {
+    // アノテーションのコントローラより先に評価させる
+    return new SimpleUrlHandlerMapping(Map.of(fanoutProperties.getWebsocketPath(), handler), -1);
+  }
+}
@@ -0,0 +1,50 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "history")
+public class HistoryProperties {
+
+  // 直近のBBO・約定を圧縮してメモリに保持する
+  private boolean enabled = true;
+  // 銘柄ごとに保持する期間
+  private long windowMs = 1_800_000;
+  // 全銘柄合計のメモリ上限。超えた場合は最も古いブロックから捨てる
+  private long maxBytes = 64L * 1024 * 1024;
+  // 1ブロックの大きさ。小さいほど捨てる単位が細かくなる
+  private int blockBytes = 4096;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getWindowMs() {
+    return windowMs;
+  }
+
+  public void setWindowMs(long windowMs) {
+    this.windowMs = windowMs;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public int getBlockBytes() {
+    return blockBytes;
+  }
+
+  public void setBlockBytes(int blockBytes) {
+    this.blockBytes = blockBytes;
+  }
+}
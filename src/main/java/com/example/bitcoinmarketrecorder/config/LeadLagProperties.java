@@ -0,0 +1,134 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "lead-lag")
+public class LeadLagProperties {
+
+  // 銘柄の組ごとの仲値のリターンの相互相関（どちらが先行しているか）
+  private boolean enabled = true;
+  // 仲値を区切る間隔（ミリ秒）。ラグはこの倍数に丸める
+  private long gridMs = 10;
+  private List<Duration> lags =
+      new ArrayList<>(
+          List.of(
+              Duration.ofMillis(10),
+              Duration.ofMillis(50),
+              Duration.ofMillis(100),
+              Duration.ofMillis(250),
+              Duration.ofMillis(500),
+              Duration.ofSeconds(1),
+              Duration.ofSeconds(2),
+              Duration.ofSeconds(5)));
+  // 指数加重の半減期。短いほど直近の変化を早く反映する
+  private Duration halfLife = Duration.ofMinutes(10);
+  // Redisの<channel-prefix>:<組の名前>に定期的に配信する
+  private boolean publishEnabled = true;
+  private String channelPrefix = "lead-lag";
+  private List<Pair> pairs =
+      new ArrayList<>(
+          List.of(
+              new Pair("bitflyer_fx_spot", "BITFLYER:FX_BTC_JPY", "BITFLYER:BTC_JPY"),
+              new Pair("gmo_leverage_spot", "GMO:BTC_JPY", "GMO:BTC"),
+              new Pair("bitflyer_gmo_spot", "BITFLYER:BTC_JPY", "GMO:BTC")));
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getGridMs() {
+    return gridMs;
+  }
+
+  public void setGridMs(long gridMs) {
+    this.gridMs = gridMs;
+  }
+
+  public List<Duration> getLags() {
+    return lags;
+  }
+
+  public void setLags(List<Duration> lags) {
+    this.lags = lags;
+  }
+
+  public Duration getHalfLife() {
+    return halfLife;
+  }
+
+  public void setHalfLife(Duration halfLife) {
+    this.halfLife = halfLife;
+  }
+
+  public boolean isPublishEnabled() {
+    return publishEnabled;
+  }
+
+  public void setPublishEnabled(boolean publishEnabled) {
+    this.publishEnabled = publishEnabled;
+  }
+
+  public String getChannelPrefix() {
+    return channelPrefix;
+  }
+
+  public void setChannelPrefix(String channelPrefix) {
+    this.channelPrefix = channelPrefix;
+  }
+
+  public List<Pair> getPairs() {
+    return pairs;
+  }
+
+  public void setPairs(List<Pair> pairs) {
+    this.pairs = pairs;
+  }
+
+  public static class Pair {
+    private String name;
+    // <取引所>:<銘柄>。正のラグはAが先行していることを表す
+    private String legA;
+    private String legB;
+
+    public Pair() {}
+
+    public Pair(String name, String legA, String legB) {
+      this.name = name;
+      this.legA = legA;
+      this.legB = legB;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getLegA() {
+      return legA;
+    }
+
+    public void setLegA(String legA) {
+      this.legA = legA;
+    }
+
+    public String getLegB() {
+      return legB;
+    }
+
+    public void setLegB(String legB) {
+      this.legB = legB;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "merged-tape")
+public class MergedTapeProperties {
+
+  // 全取引所の約定を約定の時刻順に並べ直した1本のテープ（merged_trades）
+  private boolean enabled = true;
+  // 待ち合わせる取引所。ここにない取引所も約定が届いた時点で待ち合わせに加える
+  private List<String> sources = new ArrayList<>(List.of("GMO", "BITFLYER"));
+  // 他の取引所のウォーターマークが進まなくても、届いてからこの時間が過ぎた約定は確定する
+  private long reorderWindowMs = 1000;
+  // この時間約定が届いていない取引所は待たない
+  private long idleTimeoutMs = 5000;
+  // 確定待ちの約定の上限。超えた分は古いものから待たずに確定する
+  private int maxPending = 100000;
+  // CSV（merged_trades_yyyyMMdd_HH.csv）に記録する
+  private boolean persistEnabled = true;
+  // Redisの<channel>に配信する
+  private boolean publishEnabled = false;
+  private String channel = "merged-trades";
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public List<String> getSources() {
+    return sources;
+  }
+
+  public void setSources(List<String> sources) {
+    this.sources = sources;
+  }
+
+  public long getReorderWindowMs() {
+    return reorderWindowMs;
+  }
+
+  public void setReorderWindowMs(long reorderWindowMs) {
+    this.reorderWindowMs = reorderWindowMs;
+  }
+
+  public long getIdleTimeoutMs() {
+    return idleTimeoutMs;
+  }
+
+  public void setIdleTimeoutMs(long idleTimeoutMs) {
+    this.idleTimeoutMs = idleTimeoutMs;
+  }
+
+  public int getMaxPending() {
+    return maxPending;
+  }
+
+  public void setMaxPending(int maxPending) {
+    this.maxPending = maxPending;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+
+  public boolean isPublishEnabled() {
+    return publishEnabled;
+  }
+
+  public void setPublishEnabled(boolean publishEnabled) {
+    this.publishEnabled = publishEnabled;
+  }
+
+  public String getChannel() {
+    return channel;
+  }
+
+  public void setChannel(String channel) {
+    this.channel = channel;
+  }
+}
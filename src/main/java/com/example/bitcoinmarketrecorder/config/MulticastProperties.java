@@ -0,0 +1,105 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "multicast")
+public class MulticastProperties {
+
+  // LAN内の受信者向けのUDPマルチキャスト配信
+  private boolean enabled = false;
+  private String group = "239.1.1.1";
+  private int port = 40001;
+  // 空の場合は稼働中の最初のインターフェース（ループバックでの確認時は"lo"）
+  private String interfaceName = "";
+  private int ttl = 1;
+  // 欠落パケットの再送サーバー
+  private int retransmitPort = 40002;
+  // チャンネルごとに再送用に保持するパケット数
+  private int ringSize = 65536;
+  private long heartbeatIntervalMs = 1000;
+  // 板とBBOを全銘柄分再送する間隔
+  private long snapshotIntervalMs = 5000;
+  private int bookDepth = 8;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  public void setGroup(String group) {
+    this.group = group;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public void setPort(int port) {
+    this.port = port;
+  }
+
+  public String getInterfaceName() {
+    return interfaceName;
+  }
+
+  public void setInterfaceName(String interfaceName) {
+    this.interfaceName = interfaceName;
+  }
+
+  public int getTtl() {
+    return ttl;
+  }
+
+  public void setTtl(int ttl) {
+    this.ttl = ttl;
+  }
+
+  public int getRetransmitPort() {
+    return retransmitPort;
+  }
+
+  public void setRetransmitPort(int retransmitPort) {
+    this.retransmitPort = retransmitPort;
+  }
+
+  public int getRingSize() {
+    return ringSize;
+  }
+
+  public void setRingSize(int ringSize) {
+    this.ringSize = ringSize;
+  }
+
+  public long getHeartbeatIntervalMs() {
+    return heartbeatIntervalMs;
+  }
+
+  public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+    this.heartbeatIntervalMs = heartbeatIntervalMs;
+  }
+
+  public long getSnapshotIntervalMs() {
+    return snapshotIntervalMs;
+  }
+
+  public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+    this.snapshotIntervalMs = snapshotIntervalMs;
+  }
+
+  public int getBookDepth() {
+    return bookDepth;
+  }
+
+  public void setBookDepth(int bookDepth) {
+    this.bookDepth = bookDepth;
+  }
+}
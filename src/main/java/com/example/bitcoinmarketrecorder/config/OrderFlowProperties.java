@@ -0,0 +1,60 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "order-flow")
+public class OrderFlowProperties {
+
+  // 板の変化を追加・取消・約定による減少に分類する
+  private boolean enabled = true;
+  // 比べる板の段数（GMOは上位8段のみ受信する）
+  private int depth = 8;
+  // 数量の減少と同じ価格の約定を突き合わせる時間。過ぎても約定が見つからない減少は取消とする
+  private long matchWindowMs = 500;
+  // 段ごとの1秒あたりの件数を減衰させる半減期（ミリ秒）
+  private long rateHalfLifeMs = 60000;
+  // CSV（l2_events_yyyyMMdd_HH.csv）に記録する
+  private boolean persistEnabled = true;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public void setDepth(int depth) {
+    this.depth = depth;
+  }
+
+  public long getMatchWindowMs() {
+    return matchWindowMs;
+  }
+
+  public void setMatchWindowMs(long matchWindowMs) {
+    this.matchWindowMs = matchWindowMs;
+  }
+
+  public long getRateHalfLifeMs() {
+    return rateHalfLifeMs;
+  }
+
+  public void setRateHalfLifeMs(long rateHalfLifeMs) {
+    this.rateHalfLifeMs = rateHalfLifeMs;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+}
@@ -0,0 +1,69 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "quantiles")
+public class QuantileSketchProperties {
+
+  // 約定数量・約定間隔・スプレッドの分位点を1時間ごとのスケッチで数える
+  private boolean enabled = true;
+  // 分位点の相対誤差の上限
+  private double relativeAccuracy = 0.01;
+  // スケッチ1つあたりのビンの最大数（1ビン8バイト）
+  private int maxBins = 2048;
+  // メモリに保持する時間数
+  private int retainHours = 24;
+  // 時間帯が終わってからこの時間待って、遅れて届いたデータも含めてCSV（sketches_yyyyMMdd_HH.csv）に記録する
+  private long closeDelayMs = 60000;
+  private boolean persistEnabled = true;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public double getRelativeAccuracy() {
+    return relativeAccuracy;
+  }
+
+  public void setRelativeAccuracy(double relativeAccuracy) {
+    this.relativeAccuracy = relativeAccuracy;
+  }
+
+  public int getMaxBins() {
+    return maxBins;
+  }
+
+  public void setMaxBins(int maxBins) {
+    this.maxBins = maxBins;
+  }
+
+  public int getRetainHours() {
+    return retainHours;
+  }
+
+  public void setRetainHours(int retainHours) {
+    this.retainHours = retainHours;
+  }
+
+  public long getCloseDelayMs() {
+    return closeDelayMs;
+  }
+
+  public void setCloseDelayMs(long closeDelayMs) {
+    this.closeDelayMs = closeDelayMs;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+}
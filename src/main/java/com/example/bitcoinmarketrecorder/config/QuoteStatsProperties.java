@@ -0,0 +1,65 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "quote-stats")
+public class QuoteStatsProperties {
+
+  // 最良気配の時間加重の集計（スプレッド・仲値・気配の寿命・更新頻度）
+  private boolean enabled = true;
+  // 移動窓。窓を区切る区間の数（resolution）が細かいほど窓の端が正確になる
+  private List<Duration> rollingWindows =
+      new ArrayList<>(
+          List.of(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofHours(1)));
+  private int resolution = 60;
+  // UTCの正時・0時で区切る窓。現在と直前の期間を返す
+  private List<Duration> calendarWindows =
+      new ArrayList<>(List.of(Duration.ofHours(1), Duration.ofDays(1)));
+  // これより短い時間で価格が変わった気配をちらつき（flicker）として数える
+  private long flickerThresholdMs = 100;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public List<Duration> getRollingWindows() {
+    return rollingWindows;
+  }
+
+  public void setRollingWindows(List<Duration> rollingWindows) {
+    this.rollingWindows = rollingWindows;
+  }
+
+  public int getResolution() {
+    return resolution;
+  }
+
+  public void setResolution(int resolution) {
+    this.resolution = resolution;
+  }
+
+  public List<Duration> getCalendarWindows() {
+    return calendarWindows;
+  }
+
+  public void setCalendarWindows(List<Duration> calendarWindows) {
+    this.calendarWindows = calendarWindows;
+  }
+
+  public long getFlickerThresholdMs() {
+    return flickerThresholdMs;
+  }
+
+  public void setFlickerThresholdMs(long flickerThresholdMs) {
+    this.flickerThresholdMs = flickerThresholdMs;
+  }
+}
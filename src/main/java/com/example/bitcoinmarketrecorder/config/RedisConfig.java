@@ -1,5 +1,6 @@
 package com.example.bitcoinmarketrecorder.config;
 
+import java.time.Duration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,6 +15,8 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @Configuration
 public class RedisConfig {
 
+    private static final Duration COMMAND_TIMEOUT = Duration.ofSeconds(2);
+
     @Value("${redis.host:localhost}")
     private String host;
 
@@ -28,6 +31,23 @@ public class RedisConfig {
 
     @Bean
     public io.lettuce.core.RedisClient customRedisClient() {
+        return createRedisClient(host, port, password, database);
+    }
+
+    @Bean
+    public RedisConnectionFactory redisConnectionFactory() {
+        return createConnectionFactory(host, port, password, database);
+    }
+
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+        return createTemplate(connectionFactory);
+    }
+
+    // シャード配信でも同じ設定で接続を作るため、生成処理を共通化している
+
+    public static io.lettuce.core.RedisClient createRedisClient(
+            String host, int port, String password, int database) {
         // RedisURIでライブラリ情報を無効化してCLIENT SETINFOコマンドを回避
         io.lettuce.core.RedisURI.Builder builder = io.lettuce.core.RedisURI.Builder
             .redis(host, port)
@@ -46,6 +66,8 @@ public class RedisConfig {
             .pingBeforeActivateConnection(false)
             .publishOnScheduler(false)
             .autoReconnect(true)
+            .disconnectedBehavior(
+                io.lettuce.core.ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
             .build();
         
         io.lettuce.core.RedisClient redisClient = io.lettuce.core.RedisClient.create(redisUri);
@@ -54,8 +76,8 @@ public class RedisConfig {
         return redisClient;
     }
 
-    @Bean
-    public RedisConnectionFactory redisConnectionFactory() {
+    public static LettuceConnectionFactory createConnectionFactory(
+            String host, int port, String password, int database) {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
         config.setHostName(host);
         config.setPort(port);
@@ -66,12 +88,16 @@ public class RedisConfig {
         }
         
         // LettuceのクライアントオプションでCLIENT SETINFOを無効化
+        // 切断中のコマンドは再接続まで溜めずに即座に失敗させ、スプールへ退避できるようにする
         LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
             .clientOptions(io.lettuce.core.ClientOptions.builder()
                 .pingBeforeActivateConnection(false)
                 .publishOnScheduler(false)
                 .autoReconnect(true)
+                .disconnectedBehavior(
+                    io.lettuce.core.ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
                 .build())
+            .commandTimeout(COMMAND_TIMEOUT)
             .build();
         
         LettuceConnectionFactory factory = new LettuceConnectionFactory(config, clientConfig);
@@ -84,8 +110,8 @@ public class RedisConfig {
         return factory;
     }
 
-    @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public static RedisTemplate<String, Object> createTemplate(
+            RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         
@@ -1,5 +1,7 @@
 package com.example.bitcoinmarketrecorder.config;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -10,6 +12,10 @@ public class RedisPublisherProperties {
     private boolean enabled = true;
     private MarketMake marketMake = new MarketMake();
     private TradeInsert tradeInsert = new TradeInsert();
+    private SubscriberCheck subscriberCheck = new SubscriberCheck();
+    private Snapshot snapshot = new Snapshot();
+    private Sharding sharding = new Sharding();
+    private Spool spool = new Spool();
 
     public boolean isEnabled() {
         return enabled;
@@ -35,8 +41,48 @@ public class RedisPublisherProperties {
         this.tradeInsert = tradeInsert;
     }
 
+    public SubscriberCheck getSubscriberCheck() {
+        return subscriberCheck;
+    }
+
+    public void setSubscriberCheck(SubscriberCheck subscriberCheck) {
+        this.subscriberCheck = subscriberCheck;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public Sharding getSharding() {
+        return sharding;
+    }
+
+    public void setSharding(Sharding sharding) {
+        this.sharding = sharding;
+    }
+
+    public Spool getSpool() {
+        return spool;
+    }
+
+    public void setSpool(Spool spool) {
+        this.spool = spool;
+    }
+
     public static class MarketMake {
         private String channelPrefix = "market-make";
+        // 板更新をシンボルごとに最新の1件へ間引いて配信する
+        private boolean conflationEnabled = true;
+        // 同一シンボルの配信間隔の下限（ミリ秒）
+        private long conflationIntervalMs = 100;
+        // 変化した価格帯だけを連番付きで配信する（無効時は従来通り毎回全件を配信する）
+        private boolean deltaEnabled = false;
+        // 差分配信時に全件スナップショットを送る間隔（ミリ秒）
+        private long fullRefreshIntervalMs = 5000;
 
         public String getChannelPrefix() {
             return channelPrefix;
@@ -46,6 +92,38 @@ public class RedisPublisherProperties {
             this.channelPrefix = channelPrefix;
         }
 
+        public boolean isConflationEnabled() {
+            return conflationEnabled;
+        }
+
+        public void setConflationEnabled(boolean conflationEnabled) {
+            this.conflationEnabled = conflationEnabled;
+        }
+
+        public long getConflationIntervalMs() {
+            return conflationIntervalMs;
+        }
+
+        public void setConflationIntervalMs(long conflationIntervalMs) {
+            this.conflationIntervalMs = conflationIntervalMs;
+        }
+
+        public boolean isDeltaEnabled() {
+            return deltaEnabled;
+        }
+
+        public void setDeltaEnabled(boolean deltaEnabled) {
+            this.deltaEnabled = deltaEnabled;
+        }
+
+        public long getFullRefreshIntervalMs() {
+            return fullRefreshIntervalMs;
+        }
+
+        public void setFullRefreshIntervalMs(long fullRefreshIntervalMs) {
+            this.fullRefreshIntervalMs = fullRefreshIntervalMs;
+        }
+
         public String getChannelName(String symbol) {
             return channelPrefix + ":" + symbol;
         }
@@ -66,4 +144,178 @@ public class RedisPublisherProperties {
             return channelPrefix + ":" + symbol;
         }
     }
+
+    public static class SubscriberCheck {
+        // PUBSUB NUMSUBで購読者のいないチャンネルへの配信を省略する
+        private boolean enabled = true;
+        private long intervalMs = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public void setIntervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+    }
+
+    public static class Snapshot {
+        // シンボルごとの最新状態（BBO・板・最終約定）をキーに保持する
+        private boolean enabled = true;
+        private String keyPrefix = "latest";
+        // 同一キーへの書き込み間隔の下限（ミリ秒）
+        private long intervalMs = 200;
+        private int bookDepth = 8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        public void setKeyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public void setIntervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        public int getBookDepth() {
+            return bookDepth;
+        }
+
+        public void setBookDepth(int bookDepth) {
+            this.bookDepth = bookDepth;
+        }
+
+        public String getBookKey(String symbol) {
+            return keyPrefix + ":book:" + symbol;
+        }
+
+        public String getBboKey(String symbol) {
+            return keyPrefix + ":bbo:" + symbol;
+        }
+
+        public String getTradeKey(String symbol) {
+            return keyPrefix + ":trade:" + symbol;
+        }
+    }
+
+    public static class Sharding {
+        // "host:port"形式の配信先一覧。空の場合はredis.host/redis.portの1台に配信する
+        private List<String> endpoints = new ArrayList<>();
+        private int virtualNodes = 160;
+        private long healthCheckIntervalMs = 1000;
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<String> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+
+        public long getHealthCheckIntervalMs() {
+            return healthCheckIntervalMs;
+        }
+
+        public void setHealthCheckIntervalMs(long healthCheckIntervalMs) {
+            this.healthCheckIntervalMs = healthCheckIntervalMs;
+        }
+    }
+
+    public static class Spool {
+        // Redis停止中のメッセージをディスクに退避し、復旧後に順番通り再送する
+        private boolean enabled = true;
+        private String dir = "spool";
+        private long maxBytes = 256L * 1024 * 1024;
+        private long segmentBytes = 16L * 1024 * 1024;
+        // これより古い板更新は再送しない（約定は常に再送する）
+        private long boardMaxAgeMs = 5000;
+        private int queueCapacity = 50000;
+        private int batchSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public long getSegmentBytes() {
+            return segmentBytes;
+        }
+
+        public void setSegmentBytes(long segmentBytes) {
+            this.segmentBytes = segmentBytes;
+        }
+
+        public long getBoardMaxAgeMs() {
+            return boardMaxAgeMs;
+        }
+
+        public void setBoardMaxAgeMs(long boardMaxAgeMs) {
+            this.boardMaxAgeMs = boardMaxAgeMs;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "shared-memory")
+public class SharedMemoryProperties {
+
+  // 同一ホストのプロセス向けのメモリマップファイルのリング
+  private boolean enabled = false;
+  // Linuxでは/dev/shm配下にするとディスクへの書き出しが発生しない
+  private String path = "shm/market-data.ring";
+  private int slotCount = 65536;
+  // 8の倍数。板をbook-depth件載せられる大きさにする
+  private int slotSize = 512;
+  private int bookDepth = 8;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  public int getSlotCount() {
+    return slotCount;
+  }
+
+  public void setSlotCount(int slotCount) {
+    this.slotCount = slotCount;
+  }
+
+  public int getSlotSize() {
+    return slotSize;
+  }
+
+  public void setSlotSize(int slotSize) {
+    this.slotSize = slotSize;
+  }
+
+  public int getBookDepth() {
+    return bookDepth;
+  }
+
+  public void setBookDepth(int bookDepth) {
+    this.bookDepth = bookDepth;
+  }
+}
@@ -0,0 +1,62 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "trade-flow")
+public class TradeFlowProperties {
+
+  // 約定の移動窓での集計（売買の偏り・約定頻度・約定数量・実現ボラティリティ）
+  private boolean enabled = true;
+  private List<Duration> horizons =
+      new ArrayList<>(
+          List.of(Duration.ofSeconds(10), Duration.ofMinutes(1), Duration.ofMinutes(5)));
+  // 集計値を定期的にRedisへ配信する（trade-flow:<取引所>:<銘柄>）
+  private boolean publishEnabled = false;
+  private long publishIntervalMs = 1000;
+  private String channelPrefix = "trade-flow";
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public List<Duration> getHorizons() {
+    return horizons;
+  }
+
+  public void setHorizons(List<Duration> horizons) {
+    this.horizons = horizons;
+  }
+
+  public boolean isPublishEnabled() {
+    return publishEnabled;
+  }
+
+  public void setPublishEnabled(boolean publishEnabled) {
+    this.publishEnabled = publishEnabled;
+  }
+
+  public long getPublishIntervalMs() {
+    return publishIntervalMs;
+  }
+
+  public void setPublishIntervalMs(long publishIntervalMs) {
+    this.publishIntervalMs = publishIntervalMs;
+  }
+
+  public String getChannelPrefix() {
+    return channelPrefix;
+  }
+
+  public void setChannelPrefix(String channelPrefix) {
+    this.channelPrefix = channelPrefix;
+  }
+}
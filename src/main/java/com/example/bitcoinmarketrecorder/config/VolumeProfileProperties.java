@@ -0,0 +1,106 @@
+package com.example.bitcoinmarketrecorder.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "volume-profile")
+public class VolumeProfileProperties {
+
+  // 銘柄ごとのセッション内の価格帯別出来高
+  private boolean enabled = true;
+  // 価格帯の幅（既定）
+  private double bucketSize = 1000;
+  // 銘柄ごとの価格帯の幅（キーは銘柄名。例: ETH_JPY=100）
+  private Map<String, Double> bucketSizes = new HashMap<>();
+  // 1つのプロファイルの帯の数の上限（1帯16バイト）
+  private int maxBuckets = 100000;
+  // セッションの長さと、エポック（UTCの0時）からのずれ。日本時間の0時で区切る場合はsession-offset=-9h
+  private Duration sessionLength = Duration.ofDays(1);
+  private Duration sessionOffset = Duration.ZERO;
+  // バリューエリアに含める出来高の割合
+  private double valueAreaRatio = 0.7;
+  // 時間帯が終わってからこの時間待って、遅れて届いた約定も含めてCSV（volume_profiles_yyyyMMdd_HH.csv）に記録する
+  private long closeDelayMs = 60000;
+  private boolean persistEnabled = true;
+
+  /** 銘柄の価格帯の幅。 */
+  public double bucketSize(String symbol) {
+    return bucketSizes.getOrDefault(symbol, bucketSize);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public double getBucketSize() {
+    return bucketSize;
+  }
+
+  public void setBucketSize(double bucketSize) {
+    this.bucketSize = bucketSize;
+  }
+
+  public Map<String, Double> getBucketSizes() {
+    return bucketSizes;
+  }
+
+  public void setBucketSizes(Map<String, Double> bucketSizes) {
+    this.bucketSizes = bucketSizes;
+  }
+
+  public int getMaxBuckets() {
+    return maxBuckets;
+  }
+
+  public void setMaxBuckets(int maxBuckets) {
+    this.maxBuckets = maxBuckets;
+  }
+
+  public Duration getSessionLength() {
+    return sessionLength;
+  }
+
+  public void setSessionLength(Duration sessionLength) {
+    this.sessionLength = sessionLength;
+  }
+
+  public Duration getSessionOffset() {
+    return sessionOffset;
+  }
+
+  public void setSessionOffset(Duration sessionOffset) {
+    this.sessionOffset = sessionOffset;
+  }
+
+  public double getValueAreaRatio() {
+    return valueAreaRatio;
+  }
+
+  public void setValueAreaRatio(double valueAreaRatio) {
+    this.valueAreaRatio = valueAreaRatio;
+  }
+
+  public long getCloseDelayMs() {
+    return closeDelayMs;
+  }
+
+  public void setCloseDelayMs(long closeDelayMs) {
+    this.closeDelayMs = closeDelayMs;
+  }
+
+  public boolean isPersistEnabled() {
+    return persistEnabled;
+  }
+
+  public void setPersistEnabled(boolean persistEnabled) {
+    this.persistEnabled = persistEnabled;
+  }
+}
@@ -0,0 +1,286 @@
+package com.example.bitcoinmarketrecorder.controller;
+
+import com.example.bitcoinmarketrecorder.alert.AlertEngine;
+import com.example.bitcoinmarketrecorder.analytics.DepthHeatmapService;
+import com.example.bitcoinmarketrecorder.analytics.DerivedInstrumentEngine;
+import com.example.bitcoinmarketrecorder.analytics.LeadLagService;
+import com.example.bitcoinmarketrecorder.analytics.OrderFlowService;
+import com.example.bitcoinmarketrecorder.analytics.QuantileSketchService;
+import com.example.bitcoinmarketrecorder.analytics.QuantileSketchService.Metric;
+import com.example.bitcoinmarketrecorder.analytics.QuoteStatsService;
+import com.example.bitcoinmarketrecorder.analytics.TradeEnrichmentService;
+import com.example.bitcoinmarketrecorder.analytics.TradeFlowService;
+import com.example.bitcoinmarketrecorder.analytics.VolumeProfileService;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+  private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+  @Autowired private TradeFlowService tradeFlowService;
+
+  @Autowired private DerivedInstrumentEngine derivedInstrumentEngine;
+
+  @Autowired private QuantileSketchService quantileSketchService;
+
+  @Autowired private QuoteStatsService quoteStatsService;
+
+  @Autowired private TradeEnrichmentService tradeEnrichmentService;
+
+  @Autowired private VolumeProfileService volumeProfileService;
+
+  @Autowired private LeadLagService leadLagService;
+
+  @Autowired private AlertEngine alertEngine;
+
+  @Autowired private OrderFlowService orderFlowService;
+
+  @Autowired private DepthHeatmapService depthHeatmapService;
+
+  /**
+   * 約定の移動窓の集計値。
+   *
+   * <p>取引所と銘柄を指定した場合はその銘柄だけ、省略した場合は全銘柄を返す。
+   */
+  @GetMapping("/trade-flow")
+  public ResponseEntity<Object> tradeFlow(
+      @RequestParam(required = false) String exchange,
+      @RequestParam(required = false) String symbol) {
+    if (exchange == null || symbol == null) {
+      return ResponseEntity.ok(tradeFlowService.getSnapshots());
+    }
+    Optional<Map<String, Object>> snapshot = tradeFlowService.getSnapshot(exchange, symbol);
+    if (snapshot.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(snapshot.get());
+  }
+
+  /**
+   * 最良気配の時間加重平均のスプレッド・仲値、気配の寿命、更新・ちらつきの頻度。
+   *
+   * <p>取引所と銘柄を指定した場合はその銘柄だけ、省略した場合は全銘柄を返す。
+   */
+  @GetMapping("/quotes")
+  public ResponseEntity<Object> quotes(
+      @RequestParam(required = false) String exchange,
+      @RequestParam(required = false) String symbol) {
+    if (exchange == null || symbol == null) {
+      return ResponseEntity.ok(quoteStatsService.getSnapshots());
+    }
+    Optional<Map<String, Object>> snapshot = quoteStatsService.getSnapshot(exchange, symbol);
+    if (snapshot.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(snapshot.get());
+  }
+
+  /** 乖離率・価格差・裁定幅などの系列ごとの最新値。 */
+  @GetMapping("/derived")
+  public ResponseEntity<Map<String, Object>> derived() {
+    return ResponseEntity.ok(derivedInstrumentEngine.getLatest());
+  }
+
+  /**
+   * 約定数量（trade_size）・約定間隔（inter_trade_ms）・スプレッド（spread）の分位点。
+   *
+   * <p>fromを指定した場合はCSVに記録した1時間ごとのスケッチのうち[from, to)に収まる時間帯を、省略した場合はメモリに
+   * 保持している直近{@code hours}時間（現在の時間帯を含む）を足し合わせる。
+   *
+   * @param q 分位点（0〜1）のカンマ区切り
+   */
+  @GetMapping("/quantiles")
+  public Mono<ResponseEntity<Object>> quantiles(
+      @RequestParam String exchange,
+      @RequestParam String symbol,
+      @RequestParam String metric,
+      @RequestParam(defaultValue = "1") int hours,
+      @RequestParam(defaultValue = "0.5,0.9,0.99") List<Double> q,
+      @RequestParam(required = false) Instant from,
+      @RequestParam(required = false) Instant to) {
+    Optional<Metric> parsed = Metric.fromName(metric);
+    if (parsed.isEmpty()) {
+      return Mono.just(ResponseEntity.badRequest().body("Unknown metric: " + metric));
+    }
+    if (hours < 1) {
+      return Mono.just(ResponseEntity.badRequest().body("hours must be positive"));
+    }
+    double[] quantiles = new double[q.size()];
+    for (int i = 0; i < quantiles.length; i++) {
+      quantiles[i] = q.get(i);
+      if (!(quantiles[i] >= 0 && quantiles[i] <= 1)) {
+        return Mono.just(
+            ResponseEntity.badRequest().body("Quantiles must be between 0 and 1: " + q));
+      }
+    }
+    if (from != null) {
+      Instant end = to != null ? to : Instant.now();
+      // 記録ファイルを読むため、イベントループを塞がないよう別スレッドで行う
+      return Mono.fromCallable(
+              () ->
+                  ResponseEntity.<Object>ok(
+                      quantileSketchService.getPersistedQuantiles(
+                          exchange, symbol, parsed.get(), from, end, quantiles)))
+          .subscribeOn(Schedulers.boundedElastic())
+          .onErrorResume(
+              IOException.class,
+              e ->
+                  Mono.just(
+                      ResponseEntity.internalServerError()
+                          .body("Failed to read sketches: " + e.getMessage())));
+    }
+    Optional<Map<String, Object>> summary =
+        quantileSketchService.getQuantiles(exchange, symbol, parsed.get(), hours, quantiles);
+    if (summary.isEmpty()) {
+      return Mono.just(ResponseEntity.notFound().build());
+    }
+    return Mono.just(ResponseEntity.ok(summary.get()));
+  }
+
+  /**
+   * 記録済みの約定にその時点の最良気配を付けたCSV（列はenriched_trades_*.csvと同じ）。
+   *
+   * @param from 開始時刻（ISO-8601、含む）
+   * @param to 終了時刻（ISO-8601、含まない）
+   */
+  @GetMapping("/enriched-trades")
+  public ResponseEntity<?> enrichedTrades(
+      @RequestParam Instant from,
+      @RequestParam Instant to,
+      @RequestParam(required = false) String exchange,
+      @RequestParam(required = false) String symbol,
+      @RequestParam(defaultValue = "100000") long limit,
+      ServerHttpResponse response) {
+    if (!from.isBefore(to)) {
+      return ResponseEntity.badRequest().body("from must be before to");
+    }
+    if (limit <= 0) {
+      return ResponseEntity.badRequest().body("limit must be positive");
+    }
+    return ResponseEntity.ok()
+        .contentType(TEXT_CSV)
+        .body(
+            tradeEnrichmentService.join(
+                from, to, exchange, symbol, limit, response.bufferFactory()));
+  }
+
+  /**
+   * 価格帯別出来高（買い・売り別）とPOC・バリューエリア。
+   *
+   * <p>fromを指定した場合はCSVに記録した1時間ごとのプロファイルのうち[from, to)に収まる時間帯を足し合わせ、省略した場合は
+   * 現在のセッションを返す。
+   */
+  @GetMapping("/volume-profile")
+  public Mono<ResponseEntity<Object>> volumeProfile(
+      @RequestParam String exchange,
+      @RequestParam String symbol,
+      @RequestParam(required = false) Instant from,
+      @RequestParam(required = false) Instant to) {
+    if (from != null) {
+      Instant end = to != null ? to : Instant.now();
+      if (!from.isBefore(end)) {
+        return Mono.just(ResponseEntity.badRequest().body("from must be before to"));
+      }
+      // 記録ファイルを読むため、イベントループを塞がないよう別スレッドで行う
+      return Mono.fromCallable(
+              () ->
+                  ResponseEntity.<Object>ok(
+                      volumeProfileService.getPersistedProfile(exchange, symbol, from, end)))
+          .subscribeOn(Schedulers.boundedElastic())
+          .onErrorResume(
+              IOException.class,
+              e ->
+                  Mono.just(
+                      ResponseEntity.internalServerError()
+                          .body("Failed to read volume profiles: " + e.getMessage())));
+    }
+    Optional<Map<String, Object>> snapshot = volumeProfileService.getSnapshot(exchange, symbol);
+    if (snapshot.isEmpty()) {
+      return Mono.just(ResponseEntity.notFound().build());
+    }
+    return Mono.just(ResponseEntity.ok(snapshot.get()));
+  }
+
+  /**
+   * 銘柄の組ごとの仲値のリターンの相互相関。
+   *
+   * <p>組の名前を指定した場合はその組だけ、省略した場合は全組を返す。
+   */
+  @GetMapping("/lead-lag")
+  public ResponseEntity<Object> leadLag(@RequestParam(required = false) String name) {
+    if (name == null) {
+      return ResponseEntity.ok(leadLagService.getSnapshots());
+    }
+    Optional<Map<String, Object>> snapshot = leadLagService.getSnapshot(name);
+    if (snapshot.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(snapshot.get());
+  }
+
+  /** 直近に発火したアラート（新しい順）。 */
+  @GetMapping("/alerts")
+  public ResponseEntity<List<Map<String, Object>>> alerts() {
+    return ResponseEntity.ok(alertEngine.getRecentAlerts());
+  }
+
+  /** 板の段ごとの追加・取消・約定による減少の件数と1秒あたりの件数、注文と約定の件数比。 */
+  @GetMapping("/order-flow")
+  public ResponseEntity<Map<String, Object>> orderFlow(
+      @RequestParam String exchange, @RequestParam String symbol) {
+    Optional<Map<String, Object>> snapshot = orderFlowService.getSnapshot(exchange, symbol);
+    if (snapshot.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(snapshot.get());
+  }
+
+  /**
+   * 板の厚みのヒートマップ（1時間分）。
+   *
+   * <p>hourを指定した場合はCSVに記録したその時刻を含む時間帯、省略した場合は現在の時間帯を返す。
+   */
+  @GetMapping("/depth-heatmap")
+  public Mono<ResponseEntity<Object>> depthHeatmap(
+      @RequestParam String exchange,
+      @RequestParam String symbol,
+      @RequestParam(required = false) Instant hour) {
+    if (hour != null) {
+      // 記録ファイルを読むため、イベントループを塞がないよう別スレッドで行う
+      return Mono.fromCallable(
+              () ->
+                  depthHeatmapService
+                      .getPersistedHeatmap(exchange, symbol, hour)
+                      .<ResponseEntity<Object>>map(ResponseEntity::ok)
+                      .orElseGet(() -> ResponseEntity.notFound().build()))
+          .subscribeOn(Schedulers.boundedElastic())
+          .onErrorResume(
+              IOException.class,
+              e ->
+                  Mono.just(
+                      ResponseEntity.internalServerError()
+                          .body("Failed to read depth heatmaps: " + e.getMessage())));
+    }
+    Optional<Map<String, Object>> heatmap = depthHeatmapService.getSnapshot(exchange, symbol);
+    if (heatmap.isEmpty()) {
+      return Mono.just(ResponseEntity.notFound().build());
+    }
+    return Mono.just(ResponseEntity.ok(heatmap.get()));
+  }
+}
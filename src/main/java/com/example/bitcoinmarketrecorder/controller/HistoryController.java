@@ -0,0 +1,61 @@
+package com.example.bitcoinmarketrecorder.controller;
+
+import com.example.bitcoinmarketrecorder.history.RecentHistoryStore;
+import com.example.bitcoinmarketrecorder.history.RecentHistoryStore.Rows;
+import com.example.bitcoinmarketrecorder.history.RecentHistoryStore.SeriesType;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/history")
+public class HistoryController {
+
+  @Autowired private RecentHistoryStore recentHistoryStore;
+
+  /**
+   * メモリに保持している直近のBBO・約定を返す。
+   *
+   * @param type bbo/trades
+   * @param from ISO-8601。省略時は保持しているすべて
+   * @param to ISO-8601（この時刻を含まない）。省略時は現在まで
+   */
+  @GetMapping("/{type}")
+  public ResponseEntity<Object> query(
+      @PathVariable String type,
+      @RequestParam String exchange,
+      @RequestParam String symbol,
+      @RequestParam(required = false) Instant from,
+      @RequestParam(required = false) Instant to,
+      @RequestParam(defaultValue = "100000") int limit) {
+    Optional<SeriesType> seriesType = SeriesType.fromName(type);
+    if (seriesType.isEmpty()) {
+      return ResponseEntity.badRequest().body("Unknown type: " + type);
+    }
+    String key = SymbolKey.of(exchange, symbol);
+    Optional<Rows> rows =
+        recentHistoryStore.query(
+            seriesType.get(),
+            key,
+            from != null ? from.toEpochMilli() : Long.MIN_VALUE,
+            to != null ? to.toEpochMilli() : Long.MAX_VALUE,
+            limit);
+    if (rows.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("symbol", key);
+    body.put("type", seriesType.get().name().toLowerCase());
+    body.putAll(rows.get().toMap());
+    return ResponseEntity.ok(body);
+  }
+}
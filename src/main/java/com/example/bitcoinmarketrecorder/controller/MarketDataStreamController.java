@@ -0,0 +1,45 @@
+package com.example.bitcoinmarketrecorder.controller;
+
+import com.example.bitcoinmarketrecorder.stream.FanoutSubscriber;
+import com.example.bitcoinmarketrecorder.stream.MarketDataFanout;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/stream")
+public class MarketDataStreamController {
+
+  @Autowired private MarketDataFanout marketDataFanout;
+
+  /** Server-Sent Eventsでのライブ配信。イベント名はチャンネル名（trade/bbo/book）。 */
+  @GetMapping(path = "/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Mono<Void> streamSse(
+      @RequestParam(required = false) String symbols,
+      @RequestParam(required = false) String channels,
+      ServerHttpResponse response) {
+    FanoutSubscriber subscriber =
+        marketDataFanout.subscribe(
+            MarketDataFanout.parseFilter(symbols), MarketDataFanout.parseFilter(channels));
+    response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+    // エンコード済みのイベントをそのまま書き込み、1件ごとにフラッシュする
+    return response
+        .writeAndFlushWith(
+            subscriber
+                .flux()
+                .map(message -> Mono.just(response.bufferFactory().wrap(message.getSse()))))
+        .doFinally(signal -> subscriber.close());
+  }
+
+  @GetMapping("/stats")
+  public ResponseEntity<Map<String, Object>> getStats() {
+    return ResponseEntity.ok(marketDataFanout.getStats());
+  }
+}
@@ -0,0 +1,112 @@
+package com.example.bitcoinmarketrecorder.controller;
+
+import com.example.bitcoinmarketrecorder.alert.AlertEngine;
+import com.example.bitcoinmarketrecorder.analytics.BarEngine;
+import com.example.bitcoinmarketrecorder.analytics.BookAnalyticsService;
+import com.example.bitcoinmarketrecorder.analytics.DepthHeatmapService;
+import com.example.bitcoinmarketrecorder.analytics.DerivedInstrumentEngine;
+import com.example.bitcoinmarketrecorder.analytics.LeadLagService;
+import com.example.bitcoinmarketrecorder.analytics.MergedTapeService;
+import com.example.bitcoinmarketrecorder.analytics.OrderFlowService;
+import com.example.bitcoinmarketrecorder.analytics.QuantileSketchService;
+import com.example.bitcoinmarketrecorder.analytics.TradeEnrichmentService;
+import com.example.bitcoinmarketrecorder.analytics.VolumeProfileService;
+import com.example.bitcoinmarketrecorder.history.RecentHistoryStore;
+import com.example.bitcoinmarketrecorder.ipc.SharedMemoryPublisher;
+import com.example.bitcoinmarketrecorder.multicast.MulticastPublisher;
+import com.example.bitcoinmarketrecorder.service.MarketMakeConflator;
+import com.example.bitcoinmarketrecorder.service.MarketMakeDeltaEncoder;
+import com.example.bitcoinmarketrecorder.service.RedisPublishWorker;
+import com.example.bitcoinmarketrecorder.service.RedisShardRouter;
+import com.example.bitcoinmarketrecorder.service.RedisSubscriberTracker;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/publisher")
+public class PublisherStatsController {
+
+  @Autowired private MarketMakeConflator marketMakeConflator;
+
+  @Autowired private MarketMakeDeltaEncoder marketMakeDeltaEncoder;
+
+  @Autowired private RedisSubscriberTracker redisSubscriberTracker;
+
+  @Autowired private RedisShardRouter redisShardRouter;
+
+  @Autowired private RedisPublishWorker redisPublishWorker;
+
+  @Autowired private MulticastPublisher multicastPublisher;
+
+  @Autowired private SharedMemoryPublisher sharedMemoryPublisher;
+
+  @Autowired private RecentHistoryStore recentHistoryStore;
+
+  @Autowired private BarEngine barEngine;
+
+  @Autowired private DerivedInstrumentEngine derivedInstrumentEngine;
+
+  @Autowired private BookAnalyticsService bookAnalyticsService;
+
+  @Autowired private QuantileSketchService quantileSketchService;
+
+  @Autowired private TradeEnrichmentService tradeEnrichmentService;
+
+  @Autowired private VolumeProfileService volumeProfileService;
+
+  @Autowired private LeadLagService leadLagService;
+
+  @Autowired private MergedTapeService mergedTapeService;
+
+  @Autowired private AlertEngine alertEngine;
+
+  @Autowired private OrderFlowService orderFlowService;
+
+  @Autowired private DepthHeatmapService depthHeatmapService;
+
+  @GetMapping("/stats")
+  public ResponseEntity<Map<String, Object>> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("marketMakeConflation", marketMakeConflator.getStats());
+    stats.put("marketMakeDelta", marketMakeDeltaEncoder.getStats());
+    stats.put("channelSubscribers", redisSubscriberTracker.getStats());
+    stats.put("shards", redisShardRouter.getStats());
+    stats.put("spool", redisPublishWorker.getStats());
+    stats.put("multicast", multicastPublisher.getStats());
+    stats.put("sharedMemory", sharedMemoryPublisher.getStats());
+    stats.put("history", recentHistoryStore.getStats());
+    stats.put("bars", barEngine.getStats());
+    stats.put("derived", derivedInstrumentEngine.getStats());
+    stats.put("bookAnalytics", bookAnalyticsService.getStats());
+    stats.put("quantiles", quantileSketchService.getStats());
+    stats.put("enrichedTrades", tradeEnrichmentService.getStats());
+    stats.put("volumeProfiles", volumeProfileService.getStats());
+    stats.put("leadLag", leadLagService.getStats());
+    stats.put("mergedTape", mergedTapeService.getStats());
+    stats.put("alerts", alertEngine.getStats());
+    stats.put("orderFlow", orderFlowService.getStats());
+    stats.put("depthHeatmap", depthHeatmapService.getStats());
+    return ResponseEntity.ok(stats);
+  }
+
+  @GetMapping("/shards")
+  public ResponseEntity<Map<String, Object>> getShards() {
+    return ResponseEntity.ok(redisShardRouter.getStats());
+  }
+
+  @PostMapping("/shards")
+  public ResponseEntity<Object> addShard(@RequestParam String endpoint) {
+    try {
+      return ResponseEntity.ok(redisShardRouter.addEndpoint(endpoint));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(e.getMessage());
+    }
+  }
+}
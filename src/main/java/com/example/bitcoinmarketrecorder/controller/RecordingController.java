@@ -0,0 +1,300 @@
+package com.example.bitcoinmarketrecorder.controller;
+
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import com.example.bitcoinmarketrecorder.service.RecordedDataQueryService;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+@RestController
+@RequestMapping("/api/recordings")
+public class RecordingController {
+
+  private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+  // 時刻で切り出した場合の列名。Rangeで取得した本体にはヘッダー行が含まれないため、このヘッダーでも返す
+  static final String CSV_HEADER = "X-Csv-Header";
+
+  @Autowired private RecordedDataCatalog recordedDataCatalog;
+
+  @Autowired private RecordedDataQueryService recordedDataQueryService;
+
+  /**
+   * 記録ファイルの一覧。
+   *
+   * @param stream trades/market_boards/best_bid_ask。省略時はすべて
+   * @param date yyyyMMdd。省略時はすべて
+   */
+  @GetMapping
+  public Mono<ResponseEntity<Object>> list(
+      @RequestParam(required = false) String stream, @RequestParam(required = false) String date) {
+    RecordedStream recordedStream = null;
+    if (stream != null) {
+      Optional<RecordedStream> parsed = RecordedStream.fromPrefix(stream);
+      if (parsed.isEmpty()) {
+        return Mono.just(ResponseEntity.badRequest().body("Unknown stream: " + stream));
+      }
+      recordedStream = parsed.get();
+    }
+    LocalDate localDate = null;
+    if (date != null) {
+      try {
+        localDate = RecordedDataCatalog.parseDate(date);
+      } catch (DateTimeParseException e) {
+        return Mono.just(
+            ResponseEntity.badRequest().body("Invalid date (expected yyyyMMdd): " + date));
+      }
+    }
+    RecordedStream listedStream = recordedStream;
+    LocalDate listedDate = localDate;
+    // 記録ファイルを読むため、イベントループを塞がないよう別スレッドで行う
+    return Mono.fromCallable(() -> ResponseEntity.<Object>ok(segments(listedStream, listedDate)))
+        .subscribeOn(Schedulers.boundedElastic())
+        .onErrorResume(
+            IOException.class,
+            e ->
+                Mono.just(
+                    ResponseEntity.internalServerError()
+                        .body("Failed to list recordings: " + e.getMessage())));
+  }
+
+  private List<Map<String, Object>> segments(RecordedStream stream, LocalDate date)
+      throws IOException {
+    List<Map<String, Object>> segments = new ArrayList<>();
+    for (Segment segment : recordedDataCatalog.list(stream, date)) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("name", segment.getName());
+      entry.put("stream", segment.getStream().getPrefix());
+      entry.put("start", segment.getStart().toString());
+      entry.put("end", segment.getEnd().toString());
+      entry.put("size", Files.size(segment.getPath()));
+      entry.put("lastModified", Files.getLastModifiedTime(segment.getPath()).toString());
+      segments.add(entry);
+    }
+    return segments;
+  }
+
+  /**
+   * 記録したデータを時刻範囲で検索する。
+   *
+   * @param stream trades/market_boards/best_bid_ask
+   * @param from 開始時刻（ISO-8601、含む）
+   * @param to 終了時刻（ISO-8601、含まない）
+   * @param columns 出力する列（カンマ区切り）。省略時はすべて
+   * @param format ndjson（既定）またはcsv
+   */
+  @GetMapping("/query")
+  public ResponseEntity<?> query(
+      @RequestParam String stream,
+      @RequestParam(required = false) String exchange,
+      @RequestParam(required = false) String symbol,
+      @RequestParam Instant from,
+      @RequestParam Instant to,
+      @RequestParam(required = false) String columns,
+      @RequestParam(defaultValue = "100000") long limit,
+      @RequestParam(defaultValue = "ndjson") String format,
+      ServerHttpResponse response) {
+    Optional<RecordedStream> recordedStream = RecordedStream.fromPrefix(stream);
+    if (recordedStream.isEmpty()) {
+      return ResponseEntity.badRequest().body("Unknown stream: " + stream);
+    }
+    if (limit <= 0) {
+      return ResponseEntity.badRequest().body("limit must be positive");
+    }
+    RecordedDataQueryService.Format outputFormat;
+    try {
+      outputFormat = RecordedDataQueryService.Format.valueOf(format.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body("Unknown format: " + format);
+    }
+    RecordedDataQueryService.Query query;
+    try {
+      query =
+          new RecordedDataQueryService.Query(
+              recordedStream.get(),
+              exchange,
+              symbol,
+              from,
+              to,
+              columns != null ? parseColumns(columns) : List.of(),
+              limit,
+              outputFormat);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(e.getMessage());
+    }
+    return ResponseEntity.ok()
+        .contentType(
+            outputFormat == RecordedDataQueryService.Format.CSV
+                ? TEXT_CSV
+                : MediaType.APPLICATION_NDJSON)
+        .body(recordedDataQueryService.query(query, response.bufferFactory()));
+  }
+
+  /**
+   * 記録ファイルをダウンロードする。ファイルの内容はヒープを経由せずにソケットへ転送する。
+   *
+   * <p>Rangeヘッダー（単一範囲）に対応する。{@code from}/{@code to}（ISO-8601）を指定した場合は、その時刻の行だけを
+   * 二分探索で切り出し、先頭にヘッダー行を付けて返す。Rangeは切り出した行の範囲に対して適用し、ヘッダー行は付けない。
+   */
+  @GetMapping("/{name}")
+  public Mono<Void> download(
+      @PathVariable String name,
+      @RequestParam(required = false) Instant from,
+      @RequestParam(required = false) Instant to,
+      ServerHttpRequest request,
+      ServerHttpResponse response) {
+    Optional<Segment> segment = recordedDataCatalog.find(name);
+    if (segment.isEmpty()) {
+      response.setStatusCode(HttpStatus.NOT_FOUND);
+      return response.setComplete();
+    }
+    List<HttpRange> ranges;
+    try {
+      ranges = request.getHeaders().getRange();
+    } catch (IllegalArgumentException e) {
+      response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+      return response.setComplete();
+    }
+    // 二分探索はファイルを読むため、イベントループを塞がないよう別スレッドで行う
+    return Mono.fromCallable(() -> slice(segment.get(), from, to))
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(slice -> write(segment.get(), slice, ranges, response));
+  }
+
+  private Slice slice(Segment segment, Instant from, Instant to) throws IOException {
+    try (FileChannel channel = RecordedDataCatalog.open(segment.getPath())) {
+      long size = channel.size();
+      if (from == null && to == null) {
+        return new Slice(0, size, null);
+      }
+      long dataStart = RecordedDataCatalog.dataStart(channel);
+      int column = segment.getStream().getTimestampColumn();
+      long start =
+          from != null
+              ? RecordedDataCatalog.locate(channel, dataStart, size, column, from)
+              : dataStart;
+      long end =
+          to != null ? RecordedDataCatalog.locate(channel, start, size, column, to) : size;
+      ByteBuffer header = ByteBuffer.allocate((int) Math.max(0, dataStart - 1));
+      channel.read(header, 0);
+      return new Slice(start, end, new String(header.array(), StandardCharsets.UTF_8).trim());
+    }
+  }
+
+  private Mono<Void> write(
+      Segment segment, Slice slice, List<HttpRange> ranges, ServerHttpResponse response) {
+    HttpHeaders headers = response.getHeaders();
+    headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+    headers.setContentType(TEXT_CSV);
+    headers.setContentDisposition(
+        ContentDisposition.attachment().filename(segment.getName()).build());
+    if (slice.header != null) {
+      headers.set(CSV_HEADER, slice.header);
+    }
+    long length = slice.end - slice.start;
+    long position = slice.start;
+    long count = length;
+    byte[] prefix = new byte[0];
+    // 複数範囲の指定は無視して全体を返す
+    if (ranges.size() == 1) {
+      HttpRange range = ranges.get(0);
+      long rangeStart;
+      long rangeEnd;
+      try {
+        rangeStart = range.getRangeStart(length);
+        rangeEnd = range.getRangeEnd(length);
+      } catch (IllegalArgumentException e) {
+        rangeStart = length;
+        rangeEnd = length;
+      }
+      if (rangeStart >= length) {
+        response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        return response.setComplete();
+      }
+      response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+      headers.set(
+          HttpHeaders.CONTENT_RANGE, "bytes " + rangeStart + "-" + rangeEnd + "/" + length);
+      position += rangeStart;
+      count = rangeEnd - rangeStart + 1;
+    } else if (slice.header != null) {
+      // 切り出した本体だけでCSVとして読めるよう、先頭にヘッダー行を付ける
+      prefix = (slice.header + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+    headers.setContentLength(prefix.length + count);
+    if (prefix.length + count == 0) {
+      return response.setComplete();
+    }
+    if (prefix.length == 0 && response instanceof ZeroCopyHttpOutputMessage zeroCopy) {
+      return zeroCopy.writeWith(segment.getPath(), position, count);
+    }
+    // ゼロコピーに対応しないサーバーやヘッダー行を付ける場合は、バッファを介して範囲だけを読む
+    Flux<DataBuffer> body =
+        count == 0
+            ? Flux.empty()
+            : DataBufferUtils.takeUntilByteCount(
+                DataBufferUtils.readAsynchronousFileChannel(
+                    () -> AsynchronousFileChannel.open(segment.getPath(), StandardOpenOption.READ),
+                    position,
+                    response.bufferFactory(),
+                    8192),
+                count);
+    if (prefix.length > 0) {
+      body = Flux.concat(Mono.just(response.bufferFactory().wrap(prefix)), body);
+    }
+    return response.writeWith(body);
+  }
+
+  private static List<String> parseColumns(String columns) {
+    return Arrays.stream(columns.split(","))
+        .map(String::trim)
+        .filter(column -> !column.isEmpty())
+        .toList();
+  }
+
+  private static class Slice {
+    private final long start;
+    private final long end;
+    private final String header;
+
+    Slice(long start, long end, String header) {
+      this.start = start;
+      this.end = end;
+      this.header = header;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.example.bitcoinmarketrecorder.gmo;
 
+import com.example.bitcoinmarketrecorder.analytics.BookAnalyticsService;
 import com.example.bitcoinmarketrecorder.gmo.model.GmoOrderbook;
 import com.example.bitcoinmarketrecorder.gmo.model.GmoTradeRecord;
 import com.example.bitcoinmarketrecorder.model.BestBidAsk;
@@ -7,6 +8,7 @@ import com.example.bitcoinmarketrecorder.model.MarketBoard;
 import com.example.bitcoinmarketrecorder.model.Trade;
 import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
 import com.example.bitcoinmarketrecorder.service.ExchSimService;
+import com.example.bitcoinmarketrecorder.service.MarketDataDispatcher;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -48,6 +50,10 @@ public class GmoWebSocketClient {
   private final ObjectMapper objectMapper = new ObjectMapper();
   protected final DataPersistenceService persistenceService;
   private final ExchSimService exchSimService;
+  private final MarketDataDispatcher marketDataDispatcher;
+
+  @Autowired private BookAnalyticsService bookAnalyticsService;
+
   private Disposable connectionDisposable;
   private final AtomicBoolean isReconnecting = new AtomicBoolean(false);
 
@@ -60,9 +66,13 @@ public class GmoWebSocketClient {
   private static final String CHANNEL_TRADES = "trades";
 
   @Autowired
-  public GmoWebSocketClient(DataPersistenceService persistenceService, ExchSimService exchSimService) {
+  public GmoWebSocketClient(
+      DataPersistenceService persistenceService,
+      ExchSimService exchSimService,
+      MarketDataDispatcher marketDataDispatcher) {
     this.persistenceService = persistenceService;
     this.exchSimService = exchSimService;
+    this.marketDataDispatcher = marketDataDispatcher;
   }
 
   @PostConstruct
@@ -186,6 +196,7 @@ public class GmoWebSocketClient {
           Trade domainTrade = convertToDomainTrade(trade);
           // logger.info("Received GMO trade: {}", trade);
           persistenceService.saveTrades(List.of(domainTrade));
+          marketDataDispatcher.dispatchTrades(List.of(domainTrade));
           
           // Send trade to ExchSim
           exchSimService.processTradeData(domainTrade);
@@ -194,6 +205,7 @@ public class GmoWebSocketClient {
           MarketBoard marketBoard = convertToDomainMarketBoard(orderbook);
           // logger.info("Received GMO MarketBoard for symbol: {}", orderbook.getSymbol());
           persistenceService.saveMarketBoard(marketBoard);
+          marketDataDispatcher.dispatchMarketBoard(marketBoard);
           
           exchSimService.processMarketBoard(marketBoard);
         } else {
@@ -300,7 +312,9 @@ public class GmoWebSocketClient {
       bestBidAsk.setBestAsk(marketBoard.getAsks().get(0).getPrice());
       bestBidAsk.setBestAskVolume(marketBoard.getAsks().get(0).getSize());
       bestBidAsk.setTimestamp(Instant.now());
+      bookAnalyticsService.apply(marketBoard, bestBidAsk);
       persistenceService.saveBestBidAsk(bestBidAsk);
+      marketDataDispatcher.dispatchBestBidAsk(bestBidAsk);
     }
 
     return marketBoard;
@@ -0,0 +1,112 @@
+package com.example.bitcoinmarketrecorder.history;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * 1銘柄・1種類分の時系列。{@link GorillaBlock}を時刻順に並べ、古いブロックから捨てる。
+ *
+ * <p>追記は受信スレッドから、読み出しはREST等の別スレッドから呼ばれるため、すべての操作をこのインスタンスで同期する。
+ */
+public class CompressedSeries {
+
+  private final String key;
+  private final int columns;
+  private final int blockBytes;
+  private final ArrayDeque<GorillaBlock> blocks = new ArrayDeque<>();
+  private long capacityBytes;
+
+  public CompressedSeries(String key, int columns, int blockBytes) {
+    this.key = key;
+    this.columns = columns;
+    this.blockBytes = blockBytes;
+  }
+
+  /** 1行を追記し、新しいブロックを確保した場合はそのバイト数を返す。 */
+  public synchronized int append(long timestamp, double[] values) {
+    int allocated = 0;
+    GorillaBlock last = blocks.peekLast();
+    if (last == null || !last.hasRoom()) {
+      last = new GorillaBlock(blockBytes, columns);
+      blocks.addLast(last);
+      allocated = last.getCapacityBytes();
+      capacityBytes += allocated;
+    }
+    last.append(timestamp, values);
+    return allocated;
+  }
+
+  /** 最も古いブロックを捨て、解放したバイト数を返す。書き込み中のブロックしかない場合は捨てない。 */
+  public synchronized int evictOldest() {
+    if (blocks.size() <= 1) {
+      return 0;
+    }
+    int freed = blocks.pollFirst().getCapacityBytes();
+    capacityBytes -= freed;
+    return freed;
+  }
+
+  /** 最新の行が{@code cutoff}より前のブロックを捨て、解放したバイト数を返す。 */
+  public synchronized long evictBefore(long cutoff) {
+    long freed = 0;
+    Iterator<GorillaBlock> iterator = blocks.iterator();
+    // 書き込み中の最後のブロックは残す
+    for (int remaining = blocks.size(); remaining > 1 && iterator.hasNext(); remaining--) {
+      GorillaBlock block = iterator.next();
+      if (block.getMaxTimestamp() >= cutoff) {
+        break;
+      }
+      iterator.remove();
+      freed += block.getCapacityBytes();
+    }
+    capacityBytes -= freed;
+    return freed;
+  }
+
+  /** タイムスタンプが[from, to)の行を時刻順に渡す。 */
+  public synchronized void query(long from, long to, GorillaBlock.RowVisitor visitor) {
+    for (GorillaBlock block : blocks) {
+      if (block.getCount() > 0 && block.getMaxTimestamp() >= from && block.getMinTimestamp() < to) {
+        block.forEach(from, to, visitor);
+      }
+    }
+  }
+
+  /** 捨てられる（書き込み中でない）最も古いブロックの先頭時刻。なければLong.MAX_VALUE。 */
+  public synchronized long getEvictableTimestamp() {
+    return blocks.size() > 1 ? blocks.peekFirst().getMinTimestamp() : Long.MAX_VALUE;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public synchronized long getCapacityBytes() {
+    return capacityBytes;
+  }
+
+  public synchronized long getUsedBytes() {
+    long used = 0;
+    for (GorillaBlock block : blocks) {
+      used += block.getUsedBytes();
+    }
+    return used;
+  }
+
+  public synchronized int getRowCount() {
+    int count = 0;
+    for (GorillaBlock block : blocks) {
+      count += block.getCount();
+    }
+    return count;
+  }
+
+  public synchronized int getBlockCount() {
+    return blocks.size();
+  }
+
+  /** 保持している最も古い行の時刻。空ならLong.MAX_VALUE。 */
+  public synchronized long getOldestTimestamp() {
+    return blocks.isEmpty() ? Long.MAX_VALUE : blocks.peekFirst().getMinTimestamp();
+  }
+}
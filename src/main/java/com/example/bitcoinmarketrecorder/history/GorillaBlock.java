@@ -0,0 +1,256 @@
+package com.example.bitcoinmarketrecorder.history;
+
+/**
+ * 時系列を圧縮して保持する固定長のブロック。
+ *
+ * <p>Gorilla（Facebookの時系列DB）の方式で、タイムスタンプは差分の差分、値は直前の値とのXORを可変長のビット列にして
+ * {@code long[]}に詰める。1行は1つのタイムスタンプと{@code columns}個の値からなり、値は列ごとに直前の値とXORを取る。
+ * 追記専用で、容量に達したら呼び出し側で新しいブロックに切り替える。スレッドセーフではない。
+ */
+public class GorillaBlock {
+
+  // 1行の最大ビット数: タイムスタンプ(4 + 64) + 列ごとに(2 + 5 + 6 + 64)
+  private static final int MAX_TIMESTAMP_BITS = 68;
+  private static final int MAX_VALUE_BITS = 77;
+
+  /** 復号した行の受け取り先。valuesは呼び出しごとに再利用される。 */
+  @FunctionalInterface
+  public interface RowVisitor {
+    void visit(long timestamp, double[] values);
+  }
+
+  private final long[] words;
+  private final int columns;
+  private final int maxRowBits;
+  private int bitPosition;
+  private int count;
+  private long lastTimestamp;
+  private long minTimestamp = Long.MAX_VALUE;
+  private long maxTimestamp = Long.MIN_VALUE;
+
+  // 追記用の状態
+  private long previousDelta;
+  private final long[] previousValues;
+  private final int[] previousLeading;
+  private final int[] previousTrailing;
+
+  /**
+   * @param sizeBytes ブロックの大きさ（8の倍数に切り上げる）
+   * @param columns 1行あたりの値の数
+   */
+  public GorillaBlock(int sizeBytes, int columns) {
+    this.words = new long[Math.max(1, (sizeBytes + 7) / 8)];
+    this.columns = columns;
+    this.maxRowBits = MAX_TIMESTAMP_BITS + columns * MAX_VALUE_BITS;
+    this.previousValues = new long[columns];
+    this.previousLeading = new int[columns];
+    this.previousTrailing = new int[columns];
+    if (maxRowBits > words.length * 64L) {
+      throw new IllegalArgumentException("Block of " + sizeBytes + " bytes cannot hold one row");
+    }
+  }
+
+  /** 最悪の場合の大きさでも1行を追記できる場合にtrueを返す。 */
+  public boolean hasRoom() {
+    return (long) words.length * 64 - bitPosition >= maxRowBits;
+  }
+
+  /**
+   * 1行を追記する。呼び出す前に{@link #hasRoom()}を確認すること。
+   *
+   * <p>タイムスタンプは直前の行以上であることを想定するが、前後しても正しく復号できる。
+   */
+  public void append(long timestamp, double[] values) {
+    if (count == 0) {
+      writeBits(timestamp, 64);
+      for (int i = 0; i < columns; i++) {
+        long bits = Double.doubleToRawLongBits(values[i]);
+        writeBits(bits, 64);
+        previousValues[i] = bits;
+        previousLeading[i] = Integer.MAX_VALUE;
+      }
+    } else {
+      long delta = timestamp - lastTimestamp;
+      writeDeltaOfDelta(delta - previousDelta);
+      previousDelta = delta;
+      for (int i = 0; i < columns; i++) {
+        writeValue(i, Double.doubleToRawLongBits(values[i]));
+      }
+    }
+    lastTimestamp = timestamp;
+    minTimestamp = Math.min(minTimestamp, timestamp);
+    maxTimestamp = Math.max(maxTimestamp, timestamp);
+    count++;
+  }
+
+  private void writeDeltaOfDelta(long dod) {
+    if (dod == 0) {
+      writeBits(0b0, 1);
+    } else if (dod >= -64 && dod <= 63) {
+      writeBits(0b10, 2);
+      writeBits(dod, 7);
+    } else if (dod >= -256 && dod <= 255) {
+      writeBits(0b110, 3);
+      writeBits(dod, 9);
+    } else if (dod >= -2048 && dod <= 2047) {
+      writeBits(0b1110, 4);
+      writeBits(dod, 12);
+    } else {
+      writeBits(0b1111, 4);
+      writeBits(dod, 64);
+    }
+  }
+
+  private void writeValue(int column, long bits) {
+    long xor = bits ^ previousValues[column];
+    previousValues[column] = bits;
+    if (xor == 0) {
+      writeBits(0b0, 1);
+      return;
+    }
+    // 先頭の0は5ビットで表せる31個までに丸める
+    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+    int trailing = Long.numberOfTrailingZeros(xor);
+    if (previousLeading[column] != Integer.MAX_VALUE
+        && leading >= previousLeading[column]
+        && trailing >= previousTrailing[column]) {
+      // 直前と同じ範囲に収まる場合はその範囲のビットだけを書く
+      int length = 64 - previousLeading[column] - previousTrailing[column];
+      writeBits(0b10, 2);
+      writeBits(xor >>> previousTrailing[column], length);
+      return;
+    }
+    int length = 64 - leading - trailing;
+    writeBits(0b11, 2);
+    writeBits(leading, 5);
+    writeBits(length - 1, 6);
+    writeBits(xor >>> trailing, length);
+    previousLeading[column] = leading;
+    previousTrailing[column] = trailing;
+  }
+
+  /** 下位{@code length}ビットを書く。 */
+  private void writeBits(long value, int length) {
+    int index = bitPosition >>> 6;
+    int offset = bitPosition & 63;
+    int free = 64 - offset;
+    if (length < 64) {
+      value &= (1L << length) - 1;
+    }
+    if (length <= free) {
+      words[index] |= value << (free - length);
+    } else {
+      words[index] |= value >>> (length - free);
+      words[index + 1] |= value << (64 - (length - free));
+    }
+    bitPosition += length;
+  }
+
+  /** 全行を先頭から復号する。 */
+  public void forEach(RowVisitor visitor) {
+    forEach(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+  }
+
+  /** タイムスタンプが[from, to)の行を復号する。 */
+  public void forEach(long from, long to, RowVisitor visitor) {
+    if (count == 0) {
+      return;
+    }
+    Reader reader = new Reader();
+    double[] values = new double[columns];
+    long[] bits = new long[columns];
+    int[] leading = new int[columns];
+    int[] trailing = new int[columns];
+    long timestamp = reader.read(64);
+    long delta = 0;
+    for (int i = 0; i < columns; i++) {
+      bits[i] = reader.read(64);
+      values[i] = Double.longBitsToDouble(bits[i]);
+    }
+    if (timestamp >= from && timestamp < to) {
+      visitor.visit(timestamp, values);
+    }
+    for (int row = 1; row < count; row++) {
+      delta += reader.readDeltaOfDelta();
+      timestamp += delta;
+      for (int i = 0; i < columns; i++) {
+        if (reader.read(1) == 0) {
+          continue;
+        }
+        if (reader.read(1) == 1) {
+          leading[i] = (int) reader.read(5);
+          int length = (int) reader.read(6) + 1;
+          trailing[i] = 64 - leading[i] - length;
+        }
+        int length = 64 - leading[i] - trailing[i];
+        bits[i] ^= reader.read(length) << trailing[i];
+        values[i] = Double.longBitsToDouble(bits[i]);
+      }
+      if (timestamp >= from && timestamp < to) {
+        visitor.visit(timestamp, values);
+      }
+    }
+  }
+
+  private class Reader {
+    private int position;
+
+    long read(int length) {
+      int index = position >>> 6;
+      int offset = position & 63;
+      int available = 64 - offset;
+      long value;
+      if (length <= available) {
+        value = words[index] >>> (available - length);
+      } else {
+        int rest = length - available;
+        value = (words[index] << rest) | (words[index + 1] >>> (64 - rest));
+      }
+      position += length;
+      return length == 64 ? value : value & ((1L << length) - 1);
+    }
+
+    long readDeltaOfDelta() {
+      if (read(1) == 0) {
+        return 0;
+      }
+      if (read(1) == 0) {
+        return signExtend(read(7), 7);
+      }
+      if (read(1) == 0) {
+        return signExtend(read(9), 9);
+      }
+      if (read(1) == 0) {
+        return signExtend(read(12), 12);
+      }
+      return read(64);
+    }
+
+    private long signExtend(long value, int length) {
+      long shift = 64 - length;
+      return (value << shift) >> shift;
+    }
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public long getMinTimestamp() {
+    return minTimestamp;
+  }
+
+  public long getMaxTimestamp() {
+    return maxTimestamp;
+  }
+
+  /** 確保しているメモリの大きさ。 */
+  public int getCapacityBytes() {
+    return words.length * 8;
+  }
+
+  /** 実際に使っているバイト数。 */
+  public int getUsedBytes() {
+    return (bitPosition + 7) / 8;
+  }
+}
@@ -0,0 +1,253 @@
+package com.example.bitcoinmarketrecorder.history;
+
+import com.example.bitcoinmarketrecorder.config.HistoryProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 直近のBBO・約定を銘柄ごとに圧縮してメモリに保持する。
+ *
+ * <p>受信経路から直接書き込み、{@link GorillaBlock}単位で保持する。{@code history.window-ms}より古いブロックは定期的に捨て、
+ * 全銘柄の合計が{@code history.max-bytes}を超えた場合は銘柄を問わず最も古いブロックから捨てる。
+ */
+@Service
+public class RecentHistoryStore implements MarketDataListener {
+
+  /** 保持する時系列の種類と列。 */
+  public enum SeriesType {
+    BBO(List.of("bid", "bid_size", "ask", "ask_size")),
+    TRADES(List.of("price", "size", "side"));
+
+    private final List<String> columns;
+
+    SeriesType(List<String> columns) {
+      this.columns = columns;
+    }
+
+    public List<String> getColumns() {
+      return columns;
+    }
+
+    public static Optional<SeriesType> fromName(String name) {
+      return Arrays.stream(values()).filter(t -> t.name().equalsIgnoreCase(name)).findFirst();
+    }
+  }
+
+  /** 列ごとの配列で表した検索結果。 */
+  public static class Rows {
+    private final List<String> columns;
+    private long[] timestamps = new long[64];
+    private double[][] values;
+    private int size;
+
+    Rows(List<String> columns) {
+      this.columns = columns;
+      this.values = new double[columns.size()][64];
+    }
+
+    void add(long timestamp, double[] row) {
+      if (size == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, size * 2);
+        for (int i = 0; i < values.length; i++) {
+          values[i] = Arrays.copyOf(values[i], size * 2);
+        }
+      }
+      timestamps[size] = timestamp;
+      for (int i = 0; i < values.length; i++) {
+        values[i][size] = row[i];
+      }
+      size++;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public long[] getTimestamps() {
+      return Arrays.copyOf(timestamps, size);
+    }
+
+    public double[] getColumn(String column) {
+      return Arrays.copyOf(values[columns.indexOf(column)], size);
+    }
+
+    /** 列名をキーにした配列の形にする（JSON応答用）。 */
+    public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("count", size);
+      map.put("timestamp", getTimestamps());
+      for (String column : columns) {
+        map.put(column, getColumn(column));
+      }
+      return map;
+    }
+  }
+
+  @Autowired private HistoryProperties historyProperties;
+
+  private final Map<String, CompressedSeries> bbo = new ConcurrentHashMap<>();
+  private final Map<String, CompressedSeries> trades = new ConcurrentHashMap<>();
+  private final AtomicLong capacityBytes = new AtomicLong();
+  private final AtomicLong budgetEvictions = new AtomicLong();
+  private final AtomicLong windowEvictions = new AtomicLong();
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!historyProperties.isEnabled() || bestBidAsk.getTimestamp() == null) {
+      return;
+    }
+    append(
+        bbo,
+        SeriesType.BBO,
+        SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol()),
+        bestBidAsk.getTimestamp().toEpochMilli(),
+        new double[] {
+          toDouble(bestBidAsk.getBestBid()),
+          toDouble(bestBidAsk.getBestBidVolume()),
+          toDouble(bestBidAsk.getBestAsk()),
+          toDouble(bestBidAsk.getBestAskVolume())
+        });
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!historyProperties.isEnabled() || trade.getTimestamp() == null) {
+      return;
+    }
+    double side = "BUY".equals(trade.getSide()) ? 1 : "SELL".equals(trade.getSide()) ? -1 : 0;
+    append(
+        trades,
+        SeriesType.TRADES,
+        SymbolKey.of(trade.getExchange(), trade.getSymbol()),
+        trade.getTimestamp().toEpochMilli(),
+        new double[] {toDouble(trade.getPrice()), toDouble(trade.getSize()), side});
+  }
+
+  private void append(
+      Map<String, CompressedSeries> seriesMap,
+      SeriesType type,
+      String key,
+      long timestamp,
+      double[] values) {
+    int blockBytes = historyProperties.getBlockBytes();
+    CompressedSeries series =
+        seriesMap.computeIfAbsent(
+            key, k -> new CompressedSeries(k, type.getColumns().size(), blockBytes));
+    int allocated = series.append(timestamp, values);
+    if (allocated > 0 && capacityBytes.addAndGet(allocated) > historyProperties.getMaxBytes()) {
+      enforceBudget();
+    }
+  }
+
+  /** 上限を下回るまで、全銘柄のうち最も古いブロックから捨てる。 */
+  private synchronized void enforceBudget() {
+    while (capacityBytes.get() > historyProperties.getMaxBytes()) {
+      CompressedSeries oldest = null;
+      long oldestTimestamp = Long.MAX_VALUE;
+      for (Map<String, CompressedSeries> seriesMap : List.of(bbo, trades)) {
+        for (CompressedSeries series : seriesMap.values()) {
+          long timestamp = series.getEvictableTimestamp();
+          if (timestamp < oldestTimestamp) {
+            oldest = series;
+            oldestTimestamp = timestamp;
+          }
+        }
+      }
+      int freed = oldest != null ? oldest.evictOldest() : 0;
+      if (freed == 0) {
+        // 書き込み中のブロックしか残っていない
+        return;
+      }
+      capacityBytes.addAndGet(-freed);
+      budgetEvictions.incrementAndGet();
+    }
+  }
+
+  /** 保持期間を過ぎたブロックを捨てる。 */
+  @Scheduled(fixedDelayString = "${history.evict-interval-ms:10000}")
+  public void evictExpired() {
+    evictBefore(System.currentTimeMillis() - historyProperties.getWindowMs());
+  }
+
+  void evictBefore(long cutoff) {
+    for (Map<String, CompressedSeries> seriesMap : List.of(bbo, trades)) {
+      for (CompressedSeries series : seriesMap.values()) {
+        int blocks = series.getBlockCount();
+        long freed = series.evictBefore(cutoff);
+        if (freed > 0) {
+          capacityBytes.addAndGet(-freed);
+          windowEvictions.addAndGet(blocks - series.getBlockCount());
+        }
+      }
+    }
+  }
+
+  /**
+   * タイムスタンプ（エポックミリ秒）が[from, to)の行を返す。
+   *
+   * @param limit 最大件数。超えた分は新しい側を切り捨てる
+   */
+  public Optional<Rows> query(SeriesType type, String key, long from, long to, int limit) {
+    CompressedSeries series = (type == SeriesType.BBO ? bbo : trades).get(key);
+    if (series == null) {
+      return Optional.empty();
+    }
+    Rows rows = new Rows(type.getColumns());
+    series.query(
+        from,
+        to,
+        (timestamp, values) -> {
+          if (rows.size() < limit) {
+            rows.add(timestamp, values);
+          }
+        });
+    return Optional.of(rows);
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", historyProperties.isEnabled());
+    stats.put("capacityBytes", capacityBytes.get());
+    stats.put("maxBytes", historyProperties.getMaxBytes());
+    stats.put("budgetEvictions", budgetEvictions.get());
+    stats.put("windowEvictions", windowEvictions.get());
+    stats.put("bbo", seriesStats(bbo));
+    stats.put("trades", seriesStats(trades));
+    return stats;
+  }
+
+  private static Map<String, Object> seriesStats(Map<String, CompressedSeries> seriesMap) {
+    Map<String, Object> stats = new TreeMap<>();
+    for (CompressedSeries series : seriesMap.values()) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      int rowCount = series.getRowCount();
+      long usedBytes = series.getUsedBytes();
+      entry.put("rows", rowCount);
+      entry.put("blocks", series.getBlockCount());
+      entry.put("usedBytes", usedBytes);
+      entry.put("bytesPerRow", rowCount > 0 ? (double) usedBytes / rowCount : 0.0);
+      long oldest = series.getOldestTimestamp();
+      entry.put("oldestTimestamp", oldest == Long.MAX_VALUE ? null : oldest);
+      stats.put(series.getKey(), entry);
+    }
+    return stats;
+  }
+
+  private static double toDouble(BigDecimal value) {
+    return value != null ? value.doubleValue() : Double.NaN;
+  }
+}
@@ -0,0 +1,126 @@
+package com.example.bitcoinmarketrecorder.ipc;
+
+import com.example.bitcoinmarketrecorder.config.SharedMemoryProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.multicast.MarketDataPacket;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 約定・BBO・板を{@link MarketDataPacket}形式で共有メモリのリングに書き込む。
+ *
+ * <p>同一ホストのプロセスは{@link SharedMemoryRingReader}で読む。パケットのseqにはリング上の連番が入る。
+ * 取引所ごとの受信スレッドから呼ばれるため、書き込みはこのクラスで直列化して単一の書き込み側とする。
+ */
+@Service
+public class SharedMemoryPublisher implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemoryPublisher.class);
+
+  @Autowired private SharedMemoryProperties sharedMemoryProperties;
+
+  private SharedMemoryRingWriter writer;
+  private ByteBuffer scratch;
+  private volatile boolean running;
+  private long written;
+  private long oversized;
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!sharedMemoryProperties.isEnabled()) {
+      return;
+    }
+    writer =
+        new SharedMemoryRingWriter(
+            Path.of(sharedMemoryProperties.getPath()),
+            sharedMemoryProperties.getSlotCount(),
+            sharedMemoryProperties.getSlotSize());
+    scratch = ByteBuffer.allocate(writer.getMaxPayloadSize());
+    running = true;
+    logger.info(
+        "Shared memory ring at {} ({} slots of {} bytes)",
+        writer.getPath().toAbsolutePath(),
+        sharedMemoryProperties.getSlotCount(),
+        sharedMemoryProperties.getSlotSize());
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (running) {
+      write(MarketDataPacket.of(trade));
+    }
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (running) {
+      write(MarketDataPacket.of(bestBidAsk));
+    }
+  }
+
+  @Override
+  public void onMarketBoard(MarketBoard board) {
+    if (running) {
+      write(MarketDataPacket.of(board, sharedMemoryProperties.getBookDepth()));
+    }
+  }
+
+  private synchronized void write(MarketDataPacket packet) {
+    if (!running) {
+      return;
+    }
+    scratch.clear();
+    try {
+      packet.withSequence(writer.getSequence() + 1, (byte) 0).encodeTo(scratch);
+    } catch (BufferOverflowException e) {
+      if (oversized++ == 0) {
+        logger.warn(
+            "{} packet for {} does not fit in a {} byte slot; increase shared-memory.slot-size",
+            packet.getType(),
+            packet.getSymbol(),
+            sharedMemoryProperties.getSlotSize());
+      }
+      return;
+    }
+    scratch.flip();
+    writer.append(scratch);
+    written++;
+  }
+
+  public synchronized Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", running);
+    if (writer != null) {
+      stats.put("path", writer.getPath().toAbsolutePath().toString());
+      stats.put("sequence", writer.getSequence());
+    }
+    stats.put("written", written);
+    stats.put("oversized", oversized);
+    return stats;
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    running = false;
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        logger.warn("Failed to close shared memory ring: {}", e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.example.bitcoinmarketrecorder.ipc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * メモリマップファイル上のリングバッファのレイアウト。
+ *
+ * <p>先頭{@link #HEADER_SIZE}バイトがヘッダー、その後に{@code slotSize}バイトのスロットが{@code slotCount}個並ぶ。
+ * 連番{@code n}（1始まり）のメッセージはスロット{@code (n - 1) % slotCount}に書かれる。
+ *
+ * <pre>
+ * ヘッダー
+ *   0  int  magic
+ *   4  int  version
+ *   8  int  slotCount
+ *   12 int  slotSize
+ *   16 long epoch        書き込み側の起動ごとに変わる値。読み込み側はこれで書き込み側の再起動を検知する
+ *   64 long writeSeq     書き込みが完了した最後の連番（別キャッシュラインに置く）
+ * スロット
+ *   0  long seq          書き込み中は-seq、完了後にseq
+ *   8  int  length
+ *   12 byte[] payload
+ * </pre>
+ *
+ * <p>書き込み側はスロットの連番を負にしてから本体を書き、最後に連番とヘッダーのwriteSeqをreleaseで更新する。
+ * 読み込み側は本体をコピーした前後でスロットの連番を読み、どちらも期待した連番であればコピーが壊れていないと判断する。
+ */
+final class SharedMemoryRing {
+
+  static final int MAGIC = 0x4D445249; // "MDRI"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 128;
+  static final int SLOT_HEADER_SIZE = 12;
+
+  static final int MAGIC_OFFSET = 0;
+  static final int VERSION_OFFSET = 4;
+  static final int SLOT_COUNT_OFFSET = 8;
+  static final int SLOT_SIZE_OFFSET = 12;
+  static final int EPOCH_OFFSET = 16;
+  static final int WRITE_SEQ_OFFSET = 64;
+
+  static final int SLOT_SEQ_OFFSET = 0;
+  static final int SLOT_LENGTH_OFFSET = 8;
+
+  /** マップしたバッファ上のlongをvolatile/acquire/releaseで読み書きする。 */
+  static final VarHandle LONG =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private SharedMemoryRing() {}
+
+  static long fileSize(int slotCount, int slotSize) {
+    return HEADER_SIZE + (long) slotCount * slotSize;
+  }
+
+  static int slotOffset(long seq, int slotCount, int slotSize) {
+    return HEADER_SIZE + (int) ((seq - 1) % slotCount) * slotSize;
+  }
+
+  static void validate(int slotCount, int slotSize) {
+    if (slotCount <= 0) {
+      throw new IllegalArgumentException("slotCount must be positive: " + slotCount);
+    }
+    if (slotSize <= SLOT_HEADER_SIZE || slotSize % Long.BYTES != 0) {
+      throw new IllegalArgumentException(
+          "slotSize must be a multiple of 8 larger than " + SLOT_HEADER_SIZE + ": " + slotSize);
+    }
+    if (fileSize(slotCount, slotSize) > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Ring is too large to map: " + slotCount + "x" + slotSize);
+    }
+  }
+}
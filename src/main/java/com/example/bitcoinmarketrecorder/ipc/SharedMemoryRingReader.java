@@ -0,0 +1,196 @@
+package com.example.bitcoinmarketrecorder.ipc;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 共有メモリのリングの読み込みライブラリ。
+ *
+ * <p>読み込み側はそれぞれ自分の連番カーソルを持ち、ロックを取らずに読む。書き込み側に周回されて読めなくなった
+ * メッセージは{@link #getLost()}に数えて読み飛ばす。書き込み側が再起動した場合は{@link #getRestarts()}を増やして
+ * 新しいリングの先頭から読み直す。1つのインスタンスは1スレッドから使うこと。
+ *
+ * <pre>{@code
+ * Path ring = Path.of("/dev/shm/market-data.ring");
+ * try (SharedMemoryRingReader reader = new SharedMemoryRingReader(ring)) {
+ *   while (running) {
+ *     if (reader.poll((seq, payload) -> handle(MarketDataPacket.decode(payload))) == 0) {
+ *       Thread.onSpinWait();
+ *     }
+ *   }
+ * }
+ * }</pre>
+ */
+public class SharedMemoryRingReader implements AutoCloseable {
+
+  /** 読み込んだメッセージの通知先。payloadは呼び出しの間だけ有効。 */
+  @FunctionalInterface
+  public interface Handler {
+    void onMessage(long seq, ByteBuffer payload);
+  }
+
+  private final FileChannel fileChannel;
+  private MappedByteBuffer buffer;
+  private int slotCount;
+  private int slotSize;
+  private ByteBuffer scratch;
+  private long epoch;
+  private long next = 1;
+
+  private long read;
+  private long lost;
+  private long restarts;
+
+  /** リングを開き、最新の位置から読み始める。 */
+  public SharedMemoryRingReader(Path path) throws IOException {
+    this.fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+    if (!map()) {
+      fileChannel.close();
+      throw new IOException("Not an initialized market data ring: " + path);
+    }
+    seekToLatest();
+  }
+
+  private boolean map() throws IOException {
+    if (fileChannel.size() < SharedMemoryRing.HEADER_SIZE) {
+      return false;
+    }
+    MappedByteBuffer header =
+        fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, SharedMemoryRing.HEADER_SIZE);
+    header.order(ByteOrder.nativeOrder());
+    if (header.getInt(SharedMemoryRing.MAGIC_OFFSET) != SharedMemoryRing.MAGIC
+        || header.getInt(SharedMemoryRing.VERSION_OFFSET) != SharedMemoryRing.VERSION) {
+      return false;
+    }
+    int count = header.getInt(SharedMemoryRing.SLOT_COUNT_OFFSET);
+    int size = header.getInt(SharedMemoryRing.SLOT_SIZE_OFFSET);
+    if (buffer == null || count != slotCount || size != slotSize) {
+      SharedMemoryRing.validate(count, size);
+      buffer =
+          fileChannel.map(
+              FileChannel.MapMode.READ_ONLY, 0, SharedMemoryRing.fileSize(count, size));
+      buffer.order(ByteOrder.nativeOrder());
+      slotCount = count;
+      slotSize = size;
+      scratch = ByteBuffer.allocate(size - SharedMemoryRing.SLOT_HEADER_SIZE);
+    }
+    epoch = (long) SharedMemoryRing.LONG.getAcquire(buffer, SharedMemoryRing.EPOCH_OFFSET);
+    return true;
+  }
+
+  /** 次に読む位置を書き込み済みの最新の次にする。 */
+  public void seekToLatest() {
+    next = writeSeq() + 1;
+  }
+
+  /** 次に読む位置をリングに残っている最も古いメッセージにする。 */
+  public void seekToOldest() {
+    next = Math.max(1, writeSeq() - slotCount + 1);
+  }
+
+  /** 読めるメッセージをすべて読む。 */
+  public int poll(Handler handler) throws IOException {
+    return poll(handler, Integer.MAX_VALUE);
+  }
+
+  /**
+   * 読めるメッセージを最大{@code limit}件読み、読んだ件数を返す。
+   *
+   * <p>新しいメッセージがない場合はすぐに0を返すため、待ち方（スピン・スリープ等）は呼び出し側が決める。
+   */
+  public int poll(Handler handler, int limit) throws IOException {
+    if (!checkEpoch()) {
+      return 0;
+    }
+    long available = writeSeq();
+    int count = 0;
+    while (next <= available && count < limit) {
+      if (available - next >= slotCount) {
+        // 周回された分は読み飛ばす
+        long oldest = available - slotCount + 1;
+        lost += oldest - next;
+        next = oldest;
+      }
+      if (readSlot(next)) {
+        scratch.flip();
+        handler.onMessage(next, scratch);
+        read++;
+        count++;
+      } else {
+        // 読んでいる間に上書きされた
+        lost++;
+        available = writeSeq();
+      }
+      next++;
+    }
+    return count;
+  }
+
+  /** スロットの内容をscratchにコピーし、コピーの前後で上書きされていなければtrueを返す。 */
+  private boolean readSlot(long seq) {
+    int offset = SharedMemoryRing.slotOffset(seq, slotCount, slotSize);
+    long before =
+        (long) SharedMemoryRing.LONG.getAcquire(buffer, offset + SharedMemoryRing.SLOT_SEQ_OFFSET);
+    if (before != seq) {
+      return false;
+    }
+    int length = buffer.getInt(offset + SharedMemoryRing.SLOT_LENGTH_OFFSET);
+    if (length < 0 || length > scratch.capacity()) {
+      return false;
+    }
+    scratch.clear();
+    scratch.put(0, buffer, offset + SharedMemoryRing.SLOT_HEADER_SIZE, length);
+    scratch.position(length);
+    VarHandle.loadLoadFence();
+    long after =
+        (long) SharedMemoryRing.LONG.getVolatile(buffer, offset + SharedMemoryRing.SLOT_SEQ_OFFSET);
+    return after == seq;
+  }
+
+  /** 書き込み側の再起動を検知した場合は新しいリングの先頭から読み直す。初期化中であればfalseを返す。 */
+  private boolean checkEpoch() throws IOException {
+    long current = (long) SharedMemoryRing.LONG.getAcquire(buffer, SharedMemoryRing.EPOCH_OFFSET);
+    if (current == epoch
+        && buffer.getInt(SharedMemoryRing.MAGIC_OFFSET) == SharedMemoryRing.MAGIC) {
+      return true;
+    }
+    if (!map()) {
+      return false;
+    }
+    restarts++;
+    next = 1;
+    return true;
+  }
+
+  private long writeSeq() {
+    return (long) SharedMemoryRing.LONG.getAcquire(buffer, SharedMemoryRing.WRITE_SEQ_OFFSET);
+  }
+
+  /** 次に読む連番。 */
+  public long getPosition() {
+    return next;
+  }
+
+  public long getRead() {
+    return read;
+  }
+
+  public long getLost() {
+    return lost;
+  }
+
+  public long getRestarts() {
+    return restarts;
+  }
+
+  @Override
+  public void close() throws IOException {
+    fileChannel.close();
+  }
+}
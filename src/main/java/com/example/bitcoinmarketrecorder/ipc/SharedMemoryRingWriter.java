@@ -0,0 +1,102 @@
+package com.example.bitcoinmarketrecorder.ipc;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 共有メモリのリングへの書き込み。書き込み側は1つだけとし、{@link #append}は同時に呼ばないこと。
+ *
+ * <p>起動のたびにヘッダーを初期化してepochを変えるため、読み込み側は書き込み側の再起動を検知して先頭から読み直す。
+ * 読み込み側を待つことはなく、追いつけない読み込み側は古いメッセージを取りこぼす（{@link SharedMemoryRingReader}で検知できる）。
+ */
+public class SharedMemoryRingWriter implements AutoCloseable {
+
+  private final Path path;
+  private final int slotCount;
+  private final int slotSize;
+  private final FileChannel fileChannel;
+  private final MappedByteBuffer buffer;
+  private long seq;
+
+  public SharedMemoryRingWriter(Path path, int slotCount, int slotSize) throws IOException {
+    SharedMemoryRing.validate(slotCount, slotSize);
+    this.path = path;
+    this.slotCount = slotCount;
+    this.slotSize = slotSize;
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    // 読み込み側が開いたままのファイルを使い続けられるよう、削除や切り詰めはせずに上書きする
+    this.fileChannel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = SharedMemoryRing.fileSize(slotCount, slotSize);
+    this.buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.order(ByteOrder.nativeOrder());
+    initialize();
+  }
+
+  private void initialize() {
+    // 初期化中はmagicを消しておき、読み込み側に未完成のヘッダーを使わせない
+    buffer.putInt(SharedMemoryRing.MAGIC_OFFSET, 0);
+    SharedMemoryRing.LONG.setRelease(buffer, SharedMemoryRing.WRITE_SEQ_OFFSET, 0L);
+    for (int i = 0; i < slotCount; i++) {
+      buffer.putLong(SharedMemoryRing.HEADER_SIZE + i * slotSize, 0L);
+    }
+    buffer.putInt(SharedMemoryRing.VERSION_OFFSET, SharedMemoryRing.VERSION);
+    buffer.putInt(SharedMemoryRing.SLOT_COUNT_OFFSET, slotCount);
+    buffer.putInt(SharedMemoryRing.SLOT_SIZE_OFFSET, slotSize);
+    SharedMemoryRing.LONG.setRelease(buffer, SharedMemoryRing.EPOCH_OFFSET, System.nanoTime());
+    buffer.putInt(SharedMemoryRing.MAGIC_OFFSET, SharedMemoryRing.MAGIC);
+    VarHandle.fullFence();
+  }
+
+  /**
+   * メッセージを1件書き込み、その連番を返す。
+   *
+   * @param payload positionからlimitまでを書き込む。スロットに収まらない場合はIllegalArgumentException
+   */
+  public long append(ByteBuffer payload) {
+    int length = payload.remaining();
+    if (length > getMaxPayloadSize()) {
+      throw new IllegalArgumentException(
+          "Payload of " + length + " bytes exceeds slot capacity " + getMaxPayloadSize());
+    }
+    long next = seq + 1;
+    int offset = SharedMemoryRing.slotOffset(next, slotCount, slotSize);
+    SharedMemoryRing.LONG.setRelease(buffer, offset + SharedMemoryRing.SLOT_SEQ_OFFSET, -next);
+    // 本体の書き込みが「書き込み中」の印より先に見えないようにする
+    VarHandle.storeStoreFence();
+    buffer.putInt(offset + SharedMemoryRing.SLOT_LENGTH_OFFSET, length);
+    buffer.put(offset + SharedMemoryRing.SLOT_HEADER_SIZE, payload, payload.position(), length);
+    SharedMemoryRing.LONG.setRelease(buffer, offset + SharedMemoryRing.SLOT_SEQ_OFFSET, next);
+    SharedMemoryRing.LONG.setRelease(buffer, SharedMemoryRing.WRITE_SEQ_OFFSET, next);
+    seq = next;
+    return next;
+  }
+
+  public long getSequence() {
+    return seq;
+  }
+
+  public int getMaxPayloadSize() {
+    return slotSize - SharedMemoryRing.SLOT_HEADER_SIZE;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  @Override
+  public void close() throws IOException {
+    fileChannel.close();
+  }
+}
@@ -11,6 +11,15 @@ public class BestBidAsk {
   private BigDecimal bestAsk;
   private BigDecimal bestAskVolume;
   private Instant timestamp;
+  // BookAnalyticsServiceが付ける板の指標（無効な場合はnull）
+  private Double imbalance;
+  private Double depthImbalance;
+  private Double microprice;
+  private Double weightedMid;
+  private Double bidDepth;
+  private Double askDepth;
+  private Double bidSlope;
+  private Double askSlope;
 
   // Getters and Setters
   public String getExchange() {
@@ -68,4 +77,68 @@ public class BestBidAsk {
   public void setTimestamp(Instant timestamp) {
     this.timestamp = timestamp;
   }
+
+  public Double getImbalance() {
+    return imbalance;
+  }
+
+  public void setImbalance(Double imbalance) {
+    this.imbalance = imbalance;
+  }
+
+  public Double getDepthImbalance() {
+    return depthImbalance;
+  }
+
+  public void setDepthImbalance(Double depthImbalance) {
+    this.depthImbalance = depthImbalance;
+  }
+
+  public Double getMicroprice() {
+    return microprice;
+  }
+
+  public void setMicroprice(Double microprice) {
+    this.microprice = microprice;
+  }
+
+  public Double getWeightedMid() {
+    return weightedMid;
+  }
+
+  public void setWeightedMid(Double weightedMid) {
+    this.weightedMid = weightedMid;
+  }
+
+  public Double getBidDepth() {
+    return bidDepth;
+  }
+
+  public void setBidDepth(Double bidDepth) {
+    this.bidDepth = bidDepth;
+  }
+
+  public Double getAskDepth() {
+    return askDepth;
+  }
+
+  public void setAskDepth(Double askDepth) {
+    this.askDepth = askDepth;
+  }
+
+  public Double getBidSlope() {
+    return bidSlope;
+  }
+
+  public void setBidSlope(Double bidSlope) {
+    this.bidSlope = bidSlope;
+  }
+
+  public Double getAskSlope() {
+    return askSlope;
+  }
+
+  public void setAskSlope(Double askSlope) {
+    this.askSlope = askSlope;
+  }
 }
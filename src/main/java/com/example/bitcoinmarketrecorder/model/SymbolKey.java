@@ -0,0 +1,24 @@
+package com.example.bitcoinmarketrecorder.model;
+
+/** 銘柄ごとの状態を引くキー{@code <取引所（大文字）>:<銘柄>}。 */
+public final class SymbolKey {
+
+  private SymbolKey() {}
+
+  public static String of(String exchange, String symbol) {
+    return exchange.toUpperCase() + ":" + symbol;
+  }
+
+  /**
+   * 設定に書いた{@code <取引所>:<銘柄>}をキーの形に揃える。
+   *
+   * @throws IllegalArgumentException 区切りの{@code :}がない場合
+   */
+  public static String parse(String value) {
+    int separator = value != null ? value.indexOf(':') : -1;
+    if (separator < 0) {
+      throw new IllegalArgumentException("Symbol must be EXCHANGE:SYMBOL: " + value);
+    }
+    return of(value.substring(0, separator), value.substring(separator + 1));
+  }
+}
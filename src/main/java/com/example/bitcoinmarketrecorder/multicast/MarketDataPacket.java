@@ -0,0 +1,389 @@
+package com.example.bitcoinmarketrecorder.multicast;
+
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * マルチキャスト配信するバイナリパケット。
+ *
+ * <p>レイアウト（ビッグエンディアン）:
+ *
+ * <pre>
+ * short magic(0x4D44) | byte version | byte type | byte channel | byte flags | long seq |
+ * long timestamp(epoch ms) | byte symbolLength | symbol(ASCII) | 本体
+ * </pre>
+ *
+ * <p>本体は種別ごとに、約定が{@code double price, double size, byte side}、BBOが
+ * {@code double bid, double bidSize, double ask, double askSize}、板が
+ * {@code byte bidCount, (double price, double size)*, byte askCount, (double price, double size)*}。
+ * ハートビートは本体を持たず、seqにそのチャンネルで最後に送った連番を入れる。
+ *
+ * <p>マルチキャスト配信と共有メモリのリングで共通の形式として使う。
+ */
+public final class MarketDataPacket {
+
+  public static final short MAGIC = 0x4D44;
+  public static final byte VERSION = 1;
+
+  public static final byte TYPE_TRADE = 1;
+  public static final byte TYPE_BBO = 2;
+  public static final byte TYPE_BOOK = 3;
+  public static final byte TYPE_HEARTBEAT = 4;
+
+  // 連番はチャンネルごとに独立して採番する
+  public static final int CHANNEL_TRADE = 0;
+  public static final int CHANNEL_BBO = 1;
+  public static final int CHANNEL_BOOK = 2;
+  public static final int CHANNEL_COUNT = 3;
+
+  /** 定期スナップショットとして再送した板・BBO。 */
+  public static final byte FLAG_SNAPSHOT = 1;
+
+  public static final byte SIDE_UNKNOWN = 0;
+  public static final byte SIDE_BUY = 1;
+  public static final byte SIDE_SELL = 2;
+
+  public static final int MAX_PACKET_SIZE = 1400;
+
+  private static final double[] EMPTY = new double[0];
+
+  private byte type;
+  private int channel;
+  private byte flags;
+  private long seq;
+  private long timestamp;
+  private String symbol = "";
+
+  private double price;
+  private double size;
+  private byte side;
+
+  private double bid;
+  private double bidSize;
+  private double ask;
+  private double askSize;
+
+  private double[] bidPrices = EMPTY;
+  private double[] bidSizes = EMPTY;
+  private double[] askPrices = EMPTY;
+  private double[] askSizes = EMPTY;
+
+  private MarketDataPacket() {}
+
+  public static MarketDataPacket trade(
+      String symbol, long timestamp, double price, double size, byte side) {
+    MarketDataPacket packet = header(TYPE_TRADE, CHANNEL_TRADE, symbol, timestamp);
+    packet.price = price;
+    packet.size = size;
+    packet.side = side;
+    return packet;
+  }
+
+  public static MarketDataPacket bbo(
+      String symbol, long timestamp, double bid, double bidSize, double ask, double askSize) {
+    MarketDataPacket packet = header(TYPE_BBO, CHANNEL_BBO, symbol, timestamp);
+    packet.bid = bid;
+    packet.bidSize = bidSize;
+    packet.ask = ask;
+    packet.askSize = askSize;
+    return packet;
+  }
+
+  public static MarketDataPacket book(
+      String symbol,
+      long timestamp,
+      double[] bidPrices,
+      double[] bidSizes,
+      double[] askPrices,
+      double[] askSizes) {
+    MarketDataPacket packet = header(TYPE_BOOK, CHANNEL_BOOK, symbol, timestamp);
+    packet.bidPrices = bidPrices;
+    packet.bidSizes = bidSizes;
+    packet.askPrices = askPrices;
+    packet.askSizes = askSizes;
+    return packet;
+  }
+
+  public static MarketDataPacket heartbeat(int channel, long lastSeq, long timestamp) {
+    MarketDataPacket packet = header(TYPE_HEARTBEAT, channel, "", timestamp);
+    packet.seq = lastSeq;
+    return packet;
+  }
+
+  /** 約定から作る。銘柄は{@code 取引所:シンボル}。 */
+  public static MarketDataPacket of(Trade trade) {
+    return trade(
+        SymbolKey.of(trade.getExchange(), trade.getSymbol()),
+        trade.getTimestamp() != null ? trade.getTimestamp().toEpochMilli() : 0,
+        trade.getPrice().doubleValue(),
+        trade.getSize().doubleValue(),
+        toSide(trade.getSide()));
+  }
+
+  public static MarketDataPacket of(BestBidAsk bestBidAsk) {
+    return bbo(
+        SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol()),
+        bestBidAsk.getTimestamp() != null ? bestBidAsk.getTimestamp().toEpochMilli() : 0,
+        bestBidAsk.getBestBid().doubleValue(),
+        bestBidAsk.getBestBidVolume().doubleValue(),
+        bestBidAsk.getBestAsk().doubleValue(),
+        bestBidAsk.getBestAskVolume().doubleValue());
+  }
+
+  /** 板の上位{@code depth}件から作る。 */
+  public static MarketDataPacket of(MarketBoard board, int depth) {
+    int bidCount = Math.min(depth, board.getBids().size());
+    int askCount = Math.min(depth, board.getAsks().size());
+    double[] bidPrices = new double[bidCount];
+    double[] bidSizes = new double[bidCount];
+    double[] askPrices = new double[askCount];
+    double[] askSizes = new double[askCount];
+    copyLevels(board.getBids(), bidPrices, bidSizes);
+    copyLevels(board.getAsks(), askPrices, askSizes);
+    return book(
+        SymbolKey.of(board.getExchange(), board.getSymbol()),
+        board.getTs() != null ? board.getTs().toEpochMilli() : 0,
+        bidPrices,
+        bidSizes,
+        askPrices,
+        askSizes);
+  }
+
+  private static byte toSide(String side) {
+    if ("BUY".equalsIgnoreCase(side)) {
+      return SIDE_BUY;
+    }
+    if ("SELL".equalsIgnoreCase(side)) {
+      return SIDE_SELL;
+    }
+    return SIDE_UNKNOWN;
+  }
+
+  private static void copyLevels(
+      List<MarketBoard.PriceLevel> levels, double[] prices, double[] sizes) {
+    for (int i = 0; i < prices.length; i++) {
+      prices[i] = levels.get(i).getPrice().doubleValue();
+      sizes[i] = levels.get(i).getSize().doubleValue();
+    }
+  }
+
+  private static MarketDataPacket header(byte type, int channel, String symbol, long timestamp) {
+    MarketDataPacket packet = new MarketDataPacket();
+    packet.type = type;
+    packet.channel = channel;
+    packet.symbol = symbol;
+    packet.timestamp = timestamp;
+    return packet;
+  }
+
+  /** 連番とフラグを変えた複製を返す。スナップショットの再送に使う。 */
+  public MarketDataPacket withSequence(long seq, byte flags) {
+    MarketDataPacket copy = new MarketDataPacket();
+    copy.type = type;
+    copy.channel = channel;
+    copy.flags = flags;
+    copy.seq = seq;
+    copy.timestamp = timestamp;
+    copy.symbol = symbol;
+    copy.price = price;
+    copy.size = size;
+    copy.side = side;
+    copy.bid = bid;
+    copy.bidSize = bidSize;
+    copy.ask = ask;
+    copy.askSize = askSize;
+    copy.bidPrices = bidPrices;
+    copy.bidSizes = bidSizes;
+    copy.askPrices = askPrices;
+    copy.askSizes = askSizes;
+    return copy;
+  }
+
+  public byte[] encode() {
+    ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    encodeTo(buffer);
+    byte[] bytes = new byte[buffer.position()];
+    buffer.flip();
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /** バッファの現在位置から書き込む。共有メモリのリングなど、配列を確保せずに書き込みたい場合に使う。 */
+  public void encodeTo(ByteBuffer buffer) {
+    byte[] symbolBytes = symbol.getBytes(StandardCharsets.US_ASCII);
+    buffer.putShort(MAGIC);
+    buffer.put(VERSION);
+    buffer.put(type);
+    buffer.put((byte) channel);
+    buffer.put(flags);
+    buffer.putLong(seq);
+    buffer.putLong(timestamp);
+    buffer.put((byte) symbolBytes.length);
+    buffer.put(symbolBytes);
+    switch (type) {
+      case TYPE_TRADE -> {
+        buffer.putDouble(price);
+        buffer.putDouble(size);
+        buffer.put(side);
+      }
+      case TYPE_BBO -> {
+        buffer.putDouble(bid);
+        buffer.putDouble(bidSize);
+        buffer.putDouble(ask);
+        buffer.putDouble(askSize);
+      }
+      case TYPE_BOOK -> {
+        putLevels(buffer, bidPrices, bidSizes);
+        putLevels(buffer, askPrices, askSizes);
+      }
+      default -> {
+        // ハートビートは本体なし
+      }
+    }
+  }
+
+  /** パケットを復号する。形式が不正な場合はIllegalArgumentExceptionを投げる。 */
+  public static MarketDataPacket decode(ByteBuffer buffer) {
+    try {
+      if (buffer.getShort() != MAGIC) {
+        throw new IllegalArgumentException("Not a market data packet");
+      }
+      byte version = buffer.get();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported packet version: " + version);
+      }
+      MarketDataPacket packet = new MarketDataPacket();
+      packet.type = buffer.get();
+      packet.channel = buffer.get();
+      packet.flags = buffer.get();
+      packet.seq = buffer.getLong();
+      packet.timestamp = buffer.getLong();
+      byte[] symbolBytes = new byte[buffer.get()];
+      buffer.get(symbolBytes);
+      packet.symbol = new String(symbolBytes, StandardCharsets.US_ASCII);
+      switch (packet.type) {
+        case TYPE_TRADE -> {
+          packet.price = buffer.getDouble();
+          packet.size = buffer.getDouble();
+          packet.side = buffer.get();
+        }
+        case TYPE_BBO -> {
+          packet.bid = buffer.getDouble();
+          packet.bidSize = buffer.getDouble();
+          packet.ask = buffer.getDouble();
+          packet.askSize = buffer.getDouble();
+        }
+        case TYPE_BOOK -> {
+          int bidCount = buffer.get();
+          packet.bidPrices = new double[bidCount];
+          packet.bidSizes = new double[bidCount];
+          getLevels(buffer, packet.bidPrices, packet.bidSizes);
+          int askCount = buffer.get();
+          packet.askPrices = new double[askCount];
+          packet.askSizes = new double[askCount];
+          getLevels(buffer, packet.askPrices, packet.askSizes);
+        }
+        case TYPE_HEARTBEAT -> {
+          // 本体なし
+        }
+        default -> throw new IllegalArgumentException("Unknown packet type: " + packet.type);
+      }
+      return packet;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated market data packet", e);
+    }
+  }
+
+  private static void putLevels(ByteBuffer buffer, double[] prices, double[] sizes) {
+    buffer.put((byte) prices.length);
+    for (int i = 0; i < prices.length; i++) {
+      buffer.putDouble(prices[i]);
+      buffer.putDouble(sizes[i]);
+    }
+  }
+
+  private static void getLevels(ByteBuffer buffer, double[] prices, double[] sizes) {
+    for (int i = 0; i < prices.length; i++) {
+      prices[i] = buffer.getDouble();
+      sizes[i] = buffer.getDouble();
+    }
+  }
+
+  public byte getType() {
+    return type;
+  }
+
+  public int getChannel() {
+    return channel;
+  }
+
+  public boolean isSnapshot() {
+    return (flags & FLAG_SNAPSHOT) != 0;
+  }
+
+  public boolean isHeartbeat() {
+    return type == TYPE_HEARTBEAT;
+  }
+
+  public long getSeq() {
+    return seq;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public double getPrice() {
+    return price;
+  }
+
+  public double getSize() {
+    return size;
+  }
+
+  public byte getSide() {
+    return side;
+  }
+
+  public double getBid() {
+    return bid;
+  }
+
+  public double getBidSize() {
+    return bidSize;
+  }
+
+  public double getAsk() {
+    return ask;
+  }
+
+  public double getAskSize() {
+    return askSize;
+  }
+
+  public double[] getBidPrices() {
+    return bidPrices;
+  }
+
+  public double[] getBidSizes() {
+    return bidSizes;
+  }
+
+  public double[] getAskPrices() {
+    return askPrices;
+  }
+
+  public double[] getAskSizes() {
+    return askSizes;
+  }
+}
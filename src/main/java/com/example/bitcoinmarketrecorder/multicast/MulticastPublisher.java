@@ -0,0 +1,186 @@
+package com.example.bitcoinmarketrecorder.multicast;
+
+import com.example.bitcoinmarketrecorder.config.MulticastProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 約定・BBO・板をUDPマルチキャストで配信する。
+ *
+ * <p>パケットにはチャンネル（約定/BBO/板）ごとの連番を付け、送信したパケットはチャンネルごとのリングに保持して
+ * {@link RetransmissionServer}から再送できるようにする。定期的にハートビートで各チャンネルの最終連番を、
+ * スナップショットで全銘柄の最新の板とBBOを送る。受信側は{@link MulticastReceiver}を使う。
+ */
+@Service
+public class MulticastPublisher implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(MulticastPublisher.class);
+
+  @Autowired private MulticastProperties multicastProperties;
+
+  private DatagramChannel channel;
+  private InetSocketAddress target;
+  private RetransmissionServer retransmissionServer;
+  private final PacketRing[] rings = new PacketRing[MarketDataPacket.CHANNEL_COUNT];
+  private final long[] seqs = new long[MarketDataPacket.CHANNEL_COUNT];
+  private final Object[] locks = new Object[MarketDataPacket.CHANNEL_COUNT];
+  private final Map<String, MarketDataPacket> latestBbos = new ConcurrentHashMap<>();
+  private final Map<String, MarketDataPacket> latestBooks = new ConcurrentHashMap<>();
+  private volatile boolean running;
+
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder sentBytes = new LongAdder();
+  private final LongAdder sendErrors = new LongAdder();
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!multicastProperties.isEnabled()) {
+      return;
+    }
+    for (int i = 0; i < MarketDataPacket.CHANNEL_COUNT; i++) {
+      rings[i] = new PacketRing(multicastProperties.getRingSize());
+      locks[i] = new Object();
+    }
+    target =
+        new InetSocketAddress(
+            InetAddress.getByName(multicastProperties.getGroup()), multicastProperties.getPort());
+    channel =
+        DatagramChannel.open(StandardProtocolFamily.INET)
+            .setOption(StandardSocketOptions.IP_MULTICAST_TTL, multicastProperties.getTtl())
+            .setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true)
+            .setOption(
+                StandardSocketOptions.IP_MULTICAST_IF,
+                MulticastReceiver.resolveInterface(multicastProperties.getInterfaceName()));
+    retransmissionServer =
+        new RetransmissionServer(
+            new InetSocketAddress(multicastProperties.getRetransmitPort()), rings);
+    running = true;
+    logger.info(
+        "Multicast publishing to {} (retransmission on port {})",
+        target,
+        retransmissionServer.getPort());
+  }
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (running) {
+      send(MarketDataPacket.of(trade), (byte) 0);
+    }
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!running) {
+      return;
+    }
+    MarketDataPacket packet = MarketDataPacket.of(bestBidAsk);
+    latestBbos.put(packet.getSymbol(), packet);
+    send(packet, (byte) 0);
+  }
+
+  @Override
+  public void onMarketBoard(MarketBoard board) {
+    if (!running) {
+      return;
+    }
+    MarketDataPacket packet = MarketDataPacket.of(board, multicastProperties.getBookDepth());
+    latestBooks.put(packet.getSymbol(), packet);
+    send(packet, (byte) 0);
+  }
+
+  /** 連番を採番して送信し、再送用のリングに保持する。チャンネル内の送信順と連番の順は一致する。 */
+  private void send(MarketDataPacket packet, byte flags) {
+    int ch = packet.getChannel();
+    synchronized (locks[ch]) {
+      long seq = ++seqs[ch];
+      byte[] bytes = packet.withSequence(seq, flags).encode();
+      rings[ch].put(seq, bytes);
+      // 送信に失敗しても連番は進めたままにし、受信側には再送で補わせる
+      transmit(bytes);
+    }
+  }
+
+  private void transmit(byte[] bytes) {
+    try {
+      channel.send(ByteBuffer.wrap(bytes), target);
+      sent.increment();
+      sentBytes.add(bytes.length);
+    } catch (IOException e) {
+      sendErrors.increment();
+      logger.warn("Failed to send multicast packet: {}", e.getMessage());
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${multicast.heartbeat-interval-ms:1000}")
+  public void sendHeartbeats() {
+    if (!running) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (int ch = 0; ch < MarketDataPacket.CHANNEL_COUNT; ch++) {
+      synchronized (locks[ch]) {
+        transmit(MarketDataPacket.heartbeat(ch, seqs[ch], now).encode());
+      }
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${multicast.snapshot-interval-ms:5000}")
+  public void sendSnapshots() {
+    if (!running) {
+      return;
+    }
+    latestBbos.values().forEach(packet -> send(packet, MarketDataPacket.FLAG_SNAPSHOT));
+    latestBooks.values().forEach(packet -> send(packet, MarketDataPacket.FLAG_SNAPSHOT));
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", running);
+    stats.put("sent", sent.sum());
+    stats.put("sentBytes", sentBytes.sum());
+    stats.put("sendErrors", sendErrors.sum());
+    if (running) {
+      Map<String, Object> channels = new LinkedHashMap<>();
+      channels.put("trade", seqs[MarketDataPacket.CHANNEL_TRADE]);
+      channels.put("bbo", seqs[MarketDataPacket.CHANNEL_BBO]);
+      channels.put("book", seqs[MarketDataPacket.CHANNEL_BOOK]);
+      stats.put("lastSeq", channels);
+    }
+    return stats;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    try {
+      if (retransmissionServer != null) {
+        retransmissionServer.close();
+      }
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to close multicast publisher: {}", e.getMessage());
+    }
+  }
+}
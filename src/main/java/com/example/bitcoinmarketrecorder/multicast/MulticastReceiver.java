@@ -0,0 +1,275 @@
+package com.example.bitcoinmarketrecorder.multicast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * マルチキャスト配信の受信ライブラリ。
+ *
+ * <p>チャンネルごとに連番を追跡し、欠落を検知すると再送サーバーからTCPで取り寄せて、連番順に
+ * {@link Listener#onPacket}へ渡す。再送サーバーのリングからも消えていた範囲は{@link Listener#onGap}で通知する。
+ * 最初に受信したパケットから追跡を始めるため、途中から参加した場合は定期スナップショットで板とBBOが揃う。
+ *
+ * <pre>{@code
+ * MulticastReceiver receiver = new MulticastReceiver(
+ *     "239.1.1.1", 40001, "lo", new InetSocketAddress("127.0.0.1", 40002), packet -> { ... });
+ * receiver.start();
+ * }</pre>
+ */
+public class MulticastReceiver implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(MulticastReceiver.class);
+  private static final int RETRANSMIT_TIMEOUT_MS = 1000;
+
+  /** 受信パケットの通知先。受信スレッドから呼ばれる。 */
+  public interface Listener {
+    void onPacket(MarketDataPacket packet);
+
+    /** 再送でも回復できなかった連番の範囲。 */
+    default void onGap(int channel, long fromSeq, long toSeq) {}
+  }
+
+  private final InetAddress group;
+  private final int port;
+  private final NetworkInterface networkInterface;
+  private final InetSocketAddress retransmitAddress;
+  private final Listener listener;
+  // チャンネルごとに最後に渡した連番。0は未受信
+  private final long[] lastSeqs = new long[MarketDataPacket.CHANNEL_COUNT];
+
+  private DatagramChannel channel;
+  private MembershipKey membership;
+  private Thread thread;
+  private Socket retransmitSocket;
+  private DataInputStream retransmitIn;
+  private DataOutputStream retransmitOut;
+
+  private volatile long received;
+  private volatile long recovered;
+  private volatile long lost;
+
+  public MulticastReceiver(
+      String group,
+      int port,
+      String interfaceName,
+      InetSocketAddress retransmitAddress,
+      Listener listener)
+      throws IOException {
+    this.group = InetAddress.getByName(group);
+    this.port = port;
+    this.networkInterface = resolveInterface(interfaceName);
+    this.retransmitAddress = retransmitAddress;
+    this.listener = listener;
+  }
+
+  /** グループに参加して受信スレッドを開始する。 */
+  public synchronized void start() throws IOException {
+    channel =
+        DatagramChannel.open(StandardProtocolFamily.INET)
+            // 同一ホストで複数の受信者が同じポートを使えるようにする
+            .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+            .bind(new InetSocketAddress(port));
+    membership = channel.join(group, networkInterface);
+    thread = new Thread(this::receiveLoop, "multicast-receiver-" + port);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void receiveLoop() {
+    ByteBuffer buffer = ByteBuffer.allocate(MarketDataPacket.MAX_PACKET_SIZE);
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        buffer.clear();
+        channel.receive(buffer);
+        buffer.flip();
+        onDatagram(buffer);
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        logger.warn("Failed to receive multicast packet: {}", e.getMessage());
+      } catch (RuntimeException e) {
+        logger.warn("Failed to handle multicast packet: {}", e.getMessage());
+      }
+    }
+  }
+
+  /** 受信した1パケットを処理する。 */
+  void onDatagram(ByteBuffer buffer) {
+    MarketDataPacket packet = MarketDataPacket.decode(buffer);
+    int ch = packet.getChannel();
+    if (ch < 0 || ch >= lastSeqs.length) {
+      return;
+    }
+    received++;
+    long last = lastSeqs[ch];
+    if (packet.isHeartbeat()) {
+      // ハートビートで末尾の欠落を検知する
+      if (last > 0 && packet.getSeq() > last) {
+        recover(ch, last + 1, packet.getSeq());
+      }
+      return;
+    }
+    if (last == 0) {
+      lastSeqs[ch] = packet.getSeq();
+      listener.onPacket(packet);
+      return;
+    }
+    if (packet.getSeq() <= last) {
+      return; // 再送済み・重複
+    }
+    if (packet.getSeq() > last + 1) {
+      recover(ch, last + 1, packet.getSeq() - 1);
+    }
+    lastSeqs[ch] = packet.getSeq();
+    listener.onPacket(packet);
+  }
+
+  private void recover(int ch, long from, long to) {
+    List<MarketDataPacket> packets;
+    try {
+      packets = fetch(ch, from, to);
+    } catch (IOException e) {
+      logger.warn(
+          "Retransmission of channel {} seq {}-{} failed: {}", ch, from, to, e.getMessage());
+      closeRetransmitSocket();
+      packets = List.of();
+    }
+    long expected = from;
+    for (MarketDataPacket packet : packets) {
+      if (packet.getSeq() < expected || packet.getSeq() > to) {
+        continue;
+      }
+      if (packet.getSeq() > expected) {
+        reportGap(ch, expected, packet.getSeq() - 1);
+      }
+      recovered++;
+      listener.onPacket(packet);
+      expected = packet.getSeq() + 1;
+    }
+    if (expected <= to) {
+      reportGap(ch, expected, to);
+    }
+    lastSeqs[ch] = to;
+  }
+
+  private void reportGap(int ch, long from, long to) {
+    lost += to - from + 1;
+    listener.onGap(ch, from, to);
+  }
+
+  private List<MarketDataPacket> fetch(int ch, long from, long to) throws IOException {
+    if (retransmitAddress == null) {
+      return List.of();
+    }
+    if (retransmitSocket == null || retransmitSocket.isClosed()) {
+      retransmitSocket = new Socket();
+      retransmitSocket.connect(retransmitAddress, RETRANSMIT_TIMEOUT_MS);
+      retransmitSocket.setSoTimeout(RETRANSMIT_TIMEOUT_MS);
+      retransmitSocket.setTcpNoDelay(true);
+      retransmitIn =
+          new DataInputStream(new BufferedInputStream(retransmitSocket.getInputStream()));
+      retransmitOut =
+          new DataOutputStream(new BufferedOutputStream(retransmitSocket.getOutputStream()));
+    }
+    retransmitOut.writeByte(ch);
+    retransmitOut.writeLong(from);
+    retransmitOut.writeLong(to);
+    retransmitOut.flush();
+
+    int count = retransmitIn.readInt();
+    List<MarketDataPacket> packets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      byte[] bytes = new byte[retransmitIn.readInt()];
+      retransmitIn.readFully(bytes);
+      packets.add(MarketDataPacket.decode(ByteBuffer.wrap(bytes)));
+    }
+    return packets;
+  }
+
+  private void closeRetransmitSocket() {
+    if (retransmitSocket != null) {
+      try {
+        retransmitSocket.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close retransmission socket: {}", e.getMessage());
+      }
+      retransmitSocket = null;
+    }
+  }
+
+  public long getReceived() {
+    return received;
+  }
+
+  public long getRecovered() {
+    return recovered;
+  }
+
+  public long getLost() {
+    return lost;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (thread != null) {
+      thread.interrupt();
+    }
+    if (membership != null) {
+      membership.drop();
+    }
+    if (channel != null) {
+      channel.close();
+    }
+    closeRetransmitSocket();
+  }
+
+  /**
+   * マルチキャストに使うネットワークインターフェース。名前が空の場合は稼働中でマルチキャスト可能な
+   * 最初のインターフェースを選び、見つからなければループバックを使う。
+   */
+  public static NetworkInterface resolveInterface(String name) throws SocketException {
+    if (name != null && !name.isBlank()) {
+      NetworkInterface networkInterface = NetworkInterface.getByName(name.trim());
+      if (networkInterface == null) {
+        throw new IllegalArgumentException("Unknown network interface: " + name);
+      }
+      return networkInterface;
+    }
+    NetworkInterface loopback = null;
+    Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+    while (interfaces.hasMoreElements()) {
+      NetworkInterface candidate = interfaces.nextElement();
+      if (!candidate.isUp()) {
+        continue;
+      }
+      if (candidate.isLoopback()) {
+        loopback = candidate;
+      } else if (candidate.supportsMulticast()) {
+        return candidate;
+      }
+    }
+    if (loopback == null) {
+      throw new SocketException("No usable network interface for multicast");
+    }
+    return loopback;
+  }
+}
@@ -0,0 +1,48 @@
+package com.example.bitcoinmarketrecorder.multicast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** 直近に送信したパケットを連番で引けるように保持する固定長リング。 */
+public class PacketRing {
+
+  private final long[] seqs;
+  private final byte[][] packets;
+
+  public PacketRing(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.seqs = new long[capacity];
+    this.packets = new byte[capacity][];
+  }
+
+  public synchronized void put(long seq, byte[] packet) {
+    int index = (int) (seq % seqs.length);
+    seqs[index] = seq;
+    packets[index] = packet;
+  }
+
+  /** 連番のパケットを返す。上書き済みまたは未送信の場合はnullを返す。 */
+  public synchronized byte[] get(long seq) {
+    int index = (int) (seq % seqs.length);
+    return seqs[index] == seq ? packets[index] : null;
+  }
+
+  /** from〜toのうち保持しているパケットを連番順に返す。 */
+  public synchronized List<byte[]> range(long from, long to) {
+    List<byte[]> result = new ArrayList<>();
+    // リング1周分より前は必ず上書きされている
+    for (long seq = Math.max(from, to - seqs.length + 1); seq <= to; seq++) {
+      byte[] packet = get(seq);
+      if (packet != null) {
+        result.add(packet);
+      }
+    }
+    return result;
+  }
+
+  public int capacity() {
+    return seqs.length;
+  }
+}
@@ -0,0 +1,105 @@
+package com.example.bitcoinmarketrecorder.multicast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 欠落したパケットをTCPで再送するサーバー。
+ *
+ * <p>リクエストは{@code byte channel, long fromSeq, long toSeq}、レスポンスは{@code int count}に続けて
+ * {@code int length, パケット}を連番順にcount件返す。リングから上書きされた連番は含まれないため、
+ * 受信側は返った連番から回復できなかった範囲を判断する。1つの接続で複数のリクエストを送ってよい。
+ */
+public class RetransmissionServer implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(RetransmissionServer.class);
+  // 1リクエストで返す最大件数
+  static final int MAX_PACKETS_PER_REQUEST = 10_000;
+
+  private final PacketRing[] rings;
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread thread = new Thread(r, "multicast-retransmit");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private volatile boolean running = true;
+
+  public RetransmissionServer(InetSocketAddress address, PacketRing[] rings) throws IOException {
+    this.rings = rings;
+    this.serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(true);
+    serverSocket.bind(address);
+    executor.execute(this::acceptLoop);
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void acceptLoop() {
+    while (running) {
+      try {
+        Socket socket = serverSocket.accept();
+        executor.execute(() -> serve(socket));
+      } catch (IOException e) {
+        if (running) {
+          logger.warn("Failed to accept retransmission connection: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (socket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+      socket.setTcpNoDelay(true);
+      while (running) {
+        int channel;
+        try {
+          channel = in.readByte();
+        } catch (EOFException e) {
+          return;
+        }
+        long from = in.readLong();
+        long to = Math.min(in.readLong(), from + MAX_PACKETS_PER_REQUEST - 1);
+        List<byte[]> packets =
+            channel >= 0 && channel < rings.length ? rings[channel].range(from, to) : List.of();
+        out.writeInt(packets.size());
+        for (byte[] packet : packets) {
+          out.writeInt(packet.length);
+          out.write(packet);
+        }
+        out.flush();
+      }
+    } catch (SocketException e) {
+      logger.debug("Retransmission connection closed: {}", e.getMessage());
+    } catch (IOException e) {
+      logger.warn("Retransmission request failed: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    running = false;
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,82 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 仮想ノード付きのコンシステントハッシュリング。
+ *
+ * <p>ノードを追加・削除しても、移動するキーはそのノードに割り当たる分だけに限られる。
+ */
+public class ConsistentHashRing<T> {
+
+  private final int virtualNodes;
+  private final TreeMap<Long, T> ring = new TreeMap<>();
+  private final Map<String, T> nodes = new TreeMap<>();
+
+  public ConsistentHashRing(int virtualNodes) {
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+    }
+    this.virtualNodes = virtualNodes;
+  }
+
+  public synchronized void add(String name, T node) {
+    if (nodes.containsKey(name)) {
+      throw new IllegalArgumentException("Node already exists: " + name);
+    }
+    nodes.put(name, node);
+    for (int i = 0; i < virtualNodes; i++) {
+      ring.put(hash(name + "#" + i), node);
+    }
+  }
+
+  public synchronized void remove(String name) {
+    if (nodes.remove(name) == null) {
+      return;
+    }
+    for (int i = 0; i < virtualNodes; i++) {
+      ring.remove(hash(name + "#" + i));
+    }
+  }
+
+  public synchronized T get(String key) {
+    if (ring.isEmpty()) {
+      return null;
+    }
+    SortedMap<Long, T> tail = ring.tailMap(hash(key));
+    return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+  }
+
+  public synchronized boolean contains(String name) {
+    return nodes.containsKey(name);
+  }
+
+  public synchronized List<T> getNodes() {
+    return new ArrayList<>(nodes.values());
+  }
+
+  public synchronized int size() {
+    return nodes.size();
+  }
+
+  static long hash(String key) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+      long h = 0;
+      for (int i = 0; i < 8; i++) {
+        h = (h << 8) | (digest[i] & 0xFF);
+      }
+      return h;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.example.bitcoinmarketrecorder.service;
 import com.example.bitcoinmarketrecorder.model.BestBidAsk;
 import com.example.bitcoinmarketrecorder.model.MarketBoard;
 import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
 import java.util.List;
 
 public interface DataPersistenceService {
@@ -11,4 +12,7 @@ public interface DataPersistenceService {
   void saveMarketBoard(MarketBoard board);
 
   void saveBestBidAsk(BestBidAsk bestBidAsk);
+
+  /** 集計値など、整形済みのCSV行をストリームのファイルに追記する。 */
+  void saveRows(RecordedStream stream, List<String> rows);
 }
@@ -3,6 +3,7 @@ package com.example.bitcoinmarketrecorder.service;
 import com.example.bitcoinmarketrecorder.model.BestBidAsk;
 import com.example.bitcoinmarketrecorder.model.MarketBoard;
 import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.io.BufferedWriter;
@@ -15,7 +16,9 @@ import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -34,6 +37,9 @@ public class DataPersistenceServiceImpl implements DataPersistenceService {
   private final BlockingQueue<Trade> tradeQueue;
   private final BlockingQueue<MarketBoard> boardQueue;
   private final BlockingQueue<BestBidAsk> bestBidAskQueue;
+  // 整形済みの行を書くストリーム（足など）
+  private final Map<RecordedStream, BlockingQueue<String>> rowQueues =
+      new EnumMap<>(RecordedStream.class);
   private final ExecutorService workerExecutor;
   private volatile boolean isRunning = true;
 
@@ -47,6 +53,9 @@ public class DataPersistenceServiceImpl implements DataPersistenceService {
     this.tradeQueue = new LinkedBlockingQueue<>();
     this.boardQueue = new LinkedBlockingQueue<>();
     this.bestBidAskQueue = new LinkedBlockingQueue<>();
+    for (RecordedStream stream : RecordedStream.values()) {
+      rowQueues.put(stream, new LinkedBlockingQueue<>());
+    }
     this.workerExecutor = Executors.newSingleThreadExecutor();
   }
 
@@ -91,8 +100,21 @@ public class DataPersistenceServiceImpl implements DataPersistenceService {
                 }
               }
 
+              // Process pre-formatted rows
+              boolean rowsWritten = false;
+              for (Map.Entry<RecordedStream, BlockingQueue<String>> entry : rowQueues.entrySet()) {
+                List<String> rows = new ArrayList<>();
+                entry.getValue().drainTo(rows, 1000);
+                if (!rows.isEmpty()) {
+                  rowsWritten = true;
+                  if (csvEnabled) {
+                    saveRowsToCsv(entry.getKey(), rows);
+                  }
+                }
+              }
+
               // キューが空の場合は少し待機
-              if (trades.isEmpty() && boards.isEmpty() && bestBidAsks.isEmpty()) {
+              if (trades.isEmpty() && boards.isEmpty() && bestBidAsks.isEmpty() && !rowsWritten) {
                 Thread.sleep(100);
               }
             } catch (InterruptedException e) {
@@ -150,6 +172,18 @@ public class DataPersistenceServiceImpl implements DataPersistenceService {
     }
   }
 
+  @Override
+  public void saveRows(RecordedStream stream, List<String> rows) {
+    try {
+      if (rows != null && !rows.isEmpty()) {
+        logger.debug("Adding {} {} rows to queue", rows.size(), stream.getPrefix());
+        rowQueues.get(stream).addAll(rows);
+      }
+    } catch (Exception e) {
+      logger.error("Error adding {} rows to queue: {}", stream.getPrefix(), e.getMessage(), e);
+    }
+  }
+
   private void saveTradesToCsv(List<Trade> trades) {
     try {
       // 現在の日時を取得
@@ -326,6 +360,36 @@ public class DataPersistenceServiceImpl implements DataPersistenceService {
     }
   }
 
+  private void saveRowsToCsv(RecordedStream stream, List<String> rows) {
+    try {
+      LocalDateTime now = LocalDateTime.now();
+      String dateStr = now.format(DATE_FORMATTER);
+      String hourStr = String.format("%02d", now.getHour());
+
+      String csvName = String.format("%s_%s_%s.csv", stream.getPrefix(), dateStr, hourStr);
+      Path csvFile = Paths.get(csvDir).resolve(csvName);
+
+      if (!Files.exists(csvFile)) {
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile)) {
+          writer.write(String.join(",", stream.getColumns()));
+          writer.newLine();
+        }
+      }
+
+      try (BufferedWriter writer =
+          Files.newBufferedWriter(csvFile, StandardOpenOption.APPEND, StandardOpenOption.CREATE)) {
+        for (String row : rows) {
+          writer.write(row);
+          writer.newLine();
+        }
+        writer.flush();
+      }
+      logger.info("Saved {} {} rows to {}", rows.size(), stream.getPrefix(), csvFile);
+    } catch (IOException e) {
+      logger.error("Error saving {} rows to CSV: {}", stream.getPrefix(), e.getMessage(), e);
+    }
+  }
+
   private void writeCsvHeaders(Path tradesCsvFile, Path marketBoardsCsvFile) throws IOException {
     // Trades CSVヘッダー
     if (tradesCsvFile != null && !Files.exists(tradesCsvFile)) {
@@ -32,6 +32,15 @@ public class ExchSimService {
     @Autowired
     private RedisPublisherService redisPublisherService;
     
+    @Autowired
+    private MarketMakeConflator marketMakeConflator;
+    
+    @Autowired
+    private RedisSubscriberTracker redisSubscriberTracker;
+    
+    @Autowired
+    private RedisSnapshotWriter redisSnapshotWriter;
+    
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final Map<String, String> tokenCache = new ConcurrentHashMap<>();
@@ -53,8 +62,18 @@ public class ExchSimService {
             return;
         }
         
+        // 購読者がいなくても最新状態キーは更新する
+        boolean subscribed = redisSubscriberTracker.hasTradeInsertSubscribers(targetSymbol);
+        if (!subscribed && !redisSnapshotWriter.isEnabled()) {
+            return;
+        }
+        
         try {
             TradeInsertRequest request = convertToTradeInsertRequest(targetSymbol, trade);
+            if (!subscribed) {
+                redisSnapshotWriter.recordTradeInsert(targetSymbol, request);
+                return;
+            }
             
             // 詳細ログを追加
             logger.info("Processing TradeData for {}: Price={}, Size={}, Side={}, Exchange={}, Timestamp={}", 
@@ -85,8 +104,18 @@ public class ExchSimService {
             return;
         }
         
+        // 購読者がいなくても最新状態キーは更新する
+        boolean subscribed = redisSubscriberTracker.hasMarketMakeSubscribers(targetSymbol);
+        if (!subscribed && !redisSnapshotWriter.isEnabled()) {
+            return;
+        }
+        
         try {
             MarketMakeRequest request = convertToMarketMakeRequest(targetSymbol, marketBoard);
+            if (!subscribed) {
+                redisSnapshotWriter.recordMarketMake(targetSymbol, request);
+                return;
+            }
             
             // 詳細ログを追加
             BigDecimal bestBid = marketBoard.getBids().isEmpty() ? null : marketBoard.getBids().get(0).getPrice();
@@ -95,7 +124,8 @@ public class ExchSimService {
             logger.info("Processing MarketBoard for {}: BestBid={}, BestAsk={}, {} Bids, {} Asks", 
                 targetSymbol, bestBid, bestAsk, marketBoard.getBids().size(), marketBoard.getAsks().size());
             
-            redisPublisherService.publishMarketMake(targetSymbol, request);
+            // 板はシンボルごとに最新のみを間引いて配信する
+            marketMakeConflator.publish(targetSymbol, request);
         } catch (Exception e) {
             logger.error("Failed to process market board for symbol {}: {}", 
                 targetSymbol, e.getMessage(), e);
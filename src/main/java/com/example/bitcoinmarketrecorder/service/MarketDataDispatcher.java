@@ -0,0 +1,56 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/** 受信したマーケットデータを登録済みの{@link MarketDataListener}すべてに通知する。 */
+@Service
+public class MarketDataDispatcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(MarketDataDispatcher.class);
+
+  @Autowired(required = false)
+  private List<MarketDataListener> listeners = List.of();
+
+  public void dispatchTrades(List<Trade> trades) {
+    for (Trade trade : trades) {
+      for (MarketDataListener listener : listeners) {
+        try {
+          listener.onTrade(trade);
+        } catch (Exception e) {
+          logger.error("Listener {} failed on trade: {}", name(listener), e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  public void dispatchMarketBoard(MarketBoard board) {
+    for (MarketDataListener listener : listeners) {
+      try {
+        listener.onMarketBoard(board);
+      } catch (Exception e) {
+        logger.error("Listener {} failed on market board: {}", name(listener), e.getMessage(), e);
+      }
+    }
+  }
+
+  public void dispatchBestBidAsk(BestBidAsk bestBidAsk) {
+    for (MarketDataListener listener : listeners) {
+      try {
+        listener.onBestBidAsk(bestBidAsk);
+      } catch (Exception e) {
+        logger.error("Listener {} failed on best bid/ask: {}", name(listener), e.getMessage(), e);
+      }
+    }
+  }
+
+  private static String name(MarketDataListener listener) {
+    return listener.getClass().getSimpleName();
+  }
+}
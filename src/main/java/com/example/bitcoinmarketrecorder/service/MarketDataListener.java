@@ -0,0 +1,20 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.Trade;
+
+/**
+ * 取引所から受信したマーケットデータの通知先。
+ *
+ * <p>通知は受信スレッド上で呼ばれるため、重い処理は各実装で別スレッドに移すこと。板は受信側で更新され続けるため、
+ * 通知後も参照する場合は必要な値をコピーして保持すること。
+ */
+public interface MarketDataListener {
+
+  default void onTrade(Trade trade) {}
+
+  default void onMarketBoard(MarketBoard board) {}
+
+  default void onBestBidAsk(BestBidAsk bestBidAsk) {}
+}
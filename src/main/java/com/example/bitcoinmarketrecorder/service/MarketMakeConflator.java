@@ -0,0 +1,167 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * market-makeチャンネル向けの間引き配信。
+ *
+ * <p>シンボルごとに未送信の最新板を1件だけ保持し、同一シンボルの配信は設定間隔に最大1回とする。
+ * 送信スレッドが空いていれば間隔経過後すぐに送るため、配信される板は常にその時点の最新になる。
+ * 配信先Redisの停止中も未送信の板は最新の1件だけを保持するため、復旧時に古い板をまとめて送ることはない。
+ * 約定（trade-insert）はこのクラスを通さない。
+ */
+@Service
+public class MarketMakeConflator {
+
+  private static final Logger logger = LoggerFactory.getLogger(MarketMakeConflator.class);
+
+  @Autowired private RedisPublisherService redisPublisherService;
+
+  @Autowired private RedisPublisherProperties redisPublisherProperties;
+
+  private final Map<String, SymbolSlot> slots = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService flusher =
+      Executors.newSingleThreadScheduledExecutor(
+          r -> {
+            Thread thread = new Thread(r, "market-make-conflator");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public void publish(String symbol, ExchSimService.MarketMakeRequest request) {
+    if (!redisPublisherProperties.getMarketMake().isConflationEnabled()) {
+      redisPublisherService.publishMarketMake(symbol, request);
+      return;
+    }
+
+    SymbolSlot slot = slots.computeIfAbsent(symbol, SymbolSlot::new);
+    slot.received.increment();
+    if (slot.pending.getAndSet(new PendingBoard(request, System.nanoTime())) != null) {
+      slot.conflated.increment();
+    }
+    scheduleFlush(slot);
+  }
+
+  private void scheduleFlush(SymbolSlot slot) {
+    if (!slot.scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    long intervalNanos =
+        TimeUnit.MILLISECONDS.toNanos(
+            redisPublisherProperties.getMarketMake().getConflationIntervalMs());
+    long delay = Math.max(0, slot.lastSentNanos + intervalNanos - System.nanoTime());
+    try {
+      flusher.schedule(() -> flush(slot), delay, TimeUnit.NANOSECONDS);
+    } catch (Exception e) {
+      slot.scheduled.set(false);
+      logger.warn("Failed to schedule market make flush for {}: {}", slot.symbol, e.getMessage());
+    }
+  }
+
+  private void flush(SymbolSlot slot) {
+    if (!redisPublisherService.isAvailable(slot.symbol)) {
+      // 配信先Redisの停止中は最新の板だけを保持し、復旧後に1件だけ送る
+      slot.lastSentNanos = System.nanoTime();
+      slot.scheduled.set(false);
+      scheduleFlush(slot);
+      return;
+    }
+    PendingBoard board = slot.pending.getAndSet(null);
+    if (board != null) {
+      try {
+        redisPublisherService.publishMarketMakeSync(slot.symbol, board.request);
+        slot.published.increment();
+        long latency = System.nanoTime() - board.offeredNanos;
+        slot.latencyNanosTotal.add(latency);
+        slot.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+      } catch (Exception e) {
+        // publishMarketMakeSync側でログ出力済み
+        slot.failed.increment();
+      }
+      slot.lastSentNanos = System.nanoTime();
+    }
+    slot.scheduled.set(false);
+    // フラッシュ中に届いた板があれば次の枠で送る
+    if (slot.pending.get() != null) {
+      scheduleFlush(slot);
+    }
+  }
+
+  /** シンボルごとの受信数・配信数・間引き率・配信遅延を返す。 */
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new TreeMap<>();
+    for (SymbolSlot slot : slots.values()) {
+      long received = slot.received.sum();
+      long published = slot.published.sum();
+      Map<String, Object> symbolStats = new LinkedHashMap<>();
+      symbolStats.put("received", received);
+      symbolStats.put("published", published);
+      symbolStats.put("conflated", slot.conflated.sum());
+      symbolStats.put("failed", slot.failed.sum());
+      symbolStats.put("conflationRatio", published == 0 ? 0.0 : (double) received / published);
+      symbolStats.put(
+          "avgLatencyMicros",
+          published == 0 ? 0.0 : slot.latencyNanosTotal.sum() / 1000.0 / published);
+      symbolStats.put("maxLatencyMicros", slot.maxLatencyNanos.get() / 1000.0);
+      stats.put(slot.symbol, symbolStats);
+    }
+    return stats;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flusher.shutdown();
+    try {
+      if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+        flusher.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      flusher.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class PendingBoard {
+    private final ExchSimService.MarketMakeRequest request;
+    private final long offeredNanos;
+
+    private PendingBoard(ExchSimService.MarketMakeRequest request, long offeredNanos) {
+      this.request = request;
+      this.offeredNanos = offeredNanos;
+    }
+  }
+
+  private static final class SymbolSlot {
+    private final String symbol;
+    private final AtomicReference<PendingBoard> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final LongAdder received = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder latencyNanosTotal = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    // 初回の板は待たずに送る
+    private volatile long lastSentNanos = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+
+    private SymbolSlot(String symbol) {
+      this.symbol = symbol;
+    }
+  }
+}
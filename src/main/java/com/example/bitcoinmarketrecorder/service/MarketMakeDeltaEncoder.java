@@ -0,0 +1,248 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * market-makeチャンネル向けの差分配信メッセージを生成する。
+ *
+ * <p>シンボルごとに直前に配信した板を保持し、変化した価格帯だけを{@code bidLevels}/{@code askLevels}（設定）と
+ * {@code bidRemoves}/{@code askRemoves}（削除）で送る。メッセージにはシンボルごとの連番{@code seq}を付けるため、
+ * 購読側は連番の欠落を検知できる。欠落時は次の全件スナップショットを待つか、最新状態キーから板を取り直す。
+ *
+ * <p>全件スナップショットは初回、{@code full-refresh-interval-ms}ごと、チャンネルの購読者が増えたとき、
+ * 配信に失敗した直後に送る。
+ */
+@Service
+public class MarketMakeDeltaEncoder {
+
+  public static final String TYPE_SNAPSHOT = "snapshot";
+  public static final String TYPE_DELTA = "delta";
+
+  @Autowired private RedisPublisherProperties redisPublisherProperties;
+
+  @Autowired private RedisSubscriberTracker redisSubscriberTracker;
+
+  private final Map<String, SymbolState> states = new ConcurrentHashMap<>();
+
+  public boolean isEnabled() {
+    return redisPublisherProperties.getMarketMake().isDeltaEnabled();
+  }
+
+  /**
+   * 配信するメッセージを生成する。直前の配信から板が変化していない場合はnullを返す。
+   *
+   * <p>返したメッセージは配信済みとして扱う。配信に失敗した場合は{@link #invalidate(String)}を呼ぶこと。
+   */
+  public Update encode(String symbol, ExchSimService.MarketMakeRequest request) {
+    SymbolState state = states.computeIfAbsent(symbol, k -> new SymbolState());
+    synchronized (state) {
+      Map<Double, Double> bids = toLevelMap(request.getBidLevels());
+      Map<Double, Double> asks = toLevelMap(request.getAskLevels());
+      long now = System.nanoTime();
+
+      Update update;
+      if (needsFullRefresh(symbol, state, now)) {
+        update = new Update(symbol, TYPE_SNAPSHOT);
+        update.bidLevels = copyLevels(request.getBidLevels());
+        update.askLevels = copyLevels(request.getAskLevels());
+        state.lastFullNanos = now;
+        state.forceFull = false;
+        state.snapshots++;
+      } else {
+        update = new Update(symbol, TYPE_DELTA);
+        update.bidLevels = changedLevels(state.bids, bids);
+        update.askLevels = changedLevels(state.asks, asks);
+        update.bidRemoves = removedPrices(state.bids, bids);
+        update.askRemoves = removedPrices(state.asks, asks);
+        if (update.bidLevels.isEmpty()
+            && update.askLevels.isEmpty()
+            && update.bidRemoves.isEmpty()
+            && update.askRemoves.isEmpty()) {
+          state.unchanged++;
+          return null;
+        }
+        state.deltas++;
+      }
+
+      state.bids = bids;
+      state.asks = asks;
+      update.seq = ++state.seq;
+      update.ts = System.currentTimeMillis();
+      state.levelsSent += update.levelCount();
+      state.levelsFull += bids.size() + asks.size();
+      return update;
+    }
+  }
+
+  /** 次回の配信を全件スナップショットにする。 */
+  public void invalidate(String symbol) {
+    SymbolState state = states.get(symbol);
+    if (state != null) {
+      synchronized (state) {
+        state.forceFull = true;
+      }
+    }
+  }
+
+  private boolean needsFullRefresh(String symbol, SymbolState state, long now) {
+    Long count =
+        redisSubscriberTracker.getSubscriberCount(
+            redisPublisherProperties.getMarketMake().getChannelName(symbol));
+    long current = count == null ? 0 : count;
+    // 新しい購読者はそれまでの板を持っていないため、全件から始められるようにする
+    boolean subscribersIncreased = current > state.lastSubscriberCount;
+    state.lastSubscriberCount = current;
+    long refreshNanos =
+        TimeUnit.MILLISECONDS.toNanos(
+            redisPublisherProperties.getMarketMake().getFullRefreshIntervalMs());
+    return state.seq == 0
+        || state.forceFull
+        || subscribersIncreased
+        || now - state.lastFullNanos >= refreshNanos;
+  }
+
+  /** シンボルごとの全件・差分の配信数と、全件配信に対する価格帯数の比率を返す。 */
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new TreeMap<>();
+    for (Map.Entry<String, SymbolState> entry : states.entrySet()) {
+      SymbolState state = entry.getValue();
+      synchronized (state) {
+        Map<String, Object> symbolStats = new LinkedHashMap<>();
+        symbolStats.put("seq", state.seq);
+        symbolStats.put("snapshots", state.snapshots);
+        symbolStats.put("deltas", state.deltas);
+        symbolStats.put("unchanged", state.unchanged);
+        symbolStats.put(
+            "levelRatio",
+            state.levelsFull == 0 ? 0.0 : (double) state.levelsSent / state.levelsFull);
+        stats.put(entry.getKey(), symbolStats);
+      }
+    }
+    return stats;
+  }
+
+  private static Map<Double, Double> toLevelMap(List<ExchSimService.PriceLevel> levels) {
+    Map<Double, Double> map = new LinkedHashMap<>();
+    if (levels != null) {
+      for (ExchSimService.PriceLevel level : levels) {
+        map.put(level.getPrice(), level.getQuantity());
+      }
+    }
+    return map;
+  }
+
+  private static List<ExchSimService.PriceLevel> copyLevels(
+      List<ExchSimService.PriceLevel> levels) {
+    List<ExchSimService.PriceLevel> copy = new ArrayList<>();
+    if (levels != null) {
+      for (ExchSimService.PriceLevel level : levels) {
+        copy.add(new ExchSimService.PriceLevel(level.getPrice(), level.getQuantity()));
+      }
+    }
+    return copy;
+  }
+
+  private static List<ExchSimService.PriceLevel> changedLevels(
+      Map<Double, Double> previous, Map<Double, Double> current) {
+    List<ExchSimService.PriceLevel> changed = new ArrayList<>();
+    for (Map.Entry<Double, Double> entry : current.entrySet()) {
+      if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+        changed.add(new ExchSimService.PriceLevel(entry.getKey(), entry.getValue()));
+      }
+    }
+    return changed;
+  }
+
+  private static List<Double> removedPrices(
+      Map<Double, Double> previous, Map<Double, Double> current) {
+    List<Double> removed = new ArrayList<>();
+    for (Double price : previous.keySet()) {
+      if (!current.containsKey(price)) {
+        removed.add(price);
+      }
+    }
+    return removed;
+  }
+
+  /** market-makeチャンネルに配信する全件または差分のメッセージ。 */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public static class Update {
+    private final String symbol;
+    private final String type;
+    private long seq;
+    private long ts;
+    private List<ExchSimService.PriceLevel> bidLevels;
+    private List<ExchSimService.PriceLevel> askLevels;
+    private List<Double> bidRemoves;
+    private List<Double> askRemoves;
+
+    private Update(String symbol, String type) {
+      this.symbol = symbol;
+      this.type = type;
+    }
+
+    public String getSymbol() {
+      return symbol;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public long getSeq() {
+      return seq;
+    }
+
+    public long getTs() {
+      return ts;
+    }
+
+    public List<ExchSimService.PriceLevel> getBidLevels() {
+      return bidLevels;
+    }
+
+    public List<ExchSimService.PriceLevel> getAskLevels() {
+      return askLevels;
+    }
+
+    public List<Double> getBidRemoves() {
+      return bidRemoves;
+    }
+
+    public List<Double> getAskRemoves() {
+      return askRemoves;
+    }
+
+    private int levelCount() {
+      return size(bidLevels) + size(askLevels) + size(bidRemoves) + size(askRemoves);
+    }
+
+    private static int size(List<?> list) {
+      return list == null ? 0 : list.size();
+    }
+  }
+
+  private static final class SymbolState {
+    private Map<Double, Double> bids = new LinkedHashMap<>();
+    private Map<Double, Double> asks = new LinkedHashMap<>();
+    private long seq;
+    private long lastFullNanos;
+    private boolean forceFull;
+    private long lastSubscriberCount;
+    private long snapshots;
+    private long deltas;
+    private long unchanged;
+    private long levelsSent;
+    private long levelsFull;
+  }
+}
@@ -0,0 +1,356 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * CSVに記録した1時間ごとのファイル（セグメント）の一覧と、ファイル内の時刻による位置の検索。
+ *
+ * <p>ファイル名は{@code <ストリーム>_yyyyMMdd_HH.csv}で、日時は書き込んだ時点のローカル時刻。1ファイルに全取引所・全銘柄の
+ * 行が受信順に並ぶ。
+ */
+@Service
+public class RecordedDataCatalog {
+
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+  private static final Pattern FILE_NAME = Pattern.compile("([a-z_]+)_(\\d{8})_(\\d{2})\\.csv");
+  // キューで待った分、データの時刻はファイルの時間帯より少し前のことがある
+  public static final Duration WRITE_LAG = Duration.ofMinutes(1);
+  private static final int READ_CHUNK = 8192;
+
+  /** 記録しているストリームと、その列（{@link DataPersistenceServiceImpl}が書くヘッダー）。 */
+  public enum RecordedStream {
+    TRADES("trades", "timestamp", "exchange,symbol,trade_id,price,size,side,timestamp,created_at"),
+    MARKET_BOARDS(
+        "market_boards",
+        "ts",
+        "exchange,symbol,ts,bid1,bid1vol,bid2,bid2vol,bid3,bid3vol,bid4,bid4vol,"
+            + "bid5,bid5vol,bid6,bid6vol,bid7,bid7vol,bid8,bid8vol,"
+            + "ask1,ask1vol,ask2,ask2vol,ask3,ask3vol,ask4,ask4vol,"
+            + "ask5,ask5vol,ask6,ask6vol,ask7,ask7vol,ask8,ask8vol"),
+    BEST_BID_ASK(
+        "best_bid_ask",
+        "timestamp",
+        "exchange,symbol,best_bid,best_bid_volume,best_ask,best_ask_volume,timestamp"),
+    // 確定した足は確定した順に書くため、終了時刻で並ぶ
+    BARS(
+        "bars",
+        "close_time",
+        "exchange,symbol,interval,open_time,close_time,open,high,low,close,volume,vwap,"
+            + "trade_count"),
+    // 取引所の列はDERIVED、銘柄の列は系列名
+    DERIVED(
+        "derived",
+        "timestamp",
+        "exchange,symbol,type,leg_a,leg_b,value,bid_a,ask_a,bid_b,ask_b,timestamp"),
+    // 1時間ごとの分位点のスケッチ。時間帯が終わってから書くため、終了時刻で並ぶ
+    SKETCHES(
+        "sketches",
+        "end",
+        "exchange,symbol,metric,start,end,count,min,max,sum,p50,p90,p99,sketch"),
+    // 約定時点の最良気配を付けた約定。確定した順に書くため、約定の時刻はほぼ順に並ぶ
+    ENRICHED_TRADES(
+        "enriched_trades",
+        "timestamp",
+        "exchange,symbol,trade_id,price,size,side,timestamp,bid,ask,mid,quote_timestamp,"
+            + "quote_age_ms,effective_spread,effective_spread_bps,price_improvement,"
+            + "inferred_side"),
+    // 1時間ごとの価格帯別出来高。時間帯が終わってから書くため、終了時刻で並ぶ
+    VOLUME_PROFILES(
+        "volume_profiles",
+        "end",
+        "exchange,symbol,start,end,bucket_size,trade_count,volume,buy_volume,sell_volume,poc,"
+            + "profile"),
+    // 全取引所の約定を約定の時刻順に並べ直したテープ。遅着（late_ms > 0）の行だけは前後する
+    MERGED_TRADES(
+        "merged_trades",
+        "timestamp",
+        "seq,exchange,symbol,trade_id,price,size,side,timestamp,received_at,late_ms"),
+    // 板の価格ごとの変化。sideはB（買い板）/S（売り板）、eventはA（追加）/C（取消）/T（約定による減少）。
+    // 取消は約定を待ってから書くため、前後することがある
+    L2_EVENTS("l2_events", "timestamp", "exchange,symbol,timestamp,side,price,size,event,level"),
+    // 1時間ごとの板の厚みのヒートマップ。時間帯が終わってから書くため、終了時刻で並ぶ。
+    // base_priceはABSOLUTEの行0の価格、matrixは列ごとの仲値と行列を圧縮したもの
+    DEPTH_HEATMAPS(
+        "depth_heatmaps",
+        "end",
+        "exchange,symbol,start,end,mode,bucket_size,rows,interval_ms,base_price,samples,matrix");
+
+    private final String prefix;
+    private final List<String> columns;
+    private final int timestampColumn;
+
+    RecordedStream(String prefix, String timestampColumn, String header) {
+      this.prefix = prefix;
+      this.columns = List.of(header.split(","));
+      this.timestampColumn = columns.indexOf(timestampColumn);
+    }
+
+    public String getPrefix() {
+      return prefix;
+    }
+
+    public List<String> getColumns() {
+      return columns;
+    }
+
+    public int getTimestampColumn() {
+      return timestampColumn;
+    }
+
+    /** ファイル名の接頭辞（trades/market_boards/best_bid_ask等）から探す。 */
+    public static Optional<RecordedStream> fromPrefix(String prefix) {
+      for (RecordedStream stream : values()) {
+        if (stream.prefix.equalsIgnoreCase(prefix)) {
+          return Optional.of(stream);
+        }
+      }
+      return Optional.empty();
+    }
+  }
+
+  /** 1時間分の記録ファイル。 */
+  public static class Segment {
+    private final RecordedStream stream;
+    private final Path path;
+    private final LocalDateTime hour;
+    private final ZoneId zone;
+
+    Segment(RecordedStream stream, Path path, LocalDateTime hour, ZoneId zone) {
+      this.stream = stream;
+      this.path = path;
+      this.hour = hour;
+      this.zone = zone;
+    }
+
+    public RecordedStream getStream() {
+      return stream;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public String getName() {
+      return path.getFileName().toString();
+    }
+
+    public Instant getStart() {
+      return hour.atZone(zone).toInstant();
+    }
+
+    public Instant getEnd() {
+      return hour.plusHours(1).atZone(zone).toInstant();
+    }
+
+    /** [from, to)の時刻の行を含みうる場合にtrueを返す。 */
+    public boolean overlaps(Instant from, Instant to) {
+      return (to == null || getStart().minus(WRITE_LAG).isBefore(to))
+          && (from == null || getEnd().isAfter(from));
+    }
+  }
+
+  @Value("${database.csv-dir:csv}")
+  private String csvDir;
+
+  private ZoneId zone = ZoneId.systemDefault();
+
+  /**
+   * セグメントを時刻順に返す。
+   *
+   * @param stream nullの場合はすべてのストリーム
+   * @param date nullの場合はすべての日付
+   */
+  public List<Segment> list(RecordedStream stream, LocalDate date) throws IOException {
+    List<Segment> segments = new ArrayList<>();
+    Path dir = Paths.get(csvDir);
+    if (!Files.isDirectory(dir)) {
+      return segments;
+    }
+    try (Stream<Path> files = Files.list(dir)) {
+      files.forEach(
+          file ->
+              parse(file)
+                  .filter(segment -> stream == null || segment.getStream() == stream)
+                  .filter(segment -> date == null || segment.hour.toLocalDate().equals(date))
+                  .ifPresent(segments::add));
+    }
+    segments.sort(
+        Comparator.comparing((Segment segment) -> segment.hour)
+            .thenComparing(Segment::getStream));
+    return segments;
+  }
+
+  /** [from, to)の行を含みうるセグメントを時刻順に返す。 */
+  public List<Segment> list(RecordedStream stream, Instant from, Instant to) throws IOException {
+    List<Segment> segments = new ArrayList<>();
+    for (Segment segment : list(stream, null)) {
+      if (segment.overlaps(from, to)) {
+        segments.add(segment);
+      }
+    }
+    return segments;
+  }
+
+  /** ファイル名からセグメントを探す。記録ファイルの名前の形式でない場合は空を返す。 */
+  public Optional<Segment> find(String name) {
+    if (name == null || !FILE_NAME.matcher(name).matches()) {
+      return Optional.empty();
+    }
+    return parse(Paths.get(csvDir).resolve(name))
+        .filter(segment -> Files.isRegularFile(segment.path));
+  }
+
+  private Optional<Segment> parse(Path file) {
+    Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+    if (!matcher.matches()) {
+      return Optional.empty();
+    }
+    try {
+      LocalDateTime hour =
+          LocalDate.parse(matcher.group(2), DATE_FORMATTER)
+              .atTime(Integer.parseInt(matcher.group(3)), 0);
+      return RecordedStream.fromPrefix(matcher.group(1))
+          .map(stream -> new Segment(stream, file, hour, zone));
+    } catch (DateTimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** 日付の指定（yyyyMMdd）を解釈する。 */
+  public static LocalDate parseDate(String date) {
+    return LocalDate.parse(date, DATE_FORMATTER);
+  }
+
+  /** ヘッダー行の直後のバイト位置。 */
+  public static long dataStart(FileChannel channel) throws IOException {
+    long end = lineEnd(channel, 0, channel.size());
+    return Math.min(end + 1, channel.size());
+  }
+
+  /** 書き終わった行の末尾（最後の改行の直後）。書き込み途中の最終行を読まないために使う。 */
+  public static long completeLength(FileChannel channel) throws IOException {
+    return lineStart(channel, 0, channel.size());
+  }
+
+  /**
+   * タイムスタンプが{@code target}以上の最初の行の先頭位置を二分探索で返す。該当する行がない場合は{@code size}。
+   *
+   * <p>行が受信順にほぼ時刻順で並んでいることを前提とする。取引所をまたいで時刻が前後している行は、境界付近で
+   * 含まれたり外れたりすることがある。時刻を読めない行（書き込み途中の最終行など）は{@code target}以上として扱う。
+   *
+   * @param start 探索を始める行の先頭（通常は{@link #dataStart}）
+   * @param size 探索する範囲の末尾
+   */
+  public static long locate(
+      FileChannel channel, long start, long size, int timestampColumn, Instant target)
+      throws IOException {
+    long lo = start;
+    long hi = size;
+    while (lo < hi) {
+      long mid = lo + (hi - lo) / 2;
+      long lineStart = lineStart(channel, lo, mid);
+      long lineEnd = lineEnd(channel, lineStart, size);
+      Instant timestamp = readTimestamp(channel, lineStart, lineEnd, timestampColumn);
+      if (timestamp != null && timestamp.isBefore(target)) {
+        lo = Math.min(lineEnd + 1, hi);
+      } else {
+        hi = lineStart;
+      }
+    }
+    return lo;
+  }
+
+  /** {@code pos}を含む行の先頭。{@code floor}は行の先頭であること。 */
+  private static long lineStart(FileChannel channel, long floor, long pos) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+    long end = pos;
+    while (end > floor) {
+      long begin = Math.max(floor, end - READ_CHUNK);
+      buffer.clear().limit((int) (end - begin));
+      readFully(channel, buffer, begin);
+      for (int i = buffer.limit() - 1; i >= 0; i--) {
+        if (buffer.get(i) == '\n') {
+          return begin + i + 1;
+        }
+      }
+      end = begin;
+    }
+    return floor;
+  }
+
+  /** {@code pos}以降で最初の改行の位置。改行がなければ{@code size}。 */
+  private static long lineEnd(FileChannel channel, long pos, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+    long begin = pos;
+    while (begin < size) {
+      buffer.clear().limit((int) Math.min(READ_CHUNK, size - begin));
+      readFully(channel, buffer, begin);
+      for (int i = 0; i < buffer.limit(); i++) {
+        if (buffer.get(i) == '\n') {
+          return begin + i;
+        }
+      }
+      begin += buffer.limit();
+    }
+    return size;
+  }
+
+  private static Instant readTimestamp(
+      FileChannel channel, long lineStart, long lineEnd, int timestampColumn) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) (lineEnd - lineStart));
+    readFully(channel, buffer, lineStart);
+    String[] columns = new String(buffer.array(), StandardCharsets.UTF_8).split(",", -1);
+    if (columns.length <= timestampColumn) {
+      return null;
+    }
+    return parseTimestamp(columns[timestampColumn]);
+  }
+
+  /** CSVのタイムスタンプ列（{@link Instant#toString()}の形式）を解釈する。読めない場合はnull。 */
+  public static Instant parseTimestamp(String value) {
+    try {
+      return Instant.parse(value.trim());
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+  }
+
+  /** 読み込み専用で開く。 */
+  public static FileChannel open(Path path) throws IOException {
+    return FileChannel.open(path, StandardOpenOption.READ);
+  }
+}
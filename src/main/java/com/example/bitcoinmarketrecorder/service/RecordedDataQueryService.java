@@ -0,0 +1,250 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 記録したCSVから時刻範囲・取引所・銘柄で行を検索し、指定した列だけをNDJSONまたはCSVで返す。
+ *
+ * <p>範囲に重なる時間帯のファイルだけを開き、各ファイルでは開始位置を二分探索してから読む。結果は要求された分だけ
+ * 読み進めて少しずつ送るため、結果の大きさに関わらず使うメモリは一定で、件数の上限に達した時点で読むのをやめる。
+ */
+@Service
+public class RecordedDataQueryService {
+
+  private static final Logger logger = LoggerFactory.getLogger(RecordedDataQueryService.class);
+  // 1回に送る塊の目安
+  private static final int CHUNK_BYTES = 64 * 1024;
+  // NDJSONで文字列として出す列。それ以外の空でない値は数値として出す
+  private static final Set<String> TEXT_COLUMNS =
+      Set.of(
+          "exchange",
+          "symbol",
+          "trade_id",
+          "side",
+          "timestamp",
+          "created_at",
+          "ts",
+          "interval",
+          "open_time",
+          "close_time",
+          "type",
+          "leg_a",
+          "leg_b",
+          "metric",
+          "start",
+          "end",
+          "sketch",
+          "quote_timestamp",
+          "inferred_side",
+          "profile",
+          "received_at");
+  private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+  public enum Format {
+    NDJSON,
+    CSV
+  }
+
+  /** 検索条件。 */
+  public static class Query {
+    private final RecordedStream stream;
+    private final String exchange;
+    private final String symbol;
+    private final Instant from;
+    private final Instant to;
+    private final List<String> columns;
+    private final long limit;
+    private final Format format;
+
+    /**
+     * @param exchange nullの場合はすべて
+     * @param symbol nullの場合はすべて
+     * @param columns 出力する列。空の場合はすべて
+     * @throws IllegalArgumentException ストリームにない列を指定した場合
+     */
+    public Query(
+        RecordedStream stream,
+        String exchange,
+        String symbol,
+        Instant from,
+        Instant to,
+        List<String> columns,
+        long limit,
+        Format format) {
+      for (String column : columns) {
+        if (!stream.getColumns().contains(column)) {
+          throw new IllegalArgumentException(
+              "Unknown column for " + stream.getPrefix() + ": " + column);
+        }
+      }
+      if (!from.isBefore(to)) {
+        throw new IllegalArgumentException("from must be before to");
+      }
+      this.stream = stream;
+      this.exchange = exchange;
+      this.symbol = symbol;
+      this.from = from;
+      this.to = to;
+      this.columns = columns.isEmpty() ? stream.getColumns() : columns;
+      this.limit = limit;
+      this.format = format;
+    }
+  }
+
+  @Autowired private RecordedDataCatalog recordedDataCatalog;
+
+  /** 検索結果を送る。ファイルの読み込みは購読したスレッドではなくboundedElasticで行う。 */
+  public Flux<DataBuffer> query(Query query, DataBufferFactory bufferFactory) {
+    return Flux.<DataBuffer, Cursor>generate(
+            () -> new Cursor(query, recordedDataCatalog.list(query.stream, query.from, query.to)),
+            (cursor, sink) -> {
+              try {
+                byte[] chunk = cursor.nextChunk();
+                if (chunk == null) {
+                  sink.complete();
+                } else {
+                  sink.next(bufferFactory.wrap(chunk));
+                }
+              } catch (IOException e) {
+                logger.error("Failed to read recorded data: {}", e.getMessage());
+                sink.error(e);
+              }
+              return cursor;
+            },
+            Cursor::close)
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  /** 検索の読み込み位置。ファイルを1つずつ開いて条件に合う行を塊にまとめる。 */
+  static class Cursor {
+    private final Query query;
+    private final int[] projection;
+    private final int timestampColumn;
+    private final int columnCount;
+    private final RecordedSegmentReader lines;
+    private long emitted;
+    private boolean headerWritten;
+    private boolean done;
+
+    Cursor(Query query, List<Segment> segments) {
+      this.query = query;
+      this.lines = new RecordedSegmentReader(segments, query.from);
+      this.timestampColumn = query.stream.getTimestampColumn();
+      this.columnCount = query.stream.getColumns().size();
+      this.projection = new int[query.columns.size()];
+      for (int i = 0; i < projection.length; i++) {
+        projection[i] = query.stream.getColumns().indexOf(query.columns.get(i));
+      }
+    }
+
+    /** 次に送る塊。これ以上ない場合はnull。 */
+    byte[] nextChunk() throws IOException {
+      StringBuilder out = new StringBuilder();
+      if (query.format == Format.CSV && !headerWritten) {
+        out.append(String.join(",", query.columns)).append('\n');
+        headerWritten = true;
+      }
+      while (!done && out.length() < CHUNK_BYTES) {
+        String row = lines.nextLine();
+        if (row == null) {
+          break;
+        }
+        String[] values = row.split(",", -1);
+        if (values.length < columnCount) {
+          continue;
+        }
+        Instant timestamp = RecordedDataCatalog.parseTimestamp(values[timestampColumn]);
+        if (timestamp == null) {
+          continue;
+        }
+        if (!timestamp.isBefore(query.to.plus(RecordedDataCatalog.WRITE_LAG))) {
+          // 受信順の前後を考慮しても範囲を過ぎたので、このファイルは読み終える
+          lines.skipSegment();
+          continue;
+        }
+        if (timestamp.isBefore(query.from)
+            || !timestamp.isBefore(query.to)
+            || (query.exchange != null && !query.exchange.equalsIgnoreCase(values[0]))
+            || (query.symbol != null && !query.symbol.equals(values[1]))) {
+          continue;
+        }
+        append(out, values);
+        if (++emitted >= query.limit) {
+          done = true;
+        }
+      }
+      if (out.length() == 0) {
+        return null;
+      }
+      return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void append(StringBuilder out, String[] values) {
+      if (query.format == Format.CSV) {
+        for (int i = 0; i < projection.length; i++) {
+          if (i > 0) {
+            out.append(',');
+          }
+          out.append(values[projection[i]]);
+        }
+        out.append('\n');
+        return;
+      }
+      out.append('{');
+      for (int i = 0; i < projection.length; i++) {
+        String column = query.columns.get(i);
+        String value = values[projection[i]];
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append('"').append(column).append("\":");
+        if (value.isEmpty() || "null".equals(value)) {
+          out.append("null");
+        } else if (TEXT_COLUMNS.contains(column) || !NUMBER.matcher(value).matches()) {
+          appendJsonString(out, value);
+        } else {
+          out.append(value);
+        }
+      }
+      out.append("}\n");
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+      out.append('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          out.append('\\').append(c);
+        } else if (c < 0x20) {
+          out.append(String.format("\\u%04x", (int) c));
+        } else {
+          out.append(c);
+        }
+      }
+      out.append('"');
+    }
+
+    void close() {
+      try {
+        lines.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close recorded file: {}", e.getMessage());
+      }
+    }
+  }
+}
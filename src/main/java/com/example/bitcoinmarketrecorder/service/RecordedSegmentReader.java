@@ -0,0 +1,111 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 記録ファイルを時刻順に1つずつ開き、書き終わった行を1行ずつ読む。
+ *
+ * <p>各ファイルでは{@code from}より{@link RecordedDataCatalog#WRITE_LAG}前の時刻から読み始める位置を
+ * {@link RecordedDataCatalog#locate}で探す。スレッドセーフではない。
+ */
+public class RecordedSegmentReader implements Closeable {
+
+  private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+  private final Deque<Segment> segments;
+  private final Instant start;
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+  private final StringBuilder line = new StringBuilder();
+  private FileChannel channel;
+  private long position;
+  private long end;
+
+  /** @param segments 同じストリームのセグメント（時刻順） */
+  public RecordedSegmentReader(List<Segment> segments, Instant from) {
+    this.segments = new ArrayDeque<>(segments);
+    this.start = from.minus(RecordedDataCatalog.WRITE_LAG);
+  }
+
+  /** 次の行（改行を除く）。開いているファイルを読み終えたら次のファイルを開く。これ以上ない場合はnull。 */
+  public String nextLine() throws IOException {
+    while (true) {
+      if (channel == null && !openNext()) {
+        return null;
+      }
+      String next = readLine();
+      if (next != null) {
+        return next;
+      }
+      skipSegment();
+    }
+  }
+
+  /** 開いているファイルを閉じ、次のファイルに進む。 */
+  public void skipSegment() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+      readBuffer.clear().flip();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    skipSegment();
+  }
+
+  private boolean openNext() throws IOException {
+    while (!segments.isEmpty()) {
+      Segment segment = segments.pollFirst();
+      FileChannel next = RecordedDataCatalog.open(segment.getPath());
+      // 書き込み途中の最終行は読まない
+      long length = RecordedDataCatalog.completeLength(next);
+      long dataStart = Math.min(RecordedDataCatalog.dataStart(next), length);
+      long from =
+          RecordedDataCatalog.locate(
+              next, dataStart, length, segment.getStream().getTimestampColumn(), start);
+      if (from >= length) {
+        next.close();
+        continue;
+      }
+      channel = next;
+      position = from;
+      end = length;
+      readBuffer.clear().flip();
+      return true;
+    }
+    return false;
+  }
+
+  private String readLine() throws IOException {
+    line.setLength(0);
+    while (true) {
+      while (readBuffer.hasRemaining()) {
+        byte b = readBuffer.get();
+        if (b == '\n') {
+          return line.toString();
+        }
+        // 記録ファイルはASCIIのみ
+        line.append((char) (b & 0xff));
+      }
+      if (position >= end) {
+        return null;
+      }
+      readBuffer.clear().limit((int) Math.min(READ_BUFFER_BYTES, end - position));
+      int read = channel.read(readBuffer, position);
+      if (read <= 0) {
+        return null;
+      }
+      position += read;
+      readBuffer.flip();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.example.bitcoinmarketrecorder.service;
+
+/** Redisへ配信するメッセージ1件。スプールにはrequest以外の項目を保存する。 */
+public class RedisOutboundMessage {
+
+  public enum Type {
+    TRADE_INSERT,
+    MARKET_MAKE,
+    OTHER
+  }
+
+  private final Type type;
+  private final String symbol;
+  private final String channel;
+  private final String jsonMessage;
+  private final long timestamp;
+  // 最新状態キーの書き込みに使う。スプールから読み戻したメッセージではnull
+  private final Object request;
+
+  public RedisOutboundMessage(
+      Type type,
+      String symbol,
+      String channel,
+      String jsonMessage,
+      long timestamp,
+      Object request) {
+    this.type = type;
+    this.symbol = symbol;
+    this.channel = channel;
+    this.jsonMessage = jsonMessage;
+    this.timestamp = timestamp;
+    this.request = request;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public String getChannel() {
+    return channel;
+  }
+
+  public String getJsonMessage() {
+    return jsonMessage;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public Object getRequest() {
+    return request;
+  }
+}
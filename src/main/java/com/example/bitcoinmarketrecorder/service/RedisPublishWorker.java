@@ -0,0 +1,355 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+/**
+ * Redisへの非同期配信を1本のスレッドで順番に行う。
+ *
+ * <p>配信先のRedisが停止している間は、メッセージをエンドポイントごとのディスクスプールへ退避する。
+ * 復旧後はスプールを古い順に再送し終えてから新しいメッセージの直接配信に戻るため、同一シンボルの配信順は保たれる。
+ * 再送時に一定時間より古い板更新は破棄し、約定は全件再送する。
+ */
+@Service
+public class RedisPublishWorker {
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisPublishWorker.class);
+
+  @Autowired private RedisPublisherProperties redisPublisherProperties;
+
+  @Autowired private RedisShardRouter redisShardRouter;
+
+  @Autowired private RedisSnapshotWriter redisSnapshotWriter;
+
+  @Autowired private MarketMakeDeltaEncoder marketMakeDeltaEncoder;
+
+  private BlockingQueue<RedisOutboundMessage> queue;
+  // スプールの操作は送信スレッドからのみ行う。統計の参照のためにConcurrentHashMapにしている
+  private final Map<String, RedisSpool> spools = new ConcurrentHashMap<>();
+  private Thread worker;
+  private volatile boolean running;
+
+  private final LongAdder enqueued = new LongAdder();
+  private final LongAdder published = new LongAdder();
+  private final LongAdder spooled = new LongAdder();
+  private final LongAdder replayed = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+
+  @PostConstruct
+  public void start() {
+    queue = new ArrayBlockingQueue<>(redisPublisherProperties.getSpool().getQueueCapacity());
+    if (redisPublisherProperties.getSpool().isEnabled()) {
+      // 前回停止時に残ったスプールを起動直後から再送できるよう、既知のエンドポイント分を先に開く
+      for (RedisShard shard : redisShardRouter.getShards()) {
+        spoolFor(shard);
+      }
+    }
+    running = true;
+    worker = new Thread(this::run, "redis-publisher");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /** 配信キューにメッセージを追加する。キューが満杯の場合は破棄してfalseを返す。 */
+  public boolean submit(RedisOutboundMessage message) {
+    enqueued.increment();
+    if (queue.offer(message)) {
+      return true;
+    }
+    dropped.increment();
+    logger.warn(
+        "Redis publish queue is full, dropping message for channel {}", message.getChannel());
+    return false;
+  }
+
+  private void run() {
+    int batchSize = Math.max(1, redisPublisherProperties.getSpool().getBatchSize());
+    List<RedisOutboundMessage> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        // 再送待ちがある間はキューを待たずに再送を進める
+        long waitMillis = hasReplayableSpool() ? 0 : 100;
+        RedisOutboundMessage first = queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+          queue.drainTo(batch, batchSize - 1);
+          dispatch(batch);
+          batch.clear();
+        }
+        replaySpools(batchSize);
+        flushSpools();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (Exception e) {
+        logger.error("Unexpected error in Redis publish worker: {}", e.getMessage(), e);
+        batch.clear();
+      }
+    }
+  }
+
+  private void dispatch(List<RedisOutboundMessage> batch) {
+    Map<RedisShard, List<RedisOutboundMessage>> byShard = new LinkedHashMap<>();
+    for (RedisOutboundMessage message : batch) {
+      byShard
+          .computeIfAbsent(redisShardRouter.shardFor(message.getSymbol()), k -> new ArrayList<>())
+          .add(message);
+    }
+
+    for (Map.Entry<RedisShard, List<RedisOutboundMessage>> entry : byShard.entrySet()) {
+      RedisShard shard = entry.getKey();
+      List<RedisOutboundMessage> messages = entry.getValue();
+      RedisSpool spool = spoolFor(shard);
+      // スプールに未送信分がある間は順序を保つため、新しいメッセージもスプールの後ろに並べる
+      if (shard.isHealthy() && (spool == null || spool.isEmpty())) {
+        try {
+          sendPipelined(shard, messages, true);
+          published.add(messages.size());
+          continue;
+        } catch (Exception e) {
+          shard.markFailure(e);
+          logger.warn(
+              "Failed to publish {} messages to Redis {}, spooling: {}",
+              messages.size(),
+              shard.getName(),
+              e.getMessage());
+        }
+      }
+      spool(shard, spool, messages);
+    }
+  }
+
+  private void spool(RedisShard shard, RedisSpool spool, List<RedisOutboundMessage> messages) {
+    if (spool == null) {
+      dropped.add(messages.size());
+      messages.forEach(this::invalidateDelta);
+      return;
+    }
+    for (RedisOutboundMessage message : messages) {
+      try {
+        if (spool.append(message)) {
+          spooled.increment();
+        } else {
+          dropped.increment();
+          invalidateDelta(message);
+          logger.warn("Spool for Redis {} is full, dropping message", shard.getName());
+        }
+      } catch (IOException e) {
+        dropped.increment();
+        invalidateDelta(message);
+        logger.error("Failed to spool message for Redis {}: {}", shard.getName(), e.getMessage());
+      }
+    }
+  }
+
+  private void replaySpools(int batchSize) {
+    for (RedisShard shard : redisShardRouter.getShards()) {
+      RedisSpool spool = spools.get(shard.getName());
+      if (spool == null || spool.isEmpty() || !shard.isHealthy()) {
+        continue;
+      }
+      try {
+        RedisSpool.Segment segment = spool.nextSegment();
+        if (segment == null) {
+          continue;
+        }
+        List<RedisOutboundMessage> messages = segment.getMessages();
+        int from = segment.getSent();
+        int to = Math.min(messages.size(), from + batchSize);
+
+        long boardCutoff =
+            System.currentTimeMillis() - redisPublisherProperties.getSpool().getBoardMaxAgeMs();
+        List<RedisOutboundMessage> chunk = new ArrayList<>(to - from);
+        for (RedisOutboundMessage message : messages.subList(from, to)) {
+          if (message.getType() == RedisOutboundMessage.Type.MARKET_MAKE
+              && message.getTimestamp() < boardCutoff) {
+            expired.increment();
+            invalidateDelta(message);
+          } else {
+            chunk.add(message);
+          }
+        }
+        if (!chunk.isEmpty()) {
+          sendPipelined(shard, chunk, false);
+          replayed.add(chunk.size());
+        }
+        segment.setSent(to);
+        if (to == messages.size()) {
+          spool.remove(segment);
+          if (spool.isEmpty()) {
+            logger.info("Finished replaying spooled messages to Redis {}", shard.getName());
+          }
+        }
+      } catch (IOException e) {
+        logger.error("Failed to read spool for Redis {}: {}", shard.getName(), e.getMessage());
+      } catch (Exception e) {
+        shard.markFailure(e);
+        logger.warn(
+            "Failed to replay spooled messages to Redis {}: {}", shard.getName(), e.getMessage());
+      }
+    }
+  }
+
+  /** 届かなかった板の差分の分だけ購読側の板がずれるため、次回の配信を全件にする。 */
+  private void invalidateDelta(RedisOutboundMessage message) {
+    if (message.getType() == RedisOutboundMessage.Type.MARKET_MAKE) {
+      marketMakeDeltaEncoder.invalidate(message.getSymbol());
+    }
+  }
+
+  private boolean hasReplayableSpool() {
+    for (RedisShard shard : redisShardRouter.getShards()) {
+      RedisSpool spool = spools.get(shard.getName());
+      if (spool != null && !spool.isEmpty() && shard.isHealthy()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void flushSpools() {
+    for (Map.Entry<String, RedisSpool> entry : spools.entrySet()) {
+      try {
+        entry.getValue().flush();
+      } catch (IOException e) {
+        logger.error("Failed to flush spool for Redis {}: {}", entry.getKey(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * 複数のメッセージを1回のパイプラインで配信する。最新状態キーの書き込みは直接配信時のみ行う。
+   * スプールから再送する時点の値はすでに古いため、最新状態キーは定期処理に任せる。
+   */
+  private void sendPipelined(
+      RedisShard shard, List<RedisOutboundMessage> messages, boolean withSnapshots) {
+    RedisTemplate<String, Object> template = shard.getTemplate();
+    // convertAndSendと同じシリアライザでエンコードし、配信フォーマットを変えない
+    @SuppressWarnings("unchecked")
+    RedisSerializer<Object> valueSerializer =
+        (RedisSerializer<Object>) template.getValueSerializer();
+    RedisSerializer<String> stringSerializer = template.getStringSerializer();
+
+    List<byte[][]> encoded = new ArrayList<>(messages.size());
+    List<Consumer<RedisConnection>> snapshotCommands = new ArrayList<>();
+    for (RedisOutboundMessage message : messages) {
+      encoded.add(
+          new byte[][] {
+            stringSerializer.serialize(message.getChannel()),
+            valueSerializer.serialize(message.getJsonMessage())
+          });
+      if (withSnapshots) {
+        Consumer<RedisConnection> commands = snapshotCommands(message);
+        if (commands != null) {
+          snapshotCommands.add(commands);
+        }
+      }
+    }
+
+    template.executePipelined(
+        (RedisCallback<Object>)
+            connection -> {
+              for (byte[][] rawMessage : encoded) {
+                connection.publish(rawMessage[0], rawMessage[1]);
+              }
+              for (Consumer<RedisConnection> commands : snapshotCommands) {
+                commands.accept(connection);
+              }
+              return null;
+            });
+    shard.markSuccess(messages.size());
+  }
+
+  private Consumer<RedisConnection> snapshotCommands(RedisOutboundMessage message) {
+    if (message.getRequest() instanceof ExchSimService.MarketMakeRequest request) {
+      return redisSnapshotWriter.forMarketMake(message.getSymbol(), request);
+    }
+    if (message.getRequest() instanceof ExchSimService.TradeInsertRequest request) {
+      return redisSnapshotWriter.forTradeInsert(message.getSymbol(), request);
+    }
+    return null;
+  }
+
+  private RedisSpool spoolFor(RedisShard shard) {
+    RedisPublisherProperties.Spool properties = redisPublisherProperties.getSpool();
+    if (!properties.isEnabled()) {
+      return null;
+    }
+    return spools.computeIfAbsent(
+        shard.getName(),
+        name -> {
+          Path dir = Paths.get(properties.getDir(), name.replaceAll("[^A-Za-z0-9._-]", "_"));
+          try {
+            return new RedisSpool(dir, properties.getMaxBytes(), properties.getSegmentBytes());
+          } catch (IOException e) {
+            logger.error("Failed to open spool {} for Redis {}: {}", dir, name, e.getMessage());
+            return null;
+          }
+        });
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enqueued", enqueued.sum());
+    stats.put("queueDepth", queue != null ? queue.size() : 0);
+    stats.put("published", published.sum());
+    stats.put("spooled", spooled.sum());
+    stats.put("replayed", replayed.sum());
+    stats.put("expired", expired.sum());
+    stats.put("dropped", dropped.sum());
+
+    Map<String, Object> spoolStats = new TreeMap<>();
+    for (Map.Entry<String, RedisSpool> entry : spools.entrySet()) {
+      Map<String, Object> spoolStat = new LinkedHashMap<>();
+      spoolStat.put("records", entry.getValue().getRecords());
+      spoolStat.put("bytes", entry.getValue().getBytes());
+      spoolStats.put(entry.getKey(), spoolStat);
+    }
+    stats.put("spools", spoolStats);
+    return stats;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    if (worker != null) {
+      try {
+        // キューに残ったメッセージは配信するかスプールに退避してから終了する
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (Map.Entry<String, RedisSpool> entry : spools.entrySet()) {
+      try {
+        entry.getValue().close();
+      } catch (IOException e) {
+        logger.warn("Failed to close spool for Redis {}: {}", entry.getKey(), e.getMessage());
+      }
+    }
+  }
+}
@@ -6,10 +6,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 @org.springframework.context.annotation.DependsOn("redisConnectionFactory")
@@ -23,6 +26,18 @@ public class RedisPublisherService {
     @Autowired
     private RedisPublisherProperties redisPublisherProperties;
 
+    @Autowired
+    private RedisSnapshotWriter redisSnapshotWriter;
+
+    @Autowired
+    private RedisShardRouter redisShardRouter;
+
+    @Autowired
+    private RedisPublishWorker redisPublishWorker;
+
+    @Autowired
+    private MarketMakeDeltaEncoder marketMakeDeltaEncoder;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public void publishTradeInsert(String symbol, ExchSimService.TradeInsertRequest request) {
@@ -31,25 +46,17 @@ public class RedisPublisherService {
             return;
         }
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                String channel = redisPublisherProperties.getTradeInsert().getChannelName(symbol);
-                String jsonMessage = objectMapper.writeValueAsString(request);
-                
-                redisTemplate.convertAndSend(channel, jsonMessage);
-                
-                logger.info("Successfully published trade insert to Redis channel: {}, symbol: {}, price: {}, quantity: {}, side: {}", 
-                    channel, request.getSymbol(), request.getPrice(), request.getQuantity(), request.getSide());
-                logger.debug("Trade insert message: {}", jsonMessage);
-                
-            } catch (JsonProcessingException e) {
-                logger.error("Failed to serialize trade insert request for symbol {}: {}", 
-                    symbol, e.getMessage(), e);
-            } catch (Exception e) {
-                logger.error("Failed to publish trade insert to Redis for symbol {}: {}", 
-                    symbol, e.getMessage(), e);
-            }
-        });
+        try {
+            String channel = redisPublisherProperties.getTradeInsert().getChannelName(symbol);
+            String jsonMessage = objectMapper.writeValueAsString(request);
+            redisPublishWorker.submit(new RedisOutboundMessage(
+                RedisOutboundMessage.Type.TRADE_INSERT, symbol, channel, jsonMessage,
+                System.currentTimeMillis(), request));
+            logger.debug("Queued trade insert message for channel {}: {}", channel, jsonMessage);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize trade insert request for symbol {}: {}", 
+                symbol, e.getMessage(), e);
+        }
     }
 
     public void publishMarketMake(String symbol, ExchSimService.MarketMakeRequest request) {
@@ -58,27 +65,24 @@ public class RedisPublisherService {
             return;
         }
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                String channel = redisPublisherProperties.getMarketMake().getChannelName(symbol);
-                String jsonMessage = objectMapper.writeValueAsString(request);
-                
-                redisTemplate.convertAndSend(channel, jsonMessage);
-                
-                logger.info("Successfully published market make to Redis channel: {}, symbol: {}, {} bidLevels, {} askLevels", 
-                    channel, request.getSymbol(), 
-                    request.getBidLevels() != null ? request.getBidLevels().size() : 0,
-                    request.getAskLevels() != null ? request.getAskLevels().size() : 0);
-                logger.debug("Market make message: {}", jsonMessage);
-                
-            } catch (JsonProcessingException e) {
-                logger.error("Failed to serialize market make request for symbol {}: {}", 
-                    symbol, e.getMessage(), e);
-            } catch (Exception e) {
-                logger.error("Failed to publish market make to Redis for symbol {}: {}", 
-                    symbol, e.getMessage(), e);
+        try {
+            String channel = redisPublisherProperties.getMarketMake().getChannelName(symbol);
+            String jsonMessage = marketMakePayload(symbol, request);
+            if (jsonMessage == null) {
+                logger.debug("Market make for {} unchanged, skipping", symbol);
+                return;
+            }
+            if (!redisPublishWorker.submit(new RedisOutboundMessage(
+                RedisOutboundMessage.Type.MARKET_MAKE, symbol, channel, jsonMessage,
+                System.currentTimeMillis(), request))) {
+                invalidateMarketMakeDelta(symbol);
+                return;
             }
-        });
+            logger.debug("Queued market make message for channel {}: {}", channel, jsonMessage);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize market make request for symbol {}: {}", 
+                symbol, e.getMessage(), e);
+        }
     }
 
     public void publishTradeInsertSync(String symbol, ExchSimService.TradeInsertRequest request) {
@@ -91,7 +95,7 @@ public class RedisPublisherService {
             String channel = redisPublisherProperties.getTradeInsert().getChannelName(symbol);
             String jsonMessage = objectMapper.writeValueAsString(request);
             
-            redisTemplate.convertAndSend(channel, jsonMessage);
+            send(symbol, channel, jsonMessage, tradeSnapshot(symbol, request));
             
             logger.info("Successfully published trade insert to Redis channel: {}, symbol: {}, price: {}, quantity: {}, side: {}", 
                 channel, request.getSymbol(), request.getPrice(), request.getQuantity(), request.getSide());
@@ -116,9 +120,13 @@ public class RedisPublisherService {
 
         try {
             String channel = redisPublisherProperties.getMarketMake().getChannelName(symbol);
-            String jsonMessage = objectMapper.writeValueAsString(request);
+            String jsonMessage = marketMakePayload(symbol, request);
+            if (jsonMessage == null) {
+                logger.debug("Market make for {} unchanged, skipping", symbol);
+                return;
+            }
             
-            redisTemplate.convertAndSend(channel, jsonMessage);
+            send(symbol, channel, jsonMessage, marketMakeSnapshot(symbol, request));
             
             logger.info("Successfully published market make to Redis channel: {}, symbol: {}, {} bidLevels, {} askLevels", 
                 channel, request.getSymbol(), 
@@ -131,12 +139,101 @@ public class RedisPublisherService {
                 symbol, e.getMessage(), e);
             throw new RuntimeException("Failed to serialize market make request", e);
         } catch (Exception e) {
+            invalidateMarketMakeDelta(symbol);
             logger.error("Failed to publish market make to Redis for symbol {}: {}", 
                 symbol, e.getMessage(), e);
             throw new RuntimeException("Failed to publish market make to Redis", e);
         }
     }
 
+    /**
+     * 集計値など、整形済みのJSONをシンボルの割り当て先Redisに非同期で配信する。
+     */
+    public void publish(String symbol, String channel, String jsonMessage) {
+        if (!redisPublisherProperties.isEnabled()) {
+            logger.debug("Redis publishing is disabled");
+            return;
+        }
+
+        redisPublishWorker.submit(new RedisOutboundMessage(RedisOutboundMessage.Type.OTHER,
+            symbol, channel, jsonMessage, System.currentTimeMillis(), null));
+    }
+
+    /**
+     * メッセージをシンボルの割り当て先Redisに配信する。最新状態キーの書き込みがある場合は配信と同じパイプラインで送る。
+     */
+    private void send(
+            String symbol,
+            String channel,
+            String jsonMessage,
+            Consumer<RedisConnection> snapshotCommands) {
+        RedisShard shard = redisShardRouter.shardFor(symbol);
+        RedisTemplate<String, Object> template =
+                shard != null ? shard.getTemplate() : redisTemplate;
+
+        try {
+            if (snapshotCommands == null) {
+                template.convertAndSend(channel, jsonMessage);
+            } else {
+                // convertAndSendと同じシリアライザでエンコードし、配信フォーマットを変えない
+                @SuppressWarnings("unchecked")
+                RedisSerializer<Object> valueSerializer =
+                        (RedisSerializer<Object>) template.getValueSerializer();
+                byte[] rawChannel = template.getStringSerializer().serialize(channel);
+                byte[] rawMessage = valueSerializer.serialize(jsonMessage);
+
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    connection.publish(rawChannel, rawMessage);
+                    snapshotCommands.accept(connection);
+                    return null;
+                });
+            }
+            if (shard != null) {
+                shard.markSuccess(1);
+            }
+        } catch (RuntimeException e) {
+            if (shard != null) {
+                shard.markFailure(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * market-makeチャンネルの配信内容。差分配信が有効な場合、板に変化がなければnullを返す。
+     */
+    private String marketMakePayload(String symbol, ExchSimService.MarketMakeRequest request)
+            throws JsonProcessingException {
+        if (!marketMakeDeltaEncoder.isEnabled()) {
+            return objectMapper.writeValueAsString(request);
+        }
+        MarketMakeDeltaEncoder.Update update = marketMakeDeltaEncoder.encode(symbol, request);
+        return update != null ? objectMapper.writeValueAsString(update) : null;
+    }
+
+    private void invalidateMarketMakeDelta(String symbol) {
+        // 届かなかった差分の分だけ購読側の板がずれるため、次回は全件を送る
+        marketMakeDeltaEncoder.invalidate(symbol);
+    }
+
+    private Consumer<RedisConnection> tradeSnapshot(
+            String symbol, ExchSimService.TradeInsertRequest request) {
+        return redisSnapshotWriter.forTradeInsert(symbol, request);
+    }
+
+    private Consumer<RedisConnection> marketMakeSnapshot(
+            String symbol, ExchSimService.MarketMakeRequest request) {
+        return redisSnapshotWriter.forMarketMake(symbol, request);
+    }
+
+    /**
+     * シンボルの割り当て先Redisが配信可能な状態かを返す。
+     */
+    public boolean isAvailable(String symbol) {
+        RedisShard shard = redisShardRouter.shardFor(symbol);
+        return shard == null || shard.isHealthy();
+    }
+
     public boolean isHealthy() {
         try {
             redisTemplate.hasKey("health-check");
@@ -0,0 +1,92 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/** 配信先Redisエンドポイント1台分の接続と稼働状態。 */
+public class RedisShard {
+
+  private final String name;
+  private final RedisTemplate<String, Object> template;
+  private final RedisClient client;
+  // デフォルトのエンドポイントはSpring管理のため、ここでは閉じない
+  private final LettuceConnectionFactory ownedConnectionFactory;
+  private StatefulRedisConnection<String, String> adminConnection;
+
+  private volatile boolean healthy = true;
+  private volatile String lastError;
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+
+  public RedisShard(
+      String name,
+      RedisTemplate<String, Object> template,
+      RedisClient client,
+      LettuceConnectionFactory ownedConnectionFactory) {
+    this.name = name;
+    this.template = template;
+    this.client = client;
+    this.ownedConnectionFactory = ownedConnectionFactory;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public RedisTemplate<String, Object> getTemplate() {
+    return template;
+  }
+
+  public boolean isHealthy() {
+    return healthy;
+  }
+
+  /** PUBSUB等の管理コマンド用の接続。配信用の接続とは分けている。 */
+  public synchronized StatefulRedisConnection<String, String> getAdminConnection() {
+    if (adminConnection == null || !adminConnection.isOpen()) {
+      adminConnection = client.connect();
+      adminConnection.setTimeout(Duration.ofSeconds(1));
+    }
+    return adminConnection;
+  }
+
+  public void markSuccess(int messages) {
+    published.addAndGet(messages);
+    healthy = true;
+  }
+
+  public void markFailure(Exception e) {
+    failures.incrementAndGet();
+    lastError = e.getMessage();
+    healthy = false;
+  }
+
+  public void markHealthy(boolean healthy) {
+    this.healthy = healthy;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("healthy", healthy);
+    stats.put("published", published.get());
+    stats.put("failures", failures.get());
+    stats.put("lastError", lastError);
+    return stats;
+  }
+
+  public synchronized void close() {
+    if (adminConnection != null) {
+      adminConnection.close();
+    }
+    if (ownedConnectionFactory != null) {
+      ownedConnectionFactory.destroy();
+      client.shutdown();
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.config.ExchSimProperties;
+import com.example.bitcoinmarketrecorder.config.RedisConfig;
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import io.lettuce.core.RedisClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 配信先Redisエンドポイントの振り分け。
+ *
+ * <p>チャンネルはマッピング後のシンボルのコンシステントハッシュで1台のエンドポイントに割り当てるため、
+ * 同一シンボルのmarket-make・trade-insert・最新状態キーは常に同じRedisに載る。エンドポイントを追加すると
+ * 新しいエンドポイントに割り当たるシンボルだけが移動する。
+ */
+@Service
+public class RedisShardRouter {
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisShardRouter.class);
+
+  @Autowired private RedisTemplate<String, Object> redisTemplate;
+
+  @Autowired private RedisClient customRedisClient;
+
+  @Autowired private RedisPublisherProperties redisPublisherProperties;
+
+  @Autowired private ExchSimProperties exchSimProperties;
+
+  @Value("${redis.host:localhost}")
+  private String host;
+
+  @Value("${redis.port:6379}")
+  private int port;
+
+  @Value("${redis.password:}")
+  private String password;
+
+  @Value("${redis.database:0}")
+  private int database;
+
+  private ConsistentHashRing<RedisShard> ring;
+
+  @PostConstruct
+  public void initialize() {
+    RedisPublisherProperties.Sharding sharding = redisPublisherProperties.getSharding();
+    ring = new ConsistentHashRing<>(sharding.getVirtualNodes());
+
+    List<String> endpoints = sharding.getEndpoints();
+    if (endpoints == null || endpoints.isEmpty()) {
+      // 従来通りredis.host/redis.portの1台に配信する
+      String name = host + ":" + port;
+      ring.add(name, new RedisShard(name, redisTemplate, customRedisClient, null));
+      return;
+    }
+    for (String endpoint : endpoints) {
+      ring.add(endpoint.trim(), createShard(endpoint.trim()));
+    }
+    logger.info("Redis publishing sharded across {} endpoints: {}", ring.size(), endpoints);
+  }
+
+  public RedisShard shardFor(String symbol) {
+    return ring.get(symbol);
+  }
+
+  public List<RedisShard> getShards() {
+    return ring.getNodes();
+  }
+
+  /** エンドポイントを追加し、割り当てが変わったシンボルを返す。 */
+  public synchronized Map<String, String> addEndpoint(String endpoint) {
+    String name = endpoint.trim();
+    // 接続を作る前に確認し、追加できないエンドポイントの接続を残さない
+    if (ring.contains(name)) {
+      throw new IllegalArgumentException("Redis endpoint already exists: " + name);
+    }
+    Map<String, String> before = getAssignments();
+    ring.add(name, createShard(name));
+    Map<String, String> moved = new TreeMap<>();
+    for (Map.Entry<String, String> entry : getAssignments().entrySet()) {
+      if (!entry.getValue().equals(before.get(entry.getKey()))) {
+        moved.put(entry.getKey(), entry.getValue());
+      }
+    }
+    logger.info("Added Redis endpoint {}, rebalanced symbols: {}", name, moved);
+    return moved;
+  }
+
+  /** マッピング済みシンボルごとの配信先エンドポイント。 */
+  public Map<String, String> getAssignments() {
+    Map<String, String> assignments = new TreeMap<>();
+    for (String symbol : getMappedSymbols()) {
+      assignments.put(symbol, shardFor(symbol).getName());
+    }
+    return assignments;
+  }
+
+  private Set<String> getMappedSymbols() {
+    Set<String> symbols = new TreeSet<>();
+    if (exchSimProperties.getSymbolMapping() != null) {
+      for (Map<String, String> exchangeMapping : exchSimProperties.getSymbolMapping().values()) {
+        symbols.addAll(exchangeMapping.values());
+      }
+    }
+    return symbols;
+  }
+
+  @Scheduled(
+      fixedDelayString = "${redis.publisher.sharding.health-check-interval-ms:1000}",
+      initialDelay = 1000)
+  public void checkHealth() {
+    for (RedisShard shard : getShards()) {
+      boolean wasHealthy = shard.isHealthy();
+      boolean healthy;
+      try {
+        shard.getTemplate().execute((RedisCallback<String>) connection -> connection.ping());
+        healthy = true;
+      } catch (Exception e) {
+        healthy = false;
+      }
+      shard.markHealthy(healthy);
+      if (wasHealthy != healthy) {
+        logger.warn("Redis endpoint {} is now {}", shard.getName(), healthy ? "UP" : "DOWN");
+      }
+    }
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    Map<String, Object> shards = new TreeMap<>();
+    for (RedisShard shard : getShards()) {
+      shards.put(shard.getName(), shard.getStats());
+    }
+    stats.put("endpoints", shards);
+    stats.put("assignments", getAssignments());
+    return stats;
+  }
+
+  private RedisShard createShard(String endpoint) {
+    int separator = endpoint.lastIndexOf(':');
+    if (separator <= 0) {
+      throw new IllegalArgumentException("Redis endpoint must be host:port: " + endpoint);
+    }
+    String shardHost = endpoint.substring(0, separator);
+    int shardPort = Integer.parseInt(endpoint.substring(separator + 1));
+
+    LettuceConnectionFactory factory =
+        RedisConfig.createConnectionFactory(shardHost, shardPort, password, database);
+    return new RedisShard(
+        endpoint,
+        RedisConfig.createTemplate(factory),
+        RedisConfig.createRedisClient(shardHost, shardPort, password, database),
+        factory);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    for (RedisShard shard : getShards()) {
+      shard.close();
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * シンボルごとの最新状態をRedisのキーに書き込む。
+ *
+ * <p>板（上位N件）とBBOは{@code latest:book:{symbol}}・{@code latest:bbo:{symbol}}、最終約定は
+ * {@code latest:trade:{symbol}}にコンパクトなJSONで保持するため、読み手は1回のGETで現在値を取得できる。
+ * 書き込みは配信と同じパイプラインに載せ、同一シンボルでは設定間隔に最大1回とする。間隔内に届いた更新は保留し、
+ * 定期処理でまとめて書き込むので、キーの値は最大でも1間隔分しか遅れない。購読者がおらず配信を省略している
+ * チャンネルでも、最新状態キーは更新し続ける。
+ */
+@Service
+public class RedisSnapshotWriter {
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisSnapshotWriter.class);
+
+  @Autowired private RedisPublisherProperties redisPublisherProperties;
+
+  @Autowired private RedisShardRouter redisShardRouter;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, SnapshotSlot> bookSlots = new ConcurrentHashMap<>();
+  private final Map<String, SnapshotSlot> tradeSlots = new ConcurrentHashMap<>();
+
+  /** 板配信と同じパイプラインで実行するコマンドを返す。書き込み間隔内であれば保留してnullを返す。 */
+  public Consumer<RedisConnection> forMarketMake(
+      String symbol, ExchSimService.MarketMakeRequest request) {
+    if (!redisPublisherProperties.getSnapshot().isEnabled()) {
+      return null;
+    }
+    SnapshotSlot slot = bookSlots.computeIfAbsent(symbol, SnapshotSlot::new);
+    Latest latest = new Latest(request, System.currentTimeMillis());
+    if (!slot.offer(latest, intervalNanos())) {
+      return null;
+    }
+    Map<byte[], byte[]> values = encodeBook(symbol, latest);
+    return values.isEmpty() ? null : connection -> connection.stringCommands().mSet(values);
+  }
+
+  /** 約定配信と同じパイプラインで実行するコマンドを返す。書き込み間隔内であれば保留してnullを返す。 */
+  public Consumer<RedisConnection> forTradeInsert(
+      String symbol, ExchSimService.TradeInsertRequest request) {
+    if (!redisPublisherProperties.getSnapshot().isEnabled()) {
+      return null;
+    }
+    SnapshotSlot slot = tradeSlots.computeIfAbsent(symbol, SnapshotSlot::new);
+    Latest latest = new Latest(request, System.currentTimeMillis());
+    if (!slot.offer(latest, intervalNanos())) {
+      return null;
+    }
+    Map<byte[], byte[]> values = encodeTrade(symbol, latest);
+    return values.isEmpty() ? null : connection -> connection.stringCommands().mSet(values);
+  }
+
+  public boolean isEnabled() {
+    return redisPublisherProperties.isEnabled()
+        && redisPublisherProperties.getSnapshot().isEnabled();
+  }
+
+  /** 配信を伴わない板更新を記録する。書き込みは定期処理で行う。 */
+  public void recordMarketMake(String symbol, ExchSimService.MarketMakeRequest request) {
+    bookSlots
+        .computeIfAbsent(symbol, SnapshotSlot::new)
+        .dirty
+        .set(new Latest(request, System.currentTimeMillis()));
+  }
+
+  /** 配信を伴わない約定を記録する。書き込みは定期処理で行う。 */
+  public void recordTradeInsert(String symbol, ExchSimService.TradeInsertRequest request) {
+    tradeSlots
+        .computeIfAbsent(symbol, SnapshotSlot::new)
+        .dirty
+        .set(new Latest(request, System.currentTimeMillis()));
+  }
+
+  /** 間隔内で保留された最新状態をまとめて書き込む。 */
+  @Scheduled(fixedDelayString = "${redis.publisher.snapshot.interval-ms:200}")
+  public void flushPending() {
+    if (!isEnabled()) {
+      return;
+    }
+    long intervalNanos = intervalNanos();
+    // シンボルの割り当て先Redisごとにまとめて書き込む
+    Map<RedisShard, Map<byte[], byte[]>> valuesByShard = new HashMap<>();
+    for (SnapshotSlot slot : bookSlots.values()) {
+      Latest latest = slot.takeDirty(intervalNanos);
+      if (latest != null) {
+        valuesByShard
+            .computeIfAbsent(redisShardRouter.shardFor(slot.symbol), k -> new HashMap<>())
+            .putAll(encodeBook(slot.symbol, latest));
+      }
+    }
+    for (SnapshotSlot slot : tradeSlots.values()) {
+      Latest latest = slot.takeDirty(intervalNanos);
+      if (latest != null) {
+        valuesByShard
+            .computeIfAbsent(redisShardRouter.shardFor(slot.symbol), k -> new HashMap<>())
+            .putAll(encodeTrade(slot.symbol, latest));
+      }
+    }
+
+    for (Map.Entry<RedisShard, Map<byte[], byte[]>> entry : valuesByShard.entrySet()) {
+      Map<byte[], byte[]> values = entry.getValue();
+      if (values.isEmpty()) {
+        continue;
+      }
+      try {
+        entry
+            .getKey()
+            .getTemplate()
+            .execute(
+                (RedisCallback<Object>)
+                    connection -> {
+                      connection.stringCommands().mSet(values);
+                      return null;
+                    });
+      } catch (Exception e) {
+        logger.warn(
+            "Failed to write latest-state snapshots to Redis {}: {}",
+            entry.getKey().getName(),
+            e.getMessage());
+      }
+    }
+  }
+
+  private long intervalNanos() {
+    return TimeUnit.MILLISECONDS.toNanos(redisPublisherProperties.getSnapshot().getIntervalMs());
+  }
+
+  private Map<byte[], byte[]> encodeBook(String symbol, Latest latest) {
+    ExchSimService.MarketMakeRequest request = (ExchSimService.MarketMakeRequest) latest.request;
+    RedisPublisherProperties.Snapshot snapshot = redisPublisherProperties.getSnapshot();
+    Map<byte[], byte[]> values = new HashMap<>();
+    try {
+      Map<String, Object> book = new LinkedHashMap<>();
+      book.put("symbol", symbol);
+      book.put("ts", latest.timestamp);
+      book.put("bids", toPairs(request.getBidLevels(), snapshot.getBookDepth()));
+      book.put("asks", toPairs(request.getAskLevels(), snapshot.getBookDepth()));
+      values.put(rawKey(snapshot.getBookKey(symbol)), objectMapper.writeValueAsBytes(book));
+
+      if (hasLevels(request.getBidLevels()) && hasLevels(request.getAskLevels())) {
+        ExchSimService.PriceLevel bestBid = request.getBidLevels().get(0);
+        ExchSimService.PriceLevel bestAsk = request.getAskLevels().get(0);
+        Map<String, Object> bbo = new LinkedHashMap<>();
+        bbo.put("symbol", symbol);
+        bbo.put("ts", latest.timestamp);
+        bbo.put("bid", bestBid.getPrice());
+        bbo.put("bidSize", bestBid.getQuantity());
+        bbo.put("ask", bestAsk.getPrice());
+        bbo.put("askSize", bestAsk.getQuantity());
+        values.put(rawKey(snapshot.getBboKey(symbol)), objectMapper.writeValueAsBytes(bbo));
+      }
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to serialize book snapshot for symbol {}: {}", symbol, e.getMessage());
+      values.clear();
+    }
+    return values;
+  }
+
+  private Map<byte[], byte[]> encodeTrade(String symbol, Latest latest) {
+    ExchSimService.TradeInsertRequest request = (ExchSimService.TradeInsertRequest) latest.request;
+    Map<byte[], byte[]> values = new HashMap<>();
+    try {
+      Map<String, Object> trade = new LinkedHashMap<>();
+      trade.put("symbol", symbol);
+      trade.put("ts", latest.timestamp);
+      trade.put("price", request.getPrice());
+      trade.put("quantity", request.getQuantity());
+      trade.put("side", request.getSide());
+      values.put(
+          rawKey(redisPublisherProperties.getSnapshot().getTradeKey(symbol)),
+          objectMapper.writeValueAsBytes(trade));
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to serialize trade snapshot for symbol {}: {}", symbol, e.getMessage());
+    }
+    return values;
+  }
+
+  private static boolean hasLevels(List<ExchSimService.PriceLevel> levels) {
+    return levels != null && !levels.isEmpty();
+  }
+
+  private static List<double[]> toPairs(List<ExchSimService.PriceLevel> levels, int depth) {
+    List<double[]> pairs = new ArrayList<>();
+    if (levels == null) {
+      return pairs;
+    }
+    for (int i = 0; i < Math.min(depth, levels.size()); i++) {
+      ExchSimService.PriceLevel level = levels.get(i);
+      pairs.add(new double[] {level.getPrice(), level.getQuantity()});
+    }
+    return pairs;
+  }
+
+  private static byte[] rawKey(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static final class Latest {
+    private final Object request;
+    private final long timestamp;
+
+    private Latest(Object request, long timestamp) {
+      this.request = request;
+      this.timestamp = timestamp;
+    }
+  }
+
+  private static final class SnapshotSlot {
+    private final String symbol;
+    private final AtomicReference<Latest> dirty = new AtomicReference<>();
+    private volatile long lastWrittenNanos = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+
+    private SnapshotSlot(String symbol) {
+      this.symbol = symbol;
+    }
+
+    /** 書き込み可能ならtrueを返す。間隔内であれば最新状態を保留する。 */
+    private synchronized boolean offer(Latest latest, long intervalNanos) {
+      long now = System.nanoTime();
+      if (now - lastWrittenNanos < intervalNanos) {
+        dirty.set(latest);
+        return false;
+      }
+      lastWrittenNanos = now;
+      dirty.set(null);
+      return true;
+    }
+
+    private synchronized Latest takeDirty(long intervalNanos) {
+      long now = System.nanoTime();
+      if (dirty.get() == null || now - lastWrittenNanos < intervalNanos) {
+        return null;
+      }
+      lastWrittenNanos = now;
+      return dirty.getAndSet(null);
+    }
+  }
+}
@@ -0,0 +1,270 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Redisへ送れなかったメッセージを退避する、容量上限付きのディスクスプール。
+ *
+ * <p>メッセージはセグメントファイルに追記し、古いセグメントから順に読み戻す。送信済みのセグメントは削除する。
+ * 起動時に残っているセグメントは前回の未送信分として件数とサイズだけを数え、内容は再送する順に読み込む。
+ * スレッドセーフではないため、1つのスレッドからのみ使用する。
+ */
+public class RedisSpool {
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisSpool.class);
+  private static final String SEGMENT_PREFIX = "spool-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final Path dir;
+  private final long maxBytes;
+  private final long segmentBytes;
+  private final Deque<Segment> sealedSegments = new ArrayDeque<>();
+
+  private Segment activeSegment;
+  private DataOutputStream activeOutput;
+  private long nextSegmentId;
+  private long totalBytes;
+  private long totalRecords;
+
+  public RedisSpool(Path dir, long maxBytes, long segmentBytes) throws IOException {
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    this.segmentBytes = segmentBytes;
+    Files.createDirectories(dir);
+    loadExistingSegments();
+  }
+
+  /** メッセージを追記する。容量上限を超える場合は追記せずfalseを返す。 */
+  public boolean append(RedisOutboundMessage message) throws IOException {
+    byte[] record = encode(message);
+    long recordBytes = Integer.BYTES + record.length;
+    if (totalBytes + recordBytes > maxBytes) {
+      return false;
+    }
+    if (activeSegment == null || activeSegment.bytes + recordBytes > segmentBytes) {
+      rollSegment();
+    }
+    activeOutput.writeInt(record.length);
+    activeOutput.write(record);
+    activeSegment.bytes += recordBytes;
+    activeSegment.records++;
+    totalBytes += recordBytes;
+    totalRecords++;
+    return true;
+  }
+
+  /** 追記したメッセージをディスクへ書き出す。 */
+  public void flush() throws IOException {
+    if (activeOutput != null) {
+      activeOutput.flush();
+    }
+  }
+
+  public boolean isEmpty() {
+    return totalRecords == 0;
+  }
+
+  public long getRecords() {
+    return totalRecords;
+  }
+
+  public long getBytes() {
+    return totalBytes;
+  }
+
+  /** 最も古いセグメントのメッセージを読み出す。空の場合はnullを返す。 */
+  public Segment nextSegment() throws IOException {
+    if (sealedSegments.isEmpty()) {
+      if (activeSegment == null || activeSegment.records == 0) {
+        return null;
+      }
+      sealActiveSegment();
+    }
+    Segment segment = sealedSegments.peekFirst();
+    if (segment.messages == null) {
+      segment.messages = readSegment(segment.path);
+    }
+    return segment;
+  }
+
+  /** 送信し終えたセグメントを削除する。 */
+  public void remove(Segment segment) throws IOException {
+    if (sealedSegments.peekFirst() != segment) {
+      throw new IllegalStateException("Only the oldest segment can be removed: " + segment.path);
+    }
+    sealedSegments.pollFirst();
+    Files.deleteIfExists(segment.path);
+    totalBytes -= segment.bytes;
+    totalRecords -= segment.records;
+  }
+
+  public void close() throws IOException {
+    if (activeOutput != null) {
+      activeOutput.close();
+      activeOutput = null;
+    }
+  }
+
+  private void rollSegment() throws IOException {
+    if (activeSegment != null) {
+      sealActiveSegment();
+    }
+    Path path =
+        dir.resolve(
+            String.format("%s%016d%s", SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+    activeSegment = new Segment(path);
+    activeOutput =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+  }
+
+  private void sealActiveSegment() throws IOException {
+    activeOutput.close();
+    activeOutput = null;
+    sealedSegments.addLast(activeSegment);
+    activeSegment = null;
+  }
+
+  private void loadExistingSegments() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(paths::add);
+    }
+    paths.sort(null);
+    for (Path path : paths) {
+      String name = path.getFileName().toString();
+      long id =
+          Long.parseLong(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+      nextSegmentId = Math.max(nextSegmentId, id + 1);
+
+      // 容量上限まで溜まったスプールを一度にヒープへ載せないよう、内容はnextSegmentで読む
+      Segment segment = new Segment(path);
+      segment.records = countRecords(path);
+      segment.bytes = Files.size(path);
+      if (segment.records == 0) {
+        Files.deleteIfExists(path);
+        continue;
+      }
+      sealedSegments.addLast(segment);
+      totalBytes += segment.bytes;
+      totalRecords += segment.records;
+    }
+    if (totalRecords > 0) {
+      logger.info("Loaded {} spooled messages ({} bytes) from {}", totalRecords, totalBytes, dir);
+    }
+  }
+
+  private static byte[] encode(RedisOutboundMessage message) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + message.getJsonMessage().length());
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(message.getTimestamp());
+    out.writeByte(message.getType().ordinal());
+    out.writeUTF(message.getSymbol());
+    out.writeUTF(message.getChannel());
+    byte[] payload = message.getJsonMessage().getBytes(StandardCharsets.UTF_8);
+    out.writeInt(payload.length);
+    out.write(payload);
+    return bytes.toByteArray();
+  }
+
+  private static List<RedisOutboundMessage> readSegment(Path path) throws IOException {
+    List<RedisOutboundMessage> messages = new ArrayList<>();
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(path));
+        DataInputStream in = new DataInputStream(input)) {
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        byte[] record = new byte[length];
+        try {
+          in.readFully(record);
+        } catch (EOFException e) {
+          // 書き込み途中で停止した場合の末尾は読み捨てる
+          logger.warn("Truncated record at the end of spool segment {}", path);
+          break;
+        }
+        messages.add(decode(record));
+      }
+    }
+    return messages;
+  }
+
+  /** セグメントの完全なレコード数を数える。readSegmentと同じく書き込み途中の末尾は数えない。 */
+  private static long countRecords(Path path) throws IOException {
+    long records = 0;
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(path));
+        DataInputStream in = new DataInputStream(input)) {
+      while (true) {
+        try {
+          in.skipNBytes(in.readInt());
+        } catch (EOFException e) {
+          break;
+        }
+        records++;
+      }
+    }
+    return records;
+  }
+
+  private static RedisOutboundMessage decode(byte[] record) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    long timestamp = in.readLong();
+    RedisOutboundMessage.Type type = RedisOutboundMessage.Type.values()[in.readByte()];
+    String symbol = in.readUTF();
+    String channel = in.readUTF();
+    byte[] payload = new byte[in.readInt()];
+    in.readFully(payload);
+    return new RedisOutboundMessage(
+        type, symbol, channel, new String(payload, StandardCharsets.UTF_8), timestamp, null);
+  }
+
+  /** スプールのセグメント1つ分。送信済みの件数は呼び出し側が管理する。 */
+  public static final class Segment {
+    private final Path path;
+    private long bytes;
+    private long records;
+    private List<RedisOutboundMessage> messages;
+    private int sent;
+
+    private Segment(Path path) {
+      this.path = path;
+    }
+
+    public List<RedisOutboundMessage> getMessages() {
+      return messages;
+    }
+
+    public int getSent() {
+      return sent;
+    }
+
+    public void setSent(int sent) {
+      this.sent = sent;
+    }
+  }
+}
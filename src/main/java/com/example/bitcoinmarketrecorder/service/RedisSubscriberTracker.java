@@ -0,0 +1,149 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import com.example.bitcoinmarketrecorder.config.ExchSimProperties;
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import io.lettuce.core.api.sync.RedisCommands;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 配信先チャンネルの購読者数をPUBSUB NUMSUBで定期的に取得してキャッシュする。
+ *
+ * <p>購読者が0のチャンネルへの配信はペイロード生成前に省略し、購読者が現れれば次回の確認で自動的に再開する。
+ * 確認に失敗した場合や未確認のチャンネルは購読者ありとみなす。NUMSUBはPSUBSCRIBEの購読者を数えないため、
+ * エンドポイントにパターンの購読が1つでもあれば（PUBSUB NUMPAT &gt; 0）、そのエンドポイントのチャンネルは
+ * 全て購読者ありとみなす。
+ */
+@Service
+public class RedisSubscriberTracker {
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisSubscriberTracker.class);
+
+  @Autowired private RedisShardRouter redisShardRouter;
+
+  @Autowired private RedisPublisherProperties redisPublisherProperties;
+
+  @Autowired private ExchSimProperties exchSimProperties;
+
+  private final Map<String, Long> subscriberCounts = new ConcurrentHashMap<>();
+  // チャンネル -> 割り当て先のエンドポイントのパターンの購読数
+  private final Map<String, Long> patternCounts = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> skippedCounts = new ConcurrentHashMap<>();
+  private final Set<String> failedShards = ConcurrentHashMap.newKeySet();
+
+  public boolean hasTradeInsertSubscribers(String symbol) {
+    return hasSubscribers(redisPublisherProperties.getTradeInsert().getChannelName(symbol));
+  }
+
+  public boolean hasMarketMakeSubscribers(String symbol) {
+    return hasSubscribers(redisPublisherProperties.getMarketMake().getChannelName(symbol));
+  }
+
+  /** チャンネルの直近の購読者数。未確認の場合はnullを返す。 */
+  public Long getSubscriberCount(String channel) {
+    return subscriberCounts.get(channel);
+  }
+
+  private boolean hasSubscribers(String channel) {
+    if (!redisPublisherProperties.getSubscriberCheck().isEnabled()) {
+      return true;
+    }
+    Long count = subscriberCounts.get(channel);
+    if (count == null || count > 0 || patternCounts.getOrDefault(channel, 0L) > 0) {
+      return true;
+    }
+    skippedCounts.computeIfAbsent(channel, k -> new LongAdder()).increment();
+    return false;
+  }
+
+  @Scheduled(
+      fixedDelayString = "${redis.publisher.subscriber-check.interval-ms:1000}",
+      initialDelay = 1000)
+  public void refresh() {
+    if (!redisPublisherProperties.isEnabled()
+        || !redisPublisherProperties.getSubscriberCheck().isEnabled()) {
+      return;
+    }
+    // チャンネルは割り当て先のRedisでのみ購読されるため、エンドポイントごとに確認する
+    for (Map.Entry<RedisShard, Set<String>> entry : getPublishedChannels().entrySet()) {
+      refresh(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private void refresh(RedisShard shard, Set<String> channels) {
+    try {
+      RedisCommands<String, String> commands = shard.getAdminConnection().sync();
+      Map<String, Long> counts = commands.pubsubNumsub(channels.toArray(new String[0]));
+      Long numpat = commands.pubsubNumpat();
+      long patterns = numpat != null ? numpat : 0L;
+      for (String channel : channels) {
+        long count = counts.getOrDefault(channel, 0L);
+        boolean subscribed = count > 0 || patterns > 0;
+        Long previous = subscriberCounts.put(channel, count);
+        Long previousPatterns = patternCounts.put(channel, patterns);
+        if (previous != null
+            && (previous > 0 || (previousPatterns != null && previousPatterns > 0))
+                != subscribed) {
+          logger.info(
+              "Subscribers changed on Redis channel {}: {} -> {} (patterns {}){}",
+              channel,
+              previous,
+              count,
+              patterns,
+              subscribed ? " (publishing resumed)" : " (publishing paused)");
+        }
+      }
+      failedShards.remove(shard.getName());
+    } catch (Exception e) {
+      // 確認できない間は全チャンネルへ配信する
+      channels.forEach(subscriberCounts::remove);
+      channels.forEach(patternCounts::remove);
+      if (failedShards.add(shard.getName())) {
+        logger.warn(
+            "Failed to check Redis channel subscribers on {}: {}", shard.getName(), e.getMessage());
+      }
+    }
+  }
+
+  private Map<RedisShard, Set<String>> getPublishedChannels() {
+    Map<RedisShard, Set<String>> channels = new HashMap<>();
+    Map<String, Map<String, String>> mapping = exchSimProperties.getSymbolMapping();
+    if (mapping == null) {
+      return channels;
+    }
+    for (Map<String, String> exchangeMapping : mapping.values()) {
+      for (String symbol : exchangeMapping.values()) {
+        Set<String> shardChannels =
+            channels.computeIfAbsent(redisShardRouter.shardFor(symbol), k -> new TreeSet<>());
+        shardChannels.add(redisPublisherProperties.getTradeInsert().getChannelName(symbol));
+        shardChannels.add(redisPublisherProperties.getMarketMake().getChannelName(symbol));
+      }
+    }
+    return channels;
+  }
+
+  /** チャンネルごとの購読者数と配信を省略した件数を返す。 */
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new TreeMap<>();
+    for (Map.Entry<String, Long> entry : subscriberCounts.entrySet()) {
+      Map<String, Object> channelStats = new LinkedHashMap<>();
+      channelStats.put("subscribers", entry.getValue());
+      channelStats.put("patternSubscribers", patternCounts.getOrDefault(entry.getKey(), 0L));
+      LongAdder skipped = skippedCounts.get(entry.getKey());
+      channelStats.put("skipped", skipped == null ? 0L : skipped.sum());
+      stats.put(entry.getKey(), channelStats);
+    }
+    return stats;
+  }
+}
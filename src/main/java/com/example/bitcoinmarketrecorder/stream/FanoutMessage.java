@@ -0,0 +1,64 @@
+package com.example.bitcoinmarketrecorder.stream;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 全クライアントで共有する配信メッセージ。
+ *
+ * <p>JSONはイベント受信時に1回だけエンコードし、各クライアントには同じバイト列を渡す。
+ */
+public final class FanoutMessage {
+
+  public static final String CHANNEL_TRADE = "trade";
+  public static final String CHANNEL_BBO = "bbo";
+  public static final String CHANNEL_BOOK = "book";
+
+  private final String channel;
+  private final String symbol;
+  private final byte[] json;
+  private volatile byte[] sse;
+
+  public FanoutMessage(String channel, String symbol, byte[] json) {
+    this.channel = channel;
+    this.symbol = symbol;
+    this.json = json;
+  }
+
+  public String getChannel() {
+    return channel;
+  }
+
+  /** 配信対象の銘柄。{@code 取引所:シンボル}の形式（例: {@code GMO:BTC}）。 */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /** 最新値で上書きしてよい（間引き対象の）メッセージか。約定は間引かない。 */
+  public boolean isConflatable() {
+    return !CHANNEL_TRADE.equals(channel);
+  }
+
+  /** 間引きの単位となるキー。 */
+  public String getKey() {
+    return channel + "|" + symbol;
+  }
+
+  public byte[] getJson() {
+    return json;
+  }
+
+  /** SSEのイベント1件分のバイト列。最初に要求したクライアントがエンコードし、以降は共有する。 */
+  public byte[] getSse() {
+    byte[] encoded = sse;
+    if (encoded == null) {
+      byte[] header = ("event: " + channel + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+      encoded = new byte[header.length + json.length + 2];
+      System.arraycopy(header, 0, encoded, 0, header.length);
+      System.arraycopy(json, 0, encoded, header.length, json.length);
+      encoded[encoded.length - 2] = '\n';
+      encoded[encoded.length - 1] = '\n';
+      sse = encoded;
+    }
+    return encoded;
+  }
+}
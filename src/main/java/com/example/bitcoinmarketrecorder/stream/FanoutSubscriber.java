@@ -0,0 +1,150 @@
+package com.example.bitcoinmarketrecorder.stream;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * ライブ配信の購読クライアント1件分の送信バッファ。
+ *
+ * <p>板とBBOは銘柄ごとに最新の1件だけを保持し、送信待ちの間に届いた更新で上書きする。約定は上限付きのキューに積み、
+ * 上限を超えた分は破棄する。クライアントが要求した件数までしか送らないため、遅いクライアントの分は
+ * このバッファに留まり、他のクライアントや受信処理を止めることはない。
+ */
+public class FanoutSubscriber {
+
+  private final Set<String> symbols;
+  private final Set<String> channels;
+  private final int tradeCapacity;
+  private final Consumer<FanoutSubscriber> onClose;
+
+  // 送信順。間引き対象はキーごとに最初の1件だけを並べ、送信時にlatestの値に差し替える
+  private final ArrayDeque<FanoutMessage> queue = new ArrayDeque<>();
+  private final Map<String, FanoutMessage> latest = new HashMap<>();
+  private final Flux<FanoutMessage> flux;
+  private FluxSink<FanoutMessage> sink;
+  private int queuedTrades;
+  private boolean closed;
+
+  private long sent;
+  private long conflated;
+  private long dropped;
+
+  FanoutSubscriber(
+      Set<String> symbols,
+      Set<String> channels,
+      int tradeCapacity,
+      Consumer<FanoutSubscriber> onClose) {
+    this.symbols = symbols;
+    this.channels = channels;
+    this.tradeCapacity = tradeCapacity;
+    this.onClose = onClose;
+    this.flux =
+        Flux.create(
+            emitter -> {
+              synchronized (this) {
+                sink = emitter;
+              }
+              emitter.onRequest(n -> drain());
+              emitter.onDispose(this::close);
+            });
+  }
+
+  public Flux<FanoutMessage> flux() {
+    return flux;
+  }
+
+  public boolean accepts(FanoutMessage message) {
+    return (symbols.isEmpty() || symbols.contains(message.getSymbol()))
+        && (channels.isEmpty() || channels.contains(message.getChannel()));
+  }
+
+  /** メッセージを送信バッファに積み、送信可能な分を送る。 */
+  public void offer(FanoutMessage message) {
+    if (!accepts(message)) {
+      return;
+    }
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      enqueue(message, true);
+      drain();
+    }
+  }
+
+  /** 接続直後のスナップショット用。すでに新しい値が積まれていれば上書きしない。 */
+  synchronized void offerIfAbsent(FanoutMessage message) {
+    if (!closed && accepts(message)) {
+      enqueue(message, false);
+    }
+  }
+
+  private void enqueue(FanoutMessage message, boolean replace) {
+    if (message.isConflatable()) {
+      FanoutMessage previous = latest.get(message.getKey());
+      if (previous == null) {
+        latest.put(message.getKey(), message);
+        queue.addLast(message);
+      } else if (replace) {
+        latest.put(message.getKey(), message);
+        conflated++;
+      }
+      return;
+    }
+    if (queuedTrades >= tradeCapacity) {
+      dropped++;
+      return;
+    }
+    queuedTrades++;
+    queue.addLast(message);
+  }
+
+  private synchronized void drain() {
+    if (sink == null || closed) {
+      return;
+    }
+    while (!queue.isEmpty() && sink.requestedFromDownstream() > 0) {
+      FanoutMessage message = queue.pollFirst();
+      if (message.isConflatable()) {
+        message = latest.remove(message.getKey());
+      } else {
+        queuedTrades--;
+      }
+      sent++;
+      sink.next(message);
+    }
+  }
+
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.clear();
+      latest.clear();
+    }
+    onClose.accept(this);
+  }
+
+  public synchronized long getSent() {
+    return sent;
+  }
+
+  public synchronized long getConflated() {
+    return conflated;
+  }
+
+  public synchronized long getDropped() {
+    return dropped;
+  }
+
+  public synchronized int getQueued() {
+    return queue.size();
+  }
+}
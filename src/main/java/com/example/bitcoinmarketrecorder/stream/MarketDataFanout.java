@@ -0,0 +1,195 @@
+package com.example.bitcoinmarketrecorder.stream;
+
+import com.example.bitcoinmarketrecorder.config.FanoutProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.SymbolKey;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.MarketDataListener;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 受信した約定・BBO・板をWebSocket/SSEの購読クライアントへ配信する。
+ *
+ * <p>イベントごとにJSONを1回だけエンコードし、全クライアントで共有する。銘柄ごとの最新の板とBBOを保持しており、
+ * 途中から接続したクライアントにはまずそれを送り、以降は更新を送る。
+ */
+@Service
+public class MarketDataFanout implements MarketDataListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(MarketDataFanout.class);
+
+  @Autowired private FanoutProperties fanoutProperties;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Set<FanoutSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final Map<String, FanoutMessage> latestBbos = new ConcurrentHashMap<>();
+  private final Map<String, FanoutMessage> latestBooks = new ConcurrentHashMap<>();
+  private final LongAdder encoded = new LongAdder();
+  private final LongAdder connections = new LongAdder();
+
+  @Override
+  public void onTrade(Trade trade) {
+    if (!fanoutProperties.isEnabled()) {
+      return;
+    }
+    String symbol = SymbolKey.of(trade.getExchange(), trade.getSymbol());
+    Map<String, Object> payload = new LinkedHashMap<>();
+    payload.put("type", FanoutMessage.CHANNEL_TRADE);
+    payload.put("symbol", symbol);
+    payload.put("ts", trade.getTimestamp() != null ? trade.getTimestamp().toEpochMilli() : null);
+    payload.put("price", trade.getPrice());
+    payload.put("size", trade.getSize());
+    payload.put("side", trade.getSide());
+    FanoutMessage message = encode(FanoutMessage.CHANNEL_TRADE, symbol, payload);
+    if (message != null) {
+      publish(message);
+    }
+  }
+
+  @Override
+  public void onBestBidAsk(BestBidAsk bestBidAsk) {
+    if (!fanoutProperties.isEnabled()) {
+      return;
+    }
+    String symbol = SymbolKey.of(bestBidAsk.getExchange(), bestBidAsk.getSymbol());
+    Map<String, Object> payload = new LinkedHashMap<>();
+    payload.put("type", FanoutMessage.CHANNEL_BBO);
+    payload.put("symbol", symbol);
+    payload.put(
+        "ts", bestBidAsk.getTimestamp() != null ? bestBidAsk.getTimestamp().toEpochMilli() : null);
+    payload.put("bid", bestBidAsk.getBestBid());
+    payload.put("bidSize", bestBidAsk.getBestBidVolume());
+    payload.put("ask", bestBidAsk.getBestAsk());
+    payload.put("askSize", bestBidAsk.getBestAskVolume());
+    if (bestBidAsk.getImbalance() != null) {
+      payload.put("imbalance", bestBidAsk.getImbalance());
+      payload.put("depthImbalance", bestBidAsk.getDepthImbalance());
+      payload.put("microprice", bestBidAsk.getMicroprice());
+      payload.put("weightedMid", bestBidAsk.getWeightedMid());
+      payload.put("bidDepth", bestBidAsk.getBidDepth());
+      payload.put("askDepth", bestBidAsk.getAskDepth());
+      payload.put("bidSlope", bestBidAsk.getBidSlope());
+      payload.put("askSlope", bestBidAsk.getAskSlope());
+    }
+    FanoutMessage message = encode(FanoutMessage.CHANNEL_BBO, symbol, payload);
+    if (message != null) {
+      latestBbos.put(symbol, message);
+      publish(message);
+    }
+  }
+
+  @Override
+  public void onMarketBoard(MarketBoard board) {
+    if (!fanoutProperties.isEnabled()) {
+      return;
+    }
+    String symbol = SymbolKey.of(board.getExchange(), board.getSymbol());
+    int depth = fanoutProperties.getBookDepth();
+    Map<String, Object> payload = new LinkedHashMap<>();
+    payload.put("type", FanoutMessage.CHANNEL_BOOK);
+    payload.put("symbol", symbol);
+    payload.put("ts", board.getTs() != null ? board.getTs().toEpochMilli() : null);
+    payload.put("bids", toPairs(board.getBids(), depth));
+    payload.put("asks", toPairs(board.getAsks(), depth));
+    FanoutMessage message = encode(FanoutMessage.CHANNEL_BOOK, symbol, payload);
+    if (message != null) {
+      latestBooks.put(symbol, message);
+      publish(message);
+    }
+  }
+
+  /**
+   * 購読クライアントを登録する。
+   *
+   * @param symbols 配信する銘柄（{@code 取引所:シンボル}）。空の場合はすべて
+   * @param channels 配信するチャンネル（trade/bbo/book）。空の場合はすべて
+   */
+  public FanoutSubscriber subscribe(Set<String> symbols, Set<String> channels) {
+    FanoutSubscriber subscriber =
+        new FanoutSubscriber(
+            symbols, channels, fanoutProperties.getTradeBufferSize(), subscribers::remove);
+    // 登録とスナップショットの投入を1つのロックで行い、並行する更新より古い値で上書きしないようにする
+    synchronized (subscriber) {
+      subscribers.add(subscriber);
+      latestBbos.values().forEach(subscriber::offerIfAbsent);
+      latestBooks.values().forEach(subscriber::offerIfAbsent);
+    }
+    connections.increment();
+    return subscriber;
+  }
+
+  public Map<String, Object> getStats() {
+    long sent = 0;
+    long conflated = 0;
+    long dropped = 0;
+    long queued = 0;
+    for (FanoutSubscriber subscriber : subscribers) {
+      sent += subscriber.getSent();
+      conflated += subscriber.getConflated();
+      dropped += subscriber.getDropped();
+      queued += subscriber.getQueued();
+    }
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("subscribers", subscribers.size());
+    stats.put("totalConnections", connections.sum());
+    stats.put("encoded", encoded.sum());
+    stats.put("sent", sent);
+    stats.put("conflated", conflated);
+    stats.put("dropped", dropped);
+    stats.put("queued", queued);
+    return stats;
+  }
+
+  private void publish(FanoutMessage message) {
+    for (FanoutSubscriber subscriber : subscribers) {
+      subscriber.offer(message);
+    }
+  }
+
+  private FanoutMessage encode(String channel, String symbol, Map<String, Object> payload) {
+    try {
+      encoded.increment();
+      return new FanoutMessage(channel, symbol, objectMapper.writeValueAsBytes(payload));
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to encode {} for fan-out {}: {}", channel, symbol, e.getMessage());
+      return null;
+    }
+  }
+
+  /** カンマ区切りの指定を集合にする。未指定の場合は空集合（すべて）を返す。 */
+  public static Set<String> parseFilter(String value) {
+    Set<String> values = new HashSet<>();
+    if (value != null) {
+      for (String item : value.split(",")) {
+        if (!item.isBlank()) {
+          values.add(item.trim());
+        }
+      }
+    }
+    return values;
+  }
+
+  private static List<BigDecimal[]> toPairs(List<MarketBoard.PriceLevel> levels, int depth) {
+    List<BigDecimal[]> pairs = new ArrayList<>();
+    for (int i = 0; i < Math.min(depth, levels.size()); i++) {
+      MarketBoard.PriceLevel level = levels.get(i);
+      pairs.add(new BigDecimal[] {level.getPrice(), level.getSize()});
+    }
+    return pairs;
+  }
+}
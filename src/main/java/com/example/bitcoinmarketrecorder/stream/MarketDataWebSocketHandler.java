@@ -0,0 +1,45 @@
+package com.example.bitcoinmarketrecorder.stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+/**
+ * ライブ配信のWebSocketエンドポイント。
+ *
+ * <p>接続URLのクエリで{@code symbols=GMO:BTC,BITFLYER:FX_BTC_JPY}と{@code channels=trade,bbo,book}を指定できる。
+ * 共有のJSONバイト列をそのままフレームに包んで送るため、クライアントごとの再エンコードは発生しない。
+ */
+@Component
+public class MarketDataWebSocketHandler implements WebSocketHandler {
+
+  @Autowired private MarketDataFanout marketDataFanout;
+
+  @Override
+  public Mono<Void> handle(WebSocketSession session) {
+    MultiValueMap<String, String> params =
+        UriComponentsBuilder.fromUri(session.getHandshakeInfo().getUri()).build().getQueryParams();
+    FanoutSubscriber subscriber =
+        marketDataFanout.subscribe(
+            MarketDataFanout.parseFilter(params.getFirst("symbols")),
+            MarketDataFanout.parseFilter(params.getFirst("channels")));
+
+    Mono<Void> output =
+        session.send(
+            subscriber
+                .flux()
+                .map(
+                    message ->
+                        new WebSocketMessage(
+                            WebSocketMessage.Type.TEXT,
+                            session.bufferFactory().wrap(message.getJson()))));
+    // クライアントからの受信は切断の検知にのみ使う
+    Mono<Void> input = session.receive().then();
+    return Mono.firstWithSignal(input, output).doFinally(signal -> subscriber.close());
+  }
+}
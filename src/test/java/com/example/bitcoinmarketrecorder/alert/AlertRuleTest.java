@@ -0,0 +1,105 @@
+package com.example.bitcoinmarketrecorder.alert;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class AlertRuleTest {
+
+  private static final long NOW = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+  @Test
+  void testSpreadRuleFiresAboveThresholdAndRespectsCooldown() {
+    // Given - 10bpsを超えたら発火、1分は再発火しない
+    AlertRule rule = AlertRule.compile("wide", "SPREAD_BPS", List.of("GMO:BTC"), 10, null, 60_000);
+
+    // When / Then - 5bpsでは発火しない
+    assertNull(rule.onQuote("GMO:BTC", 9_997_500, 10_002_500, NOW));
+
+    // When
+    Map<String, Object> alert = rule.onQuote("GMO:BTC", 9_990_000, 10_010_000, NOW + 1000);
+
+    // Then
+    assertNotNull(alert);
+    assertEquals("wide", alert.get("rule"));
+    assertEquals("SPREAD_BPS", alert.get("type"));
+    assertEquals(20.0, (double) alert.get("value"), 1e-9);
+    assertNull(rule.onQuote("GMO:BTC", 9_990_000, 10_010_000, NOW + 30_000));
+    assertNotNull(rule.onQuote("GMO:BTC", 9_990_000, 10_010_000, NOW + 61_000));
+    assertEquals(List.of("GMO:BTC"), rule.getQuoteSymbols());
+    assertTrue(rule.getTradeSymbols().isEmpty());
+  }
+
+  @Test
+  void testMidMoveUsesOnlyQuotesWithinWindow() {
+    // Given - 10秒で1%
+    AlertRule rule =
+        AlertRule.compile(
+            "move", "MID_MOVE", List.of("GMO:BTC"), 1, Duration.ofSeconds(10), 60_000);
+    assertNull(rule.onQuote("GMO:BTC", 9_999_000, 10_001_000, NOW));
+
+    // When - 20秒かけて1.5%上がる（10秒の間では1%未満）
+    for (int i = 1; i <= 20; i++) {
+      double mid = 10_000_000 * (1 + 0.00075 * i);
+      assertNull(rule.onQuote("GMO:BTC", mid - 1000, mid + 1000, NOW + i * 1000L), "i=" + i);
+    }
+
+    // When - 直後に1%下がる
+    Map<String, Object> alert =
+        rule.onQuote("GMO:BTC", 10_048_000 - 1000, 10_048_000 + 1000, NOW + 21_000);
+
+    // Then - 窓内の最高値（10,150,000）からの下落
+    assertNotNull(alert);
+    assertEquals(-1.0, (double) alert.get("value"), 0.01);
+  }
+
+  @Test
+  void testCrossedBookNeedsBothLegsWithinSkew() {
+    // Given
+    AlertRule rule =
+        AlertRule.compile(
+            "crossed",
+            "CROSSED_BOOK",
+            List.of("BITFLYER:BTC_JPY", "GMO:BTC"),
+            0,
+            Duration.ofSeconds(5),
+            0);
+    assertNull(rule.onQuote("BITFLYER:BTC_JPY", 10_001_000, 10_002_000, NOW));
+
+    // When / Then - 気配の時刻が5秒以上離れている
+    assertNull(rule.onQuote("GMO:BTC", 9_999_000, 10_000_000, NOW + 5000));
+
+    // When - BITFLYERの買い気配がGMOの売り気配を1000円上回る
+    Map<String, Object> alert =
+        rule.onQuote("BITFLYER:BTC_JPY", 10_001_000, 10_002_000, NOW + 6000);
+
+    // Then
+    assertNotNull(alert);
+    assertEquals("BITFLYER:BTC_JPY/GMO:BTC", alert.get("symbol"));
+    assertEquals(1000.0, (double) alert.get("value"), 1e-9);
+  }
+
+  @Test
+  void testLargeTradeAndInvalidRules() {
+    // Given
+    AlertRule rule = AlertRule.compile("large", "large_trade", List.of("GMO:BTC"), 10, null, 0);
+
+    // Then
+    assertNull(rule.onTrade("GMO:BTC", 10_000_000, 9.99, "BUY", NOW));
+    assertEquals(10.0, rule.onTrade("GMO:BTC", 10_000_000, 10, "SELL", NOW).get("value"));
+    assertEquals(List.of("GMO:BTC"), rule.getTradeSymbols());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AlertRule.compile("x", "UNKNOWN", List.of("GMO:BTC"), 1, null, 0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AlertRule.compile("x", "MID_MOVE", List.of("GMO:BTC"), 1, null, 0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AlertRule.compile("x", "CROSSED_BOOK", List.of("GMO:BTC"), 0, null, 0));
+  }
+}
@@ -0,0 +1,78 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BarAggregatorTest {
+
+  private static final long BASE = 1_700_000_040_000L; // 1分足の境界
+
+  private final List<Bar> closed = new ArrayList<>();
+
+  @Test
+  void testOutOfOrderTradesWithinLatenessAreAggregated() {
+    // Given - 1秒足、遅れは500msまで許容
+    BarAggregator aggregator = new BarAggregator("GMO", "BTC", "1s", 1000, 500);
+
+    // When - 時刻が前後して届く
+    aggregator.add(BASE + 300, 101, 1, closed);
+    aggregator.add(BASE + 100, 100, 1, closed);
+    aggregator.add(BASE + 900, 99, 2, closed);
+    aggregator.add(BASE + 1200, 105, 1, closed);
+    aggregator.advance(BASE + 1200 - 500, closed);
+    assertTrue(closed.isEmpty());
+    aggregator.add(BASE + 800, 103, 1, closed);
+    aggregator.advance(BASE + 1600 - 500, closed);
+
+    // Then
+    assertEquals(1, closed.size());
+    Bar bar = closed.get(0);
+    assertEquals(BASE, bar.getOpenTime());
+    assertEquals(BASE + 1000, bar.getCloseTime());
+    assertEquals(100, bar.getOpen());
+    assertEquals(103, bar.getHigh());
+    assertEquals(99, bar.getLow());
+    assertEquals(99, bar.getClose());
+    assertEquals(5, bar.getVolume());
+    assertEquals((101 + 100 + 99 * 2 + 103) / 5.0, bar.getVwap(), 1e-9);
+    assertEquals(4, bar.getTradeCount());
+    assertEquals(1, aggregator.getOpenBars());
+  }
+
+  @Test
+  void testTradeForClosedBarIsCountedAsLate() {
+    // Given
+    BarAggregator aggregator = new BarAggregator("BITFLYER", "FX_BTC_JPY", "1m", 60_000, 1000);
+    aggregator.add(BASE + 10_000, 100, 1, closed);
+    aggregator.advance(BASE + 61_000, closed);
+
+    // When
+    boolean accepted = aggregator.add(BASE + 59_000, 100, 1, closed);
+
+    // Then
+    assertFalse(accepted);
+    assertEquals(1, aggregator.getLate());
+    assertEquals(1, closed.size());
+    assertEquals(
+        "BITFLYER,FX_BTC_JPY,1m,2023-11-14T22:14:00Z,2023-11-14T22:15:00Z,100,100,100,100,1,100,1",
+        closed.get(0).toCsvRow());
+  }
+
+  @Test
+  void testJumpAheadClosesOldestBarToFreeSlot() {
+    // Given - 遅れの許容が0のため、開いている足は最大2本
+    BarAggregator aggregator = new BarAggregator("GMO", "BTC", "1s", 1000, 0);
+    aggregator.add(BASE, 100, 1, closed);
+    aggregator.add(BASE + 1000, 101, 1, closed);
+
+    // When - ウォーターマークを進めずに先の時刻の約定が届く
+    aggregator.add(BASE + 2000, 102, 1, closed);
+
+    // Then - スロットを空けるために最も古い足だけを確定する
+    assertEquals(List.of(BASE), closed.stream().map(Bar::getOpenTime).toList());
+    assertEquals(2, aggregator.getOpenBars());
+  }
+}
@@ -0,0 +1,59 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static com.example.bitcoinmarketrecorder.analytics.MarketBoards.board;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import org.junit.jupiter.api.Test;
+
+class BookAnalyticsTest {
+
+  @Test
+  void testMetricsFromTopLevels() {
+    // Given - 仲値100.5、±100bps以内は買い100と売り101の段のみ
+    MarketBoard board =
+        board(new double[][] {{100, 2}, {99, 1}, {98, 1}}, new double[][] {{101, 1}, {102, 3}});
+    BookAnalytics analytics = new BookAnalytics(8, 100);
+
+    // When
+    assertTrue(analytics.compute(board));
+
+    // Then
+    assertEquals(1.0 / 3, analytics.getImbalance(), 1e-12);
+    assertEquals(0.0, analytics.getDepthImbalance(), 1e-12);
+    assertEquals((100 * 1 + 101 * 2) / 3.0, analytics.getMicroprice(), 1e-9);
+    // 買いの加重平均99.25と売りの加重平均101.75の中点
+    assertEquals(100.5, analytics.getWeightedMid(), 1e-9);
+    assertEquals(2.0, analytics.getBidDepth(), 1e-12);
+    assertEquals(1.0, analytics.getAskDepth(), 1e-12);
+    assertEquals(4 / (2 / 100.5 * 10_000), analytics.getBidSlope(), 1e-12);
+    assertEquals(4 / (1 / 100.5 * 10_000), analytics.getAskSlope(), 1e-12);
+  }
+
+  @Test
+  void testDepthLimitsLevelsAndUndefinedSlopeIsNotAttached() {
+    // Given - 1段だけ使う
+    MarketBoard board =
+        board(new double[][] {{100, 1}, {99, 100}}, new double[][] {{101, 3}, {102, 100}});
+    BookAnalytics analytics = new BookAnalytics(1, 10);
+    BestBidAsk bestBidAsk = new BestBidAsk();
+
+    // When
+    assertTrue(analytics.compute(board));
+    analytics.applyTo(bestBidAsk);
+
+    // Then
+    assertEquals(-0.5, bestBidAsk.getImbalance(), 1e-12);
+    assertEquals(-0.5, bestBidAsk.getDepthImbalance(), 1e-12);
+    assertEquals(100.5, bestBidAsk.getWeightedMid(), 1e-9);
+    assertNull(bestBidAsk.getBidSlope());
+    assertNull(bestBidAsk.getAskSlope());
+  }
+
+  @Test
+  void testOneSidedBookIsSkipped() {
+    BookAnalytics analytics = new BookAnalytics(8, 10);
+    assertFalse(analytics.compute(board(new double[][] {{100, 1}}, new double[][] {})));
+  }
+}
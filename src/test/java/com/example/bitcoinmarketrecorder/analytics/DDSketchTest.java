@@ -0,0 +1,83 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class DDSketchTest {
+
+  private static final double ACCURACY = 0.01;
+
+  @Test
+  void testQuantilesAreWithinRelativeAccuracy() {
+    // Given - 約定数量に近い対数正規分布
+    Random random = new Random(42);
+    double[] values = new double[100_000];
+    DDSketch sketch = new DDSketch(ACCURACY, 2048);
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.exp(random.nextGaussian() * 2 - 4);
+      sketch.add(values[i]);
+    }
+    Arrays.sort(values);
+
+    // Then
+    for (double q : new double[] {0.01, 0.25, 0.5, 0.9, 0.99, 0.999}) {
+      double exact = values[(int) (q * (values.length - 1))];
+      assertEquals(exact, sketch.quantile(q), exact * ACCURACY, "q=" + q);
+    }
+    assertEquals(values[0], sketch.quantile(0));
+    assertEquals(values[values.length - 1], sketch.quantile(1));
+    assertEquals(values.length, sketch.getCount());
+  }
+
+  @Test
+  void testMergeAndEncodeRoundTripMatchSingleSketch() {
+    // Given - 同じ値を1つのスケッチと、3時間分に分けたスケッチに入れる
+    Random random = new Random(7);
+    DDSketch all = new DDSketch(ACCURACY, 2048);
+    DDSketch[] hours = new DDSketch[3];
+    for (int h = 0; h < hours.length; h++) {
+      hours[h] = new DDSketch(ACCURACY, 2048);
+      for (int i = 0; i < 1000; i++) {
+        double value = h == 0 && i == 0 ? 0 : random.nextDouble() * Math.pow(10, h * 3);
+        all.add(value);
+        hours[h].add(value);
+      }
+    }
+
+    // When - CSVに記録したものを読み戻して足し合わせる
+    DDSketch merged = DDSketch.decode(hours[0].encode());
+    merged.merge(DDSketch.decode(hours[1].encode()));
+    merged.merge(DDSketch.decode(hours[2].encode()));
+
+    // Then
+    assertFalse(hours[0].encode().contains(","));
+    assertEquals(all.getCount(), merged.getCount());
+    assertEquals(all.getMin(), merged.getMin());
+    assertEquals(all.getMax(), merged.getMax());
+    assertEquals(all.getSum(), merged.getSum(), 1e-6);
+    for (double q : new double[] {0, 0.001, 0.5, 0.99, 1}) {
+      assertEquals(all.quantile(q), merged.quantile(q), "q=" + q);
+    }
+    assertThrows(IllegalArgumentException.class, () -> merged.merge(new DDSketch(0.02, 2048)));
+    assertThrows(IllegalArgumentException.class, () -> DDSketch.decode("0.01;2048;x"));
+  }
+
+  @Test
+  void testBinLimitCollapsesLowestValues() {
+    // Given - 16ビンでは1〜1e6の範囲を表せない
+    DDSketch sketch = new DDSketch(ACCURACY, 16);
+    for (int i = 0; i < 100; i++) {
+      sketch.add(1_000_000 - i);
+      sketch.add(1 + i * 0.001);
+    }
+
+    // Then - 大きい側の分位点は保たれ、小さい値は下限のビンにまとめられる
+    assertEquals(999_950, sketch.quantile(0.75), 999_950 * ACCURACY);
+    assertTrue(sketch.quantile(0.25) > 1_000_000 * Math.pow(1 - ACCURACY, 32));
+    assertEquals(1.0, sketch.getMin());
+    assertEquals(200, sketch.getCount());
+  }
+}
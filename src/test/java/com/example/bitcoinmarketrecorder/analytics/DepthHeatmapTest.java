@@ -0,0 +1,127 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static com.example.bitcoinmarketrecorder.analytics.MarketBoards.board;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.analytics.DepthHeatmap.Mode;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DepthHeatmapTest {
+
+  private static final long NOW = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+  @Test
+  void testRelativeBucketsAreOffsetsFromMid() {
+    // Given - 5bpsごと10行。仲値は10,000,000円で、1行は5,000円
+    DepthHeatmap heatmap = new DepthHeatmap(Mode.RELATIVE, 5, 10, 1000);
+    heatmap.reset(NOW);
+    DepthHeatmap.Column column = new DepthHeatmap.Column(10);
+    MarketBoard board =
+        board(
+            new double[][] {{9_999_000, 1}, {9_992_000, 2}, {9_000_000, 50}},
+            new double[][] {{10_001_000, 0.25}, {10_004_000, 0.5}});
+
+    // When
+    assertTrue(heatmap.capture(board, NOW + 2400, column));
+    assertTrue(heatmap.sample(NOW + 2500, column));
+
+    // Then - 範囲の外の買い板は数えず、-1bpsは行4、-8bpsは行3、+1bpsと+4bpsは行5
+    assertEquals(10_000_000, column.getMid());
+    assertEquals(List.of(NOW + 2000), heatmap.getSampleTimes());
+    assertEquals(10_000_000, heatmap.getMid(2));
+    float[] depth = heatmap.getColumn(2);
+    assertArrayEquals(new float[] {0, 0, 0, 2, 1, 0.75f, 0, 0, 0, 0}, depth);
+    assertEquals(-25, heatmap.getRowStart(0));
+    assertEquals(0, heatmap.getRowStart(5));
+    assertTrue(Double.isNaN(heatmap.getMid(1)));
+  }
+
+  @Test
+  void testAbsoluteRowsAreFixedAtFirstSampleOfHour() {
+    // Given - 1,000円ごと10行。最初の標本の仲値10,000,000円が行5に入る
+    DepthHeatmap heatmap = new DepthHeatmap(Mode.ABSOLUTE, 1000, 10, 1000);
+    heatmap.reset(NOW);
+    DepthHeatmap.Column column = new DepthHeatmap.Column(10);
+    heatmap.capture(
+        board(new double[][] {{9_999_500, 1}}, new double[][] {{10_000_500, 2}}), NOW, column);
+    heatmap.sample(NOW, column);
+
+    // When - 仲値が4,000円上がる
+    heatmap.capture(
+        board(
+            new double[][] {{10_003_500, 3}},
+            new double[][] {{10_004_500, 4}, {10_006_000, 5}}),
+        NOW + 1000,
+        column);
+    heatmap.sample(NOW + 1000, column);
+
+    // Then - 行の価格は動かさず、範囲の外の価格帯は数えない
+    assertEquals(9_995_000, heatmap.getRowStart(0));
+    assertArrayEquals(new float[] {0, 0, 0, 0, 1, 2, 0, 0, 0, 0}, heatmap.getColumn(0));
+    assertArrayEquals(new float[] {0, 0, 0, 0, 0, 0, 0, 0, 3, 4}, heatmap.getColumn(1));
+    assertEquals(1, heatmap.getClipped());
+    assertEquals(2, heatmap.getSamples());
+  }
+
+  @Test
+  void testEncodeRoundTripAndResetForNextHour() {
+    // Given - 1時間のうち一部の列に標本がある
+    DepthHeatmap heatmap = new DepthHeatmap(Mode.ABSOLUTE, 500, 40, 1000);
+    heatmap.reset(NOW);
+    DepthHeatmap.Column column = new DepthHeatmap.Column(40);
+    for (int i = 0; i < 600; i += 3) {
+      double bid = 10_000_000 + i * 100;
+      heatmap.capture(
+          board(
+              new double[][] {{bid, 0.01 * i}, {bid - 2000, 1}},
+              new double[][] {{bid + 1000, 0.5}, {bid + 4000, 2.5}}),
+          NOW + i * 1000L,
+          column);
+      heatmap.sample(NOW + i * 1000L, column);
+    }
+
+    // When
+    DepthHeatmap decoded =
+        DepthHeatmap.decode(
+            heatmap.encode(), Mode.ABSOLUTE, 500, 40, 1000, NOW, heatmap.getRowStart(0));
+
+    // Then
+    assertEquals(200, decoded.getSamples());
+    assertEquals(heatmap.getSampleTimes(), decoded.getSampleTimes());
+    assertEquals(heatmap.getRowStart(0), decoded.getRowStart(0));
+    for (int c = 0; c < heatmap.getColumns(); c++) {
+      assertEquals(heatmap.getMid(c), decoded.getMid(c));
+      assertArrayEquals(heatmap.getColumn(c), decoded.getColumn(c));
+    }
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> DepthHeatmap.decode("AAAA", Mode.RELATIVE, 5, 40, 1000, NOW, Double.NaN));
+
+    // When - 次の時間帯に使い回す
+    heatmap.reset(NOW + 3_600_000);
+
+    // Then - 時間帯の外の時刻は写さない
+    assertEquals(0, heatmap.getSamples());
+    assertFalse(heatmap.sample(NOW + 3_599_999, column));
+    assertTrue(heatmap.sample(NOW + 3_600_000, column));
+    assertEquals(List.of(NOW + 3_600_000), heatmap.getSampleTimes());
+  }
+
+  @Test
+  void testOneSidedBoardIsNotCapturedAndIntervalMustDivideHour() {
+    // Given
+    DepthHeatmap heatmap = new DepthHeatmap(Mode.RELATIVE, 5, 10, 1000);
+    heatmap.reset(NOW);
+    DepthHeatmap.Column column = new DepthHeatmap.Column(10);
+
+    // Then - 売り板がない板は集計せず、集計していない列は写さない
+    assertFalse(
+        heatmap.capture(board(new double[][] {{10_000_000, 1}}, new double[][] {}), NOW, column));
+    assertEquals(Long.MIN_VALUE, column.getTimestamp());
+    assertFalse(heatmap.sample(NOW, column));
+    assertThrows(IllegalArgumentException.class, () -> new DepthHeatmap(Mode.RELATIVE, 5, 10, 7));
+  }
+}
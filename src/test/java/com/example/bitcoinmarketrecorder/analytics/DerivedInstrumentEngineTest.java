@@ -0,0 +1,138 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.DerivedInstrumentProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class DerivedInstrumentEngineTest {
+
+  private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+  @Mock private RedisPublisherService redisPublisherService;
+
+  @Mock private DataPersistenceService dataPersistenceService;
+
+  @Spy
+  private DerivedInstrumentProperties derivedInstrumentProperties =
+      new DerivedInstrumentProperties();
+
+  @InjectMocks private DerivedInstrumentEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    derivedInstrumentProperties.setConflationIntervalMs(60_000);
+    engine.initialize();
+  }
+
+  @AfterEach
+  void tearDown() {
+    engine.shutdown();
+  }
+
+  @Test
+  void testOnlyDependentSeriesAreRecomputed() {
+    // When - bitFlyerのFXと現物のBBO
+    engine.onBestBidAsk(quote("BITFLYER", "FX_BTC_JPY", 10_100_000, 10_102_000, 0));
+    engine.onBestBidAsk(quote("BITFLYER", "BTC_JPY", 9_999_000, 10_001_000, 100));
+
+    // Then - SFDの乖離率だけが計算される
+    Map<String, Object> latest = engine.getLatest();
+    DerivedValue sfd = (DerivedValue) latest.get("sfd");
+    assertEquals((10_101_000.0 / 10_000_000 - 1) * 100, sfd.getValue(), 1e-9);
+    assertEquals(NOW.toEpochMilli() + 100, sfd.getTimestamp());
+    assertNull(latest.get("gmo_basis"));
+    assertNull(latest.get("cross_arbitrage"));
+
+    // When - GMOの現物が届くと、bitFlyerの現物を使う系列も計算される
+    engine.onBestBidAsk(quote("GMO", "BTC", 10_000_500, 10_004_500, 200));
+
+    // Then - GMOの買い気配はbitFlyerの売り気配に500円届かず、交差していない
+    assertEquals(
+        -500, ((DerivedValue) engine.getLatest().get("cross_arbitrage")).getValue(), 1e-9);
+    assertEquals(
+        -2_500, ((DerivedValue) engine.getLatest().get("cross_mid_spread")).getValue(), 1e-9);
+    assertNull(engine.getLatest().get("gmo_basis"));
+  }
+
+  @Test
+  void testUpdatesAreConflatedPerSeries() {
+    // Given
+    engine.onBestBidAsk(quote("GMO", "BTC", 10_000_000, 10_001_000, 0));
+
+    // When - 間隔内に10回更新
+    for (int i = 0; i < 10; i++) {
+      engine.onBestBidAsk(quote("GMO", "BTC_JPY", 10_010_000 + i, 10_011_000 + i, i));
+    }
+
+    // Then - 最初の1件だけが配信・記録され、残りは最新の1件にまとめて次の枠を待つ
+    verify(redisPublisherService, timeout(2000))
+        .publish(eq("gmo_basis"), eq("derived:gmo_basis"), any());
+    verify(dataPersistenceService, timeout(2000)).saveRows(any(), any());
+    @SuppressWarnings("unchecked")
+    Map<String, Object> stats = (Map<String, Object>) engine.getStats().get("gmo_basis");
+    assertEquals(10L, stats.get("computed"));
+    assertEquals(1L, stats.get("published"));
+  }
+
+  @Test
+  void testSkewedLegsAreNotCombined() {
+    // When - 2銘柄のBBOの時刻が設定（5秒）より離れている
+    engine.onBestBidAsk(quote("BITFLYER", "FX_BTC_JPY", 10_100_000, 10_102_000, 0));
+    engine.onBestBidAsk(quote("BITFLYER", "BTC_JPY", 9_999_000, 10_001_000, 6_000));
+
+    // Then
+    assertNull(engine.getLatest().get("sfd"));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> stats = (Map<String, Object>) engine.getStats().get("sfd");
+    assertEquals(1L, stats.get("skewed"));
+  }
+
+  @Test
+  void testInstrumentWithMalformedLegIsSkipped() {
+    // Given - 区切りの:がない銘柄を含む設定
+    derivedInstrumentProperties.setInstruments(
+        List.of(
+            new DerivedInstrumentProperties.Instrument("broken", "SPREAD", "GMO_BTC", "GMO:BTC"),
+            new DerivedInstrumentProperties.Instrument(
+                "fx_basis", "SPREAD", "BITFLYER:FX_BTC_JPY", "GMO:BTC")));
+
+    // When - 起動は止まらない
+    engine.initialize();
+
+    // Then - 不正な系列だけを読み飛ばす
+    assertFalse(engine.getStats().containsKey("broken"));
+    assertTrue(engine.getStats().containsKey("fx_basis"));
+  }
+
+  private static BestBidAsk quote(
+      String exchange, String symbol, double bid, double ask, long offsetMillis) {
+    BestBidAsk bestBidAsk = new BestBidAsk();
+    bestBidAsk.setExchange(exchange);
+    bestBidAsk.setSymbol(symbol);
+    bestBidAsk.setBestBid(BigDecimal.valueOf(bid));
+    bestBidAsk.setBestBidVolume(BigDecimal.ONE);
+    bestBidAsk.setBestAsk(BigDecimal.valueOf(ask));
+    bestBidAsk.setBestAskVolume(BigDecimal.ONE);
+    bestBidAsk.setTimestamp(NOW.plusMillis(offsetMillis));
+    return bestBidAsk;
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class HourlySlotsTest {
+
+  private static final long HOUR = HourlySlots.HOUR_MS;
+
+  private final List<String> persisted = new ArrayList<>();
+
+  @Test
+  void testHourChangePersistsPreviousSlotOnce() {
+    // Given - 2時間分のリング
+    HourlySlots<AtomicLong> slots = new HourlySlots<>(2, AtomicLong::new, v -> v.set(0));
+    slots.get(10 * HOUR + 5, this::record).incrementAndGet();
+    slots.get(11 * HOUR, this::record).incrementAndGet();
+
+    // When - 10時台の枠を12時台に使い回す
+    AtomicLong current = slots.get(12 * HOUR + 1, this::record);
+
+    // Then - 使い回す前の内容で1回だけ記録し、空にしてから返す
+    assertEquals(List.of("1970-01-01T10:00:00Z=1"), persisted);
+    assertEquals(0, current.get());
+
+    // When - 使い回した枠より古い時間帯
+    AtomicLong late = slots.get(10 * HOUR + 10, this::record);
+
+    // Then
+    assertNull(late);
+    assertEquals(1, persisted.size());
+  }
+
+  @Test
+  void testCloseWaitsForDelayAndSkipsPersistedSlots() {
+    // Given
+    HourlySlots<AtomicLong> slots = new HourlySlots<>(3, AtomicLong::new, v -> v.set(0));
+    slots.get(10 * HOUR, this::record).addAndGet(3);
+    slots.get(11 * HOUR, this::record).addAndGet(4);
+
+    // When - 11時台が終わった直後は待ち時間の内
+    slots.close(12 * HOUR + 1_000, 5_000, this::record);
+
+    // Then
+    assertEquals(List.of("1970-01-01T10:00:00Z=3"), persisted);
+
+    // When - 待ち時間が過ぎた後、記録済みの10時台は対象外
+    slots.close(12 * HOUR + 5_000, 5_000, this::record);
+    slots.close(13 * HOUR, 5_000, this::record);
+
+    // Then
+    assertEquals(List.of("1970-01-01T10:00:00Z=3", "1970-01-01T11:00:00Z=4"), persisted);
+
+    // When - 記録済みの時間帯に遅れて届いた分は、枠を使い回すときに記録し直さない
+    slots.get(11 * HOUR + 10, this::record).incrementAndGet();
+    slots.get(14 * HOUR, this::record);
+
+    // Then
+    assertEquals(2, persisted.size());
+    assertEquals(3, slots.getSlots().size());
+  }
+
+  @Test
+  void testUnusedSlotsAreNeverPersisted() {
+    // Given
+    HourlySlots<AtomicLong> slots = new HourlySlots<>(0, AtomicLong::new, v -> v.set(0));
+
+    // When
+    slots.close(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli(), 0, this::record);
+
+    // Then - 枠数は1以上になり、使っていない枠は記録しない
+    assertEquals(1, slots.getSlots().size());
+    assertEquals(-1, slots.getSlots().get(0).getHour());
+    assertTrue(persisted.isEmpty());
+  }
+
+  private void record(HourlySlots.Slot<AtomicLong> slot) {
+    assertEquals(slot.getStart().plusMillis(HOUR), slot.getEnd());
+    persisted.add(slot.getStart() + "=" + slot.getValue().get());
+  }
+}
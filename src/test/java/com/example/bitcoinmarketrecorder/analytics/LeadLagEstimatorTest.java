@@ -0,0 +1,80 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LeadLagEstimatorTest {
+
+  private static final int[] LAG_STEPS = {0, 5, 10, 25};
+
+  @Test
+  void testPeakIsAtLagWhereFollowerCopiesLeader() {
+    // Given - Bは100ms（10グリッド）遅れてAと同じ仲値になる
+    LeadLagEstimator estimator = new LeadLagEstimator(10, LAG_STEPS, 1000);
+    double[] mids = randomWalk(2000);
+
+    // When
+    for (int t = 0; t < mids.length; t++) {
+      estimator.updateA(t * 10L, mids[t]);
+      estimator.updateB(t * 10L, mids[Math.max(0, t - 10)]);
+    }
+
+    // Then - Aが100ms先行するラグだけ相関が高い
+    assertEquals(1.0, estimator.correlationALeads(2), 0.01);
+    assertEquals(0.0, estimator.correlationALeads(0), 0.1);
+    assertEquals(0.0, estimator.correlationALeads(1), 0.1);
+    assertEquals(0.0, estimator.correlationBLeads(2), 0.1);
+    assertTrue(estimator.getSamples() > 1900);
+  }
+
+  @Test
+  void testLongIdleGapKeepsCorrelationsAndDecaysWeight() {
+    // Given
+    LeadLagEstimator estimator = new LeadLagEstimator(10, LAG_STEPS, 100);
+    double[] mids = randomWalk(500);
+    for (int t = 0; t < mids.length; t++) {
+      estimator.updateA(t * 10L, mids[t]);
+      estimator.updateB(t * 10L, mids[Math.max(0, t - 5)]);
+    }
+    estimator.advance(mids.length * 10L);
+    double before = estimator.correlationALeads(1);
+    double weightBefore = estimator.getEffectiveSamples();
+
+    // When - リングより長く仲値が変わらない
+    estimator.advance(mids.length * 10L + 60_000);
+
+    // Then - リターン0の区間は相関の比を変えない。実効標本数は上限（1 / (1 - 減衰率)）に近づく
+    assertEquals(before, estimator.correlationALeads(1), 1e-9);
+    assertTrue(estimator.getEffectiveSamples() > weightBefore);
+    assertEquals(1 / (1 - Math.pow(0.5, 1 / 100.0)), estimator.getEffectiveSamples(), 1e-6);
+    assertEquals(mids.length + 6000, estimator.getSamples());
+  }
+
+  @Test
+  void testNoCorrelationUntilBothLegsHaveReturns() {
+    // Given
+    LeadLagEstimator estimator = new LeadLagEstimator(10, LAG_STEPS, 100);
+
+    // When - Aだけ更新される
+    estimator.updateA(0, 100);
+    estimator.updateA(15, 101);
+    estimator.advance(100);
+
+    // Then
+    assertTrue(Double.isNaN(estimator.correlationALeads(0)));
+    assertEquals(0, estimator.getSamples());
+    assertThrows(IllegalArgumentException.class, () -> new LeadLagEstimator(10, new int[] {-1}, 1));
+  }
+
+  private static double[] randomWalk(int length) {
+    Random random = new Random(42);
+    double[] mids = new double[length];
+    mids[0] = 10_000_000;
+    for (int i = 1; i < length; i++) {
+      mids[i] = mids[i - 1] * Math.exp(random.nextGaussian() * 1e-4);
+    }
+    return mids;
+  }
+}
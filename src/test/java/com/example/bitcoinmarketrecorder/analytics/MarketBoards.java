@@ -0,0 +1,36 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/** 板を使うテストのための、{価格, 数量}の配列から板を作るヘルパー。 */
+final class MarketBoards {
+
+  private MarketBoards() {}
+
+  /** 時刻のない板。 */
+  static MarketBoard board(double[][] bids, double[][] asks) {
+    MarketBoard board = new MarketBoard();
+    board.setExchange("GMO");
+    board.setSymbol("BTC");
+    for (double[] level : bids) {
+      board.getBids().add(level(level));
+    }
+    for (double[] level : asks) {
+      board.getAsks().add(level(level));
+    }
+    return board;
+  }
+
+  /** 取引所の時刻（エポックミリ秒）を付けた板。 */
+  static MarketBoard board(long ts, double[][] bids, double[][] asks) {
+    MarketBoard board = board(bids, asks);
+    board.setTs(Instant.ofEpochMilli(ts));
+    return board;
+  }
+
+  private static MarketBoard.PriceLevel level(double[] level) {
+    return new MarketBoard.PriceLevel(BigDecimal.valueOf(level[0]), BigDecimal.valueOf(level[1]));
+  }
+}
@@ -0,0 +1,138 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static com.example.bitcoinmarketrecorder.analytics.MarketBoards.board;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.analytics.OrderFlowEvent.Type;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class OrderFlowClassifierTest {
+
+  private static final long NOW = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+  @Test
+  void testAddsAndDecreasesAreClassifiedAgainstTrades() {
+    // Given
+    OrderFlowClassifier classifier = new OrderFlowClassifier("GMO", "BTC", 3, 500, 60_000);
+    List<OrderFlowEvent> events = new ArrayList<>();
+    classifier.onBoard(
+        board(NOW, new double[][] {{100, 1}, {99, 2}}, new double[][] {{101, 1}, {102, 2}}),
+        NOW,
+        events);
+    assertTrue(events.isEmpty());
+
+    // When - 売り板101が0.4の買いで減り、102に0.5追加され、買い板99が1取り消される
+    classifier.onTrade(101, 0.4, "BUY", NOW + 10, events);
+    classifier.onBoard(
+        board(
+            NOW + 20,
+            new double[][] {{100, 1}, {99, 1}},
+            new double[][] {{101, 0.6}, {102, 2.5}}),
+        NOW + 20,
+        events);
+
+    // Then - 約定と追加はすぐに、取消は待ち時間の後に確定する
+    assertEquals(2, events.size());
+    assertEvent(events.get(0), false, 101, 0.4, Type.EXECUTION, 0);
+    assertEvent(events.get(1), false, 102, 0.5, Type.ADD, 1);
+
+    // When
+    classifier.expire(NOW + 519, events);
+    classifier.expire(NOW + 520, events);
+
+    // Then
+    assertEquals(3, events.size());
+    assertEvent(events.get(2), true, 99, 1, Type.CANCEL, 1);
+    assertEquals(NOW + 20, events.get(2).getTimestamp());
+  }
+
+  @Test
+  void testTradeArrivingAfterBoardConvertsPendingDecrease() {
+    // Given - 最良の買い気配が消えた後に、売りの約定が届く
+    OrderFlowClassifier classifier = new OrderFlowClassifier("BITFLYER", "BTC_JPY", 3, 500, 60_000);
+    List<OrderFlowEvent> events = new ArrayList<>();
+    classifier.onBoard(
+        board(NOW, new double[][] {{100, 1}, {99, 2}}, new double[][] {{101, 1}}), NOW, events);
+    classifier.onBoard(
+        board(NOW + 5, new double[][] {{99, 2}}, new double[][] {{101, 1}}), NOW + 5, events);
+    assertTrue(events.isEmpty());
+
+    // When - 向きのない約定は、同じ価格の減少を待っている買い板を減らしたと推定する
+    classifier.onTrade(100, 0.7, "", NOW + 50, events);
+    classifier.expire(NOW + 1000, events);
+
+    // Then - 0.7は約定、残りの0.3は取消
+    assertEquals(2, events.size());
+    assertEvent(events.get(0), true, 100, 0.7, Type.EXECUTION, 0);
+    assertEvent(events.get(1), true, 100, 0.3, Type.CANCEL, 0);
+    Map<String, Object> stats = classifier.getStats(NOW + 1000);
+    assertEquals(1L, stats.get("executions"));
+    assertEquals(1L, stats.get("cancels"));
+    assertEquals(0L, stats.get("unmatchedTrades"));
+  }
+
+  @Test
+  void testLevelsOutsideVisibleDepthAreIgnored() {
+    // Given - 3段だけ見える板
+    OrderFlowClassifier classifier = new OrderFlowClassifier("GMO", "BTC", 3, 500, 60_000);
+    List<OrderFlowEvent> events = new ArrayList<>();
+    classifier.onBoard(
+        board(NOW, new double[][] {{100, 1}, {99, 1}, {98, 1}}, new double[][] {{101, 1}}),
+        NOW,
+        events);
+
+    // When - 99.5に注文が入り、98が見える範囲から押し出される
+    classifier.onBoard(
+        board(NOW + 1, new double[][] {{100, 1}, {99.5, 2}, {99, 1}}, new double[][] {{101, 1}}),
+        NOW + 1,
+        events);
+    classifier.expire(NOW + 1000, events);
+
+    // Then - 98は取消に数えない
+    assertEquals(1, events.size());
+    assertEvent(events.get(0), true, 99.5, 2, Type.ADD, 1);
+    assertEquals("GMO,BTC,2024-01-01T00:00:00.001Z,B,99.5,2,A,1", events.get(0).toCsvRow());
+  }
+
+  @Test
+  void testRatesDecayAndOrderToTradeRatio() {
+    // Given - 半減期1秒
+    OrderFlowClassifier classifier = new OrderFlowClassifier("GMO", "BTC", 2, 0, 1000);
+    List<OrderFlowEvent> events = new ArrayList<>();
+    classifier.onBoard(
+        board(NOW, new double[][] {{100, 1}}, new double[][] {{101, 1}}), NOW, events);
+    for (int i = 1; i <= 4; i++) {
+      classifier.onBoard(
+          board(NOW, new double[][] {{100, 1 + i}}, new double[][] {{101, 1}}), NOW, events);
+    }
+    classifier.onTrade(100, 1, "SELL", NOW, events);
+    classifier.onBoard(
+        board(NOW, new double[][] {{100, 4}}, new double[][] {{101, 1}}), NOW, events);
+
+    // When
+    Map<String, Object> now = classifier.getStats(NOW);
+    Map<String, Object> later = classifier.getStats(NOW + 1000);
+
+    // Then
+    assertEquals(4.0, now.get("orderToTradeRatio"));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> best = ((List<Map<String, Object>>) now.get("levels")).get(0);
+    @SuppressWarnings("unchecked")
+    Map<String, Object> bestLater = ((List<Map<String, Object>>) later.get("levels")).get(0);
+    assertEquals(4L, best.get("adds"));
+    assertEquals((double) best.get("addRate") / 2, (double) bestLater.get("addRate"), 1e-9);
+  }
+
+  private static void assertEvent(
+      OrderFlowEvent event, boolean bid, double price, double size, Type type, int level) {
+    assertEquals(bid, event.isBid());
+    assertEquals(price, event.getPrice());
+    assertEquals(size, event.getSize(), 1e-9);
+    assertEquals(type, event.getType());
+    assertEquals(level, event.getLevel());
+  }
+}
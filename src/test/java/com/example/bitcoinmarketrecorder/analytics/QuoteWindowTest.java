@@ -0,0 +1,71 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class QuoteWindowTest {
+
+  @Test
+  void testAveragesAreWeightedByQuoteDuration() {
+    // Given - 1秒区間。スプレッド100の気配が900ms、スプレッド1000の気配が100msの間に10回更新された
+    QuoteWindow window = new QuoteWindow(1_000, 10);
+    window.addQuote(0, 900, 100, 5_000_000);
+    for (int i = 0; i < 10; i++) {
+      window.addQuote(900 + i * 10, 910 + i * 10, 1_000, 5_000_500);
+      window.addUpdate(900 + i * 10, false);
+    }
+
+    // When
+    QuoteWindow.Stats stats = window.aggregate(0, Long.MAX_VALUE);
+
+    // Then - 行ごとの単純平均（約918）ではなく時間加重平均になる
+    assertEquals(1_000, stats.getTimeMs(), 1e-9);
+    assertEquals(0.9 * 100 + 0.1 * 1_000, stats.getSpread(), 1e-9);
+    assertEquals(0.9 * 5_000_000 + 0.1 * 5_000_500, stats.getMid(), 1e-6);
+    assertEquals(10, stats.getUpdates());
+  }
+
+  @Test
+  void testQuoteSpanningSlotsIsSplitAndOldSlotsAreDropped() {
+    // Given - 3区間だけ保持する
+    QuoteWindow window = new QuoteWindow(1_000, 3);
+    window.addQuote(500, 2_500, 10, 100);
+
+    // Then - 各区間に出ていた時間の分だけ入る
+    assertEquals(500, window.aggregate(0, 1_000).getTimeMs(), 1e-9);
+    assertEquals(1_000, window.aggregate(1_000, 2_000).getTimeMs(), 1e-9);
+    assertEquals(500, window.aggregate(2_000, 3_000).getTimeMs(), 1e-9);
+
+    // When - 区間3が区間0を上書きし、保持範囲より古い更新は捨てる
+    window.addUpdate(3_100, true);
+    window.addUpdate(200, true);
+
+    // Then
+    assertEquals(0, window.aggregate(0, 1_000).getTimeMs(), 1e-9);
+    assertEquals(1, window.aggregate(0, Long.MAX_VALUE).getUpdates());
+  }
+
+  @Test
+  void testLifetimeDistributionAndFlickers() {
+    // Given
+    QuoteWindow window = new QuoteWindow(60_000, 2);
+    for (int i = 0; i < 90; i++) {
+      window.addLifetime(1_000, 1_000, false);
+    }
+    for (int i = 0; i < 10; i++) {
+      window.addLifetime(1_000, 20, true);
+    }
+
+    // When
+    QuoteWindow.Stats stats = window.aggregate(0, Long.MAX_VALUE);
+
+    // Then - 寿命は√2倍ずつのビンの代表値で返る
+    assertEquals(100, stats.getQuotes());
+    assertEquals(10, stats.getFlickers());
+    assertEquals(20, stats.getLifetimeQuantile(0.05), 20 * (Math.sqrt(Math.sqrt(2)) - 1));
+    assertEquals(1_000, stats.getLifetimeQuantile(0.5), 1_000 * (Math.sqrt(Math.sqrt(2)) - 1));
+    assertEquals(0, QuoteWindow.lifetimeBucket(0));
+    assertEquals(QuoteWindow.LIFETIME_BUCKETS - 1, QuoteWindow.lifetimeBucket(Long.MAX_VALUE));
+  }
+}
@@ -0,0 +1,119 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.model.Trade;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TapeMergerTest {
+
+  private static final long NOW = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+  @Test
+  void testInterleavedSourcesAreReleasedInTimestampOrder() {
+    // Given
+    TapeMerger merger = new TapeMerger(List.of("GMO", "BITFLYER"), 1000, 5000, 1000);
+    List<TapeMerger.Entry> out = new ArrayList<>();
+
+    // When - 取引所ごとには時刻順だが、取引所をまたぐと前後して届く
+    merger.offer(trade("GMO", 10), NOW, out);
+    merger.offer(trade("BITFLYER", 12), NOW, out);
+    merger.offer(trade("GMO", 20), NOW, out);
+    merger.offer(trade("BITFLYER", 15), NOW, out);
+    merger.offer(trade("GMO", 18), NOW, out);
+
+    // Then - 両方のウォーターマーク（20と15）以下だけが確定している
+    assertEquals(List.of(10L, 12L, 15L), offsets(out));
+    assertEquals(2, merger.getPending());
+
+    // When
+    merger.offer(trade("BITFLYER", 25), NOW, out);
+
+    // Then
+    assertEquals(List.of(10L, 12L, 15L, 18L, 20L), offsets(out));
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L), out.stream().map(TapeMerger.Entry::getSeq).toList());
+    assertTrue(out.stream().allMatch(e -> e.getLateMs() == 0));
+  }
+
+  @Test
+  void testReorderWindowBoundsWaitForStalledSource() {
+    // Given - bitFlyerのウォーターマークが5で止まっている
+    TapeMerger merger = new TapeMerger(List.of("GMO", "BITFLYER"), 1000, 5000, 1000);
+    List<TapeMerger.Entry> out = new ArrayList<>();
+    merger.offer(trade("BITFLYER", 5), NOW, out);
+    merger.offer(trade("GMO", 10), NOW, out);
+    merger.offer(trade("GMO", 30), NOW + 100, out);
+
+    // When - GMO 10が届いてから待ち時間が過ぎる
+    merger.poll(NOW + 1000, out);
+
+    // Then - 待ち時間を過ぎた約定だけを確定する
+    assertEquals(List.of(5L, 10L), offsets(out));
+
+    // When
+    merger.poll(NOW + 1100, out);
+
+    // Then
+    assertEquals(List.of(5L, 10L, 30L), offsets(out));
+    assertEquals(0, merger.getPending());
+    assertEquals(2L, merger.getStats(NOW + 1100).get("forced"));
+  }
+
+  @Test
+  void testLateTradeIsEmittedImmediatelyWithLateness() {
+    // Given
+    TapeMerger merger = new TapeMerger(List.of("GMO", "BITFLYER"), 1000, 5000, 1000);
+    List<TapeMerger.Entry> out = new ArrayList<>();
+    merger.offer(trade("GMO", 100), NOW, out);
+    merger.offer(trade("BITFLYER", 120), NOW, out);
+    merger.offer(trade("GMO", 130), NOW, out);
+
+    // When - 確定済みの時刻（120）より前の約定
+    merger.offer(trade("GMO", 90), NOW, out);
+
+    // Then
+    assertEquals(List.of(100L, 120L, 90L), offsets(out));
+    assertEquals(30, out.get(2).getLateMs());
+    Map<String, Object> stats = merger.getStats(NOW);
+    assertEquals(1L, stats.get("late"));
+    assertEquals(30L, stats.get("maxLateMs"));
+  }
+
+  @Test
+  void testIdleSourceIsNotWaitedFor() {
+    // Given
+    TapeMerger merger = new TapeMerger(List.of("GMO", "BITFLYER"), 60_000, 5000, 1000);
+    List<TapeMerger.Entry> out = new ArrayList<>();
+    merger.offer(trade("BITFLYER", 5), NOW, out);
+    merger.offer(trade("GMO", 10), NOW + 1000, out);
+
+    // When - bitFlyerの約定が5秒届いていない
+    merger.poll(NOW + 5000, out);
+
+    // Then
+    assertEquals(List.of(5L, 10L), offsets(out));
+  }
+
+  private static Trade trade(String exchange, long offsetMs) {
+    Trade trade = new Trade();
+    trade.setExchange(exchange);
+    trade.setSymbol("BTC_JPY");
+    trade.setTradeId(exchange + offsetMs);
+    trade.setPrice(new BigDecimal("10000000"));
+    trade.setSize(new BigDecimal("0.01"));
+    trade.setSide("BUY");
+    trade.setTimestamp(Instant.ofEpochMilli(NOW + offsetMs));
+    return trade;
+  }
+
+  private static List<Long> offsets(List<TapeMerger.Entry> entries) {
+    return entries.stream()
+        .map(e -> e.getTrade().getTimestamp().toEpochMilli() - NOW)
+        .toList();
+  }
+}
@@ -0,0 +1,238 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.EnrichedTradeProperties;
+import com.example.bitcoinmarketrecorder.model.BestBidAsk;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RedisPublisherService;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class TradeEnrichmentServiceTest {
+
+  private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+  @Mock private RedisPublisherService redisPublisherService;
+
+  @Mock private DataPersistenceService dataPersistenceService;
+
+  @Mock private RecordedDataCatalog recordedDataCatalog;
+
+  @Spy private EnrichedTradeProperties enrichedTradeProperties = new EnrichedTradeProperties();
+
+  @InjectMocks private TradeEnrichmentService service;
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testTradeWaitsForLaterQuoteAndUsesQuoteAsOfItsTimestamp() {
+    // Given - 約定より前の気配
+    service.onBestBidAsk(quote("GMO", "BTC", 10_000_000, 10_002_000, 0));
+
+    // When - 約定の時刻より前の気配しかないので確定しない
+    service.onTrade(trade("GMO", "BTC", "1", 10_002_000, "BUY", 50));
+    verify(dataPersistenceService, never()).saveRows(any(), any());
+
+    // When - 約定の後の気配が届く
+    service.onBestBidAsk(quote("GMO", "BTC", 10_001_000, 10_003_000, 60));
+
+    // Then - 約定の時刻の時点で出ていた最初の気配が付く
+    Map<String, String> row = singleRow();
+    assertEquals("10000000", row.get("bid"));
+    assertEquals("10002000", row.get("ask"));
+    assertEquals(at(0), row.get("quote_timestamp"));
+    assertEquals("50", row.get("quote_age_ms"));
+    assertEquals("2000", row.get("effective_spread"));
+    assertEquals(2.0 / 10_001 * 10_000, Double.parseDouble(row.get("effective_spread_bps")), 1e-6);
+    assertEquals("0", row.get("price_improvement"));
+    assertEquals("BUY", row.get("inferred_side"));
+    verify(redisPublisherService, never()).publish(any(), any(), any());
+  }
+
+  @Test
+  void testLateTradeIsMatchedFromQuoteHistory() {
+    // Given
+    service.onBestBidAsk(quote("GMO", "BTC", 10_000_000, 10_002_000, 0));
+    service.onBestBidAsk(quote("GMO", "BTC", 10_004_000, 10_006_000, 100));
+
+    // When - 2件目の気配より前の約定が後から届く
+    service.onTrade(trade("GMO", "BTC", "1", 10_000_000, "", 40));
+
+    // Then - すぐに確定し、約定時点の気配と売りの推定が付く
+    Map<String, String> row = singleRow();
+    assertEquals("10001000", row.get("mid"));
+    assertEquals("", row.get("side"));
+    assertEquals("SELL", row.get("inferred_side"));
+    assertEquals("0", row.get("price_improvement"));
+  }
+
+  @Test
+  void testPendingTradeIsReleasedAfterReorderWindow() {
+    // Given - 気配のない銘柄の約定
+    service.onTrade(trade("BITFLYER", "BTC_JPY", "1", 10_000_000, "BUY", 0));
+    service.release(System.currentTimeMillis());
+    verify(dataPersistenceService, never()).saveRows(any(), any());
+
+    // When - 待ち時間を過ぎる
+    service.release(System.currentTimeMillis() + enrichedTradeProperties.getReorderWindowMs());
+
+    // Then - 気配なしで確定する
+    Map<String, String> row = singleRow();
+    assertEquals("", row.get("bid"));
+    assertEquals("", row.get("quote_timestamp"));
+    assertEquals("", row.get("price_improvement"));
+    assertEquals("", row.get("inferred_side"));
+    assertEquals(1L, service.getStats().get("timedOut"));
+    assertEquals(1L, service.getStats().get("unquoted"));
+    assertEquals(0, service.getStats().get("pending"));
+  }
+
+  @Test
+  void testRecordedFilesAreJoinedByMergeScan() throws IOException {
+    // Given - 1時間分の約定とBBOのファイル
+    RecordedDataCatalog catalog = new RecordedDataCatalog();
+    ReflectionTestUtils.setField(catalog, "csvDir", tempDir.toString());
+    writeSegment(
+        RecordedStream.BEST_BID_ASK,
+        row("GMO", "BTC", "10000000", "1", "10002000", "1", at(0)),
+        row("BITFLYER", "BTC_JPY", "9990000", "1", "9994000", "1", at(10)),
+        row("GMO", "BTC", "10004000", "1", "10006000", "1", at(100)),
+        row("GMO", "BTC", "10010000", "1", "10012000", "1", at(200)));
+    writeSegment(
+        RecordedStream.TRADES,
+        row("GMO", "BTC", "1", "10002000", "0.1", "BUY", at(50), "x"),
+        row("BITFLYER", "BTC_JPY", "2", "9992000", "0.2", "", at(60), "x"),
+        row("GMO", "BTC", "3", "10006000", "0.3", "BUY", at(150), "x"),
+        // 前後して記録された約定
+        row("GMO", "BTC", "4", "10001000", "0.4", "", at(90), "x"));
+    Instant from = NOW;
+    Instant to = NOW.plusSeconds(1);
+    RecordedTradeJoin join =
+        new RecordedTradeJoin(
+            catalog.list(RecordedStream.TRADES, from, to),
+            catalog.list(RecordedStream.BEST_BID_ASK, from, to),
+            from,
+            to,
+            from,
+            "GMO",
+            null,
+            100,
+            256,
+            60_000);
+
+    // When
+    List<String> lines = readAll(join);
+
+    // Then - GMOの約定だけに、それぞれの時刻の気配が付く
+    assertEquals(String.join(",", RecordedStream.ENRICHED_TRADES.getColumns()), lines.get(0));
+    assertEquals(4, lines.size());
+    assertTrue(lines.get(1).startsWith("GMO,BTC,1,10002000,0.1,BUY,"), lines.get(1));
+    assertTrue(lines.get(1).contains(",10000000,10002000,10001000," + at(0) + ",50,"));
+    assertTrue(lines.get(2).contains(",10004000,10006000,10005000," + at(100) + ",50,"));
+    // 約定4は約定3の時刻までBBOを読み進めた後に読むが、約定時点の気配が付く。仲値ちょうどの約定は
+    // 直前の約定より安いので売り
+    assertTrue(lines.get(3).contains(",10000000,10002000,10001000," + at(0) + ",90,"));
+    assertTrue(lines.get(3).endsWith(",0,0,1000,SELL"), lines.get(3));
+  }
+
+  /** 記録した1行の列名から値への対応。 */
+  private Map<String, String> singleRow() {
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<String>> rows = ArgumentCaptor.forClass(List.class);
+    verify(dataPersistenceService).saveRows(eq(RecordedStream.ENRICHED_TRADES), rows.capture());
+    assertEquals(1, rows.getValue().size());
+    List<String> columns = RecordedStream.ENRICHED_TRADES.getColumns();
+    String[] values = rows.getValue().get(0).split(",", -1);
+    assertEquals(columns.size(), values.length);
+    Map<String, String> row = new HashMap<>();
+    for (int i = 0; i < values.length; i++) {
+      row.put(columns.get(i), values[i]);
+    }
+    return row;
+  }
+
+  private void writeSegment(RecordedStream stream, String... rows) throws IOException {
+    String hour =
+        DateTimeFormatter.ofPattern("yyyyMMdd_HH").withZone(ZoneId.systemDefault()).format(NOW);
+    StringBuilder content = new StringBuilder(String.join(",", stream.getColumns()) + "\n");
+    for (String row : rows) {
+      content.append(row).append('\n');
+    }
+    Files.writeString(
+        tempDir.resolve(stream.getPrefix() + "_" + hour + ".csv"),
+        content,
+        StandardCharsets.UTF_8);
+  }
+
+  private static List<String> readAll(RecordedTradeJoin join) throws IOException {
+    List<String> lines = new ArrayList<>();
+    try {
+      byte[] chunk;
+      while ((chunk = join.nextChunk()) != null) {
+        lines.addAll(List.of(new String(chunk, StandardCharsets.UTF_8).split("\n")));
+      }
+    } finally {
+      join.close();
+    }
+    return lines;
+  }
+
+  private static String row(String... values) {
+    return String.join(",", values);
+  }
+
+  private static String at(long offsetMs) {
+    return NOW.plusMillis(offsetMs).toString();
+  }
+
+  private static BestBidAsk quote(
+      String exchange, String symbol, double bid, double ask, long offsetMs) {
+    BestBidAsk bestBidAsk = new BestBidAsk();
+    bestBidAsk.setExchange(exchange);
+    bestBidAsk.setSymbol(symbol);
+    bestBidAsk.setBestBid(BigDecimal.valueOf(bid));
+    bestBidAsk.setBestAsk(BigDecimal.valueOf(ask));
+    bestBidAsk.setTimestamp(NOW.plusMillis(offsetMs));
+    return bestBidAsk;
+  }
+
+  private static Trade trade(
+      String exchange, String symbol, String id, double price, String side, long offsetMs) {
+    Trade trade = new Trade();
+    trade.setExchange(exchange);
+    trade.setSymbol(symbol);
+    trade.setTradeId(id);
+    trade.setPrice(BigDecimal.valueOf(price));
+    trade.setSize(new BigDecimal("0.01"));
+    trade.setSide(side);
+    trade.setTimestamp(NOW.plusMillis(offsetMs));
+    return trade;
+  }
+}
@@ -0,0 +1,63 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class TradeFlowWindowTest {
+
+  @Test
+  void testStatsFollowTheWindow() {
+    // Given - 10秒窓
+    TradeFlowWindow window = new TradeFlowWindow(10_000, 16);
+    window.add(0, 100, 2.0, 1);
+    window.add(1_000, 110, 0.5, -1);
+    window.add(2_000, 100, 1.0, 1);
+
+    // Then
+    assertEquals(3, window.getCount());
+    assertEquals(3.0, window.getBuyVolume(), 1e-12);
+    assertEquals(0.5, window.getSellVolume(), 1e-12);
+    assertEquals(2.5 / 3.5, window.getImbalance(), 1e-12);
+    assertEquals(3.5 / 3, window.getAverageSize(), 1e-12);
+    assertEquals(2.0, window.getMaxSize());
+    assertEquals(0.3, window.getTradeRate(), 1e-12);
+    double r = Math.log(1.1);
+    assertEquals(Math.sqrt(2 * r * r), window.getRealizedVolatility(), 1e-12);
+
+    // When - 最初の約定が窓の外に出る
+    window.add(10_500, 100, 0.1, -1);
+
+    // Then - 最大数量は次に大きい約定に移る
+    assertEquals(3, window.getCount());
+    assertEquals(1.0, window.getMaxSize());
+    assertEquals(1.0, window.getBuyVolume(), 1e-12);
+    assertEquals(0.6, window.getSellVolume(), 1e-12);
+
+    // When - すべて窓の外に出る
+    window.evict(30_000);
+
+    // Then
+    assertEquals(0, window.getCount());
+    assertEquals(0, window.getImbalance());
+    assertEquals(0, window.getMaxSize());
+    assertEquals(0, window.getRealizedVolatility());
+  }
+
+  @Test
+  void testGrowsBeyondInitialCapacity() {
+    // Given
+    TradeFlowWindow window = new TradeFlowWindow(1_000_000, 16);
+
+    // When
+    for (int i = 0; i < 1000; i++) {
+      window.add(i, 100, i % 100, i % 2 == 0 ? 1 : -1);
+    }
+    window.evict(500);
+
+    // Then
+    assertEquals(500, window.getCount());
+    assertEquals(99, window.getMaxSize());
+    assertEquals(49.5, window.getAverageSize(), 1e-9);
+  }
+}
@@ -0,0 +1,151 @@
+package com.example.bitcoinmarketrecorder.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class VolumeProfileTest {
+
+  @Test
+  void testVolumeIsBucketedBySideAndArrayGrowsInBothDirections() {
+    // Given
+    VolumeProfile profile = new VolumeProfile(1000, 100_000);
+
+    // When - 最初の帯から上下に離れた価格の約定
+    profile.add(10_000_500, 0.1, "BUY");
+    profile.add(10_000_999, 0.2, "SELL");
+    profile.add(10_500_000, 0.3, "BUY");
+    profile.add(9_500_000, 0.4, "SELL");
+    profile.add(10_000_000, 1.0, "");
+
+    // Then - 向きのない約定は向き不明として帯の出来高に含める
+    List<Map<String, Object>> levels = profile.getLevels();
+    assertEquals(3, levels.size());
+    assertEquals(9_500_000.0, levels.get(0).get("price"));
+    assertEquals(0.4, levels.get(0).get("sell"));
+    assertEquals(10_000_000.0, levels.get(1).get("price"));
+    assertEquals(0.1, levels.get(1).get("buy"));
+    assertEquals(0.2, levels.get(1).get("sell"));
+    assertEquals(1.0, levels.get(1).get("unknown"));
+    assertEquals(1.3, (double) levels.get(1).get("volume"), 1e-12);
+    assertEquals(10_500_000.0, levels.get(2).get("price"));
+    assertEquals(5, profile.getTradeCount());
+    assertEquals(0.4, profile.getBuyVolume(), 1e-12);
+    assertEquals(0.6, profile.getSellVolume(), 1e-12);
+    assertEquals(1.0, profile.getUnknownVolume(), 1e-12);
+    assertEquals(2.0, profile.getVolume(), 1e-12);
+    assertEquals(10_000_000, profile.getPointOfControl());
+  }
+
+  @Test
+  void testUnknownSideSurvivesEncodeAndOldFormatStillDecodes() {
+    // Given
+    VolumeProfile profile = new VolumeProfile(1000, 100_000);
+    profile.add(10_000_000, 0.5, "BUY");
+    profile.add(10_001_000, 0.25, null);
+
+    // When
+    String encoded = profile.encode();
+    VolumeProfile decoded = VolumeProfile.decode(encoded, 1000, 2, 100_000);
+
+    // Then - 向き不明の出来高がある帯だけ4つ目の値を書く
+    assertEquals("10000:0.5:0 10001:0:0:0.25", encoded);
+    assertEquals(0.25, decoded.getUnknownVolume(), 1e-12);
+    assertEquals(0.75, decoded.getVolume(), 1e-12);
+
+    // Then - 向き不明の値がない記録も読める
+    VolumeProfile old = VolumeProfile.decode("10000:0.5:0.5", 1000, 2, 100_000);
+    assertEquals(1.0, old.getVolume(), 1e-12);
+    assertEquals(0, old.getUnknownVolume());
+  }
+
+  @Test
+  void testPointOfControlAndValueArea() {
+    // Given - 10,000,000円の帯に出来高が集まる
+    VolumeProfile profile = new VolumeProfile(1000, 100_000);
+    profile.add(9_998_000, 1, "BUY");
+    profile.add(9_999_000, 2, "SELL");
+    profile.add(10_000_000, 5, "BUY");
+    profile.add(10_001_000, 1.5, "SELL");
+    profile.add(10_005_000, 0.5, "BUY");
+
+    // Then - 合計10の70%を含むまで、隣の帯のうち出来高の多い側へ広げる
+    assertEquals(10_000_000, profile.getPointOfControl());
+    assertArrayEquals(new double[] {9_999_000, 10_001_000}, profile.getValueArea(0.7));
+    assertNull(new VolumeProfile(1000, 100_000).getValueArea(0.7));
+  }
+
+  @Test
+  void testHourlyProfilesMergeAfterEncodeRoundTrip() {
+    // Given - 2時間分のプロファイルと、同じ約定を1つに入れたプロファイル
+    VolumeProfile all = new VolumeProfile(500, 100_000);
+    VolumeProfile[] hours = {new VolumeProfile(500, 100_000), new VolumeProfile(500, 100_000)};
+    for (int i = 0; i < 200; i++) {
+      double price = 10_000_000 + (i % 2 == 0 ? i * 250 : -i * 750);
+      String side = i % 3 == 0 ? "SELL" : "BUY";
+      all.add(price, 0.01 * (i + 1), side);
+      hours[i % 2].add(price, 0.01 * (i + 1), side);
+    }
+
+    // When - CSVに記録したものを読み戻して足し合わせる
+    VolumeProfile merged =
+        VolumeProfile.decode(hours[0].encode(), 500, hours[0].getTradeCount(), 100_000);
+    merged.merge(
+        VolumeProfile.decode(hours[1].encode(), 500, hours[1].getTradeCount(), 100_000));
+
+    // Then
+    assertFalse(hours[0].encode().contains(","));
+    assertEquals(all.getTradeCount(), merged.getTradeCount());
+    assertEquals(all.getLevels().size(), merged.getLevels().size());
+    for (int i = 0; i < all.getLevels().size(); i++) {
+      Map<String, Object> expected = all.getLevels().get(i);
+      Map<String, Object> actual = merged.getLevels().get(i);
+      assertEquals(expected.get("price"), actual.get("price"));
+      assertEquals((double) expected.get("buy"), (double) actual.get("buy"), 1e-9);
+      assertEquals((double) expected.get("sell"), (double) actual.get("sell"), 1e-9);
+    }
+    assertEquals(all.getPointOfControl(), merged.getPointOfControl());
+    assertThrows(IllegalArgumentException.class, () -> merged.merge(new VolumeProfile(1000, 10)));
+    assertThrows(
+        IllegalArgumentException.class, () -> VolumeProfile.decode("1:x:2", 500, 1, 100_000));
+  }
+
+  @Test
+  void testBucketLimitDropsOutOfRangeTrades() {
+    // Given - 帯は10個まで
+    VolumeProfile profile = new VolumeProfile(1000, 10);
+    profile.add(10_000_000, 1, "BUY");
+    profile.add(10_009_000, 1, "BUY");
+
+    // When
+    profile.add(10_010_000, 1, "BUY");
+    profile.add(9_999_000, 0.5, "SELL");
+
+    // Then
+    assertEquals(2, profile.getTradeCount());
+    assertEquals(1.5, profile.getDroppedVolume(), 1e-12);
+
+    // When - 範囲外の帯を足し合わせた場合も出来高で数える
+    VolumeProfile other = new VolumeProfile(1000, 10);
+    other.add(10_020_000, 0.25, "BUY");
+    other.add(10_020_000, 0.5, "SELL");
+    other.add(10_030_000, 2, null);
+    VolumeProfile merged = new VolumeProfile(1000, 10);
+    merged.merge(profile);
+    merged.merge(other);
+
+    // Then
+    assertEquals(1.5 + 0.75 + 2, merged.getDroppedVolume(), 1e-12);
+    assertEquals(2, merged.getVolume(), 1e-12);
+
+    // When - 空に戻すと別の範囲を数えられる
+    profile.clear();
+    profile.add(20_000_000, 1, "SELL");
+
+    // Then
+    assertEquals(1, profile.getLevels().size());
+    assertEquals(20_000_000, profile.getPointOfControl());
+  }
+}
@@ -3,9 +3,11 @@ package com.example.bitcoinmarketrecorder.gmo;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.example.bitcoinmarketrecorder.analytics.BookAnalyticsService;
 import com.example.bitcoinmarketrecorder.gmo.model.GmoOrderbook;
 import com.example.bitcoinmarketrecorder.model.MarketBoard;
 import com.example.bitcoinmarketrecorder.service.DataPersistenceService;
+import com.example.bitcoinmarketrecorder.service.MarketDataDispatcher;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -19,8 +21,12 @@ class GmoWebSocketClientTest extends GmoWebSocketClient {
 
   @Mock private DataPersistenceService persistenceService;
 
+  @Mock private MarketDataDispatcher marketDataDispatcher;
+
+  @Mock private BookAnalyticsService bookAnalyticsService;
+
   public GmoWebSocketClientTest() {
-    super(null, null); // テスト用のコンストラクタ
+    super(null, null, null); // テスト用のコンストラクタ
   }
 
   @BeforeEach
@@ -30,6 +36,12 @@ class GmoWebSocketClientTest extends GmoWebSocketClient {
     Field field = GmoWebSocketClient.class.getDeclaredField("persistenceService");
     field.setAccessible(true);
     field.set(this, persistenceService);
+    Field dispatcherField = GmoWebSocketClient.class.getDeclaredField("marketDataDispatcher");
+    dispatcherField.setAccessible(true);
+    dispatcherField.set(this, marketDataDispatcher);
+    Field analyticsField = GmoWebSocketClient.class.getDeclaredField("bookAnalyticsService");
+    analyticsField.setAccessible(true);
+    analyticsField.set(this, bookAnalyticsService);
   }
 
   @Test
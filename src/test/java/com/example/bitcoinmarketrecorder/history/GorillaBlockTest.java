@@ -0,0 +1,78 @@
+package com.example.bitcoinmarketrecorder.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GorillaBlockTest {
+
+  @Test
+  void testRoundTripWithIrregularTimestampsAndValues() {
+    // Given - 前後するタイムスタンプ、大きな間隔、NaN、無限大を含む
+    Random random = new Random(42);
+    GorillaBlock block = new GorillaBlock(64 * 1024, 2);
+    List<Long> timestamps = new ArrayList<>();
+    List<double[]> rows = new ArrayList<>();
+    long timestamp = 1_700_000_000_000L;
+    while (block.hasRoom()) {
+      int kind = random.nextInt(10);
+      if (kind == 0) {
+        timestamp -= random.nextInt(5000);
+      } else if (kind == 1) {
+        timestamp += 86_400_000L;
+      } else {
+        timestamp += random.nextInt(300);
+      }
+      double[] row = {
+        kind == 2 ? Double.NaN : 5_000_000 + random.nextInt(1000),
+        kind == 3 ? Double.POSITIVE_INFINITY : random.nextDouble()
+      };
+      block.append(timestamp, row);
+      timestamps.add(timestamp);
+      rows.add(row);
+    }
+
+    // When
+    List<Long> decodedTimestamps = new ArrayList<>();
+    List<double[]> decodedRows = new ArrayList<>();
+    block.forEach(
+        (t, values) -> {
+          decodedTimestamps.add(t);
+          decodedRows.add(values.clone());
+        });
+
+    // Then
+    assertEquals(timestamps, decodedTimestamps);
+    for (int i = 0; i < rows.size(); i++) {
+      assertArrayEquals(rows.get(i), decodedRows.get(i));
+    }
+    assertEquals(rows.size(), block.getCount());
+  }
+
+  @Test
+  void testRangeAndCompressionOfSteadyQuotes() {
+    // Given - 100ms間隔で、ほとんど変わらない気配値
+    GorillaBlock block = new GorillaBlock(4096, 4);
+    long start = 1_700_000_000_000L;
+    int rows = 0;
+    while (block.hasRoom()) {
+      double bid = 5_000_000 + (rows / 20) * 1000;
+      block.append(start + rows * 100L, new double[] {bid, 0.5, bid + 1000, 0.25});
+      rows++;
+    }
+
+    // When
+    List<Long> selected = new ArrayList<>();
+    block.forEach(start + 1000, start + 2000, (t, values) -> selected.add(t));
+
+    // Then - 1行あたり非圧縮（8 + 4 * 8 = 40バイト）の1/4未満
+    assertTrue(block.getUsedBytes() * 4 < rows * 40, rows + " rows");
+    assertEquals(10, selected.size());
+    assertEquals(start + 1000, selected.get(0));
+    assertEquals(start, block.getMinTimestamp());
+    assertEquals(start + (rows - 1) * 100L, block.getMaxTimestamp());
+  }
+}
@@ -0,0 +1,104 @@
+package com.example.bitcoinmarketrecorder.ipc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.multicast.MarketDataPacket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedMemoryRingTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testReadersKeepIndependentCursors() throws Exception {
+    Path path = tempDir.resolve("market-data.ring");
+    try (SharedMemoryRingWriter writer = new SharedMemoryRingWriter(path, 8, 128);
+        SharedMemoryRingReader fast = new SharedMemoryRingReader(path);
+        SharedMemoryRingReader slow = new SharedMemoryRingReader(path)) {
+      // Given
+      writer.append(packet(100));
+      writer.append(packet(101));
+
+      // When
+      List<Double> fastPrices = new ArrayList<>();
+      int first = fast.poll((seq, payload) -> fastPrices.add(decode(payload).getPrice()));
+      writer.append(packet(102));
+      fast.poll((seq, payload) -> fastPrices.add(decode(payload).getPrice()));
+      List<Long> slowSeqs = new ArrayList<>();
+      slow.poll((seq, payload) -> slowSeqs.add(seq), 2);
+
+      // Then
+      assertEquals(2, first);
+      assertEquals(List.of(100.0, 101.0, 102.0), fastPrices);
+      assertEquals(List.of(1L, 2L), slowSeqs);
+      assertEquals(3L, slow.getPosition());
+      assertEquals(0, fast.poll((seq, payload) -> fail("No new message expected")));
+    }
+  }
+
+  @Test
+  void testOverrunIsDetectedAndSkipped() throws Exception {
+    Path path = tempDir.resolve("market-data.ring");
+    try (SharedMemoryRingWriter writer = new SharedMemoryRingWriter(path, 4, 128);
+        SharedMemoryRingReader reader = new SharedMemoryRingReader(path)) {
+      // Given - 4スロットのリングに10件書き、読み込み側が6件分周回される
+      for (int i = 0; i < 10; i++) {
+        writer.append(packet(100 + i));
+      }
+
+      // When
+      List<Long> seqs = new ArrayList<>();
+      reader.poll((seq, payload) -> seqs.add(seq));
+
+      // Then
+      assertEquals(List.of(7L, 8L, 9L, 10L), seqs);
+      assertEquals(6L, reader.getLost());
+      assertEquals(4L, reader.getRead());
+    }
+  }
+
+  @Test
+  void testWriterRestartIsDetected() throws Exception {
+    Path path = tempDir.resolve("market-data.ring");
+    SharedMemoryRingWriter writer = new SharedMemoryRingWriter(path, 8, 128);
+    try (SharedMemoryRingReader reader = new SharedMemoryRingReader(path)) {
+      writer.append(packet(100));
+      writer.append(packet(101));
+      reader.poll((seq, payload) -> {});
+      writer.close();
+
+      // When - 書き込み側が再起動して連番が1からやり直しになる
+      List<Double> prices = new ArrayList<>();
+      try (SharedMemoryRingWriter restarted = new SharedMemoryRingWriter(path, 8, 128)) {
+        restarted.append(packet(200));
+        reader.poll((seq, payload) -> prices.add(decode(payload).getPrice()));
+      }
+
+      // Then
+      assertEquals(List.of(200.0), prices);
+      assertEquals(1L, reader.getRestarts());
+    }
+  }
+
+  @Test
+  void testPayloadLargerThanSlotIsRejected() throws Exception {
+    try (SharedMemoryRingWriter writer =
+        new SharedMemoryRingWriter(tempDir.resolve("market-data.ring"), 4, 32)) {
+      assertThrows(IllegalArgumentException.class, () -> writer.append(ByteBuffer.allocate(64)));
+    }
+  }
+
+  private static ByteBuffer packet(double price) {
+    return ByteBuffer.wrap(
+        MarketDataPacket.trade("GMO:BTC", 0, price, 0.01, MarketDataPacket.SIDE_BUY).encode());
+  }
+
+  private static MarketDataPacket decode(ByteBuffer payload) {
+    return MarketDataPacket.decode(payload);
+  }
+}
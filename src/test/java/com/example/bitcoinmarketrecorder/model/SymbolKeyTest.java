@@ -0,0 +1,22 @@
+package com.example.bitcoinmarketrecorder.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class SymbolKeyTest {
+
+  @Test
+  void testParseMatchesKeyOfReceivedData() {
+    // 取引所は大文字に揃え、銘柄はそのまま残す
+    assertEquals("GMO:BTC", SymbolKey.of("gmo", "BTC"));
+    assertEquals(SymbolKey.of("bitflyer", "FX_BTC_JPY"), SymbolKey.parse("bitflyer:FX_BTC_JPY"));
+    assertEquals("GMO:BTC:JPY", SymbolKey.parse("gmo:BTC:JPY"));
+  }
+
+  @Test
+  void testParseRejectsValueWithoutSeparator() {
+    assertThrows(IllegalArgumentException.class, () -> SymbolKey.parse("BTC_JPY"));
+    assertThrows(IllegalArgumentException.class, () -> SymbolKey.parse(null));
+  }
+}
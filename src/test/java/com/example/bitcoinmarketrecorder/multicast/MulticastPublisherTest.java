@@ -0,0 +1,163 @@
+package com.example.bitcoinmarketrecorder.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.config.MulticastProperties;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import java.math.BigDecimal;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/** 配信側と受信側をループバックでつないだ結合テスト。 */
+class MulticastPublisherTest {
+
+  private static final String GROUP = "239.1.1.1";
+
+  private final MulticastPublisher publisher = new MulticastPublisher();
+  private final List<MulticastReceiver> receivers = new ArrayList<>();
+  private final List<List<MarketDataPacket>> delivered = new ArrayList<>();
+  private final List<List<long[]>> gaps = new ArrayList<>();
+  private final MulticastProperties properties = new MulticastProperties();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    properties.setEnabled(true);
+    properties.setGroup(GROUP);
+    properties.setPort(freeUdpPort());
+    properties.setRetransmitPort(freeTcpPort());
+    properties.setInterfaceName("lo");
+    ReflectionTestUtils.setField(publisher, "multicastProperties", properties);
+    publisher.start();
+
+    // 同じグループ・ポートを2つの受信者で購読する
+    for (int i = 0; i < 2; i++) {
+      List<MarketDataPacket> packets = Collections.synchronizedList(new ArrayList<>());
+      List<long[]> receiverGaps = Collections.synchronizedList(new ArrayList<>());
+      MulticastReceiver receiver =
+          new MulticastReceiver(
+              GROUP,
+              properties.getPort(),
+              "lo",
+              new InetSocketAddress("127.0.0.1", properties.getRetransmitPort()),
+              new MulticastReceiver.Listener() {
+                @Override
+                public void onPacket(MarketDataPacket packet) {
+                  packets.add(packet);
+                }
+
+                @Override
+                public void onGap(int channel, long fromSeq, long toSeq) {
+                  receiverGaps.add(new long[] {channel, fromSeq, toSeq});
+                }
+              });
+      receiver.start();
+      receivers.add(receiver);
+      delivered.add(packets);
+      gaps.add(receiverGaps);
+    }
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    for (MulticastReceiver receiver : receivers) {
+      receiver.close();
+    }
+    publisher.shutdown();
+  }
+
+  @Test
+  void testAllReceiversGetTradesAndRecoverLostPacketOverTcp() throws Exception {
+    // Given - 両方の受信者が連番1を受信済み
+    publisher.onTrade(trade(5_000_000));
+    await(() -> delivered.stream().allMatch(packets -> packets.size() == 1));
+
+    // When - 送信先を一時的に変えて連番2を取りこぼさせ、連番3で欠落に気付かせる
+    InetSocketAddress target =
+        (InetSocketAddress) ReflectionTestUtils.getField(publisher, "target");
+    ReflectionTestUtils.setField(
+        publisher, "target", new InetSocketAddress(GROUP, freeUdpPort()));
+    publisher.onTrade(trade(5_001_000));
+    ReflectionTestUtils.setField(publisher, "target", target);
+    publisher.onTrade(trade(5_002_000));
+
+    // Then - どちらの受信者も再送サーバーから連番2を取り寄せ、連番順に受け取る
+    await(() -> delivered.stream().allMatch(packets -> packets.size() == 3));
+    for (int i = 0; i < receivers.size(); i++) {
+      List<MarketDataPacket> packets = delivered.get(i);
+      assertEquals(List.of(1L, 2L, 3L), packets.stream().map(MarketDataPacket::getSeq).toList());
+      assertEquals(
+          List.of(5_000_000.0, 5_001_000.0, 5_002_000.0),
+          packets.stream().map(MarketDataPacket::getPrice).toList());
+      assertEquals("GMO:BTC_JPY", packets.get(1).getSymbol());
+      assertEquals(1L, receivers.get(i).getRecovered());
+      assertEquals(0L, receivers.get(i).getLost());
+      assertTrue(gaps.get(i).isEmpty());
+    }
+  }
+
+  @Test
+  void testHeartbeatRecoversTailLoss() throws Exception {
+    // Given
+    publisher.onTrade(trade(5_000_000));
+    await(() -> delivered.stream().allMatch(packets -> packets.size() == 1));
+
+    // When - 最後の約定を取りこぼし、その後はハートビートしか届かない
+    InetSocketAddress target =
+        (InetSocketAddress) ReflectionTestUtils.getField(publisher, "target");
+    ReflectionTestUtils.setField(
+        publisher, "target", new InetSocketAddress(GROUP, freeUdpPort()));
+    publisher.onTrade(trade(5_001_000));
+    ReflectionTestUtils.setField(publisher, "target", target);
+    publisher.sendHeartbeats();
+
+    // Then
+    await(() -> delivered.stream().allMatch(packets -> packets.size() == 2));
+    for (int i = 0; i < receivers.size(); i++) {
+      assertEquals(5_001_000.0, delivered.get(i).get(1).getPrice());
+      assertEquals(1L, receivers.get(i).getRecovered());
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for multicast packets");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  private static Trade trade(double price) {
+    Trade trade = new Trade();
+    trade.setExchange("GMO");
+    trade.setSymbol("BTC_JPY");
+    trade.setPrice(BigDecimal.valueOf(price));
+    trade.setSize(new BigDecimal("0.01"));
+    trade.setSide("BUY");
+    trade.setTimestamp(Instant.parse("2024-01-01T00:00:00Z"));
+    return trade;
+  }
+
+  private static int freeUdpPort() throws Exception {
+    try (DatagramSocket socket = new DatagramSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static int freeTcpPort() throws Exception {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.example.bitcoinmarketrecorder.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MulticastReceiverTest {
+
+  private static final String SYMBOL = "GMO:BTC";
+
+  private final PacketRing[] rings = new PacketRing[MarketDataPacket.CHANNEL_COUNT];
+  private final long[] seqs = new long[MarketDataPacket.CHANNEL_COUNT];
+  private final List<MarketDataPacket> delivered = new ArrayList<>();
+  private final List<long[]> gaps = new ArrayList<>();
+
+  private RetransmissionServer server;
+  private MulticastReceiver receiver;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    for (int i = 0; i < rings.length; i++) {
+      rings[i] = new PacketRing(4);
+    }
+    server = new RetransmissionServer(new InetSocketAddress("127.0.0.1", 0), rings);
+    receiver =
+        new MulticastReceiver(
+            "239.1.1.1",
+            0,
+            "",
+            new InetSocketAddress("127.0.0.1", server.getPort()),
+            new MulticastReceiver.Listener() {
+              @Override
+              public void onPacket(MarketDataPacket packet) {
+                delivered.add(packet);
+              }
+
+              @Override
+              public void onGap(int channel, long fromSeq, long toSeq) {
+                gaps.add(new long[] {channel, fromSeq, toSeq});
+              }
+            });
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    receiver.close();
+    server.close();
+  }
+
+  @Test
+  void testPacketRoundTrip() {
+    // Given
+    MarketDataPacket book =
+        MarketDataPacket.book(
+                SYMBOL,
+                1_700_000_000_000L,
+                new double[] {4_999_000, 4_998_000},
+                new double[] {0.5, 1.25},
+                new double[] {5_000_000},
+                new double[] {0.2})
+            .withSequence(42, MarketDataPacket.FLAG_SNAPSHOT);
+
+    // When
+    MarketDataPacket decoded = MarketDataPacket.decode(ByteBuffer.wrap(book.encode()));
+
+    // Then
+    assertEquals(MarketDataPacket.TYPE_BOOK, decoded.getType());
+    assertEquals(MarketDataPacket.CHANNEL_BOOK, decoded.getChannel());
+    assertEquals(42L, decoded.getSeq());
+    assertTrue(decoded.isSnapshot());
+    assertEquals(SYMBOL, decoded.getSymbol());
+    assertEquals(1_700_000_000_000L, decoded.getTimestamp());
+    assertArrayEquals(new double[] {4_999_000, 4_998_000}, decoded.getBidPrices());
+    assertArrayEquals(new double[] {0.5, 1.25}, decoded.getBidSizes());
+    assertArrayEquals(new double[] {5_000_000}, decoded.getAskPrices());
+    assertArrayEquals(new double[] {0.2}, decoded.getAskSizes());
+    assertThrows(
+        IllegalArgumentException.class, () -> MarketDataPacket.decode(ByteBuffer.allocate(8)));
+  }
+
+  @Test
+  void testMissingPacketsAreRecoveredInOrder() {
+    // Given - 連番1〜4のうち2と3を取りこぼす
+    byte[] first = publishTrade(100);
+    publishTrade(101);
+    publishTrade(102);
+    byte[] fourth = publishTrade(103);
+
+    // When
+    receiver.onDatagram(ByteBuffer.wrap(first));
+    receiver.onDatagram(ByteBuffer.wrap(fourth));
+    receiver.onDatagram(ByteBuffer.wrap(fourth)); // 重複
+
+    // Then
+    assertEquals(
+        List.of(1L, 2L, 3L, 4L), delivered.stream().map(MarketDataPacket::getSeq).toList());
+    assertEquals(101.0, delivered.get(1).getPrice());
+    assertEquals(2L, receiver.getRecovered());
+    assertEquals(0L, receiver.getLost());
+    assertTrue(gaps.isEmpty());
+  }
+
+  @Test
+  void testHeartbeatDetectsTailLossAndOverwrittenPacketsAreReported() {
+    // Given - 連番1を受信した後、2〜7を取りこぼす。リングは4件のため2と3は上書き済み
+    receiver.onDatagram(ByteBuffer.wrap(publishTrade(100)));
+    for (int i = 0; i < 6; i++) {
+      publishTrade(101 + i);
+    }
+
+    // When
+    receiver.onDatagram(
+        ByteBuffer.wrap(
+            MarketDataPacket.heartbeat(MarketDataPacket.CHANNEL_TRADE, 7, 0).encode()));
+
+    // Then
+    assertEquals(
+        List.of(1L, 4L, 5L, 6L, 7L), delivered.stream().map(MarketDataPacket::getSeq).toList());
+    assertEquals(1, gaps.size());
+    assertArrayEquals(new long[] {MarketDataPacket.CHANNEL_TRADE, 2, 3}, gaps.get(0));
+    assertEquals(2L, receiver.getLost());
+  }
+
+  private byte[] publishTrade(double price) {
+    int ch = MarketDataPacket.CHANNEL_TRADE;
+    long seq = ++seqs[ch];
+    byte[] bytes =
+        MarketDataPacket.trade(SYMBOL, seq, price, 0.01, MarketDataPacket.SIDE_BUY)
+            .withSequence(seq, (byte) 0)
+            .encode();
+    rings[ch].put(seq, bytes);
+    return bytes;
+  }
+}
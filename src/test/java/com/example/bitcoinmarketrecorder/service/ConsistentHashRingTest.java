@@ -0,0 +1,82 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ConsistentHashRingTest {
+
+  private static final int KEYS = 10_000;
+
+  @Test
+  void testAddingNodeMovesOnlyKeysToNewNode() {
+    // Given
+    ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+    ring.add("redis-a:6379", "A");
+    ring.add("redis-b:6379", "B");
+    ring.add("redis-c:6379", "C");
+    Map<String, String> before = assign(ring);
+
+    // When
+    ring.add("redis-d:6379", "D");
+
+    // Then - 移動するのは新しいノードに割り当たるキーだけで、おおよそ1/4になる
+    Map<String, String> after = assign(ring);
+    int moved = 0;
+    for (String key : before.keySet()) {
+      if (!before.get(key).equals(after.get(key))) {
+        assertEquals("D", after.get(key), key);
+        moved++;
+      }
+    }
+    assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.35, "moved=" + moved);
+  }
+
+  @Test
+  void testRemovingNodeMovesOnlyItsKeys() {
+    // Given
+    ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+    ring.add("redis-a:6379", "A");
+    ring.add("redis-b:6379", "B");
+    ring.add("redis-c:6379", "C");
+    Map<String, String> before = assign(ring);
+
+    // When
+    ring.remove("redis-b:6379");
+
+    // Then - Bに割り当たっていたキーだけが残りのノードに移る
+    Map<String, String> after = assign(ring);
+    for (String key : before.keySet()) {
+      if (before.get(key).equals("B")) {
+        assertNotEquals("B", after.get(key), key);
+      } else {
+        assertEquals(before.get(key), after.get(key), key);
+      }
+    }
+    assertEquals(2, ring.size());
+    assertFalse(ring.contains("redis-b:6379"));
+  }
+
+  @Test
+  void testEmptyRingAndInvalidNodes() {
+    ConsistentHashRing<String> ring = new ConsistentHashRing<>(10);
+    assertNull(ring.get("G_BTCJPY"));
+
+    ring.add("redis-a:6379", "A");
+    assertEquals("A", ring.get("G_BTCJPY"));
+    assertThrows(IllegalArgumentException.class, () -> ring.add("redis-a:6379", "A2"));
+    assertEquals("A", ring.get("G_BTCJPY"));
+    assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<String>(0));
+  }
+
+  private static Map<String, String> assign(ConsistentHashRing<String> ring) {
+    Map<String, String> assignments = new HashMap<>();
+    for (int i = 0; i < KEYS; i++) {
+      String key = "SYMBOL_" + i;
+      assignments.put(key, ring.get(key));
+    }
+    return assignments;
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MarketMakeConflatorTest {
+
+  @Mock private RedisPublisherService redisPublisherService;
+
+  @Spy private RedisPublisherProperties redisPublisherProperties = new RedisPublisherProperties();
+
+  @InjectMocks private MarketMakeConflator marketMakeConflator;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(redisPublisherService.isAvailable(any())).thenReturn(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    marketMakeConflator.shutdown();
+  }
+
+  @Test
+  void testBurstIsConflatedToLatestBook() throws Exception {
+    // Given
+    redisPublisherProperties.getMarketMake().setConflationIntervalMs(200);
+    String symbol = "G_BTCJPY";
+
+    // When - 間隔内に100件の板を連続で投入
+    ExchSimService.MarketMakeRequest last = null;
+    for (int i = 0; i < 100; i++) {
+      last = newRequest(symbol);
+      marketMakeConflator.publish(symbol, last);
+    }
+
+    // Then - 最初の1件と間隔経過後の最新1件のみが配信される
+    ArgumentCaptor<ExchSimService.MarketMakeRequest> captor =
+        ArgumentCaptor.forClass(ExchSimService.MarketMakeRequest.class);
+    verify(redisPublisherService, timeout(2000).atLeast(2))
+        .publishMarketMakeSync(eq(symbol), captor.capture());
+    Thread.sleep(500);
+    verify(redisPublisherService, atMost(2)).publishMarketMakeSync(eq(symbol), any());
+
+    List<ExchSimService.MarketMakeRequest> sent = captor.getAllValues();
+    assertSame(last, sent.get(sent.size() - 1), "The freshest book should be published last");
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> symbolStats =
+        (Map<String, Object>) marketMakeConflator.getStats().get(symbol);
+    assertEquals(100L, symbolStats.get("received"));
+    assertEquals(2L, symbolStats.get("published"));
+    assertEquals(98L, symbolStats.get("conflated"));
+    assertEquals(50.0, (double) symbolStats.get("conflationRatio"), 0.0001);
+  }
+
+  @Test
+  void testSymbolsAreConflatedIndependently() {
+    // Given
+    redisPublisherProperties.getMarketMake().setConflationIntervalMs(1000);
+
+    // When
+    marketMakeConflator.publish("G_BTCJPY", newRequest("G_BTCJPY"));
+    marketMakeConflator.publish("B_BTCJPY", newRequest("B_BTCJPY"));
+
+    // Then - 別シンボルの板は互いに間引かれない
+    verify(redisPublisherService, timeout(1000)).publishMarketMakeSync(eq("G_BTCJPY"), any());
+    verify(redisPublisherService, timeout(1000)).publishMarketMakeSync(eq("B_BTCJPY"), any());
+  }
+
+  @Test
+  void testLatestBookIsHeldWhileRedisIsUnavailable() throws Exception {
+    // Given - 配信先Redisが停止中
+    redisPublisherProperties.getMarketMake().setConflationIntervalMs(50);
+    String symbol = "G_BTCJPY";
+    when(redisPublisherService.isAvailable(symbol)).thenReturn(false);
+
+    // When
+    ExchSimService.MarketMakeRequest last = null;
+    for (int i = 0; i < 5; i++) {
+      last = newRequest(symbol);
+      marketMakeConflator.publish(symbol, last);
+      Thread.sleep(60);
+    }
+
+    // Then - 停止中は送らず、復旧後に最新の1件だけを送る
+    verify(redisPublisherService, never()).publishMarketMakeSync(any(), any());
+    when(redisPublisherService.isAvailable(symbol)).thenReturn(true);
+    verify(redisPublisherService, timeout(1000)).publishMarketMakeSync(symbol, last);
+    Thread.sleep(200);
+    verify(redisPublisherService, times(1)).publishMarketMakeSync(eq(symbol), any());
+  }
+
+  @Test
+  void testConflationDisabledPublishesEveryBook() {
+    // Given
+    redisPublisherProperties.getMarketMake().setConflationEnabled(false);
+    String symbol = "G_BTCJPY";
+
+    // When
+    for (int i = 0; i < 3; i++) {
+      marketMakeConflator.publish(symbol, newRequest(symbol));
+    }
+
+    // Then
+    verify(redisPublisherService, times(3)).publishMarketMake(eq(symbol), any());
+    verify(redisPublisherService, never()).publishMarketMakeSync(any(), any());
+  }
+
+  private ExchSimService.MarketMakeRequest newRequest(String symbol) {
+    ExchSimService.MarketMakeRequest request = new ExchSimService.MarketMakeRequest();
+    request.setSymbol(symbol);
+    return request;
+  }
+}
@@ -0,0 +1,113 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MarketMakeDeltaEncoderTest {
+
+  private static final String SYMBOL = "G_BTCJPY";
+
+  @Spy private RedisPublisherProperties redisPublisherProperties = new RedisPublisherProperties();
+
+  @Mock private RedisSubscriberTracker redisSubscriberTracker;
+
+  @InjectMocks private MarketMakeDeltaEncoder encoder;
+
+  @BeforeEach
+  void setUp() {
+    redisPublisherProperties.getMarketMake().setDeltaEnabled(true);
+    redisPublisherProperties.getMarketMake().setFullRefreshIntervalMs(60_000);
+    lenient()
+        .when(redisSubscriberTracker.getSubscriberCount("market-make:" + SYMBOL))
+        .thenReturn(1L);
+  }
+
+  @Test
+  void testFirstUpdateIsSnapshotAndUnchangedBookIsSkipped() {
+    // When
+    MarketMakeDeltaEncoder.Update first = encoder.encode(SYMBOL, book(100, 101, 1.0));
+    MarketMakeDeltaEncoder.Update second = encoder.encode(SYMBOL, book(100, 101, 1.0));
+
+    // Then
+    assertEquals(MarketMakeDeltaEncoder.TYPE_SNAPSHOT, first.getType());
+    assertEquals(1L, first.getSeq());
+    assertEquals(8, first.getBidLevels().size());
+    assertNull(first.getBidRemoves());
+    assertNull(second, "An unchanged book should not be published");
+  }
+
+  @Test
+  void testDeltaContainsOnlyChangedAndRemovedLevels() {
+    // Given
+    encoder.encode(SYMBOL, book(100, 101, 1.0));
+
+    // When - 最良買いの数量だけが変化
+    ExchSimService.MarketMakeRequest changed = book(100, 101, 1.0);
+    changed.getBidLevels().get(0).setQuantity(2.5);
+    MarketMakeDeltaEncoder.Update quantityDelta = encoder.encode(SYMBOL, changed);
+
+    // When - 売り板が1段上がり、最も遠い価格帯が上位から外れる
+    ExchSimService.MarketMakeRequest shifted = book(100, 102, 1.0);
+    shifted.getBidLevels().get(0).setQuantity(2.5);
+    MarketMakeDeltaEncoder.Update shiftDelta = encoder.encode(SYMBOL, shifted);
+
+    // Then
+    assertEquals(MarketMakeDeltaEncoder.TYPE_DELTA, quantityDelta.getType());
+    assertEquals(2L, quantityDelta.getSeq());
+    assertEquals(1, quantityDelta.getBidLevels().size());
+    assertEquals(2.5, quantityDelta.getBidLevels().get(0).getQuantity());
+    assertTrue(quantityDelta.getAskLevels().isEmpty());
+
+    assertEquals(3L, shiftDelta.getSeq());
+    assertEquals(1, shiftDelta.getAskLevels().size());
+    assertEquals(109.0, shiftDelta.getAskLevels().get(0).getPrice());
+    assertEquals(List.of(101.0), shiftDelta.getAskRemoves());
+    assertTrue(shiftDelta.getBidLevels().isEmpty());
+  }
+
+  @Test
+  void testSnapshotIsResentAfterInvalidateOrNewSubscriber() {
+    // Given
+    encoder.encode(SYMBOL, book(100, 101, 1.0));
+
+    // When - 配信失敗
+    encoder.invalidate(SYMBOL);
+    MarketMakeDeltaEncoder.Update afterFailure = encoder.encode(SYMBOL, book(100, 101, 1.0));
+
+    // When - 購読者が増加
+    when(redisSubscriberTracker.getSubscriberCount("market-make:" + SYMBOL)).thenReturn(2L);
+    MarketMakeDeltaEncoder.Update afterSubscribe = encoder.encode(SYMBOL, book(100, 101, 1.0));
+
+    // Then - 連番は途切れずに全件を送り直す
+    assertEquals(MarketMakeDeltaEncoder.TYPE_SNAPSHOT, afterFailure.getType());
+    assertEquals(2L, afterFailure.getSeq());
+    assertEquals(MarketMakeDeltaEncoder.TYPE_SNAPSHOT, afterSubscribe.getType());
+    assertEquals(3L, afterSubscribe.getSeq());
+  }
+
+  private ExchSimService.MarketMakeRequest book(double bestBid, double bestAsk, double quantity) {
+    List<ExchSimService.PriceLevel> bids = new ArrayList<>();
+    List<ExchSimService.PriceLevel> asks = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      bids.add(new ExchSimService.PriceLevel(bestBid - i, quantity));
+      asks.add(new ExchSimService.PriceLevel(bestAsk + i, quantity));
+    }
+    ExchSimService.MarketMakeRequest request = new ExchSimService.MarketMakeRequest();
+    request.setSymbol(SYMBOL);
+    request.setBidLevels(bids);
+    request.setAskLevels(asks);
+    return request;
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RecordedDataCatalogTest {
+
+  private static final String HEADER =
+      "exchange,symbol,trade_id,price,size,side,timestamp,created_at";
+
+  @TempDir Path csvDir;
+
+  private final RecordedDataCatalog catalog = new RecordedDataCatalog();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    ReflectionTestUtils.setField(catalog, "csvDir", csvDir.toString());
+    StringBuilder csv = new StringBuilder(HEADER).append('\n');
+    for (int i = 0; i < 100; i++) {
+      csv.append(tradeRow(i)).append('\n');
+    }
+    Files.writeString(csvDir.resolve("trades_20240101_09.csv"), csv, StandardCharsets.UTF_8);
+    Files.writeString(csvDir.resolve("best_bid_ask_20240101_09.csv"), "", StandardCharsets.UTF_8);
+    Files.writeString(csvDir.resolve("trades_20240102_00.csv"), HEADER + "\n");
+    Files.writeString(csvDir.resolve("notes.txt"), "not a recording");
+  }
+
+  @Test
+  void testListFiltersByStreamAndDate() throws Exception {
+    // When
+    List<RecordedDataCatalog.Segment> trades =
+        catalog.list(RecordedDataCatalog.RecordedStream.TRADES, (LocalDate) null);
+    List<RecordedDataCatalog.Segment> firstDay = catalog.list(null, LocalDate.of(2024, 1, 1));
+
+    // Then
+    assertEquals(
+        List.of("trades_20240101_09.csv", "trades_20240102_00.csv"),
+        trades.stream().map(RecordedDataCatalog.Segment::getName).toList());
+    assertEquals(2, firstDay.size());
+    assertTrue(catalog.find("trades_20240101_09.csv").isPresent());
+    assertTrue(catalog.find("../trades_20240101_09.csv").isEmpty());
+    assertTrue(catalog.find("notes.txt").isEmpty());
+  }
+
+  @Test
+  void testLocateFindsFirstRowAtOrAfterTimestamp() throws Exception {
+    Path file = csvDir.resolve("trades_20240101_09.csv");
+    try (FileChannel channel = RecordedDataCatalog.open(file)) {
+      long size = channel.size();
+      long dataStart = RecordedDataCatalog.dataStart(channel);
+
+      // When
+      long start = RecordedDataCatalog.locate(channel, dataStart, size, 6, timestamp(40));
+      long end = RecordedDataCatalog.locate(channel, start, size, 6, timestamp(45));
+      long beforeAll = RecordedDataCatalog.locate(channel, dataStart, size, 6, timestamp(-1));
+      long afterAll = RecordedDataCatalog.locate(channel, dataStart, size, 6, timestamp(1000));
+
+      // Then
+      String content = Files.readString(file);
+      assertEquals(HEADER.length() + 1, dataStart);
+      assertEquals(content.indexOf(tradeRow(40)), start);
+      assertEquals(content.indexOf(tradeRow(45)), end);
+      assertEquals(dataStart, beforeAll);
+      assertEquals(size, afterAll);
+    }
+  }
+
+  private static String tradeRow(int i) {
+    return "gmo,BTC," + i + ",5000000,0.01000000,BUY," + timestamp(i) + "," + timestamp(i);
+  }
+
+  private static Instant timestamp(int second) {
+    return Instant.parse("2024-01-01T00:00:00Z").plusSeconds(second);
+  }
+}
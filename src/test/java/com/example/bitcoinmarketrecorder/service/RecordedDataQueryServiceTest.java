@@ -0,0 +1,135 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataQueryService.Format;
+import com.example.bitcoinmarketrecorder.service.RecordedDataQueryService.Query;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RecordedDataQueryServiceTest {
+
+  // 記録ファイルの時間帯はローカル時刻のため、テストデータもローカル時刻の正時から作る
+  private static final Instant BASE =
+      LocalDateTime.of(2024, 1, 1, 9, 0).atZone(ZoneId.systemDefault()).toInstant();
+
+  @TempDir Path csvDir;
+
+  private final RecordedDataCatalog catalog = new RecordedDataCatalog();
+  private final RecordedDataQueryService service = new RecordedDataQueryService();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    ReflectionTestUtils.setField(catalog, "csvDir", csvDir.toString());
+    ReflectionTestUtils.setField(service, "recordedDataCatalog", catalog);
+    // 9時台と10時台のファイルに、30秒ごとにGMOとBITFLYERの約定を交互に書く
+    for (int hour = 0; hour < 2; hour++) {
+      StringBuilder csv = new StringBuilder(String.join(",", RecordedStream.TRADES.getColumns()));
+      csv.append('\n');
+      for (int i = 0; i < 120; i++) {
+        Instant timestamp = BASE.plusSeconds(hour * 3600L + i * 30L);
+        String exchange = i % 2 == 0 ? "GMO" : "BITFLYER";
+        csv.append(exchange)
+            .append(",BTC,")
+            .append(hour * 1000 + i)
+            .append(",5000000,0.01000000,BUY,")
+            .append(timestamp)
+            .append(',')
+            .append(timestamp)
+            .append('\n');
+      }
+      // 書き込み途中の最終行
+      csv.append("GMO,BTC,999999,50000");
+      String name =
+          "trades_"
+              + LocalDateTime.of(2024, 1, 1, 9 + hour, 0)
+                  .format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+              + ".csv";
+      Files.writeString(csvDir.resolve(name), csv, StandardCharsets.UTF_8);
+    }
+  }
+
+  @Test
+  void testQueryAcrossFilesWithFilterAndProjection() {
+    // Given - 9:59:00から10:01:00までのGMOの約定
+    Query query =
+        new Query(
+            RecordedStream.TRADES,
+            "gmo",
+            "BTC",
+            BASE.plusSeconds(3540),
+            BASE.plusSeconds(3660),
+            List.of("trade_id", "price"),
+            100,
+            Format.CSV);
+
+    // When
+    String result = run(query);
+
+    // Then - 9時台の最後のGMO（118）と10時台の最初のGMO（1000）。10:01:00ちょうどは含まない
+    assertEquals("trade_id,price\n118,5000000\n1000,5000000\n", result);
+  }
+
+  @Test
+  void testNdjsonStopsAtLimit() {
+    // Given
+    Query query =
+        new Query(
+            RecordedStream.TRADES,
+            null,
+            null,
+            BASE,
+            BASE.plusSeconds(7200),
+            List.of("exchange", "size"),
+            3,
+            Format.NDJSON);
+
+    // When
+    String result = run(query);
+
+    // Then
+    assertEquals(
+        "{\"exchange\":\"GMO\",\"size\":0.01000000}\n"
+            + "{\"exchange\":\"BITFLYER\",\"size\":0.01000000}\n"
+            + "{\"exchange\":\"GMO\",\"size\":0.01000000}\n",
+        result);
+  }
+
+  @Test
+  void testUnknownColumnIsRejected() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new Query(
+                RecordedStream.TRADES,
+                null,
+                null,
+                BASE,
+                BASE.plusSeconds(60),
+                List.of("bid1"),
+                10,
+                Format.CSV));
+  }
+
+  private String run(Query query) {
+    return String.join(
+        "",
+        service
+            .query(query, DefaultDataBufferFactory.sharedInstance)
+            .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+            .collectList()
+            .block());
+  }
+}
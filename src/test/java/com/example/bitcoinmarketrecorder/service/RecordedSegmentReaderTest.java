@@ -0,0 +1,87 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.RecordedStream;
+import com.example.bitcoinmarketrecorder.service.RecordedDataCatalog.Segment;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RecordedSegmentReaderTest {
+
+  private static final Instant BASE = Instant.parse("2024-01-01T09:00:00Z");
+
+  @TempDir Path csvDir;
+
+  private final List<Segment> segments = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    // 1分ごとの約定を、1つ目のファイルに0〜9、2つ目に10〜19として書く
+    for (int file = 0; file < 2; file++) {
+      StringBuilder csv = new StringBuilder(String.join(",", RecordedStream.TRADES.getColumns()));
+      csv.append('\n');
+      for (int i = file * 10; i < file * 10 + 10; i++) {
+        csv.append(tradeRow(i)).append('\n');
+      }
+      // 書き込み途中の最終行
+      csv.append("GMO,BTC,999999,50000");
+      Path path = csvDir.resolve("trades_20240101_0" + file + ".csv");
+      Files.writeString(path, csv, StandardCharsets.UTF_8);
+      segments.add(
+          new Segment(
+              RecordedStream.TRADES,
+              path,
+              LocalDateTime.of(2024, 1, 1, file, 0),
+              ZoneOffset.UTC));
+    }
+  }
+
+  @Test
+  void testReadsCompleteLinesFromWriteLagBeforeStart() throws Exception {
+    // Given - 5分から。受信順の前後を考慮して1分前の行から読む
+    List<String> lines = new ArrayList<>();
+    try (RecordedSegmentReader reader =
+        new RecordedSegmentReader(segments, BASE.plusSeconds(5 * 60))) {
+
+      // When
+      String line;
+      while ((line = reader.nextLine()) != null) {
+        lines.add(line);
+      }
+    }
+
+    // Then - 2つのファイルを続けて読み、書き込み途中の最終行は読まない
+    assertEquals(16, lines.size());
+    assertEquals(tradeRow(4), lines.get(0));
+    assertEquals(tradeRow(19), lines.get(15));
+  }
+
+  @Test
+  void testSkipSegmentMovesToNextFile() throws Exception {
+    try (RecordedSegmentReader reader = new RecordedSegmentReader(segments, BASE)) {
+      // Given
+      assertEquals(tradeRow(0), reader.nextLine());
+
+      // When
+      reader.skipSegment();
+
+      // Then
+      assertEquals(tradeRow(10), reader.nextLine());
+    }
+  }
+
+  private static String tradeRow(int i) {
+    Instant timestamp = BASE.plusSeconds(i * 60L);
+    return "GMO,BTC," + i + ",5000000,0.01000000,BUY," + timestamp + "," + timestamp;
+  }
+}
@@ -2,6 +2,7 @@ package com.example.bitcoinmarketrecorder.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.example.bitcoinmarketrecorder.config.ExchSimProperties;
 import com.example.bitcoinmarketrecorder.config.RedisConfig;
 import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
 import com.example.bitcoinmarketrecorder.model.MarketBoard;
@@ -22,7 +23,17 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.test.context.TestPropertySource;
 
 @SpringBootTest(
-    classes = {RedisConfig.class, RedisPublisherService.class, RedisPublisherProperties.class})
+    classes = {
+      RedisConfig.class,
+      RedisPublisherService.class,
+      RedisPublisherProperties.class,
+      ExchSimProperties.class,
+      RedisShardRouter.class,
+      RedisSnapshotWriter.class,
+      RedisPublishWorker.class,
+      MarketMakeDeltaEncoder.class,
+      RedisSubscriberTracker.class
+    })
 @TestPropertySource(
     properties = {
       "redis.host=localhost",
@@ -0,0 +1,226 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+@ExtendWith(MockitoExtension.class)
+class RedisPublishWorkerTest {
+
+  private static final String ENDPOINT = "redis-a:6379";
+
+  @TempDir Path dir;
+
+  @Mock private RedisShardRouter redisShardRouter;
+
+  @Mock private RedisTemplate<String, Object> template;
+
+  @Mock private RedisConnection connection;
+
+  @Mock private RedisSnapshotWriter redisSnapshotWriter;
+
+  @Mock private MarketMakeDeltaEncoder marketMakeDeltaEncoder;
+
+  @Spy private RedisPublisherProperties redisPublisherProperties = new RedisPublisherProperties();
+
+  @InjectMocks private RedisPublishWorker redisPublishWorker;
+
+  private RedisShard shard;
+  // 停止中のRedisを模擬する。trueの間はパイプラインの実行が失敗する
+  private volatile boolean down;
+  private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeEach
+  void setUp() {
+    redisPublisherProperties.getSpool().setDir(dir.toString());
+    shard = new RedisShard(ENDPOINT, template, null, null);
+    lenient().when(redisShardRouter.getShards()).thenReturn(List.of(shard));
+    lenient().when(redisShardRouter.shardFor(anyString())).thenReturn(shard);
+    lenient().doReturn(new StringRedisSerializer()).when(template).getValueSerializer();
+    lenient().when(template.getStringSerializer()).thenReturn(new StringRedisSerializer());
+    lenient()
+        .when(template.executePipelined(any(RedisCallback.class)))
+        .thenAnswer(
+            inv -> {
+              if (down) {
+                throw new RuntimeException("Connection refused");
+              }
+              inv.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+              return List.of();
+            });
+    lenient()
+        .when(connection.publish(any(), any()))
+        .thenAnswer(
+            inv -> {
+              published.add(new String(inv.<byte[]>getArgument(1), StandardCharsets.UTF_8));
+              return 1L;
+            });
+  }
+
+  @AfterEach
+  void tearDown() {
+    redisPublishWorker.shutdown();
+  }
+
+  @Test
+  void testMessagesDuringOutageAreReplayedInOrderAfterRecovery() throws Exception {
+    // Given - Redisが停止している
+    down = true;
+    redisPublishWorker.start();
+
+    // When - 停止中の約定はスプールへ退避する
+    for (int i = 0; i < 5; i++) {
+      assertTrue(redisPublishWorker.submit(trade(i, System.currentTimeMillis())));
+    }
+    awaitStat("spooled", 5);
+    assertFalse(shard.isHealthy());
+    assertTrue(published.isEmpty());
+
+    // When - ヘルスチェックで復旧を検知した後に新しいメッセージが届く
+    down = false;
+    shard.markHealthy(true);
+    for (int i = 5; i < 10; i++) {
+      redisPublishWorker.submit(trade(i, System.currentTimeMillis()));
+    }
+
+    // Then - 退避分を再送してから新しいメッセージを配信する
+    verify(connection, timeout(5000).times(10)).publish(any(), any());
+    assertEquals(seqs(0, 10), published);
+    awaitStat("replayed", 5);
+    assertEquals(0L, spoolRecords());
+  }
+
+  @Test
+  void testStaleBoardIsExpiredButTradeIsReplayed() throws Exception {
+    // Given - 1秒より古い板更新は再送しない
+    redisPublisherProperties.getSpool().setBoardMaxAgeMs(1000);
+    down = true;
+    redisPublishWorker.start();
+    long now = System.currentTimeMillis();
+    redisPublishWorker.submit(board(0, now - 10_000));
+    redisPublishWorker.submit(trade(1, now - 10_000));
+    redisPublishWorker.submit(board(2, now));
+    awaitStat("spooled", 3);
+
+    // When
+    down = false;
+    shard.markHealthy(true);
+
+    // Then
+    verify(connection, timeout(5000).times(2)).publish(any(), any());
+    awaitStat("expired", 1);
+    assertEquals(List.of(payload(1), payload(2)), published);
+    assertEquals(0L, spoolRecords());
+    // 破棄した差分の分だけ購読側の板がずれるため、次回は全件を送る
+    verify(marketMakeDeltaEncoder).invalidate("G_BTCJPY");
+  }
+
+  @Test
+  void testDroppedBoardForcesFullRefresh() throws Exception {
+    // Given - スプールが無効で、Redisが停止している
+    redisPublisherProperties.getSpool().setEnabled(false);
+    down = true;
+    redisPublishWorker.start();
+
+    // When
+    redisPublishWorker.submit(board(0, System.currentTimeMillis()));
+    redisPublishWorker.submit(trade(1, System.currentTimeMillis()));
+
+    // Then - 板更新を破棄した場合だけ全件配信に戻す
+    awaitStat("dropped", 2);
+    verify(marketMakeDeltaEncoder, timeout(1000).times(1)).invalidate("G_BTCJPY");
+  }
+
+  @Test
+  void testSpoolLeftByPreviousRunIsReplayedBeforeNewMessages() throws Exception {
+    // Given - 前回の停止時に未送信のメッセージが残っている
+    RedisSpool previous =
+        new RedisSpool(
+            dir.resolve("redis-a_6379"),
+            redisPublisherProperties.getSpool().getMaxBytes(),
+            redisPublisherProperties.getSpool().getSegmentBytes());
+    for (int i = 0; i < 3; i++) {
+      previous.append(trade(i, System.currentTimeMillis()));
+    }
+    previous.close();
+
+    // When - 起動直後に新しいメッセージが届く
+    redisPublishWorker.start();
+    redisPublishWorker.submit(trade(3, System.currentTimeMillis()));
+
+    // Then
+    verify(connection, timeout(5000).times(4)).publish(any(), any());
+    assertEquals(seqs(0, 4), published);
+    assertEquals(0L, spoolRecords());
+  }
+
+  private void awaitStat(String name, long expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (((Number) redisPublishWorker.getStats().get(name)).longValue() < expected) {
+      if (System.currentTimeMillis() > deadline) {
+        fail(name + " did not reach " + expected + ": " + redisPublishWorker.getStats());
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private long spoolRecords() {
+    Map<String, Object> spools = (Map<String, Object>) redisPublishWorker.getStats().get("spools");
+    return (Long) ((Map<String, Object>) spools.get(ENDPOINT)).get("records");
+  }
+
+  private static List<String> seqs(int from, int to) {
+    List<String> payloads = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      payloads.add(payload(i));
+    }
+    return payloads;
+  }
+
+  private static String payload(int seq) {
+    return "{\"seq\":" + seq + "}";
+  }
+
+  private static RedisOutboundMessage trade(int seq, long timestamp) {
+    return new RedisOutboundMessage(
+        RedisOutboundMessage.Type.TRADE_INSERT,
+        "G_BTCJPY",
+        "trade-insert:G_BTCJPY",
+        payload(seq),
+        timestamp,
+        null);
+  }
+
+  private static RedisOutboundMessage board(int seq, long timestamp) {
+    return new RedisOutboundMessage(
+        RedisOutboundMessage.Type.MARKET_MAKE,
+        "G_BTCJPY",
+        "market-make:G_BTCJPY",
+        payload(seq),
+        timestamp,
+        null);
+  }
+}
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 
 import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -21,6 +22,14 @@ class RedisPublisherServiceTest {
 
   @Mock private RedisPublisherProperties redisPublisherProperties;
 
+  @Mock private RedisSnapshotWriter redisSnapshotWriter;
+
+  @Mock private RedisShardRouter redisShardRouter;
+
+  @Mock private RedisPublishWorker redisPublishWorker;
+
+  @Mock private MarketMakeDeltaEncoder marketMakeDeltaEncoder;
+
   @InjectMocks private RedisPublisherService redisPublisherService;
 
   private ObjectMapper objectMapper = new ObjectMapper();
@@ -190,4 +199,62 @@ class RedisPublisherServiceTest {
           redisPublisherService.publishTradeInsertSync(symbol, request);
         });
   }
+
+  @Test
+  void testMarketMakeRejectedByWorkerInvalidatesDelta() {
+    // Given - 2件目は配信キューが満杯で受け付けられない
+    when(redisPublisherProperties.isEnabled()).thenReturn(true);
+    when(redisPublisherProperties.getMarketMake())
+        .thenReturn(new RedisPublisherProperties.MarketMake());
+    when(redisPublishWorker.submit(any())).thenReturn(true, false);
+
+    // When
+    redisPublisherService.publishMarketMake("BTC_JPY", book(5_000_000));
+    redisPublisherService.publishMarketMake("BTC_JPY", book(5_001_000));
+
+    // Then - 届かなかった差分の次は全件を送らせる
+    verify(redisPublishWorker, times(2)).submit(any());
+    verify(marketMakeDeltaEncoder, times(1)).invalidate("BTC_JPY");
+  }
+
+  @Test
+  void testUnchangedMarketMakeIsNotQueued() {
+    // Given - 差分配信が有効で、板に変化がない
+    when(redisPublisherProperties.isEnabled()).thenReturn(true);
+    when(redisPublisherProperties.getMarketMake())
+        .thenReturn(new RedisPublisherProperties.MarketMake());
+    when(marketMakeDeltaEncoder.isEnabled()).thenReturn(true);
+    when(marketMakeDeltaEncoder.encode(eq("BTC_JPY"), any())).thenReturn(null);
+
+    // When
+    redisPublisherService.publishMarketMake("BTC_JPY", book(5_000_000));
+
+    // Then
+    verify(redisPublishWorker, never()).submit(any());
+  }
+
+  @Test
+  void testAsyncPublishIsQueuedOnWorker() {
+    // Given
+    when(redisPublisherProperties.isEnabled()).thenReturn(true);
+
+    // When
+    redisPublisherService.publish("BTC_JPY", "bars:BTC_JPY", "{}");
+
+    // Then - 呼び出し元のスレッドでは送らず、配信キューに入れる
+    ArgumentCaptor<RedisOutboundMessage> captor =
+        ArgumentCaptor.forClass(RedisOutboundMessage.class);
+    verify(redisPublishWorker).submit(captor.capture());
+    assertEquals(RedisOutboundMessage.Type.OTHER, captor.getValue().getType());
+    assertEquals("bars:BTC_JPY", captor.getValue().getChannel());
+    verify(redisTemplate, never()).convertAndSend(any(), any());
+  }
+
+  private static ExchSimService.MarketMakeRequest book(double bid) {
+    ExchSimService.MarketMakeRequest request = new ExchSimService.MarketMakeRequest();
+    request.setSymbol("BTC_JPY");
+    request.setBidLevels(List.of(new ExchSimService.PriceLevel(bid, 0.5)));
+    request.setAskLevels(List.of(new ExchSimService.PriceLevel(bid + 1000, 0.3)));
+    return request;
+  }
 }
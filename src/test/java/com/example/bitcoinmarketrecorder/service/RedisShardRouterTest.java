@@ -0,0 +1,146 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.ExchSimProperties;
+import com.example.bitcoinmarketrecorder.config.RedisConfig;
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import io.lettuce.core.RedisClient;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class RedisShardRouterTest {
+
+  @Mock private RedisTemplate<String, Object> redisTemplate;
+
+  @Mock private RedisClient customRedisClient;
+
+  @Spy private RedisPublisherProperties redisPublisherProperties = new RedisPublisherProperties();
+
+  @Spy private ExchSimProperties exchSimProperties = new ExchSimProperties();
+
+  @InjectMocks private RedisShardRouter redisShardRouter;
+
+  private MockedStatic<RedisConfig> redisConfig;
+
+  @BeforeEach
+  void setUp() {
+    Map<String, String> mapping = new HashMap<>();
+    for (int i = 0; i < 40; i++) {
+      mapping.put("PAIR_" + i, "G_PAIR" + i);
+    }
+    exchSimProperties.setSymbolMapping(Map.of("GMO", mapping));
+    redisConfig = mockStatic(RedisConfig.class);
+  }
+
+  @AfterEach
+  void tearDown() {
+    redisConfig.close();
+  }
+
+  /** エンドポイントを設定し、エンドポイントごとの接続は作らずにモックを返す。 */
+  private void endpoints(String... endpoints) {
+    redisPublisherProperties.getSharding().setEndpoints(List.of(endpoints));
+    redisConfig
+        .when(() -> RedisConfig.createConnectionFactory(anyString(), anyInt(), any(), anyInt()))
+        .thenAnswer(inv -> mock(LettuceConnectionFactory.class));
+    redisConfig
+        .when(() -> RedisConfig.createTemplate(any()))
+        .thenAnswer(inv -> mock(RedisTemplate.class));
+    redisConfig
+        .when(() -> RedisConfig.createRedisClient(anyString(), anyInt(), any(), anyInt()))
+        .thenAnswer(inv -> mock(RedisClient.class));
+  }
+
+  @Test
+  void testEachSymbolIsAssignedToOneEndpoint() {
+    // Given
+    endpoints("redis-a:6379", "redis-b:6379", "redis-c:6379");
+
+    // When
+    redisShardRouter.initialize();
+
+    // Then - 全てのシンボルがいずれか1台に割り当たり、何度引いても同じ接続を返す
+    Map<String, String> assignments = redisShardRouter.getAssignments();
+    assertEquals(40, assignments.size());
+    for (Map.Entry<String, String> entry : assignments.entrySet()) {
+      RedisShard shard = redisShardRouter.shardFor(entry.getKey());
+      assertEquals(entry.getValue(), shard.getName());
+      assertSame(shard, redisShardRouter.shardFor(entry.getKey()));
+    }
+    assertEquals(3, assignments.values().stream().distinct().count());
+    assertEquals(3, redisShardRouter.getShards().size());
+  }
+
+  @Test
+  void testAddEndpointMovesSymbolsOnlyToNewEndpoint() {
+    // Given
+    endpoints("redis-a:6379", "redis-b:6379");
+    redisShardRouter.initialize();
+    Map<String, String> before = redisShardRouter.getAssignments();
+
+    // When
+    Map<String, String> moved = redisShardRouter.addEndpoint(" redis-c:6379 ");
+
+    // Then - 返り値は移動したシンボルだけで、移動先は全て新しいエンドポイント
+    assertFalse(moved.isEmpty());
+    Map<String, String> after = redisShardRouter.getAssignments();
+    for (Map.Entry<String, String> entry : after.entrySet()) {
+      if (moved.containsKey(entry.getKey())) {
+        assertEquals("redis-c:6379", entry.getValue());
+        assertNotEquals("redis-c:6379", before.get(entry.getKey()));
+      } else {
+        assertEquals(before.get(entry.getKey()), entry.getValue());
+      }
+    }
+  }
+
+  @Test
+  void testDuplicateEndpointIsRejectedBeforeConnecting() {
+    // Given
+    endpoints("redis-a:6379", "redis-b:6379");
+    redisShardRouter.initialize();
+
+    // When / Then
+    assertThrows(
+        IllegalArgumentException.class, () -> redisShardRouter.addEndpoint("redis-a:6379"));
+
+    // 起動時の1回だけで、重複したエンドポイントの接続は作らない
+    redisConfig.verify(
+        () -> RedisConfig.createConnectionFactory(eq("redis-a"), eq(6379), any(), anyInt()),
+        times(1));
+    redisConfig.verify(
+        () -> RedisConfig.createRedisClient(eq("redis-a"), eq(6379), any(), anyInt()), times(1));
+    assertEquals(2, redisShardRouter.getShards().size());
+  }
+
+  @Test
+  void testWithoutEndpointsPublishesToDefaultRedis() {
+    // When
+    redisShardRouter.initialize();
+
+    // Then
+    RedisShard shard = redisShardRouter.shardFor("G_PAIR0");
+    assertSame(redisTemplate, shard.getTemplate());
+    assertEquals(1, redisShardRouter.getShards().size());
+    redisConfig.verifyNoInteractions();
+  }
+}
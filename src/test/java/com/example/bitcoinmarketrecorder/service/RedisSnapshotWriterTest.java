@@ -0,0 +1,249 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class RedisSnapshotWriterTest {
+
+  @Mock private RedisShardRouter redisShardRouter;
+
+  @Mock private RedisShard shardA;
+
+  @Mock private RedisShard shardB;
+
+  @Mock private RedisTemplate<String, Object> templateA;
+
+  @Mock private RedisTemplate<String, Object> templateB;
+
+  @Mock private RedisConnection connectionA;
+
+  @Mock private RedisConnection connectionB;
+
+  @Mock private RedisStringCommands commandsA;
+
+  @Mock private RedisStringCommands commandsB;
+
+  @Spy private RedisPublisherProperties redisPublisherProperties = new RedisPublisherProperties();
+
+  @InjectMocks private RedisSnapshotWriter redisSnapshotWriter;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    // G_BTCJPYとB_BTCJPYはshardA、G_ETHJPYはshardBに割り当たる
+    lenient().when(redisShardRouter.shardFor("G_BTCJPY")).thenReturn(shardA);
+    lenient().when(redisShardRouter.shardFor("B_BTCJPY")).thenReturn(shardA);
+    lenient().when(redisShardRouter.shardFor("G_ETHJPY")).thenReturn(shardB);
+    lenient().when(shardA.getTemplate()).thenReturn(templateA);
+    lenient().when(shardB.getTemplate()).thenReturn(templateB);
+    lenient().when(connectionA.stringCommands()).thenReturn(commandsA);
+    lenient().when(connectionB.stringCommands()).thenReturn(commandsB);
+    // 渡されたコールバックをシャードごとの接続で実行する
+    lenient()
+        .when(templateA.execute(any(RedisCallback.class)))
+        .thenAnswer(inv -> inv.<RedisCallback<?>>getArgument(0).doInRedis(connectionA));
+    lenient()
+        .when(templateB.execute(any(RedisCallback.class)))
+        .thenAnswer(inv -> inv.<RedisCallback<?>>getArgument(0).doInRedis(connectionB));
+  }
+
+  @Test
+  void testFlushGroupsLatestStateByShard() throws Exception {
+    // Given
+    redisSnapshotWriter.recordMarketMake("G_BTCJPY", book(5_000_000, 5_001_000));
+    redisSnapshotWriter.recordTradeInsert("G_BTCJPY", trade(5_000_500, 0.2, "BUY"));
+    redisSnapshotWriter.recordMarketMake("B_BTCJPY", book(4_999_000, 5_002_000));
+    redisSnapshotWriter.recordMarketMake("G_ETHJPY", book(300_000, 300_100));
+
+    // When
+    redisSnapshotWriter.flushPending();
+
+    // Then - シャードごとに1回のMSETにまとまる
+    Map<String, JsonNode> valuesA = captureMSet(commandsA);
+    assertEquals(
+        List.of(
+            "latest:bbo:B_BTCJPY",
+            "latest:bbo:G_BTCJPY",
+            "latest:book:B_BTCJPY",
+            "latest:book:G_BTCJPY",
+            "latest:trade:G_BTCJPY"),
+        valuesA.keySet().stream().sorted().toList());
+    Map<String, JsonNode> valuesB = captureMSet(commandsB);
+    assertEquals(
+        List.of("latest:bbo:G_ETHJPY", "latest:book:G_ETHJPY"),
+        valuesB.keySet().stream().sorted().toList());
+
+    JsonNode bbo = valuesA.get("latest:bbo:G_BTCJPY");
+    assertEquals("G_BTCJPY", bbo.get("symbol").asText());
+    assertEquals(5_000_000, bbo.get("bid").asDouble());
+    assertEquals(0.5, bbo.get("bidSize").asDouble());
+    assertEquals(5_001_000, bbo.get("ask").asDouble());
+    assertTrue(bbo.get("ts").asLong() > 0);
+    JsonNode trade = valuesA.get("latest:trade:G_BTCJPY");
+    assertEquals(5_000_500, trade.get("price").asDouble());
+    assertEquals(0.2, trade.get("quantity").asDouble());
+    assertEquals("BUY", trade.get("side").asText());
+  }
+
+  @Test
+  void testBookIsTruncatedToDepthAndBboNeedsBothSides() throws Exception {
+    // Given - 上位2件だけを保持する
+    redisPublisherProperties.getSnapshot().setBookDepth(2);
+    ExchSimService.MarketMakeRequest request = book(5_000_000, 5_001_000);
+    request.getBidLevels().add(new ExchSimService.PriceLevel(4_999_000, 1));
+    request.getBidLevels().add(new ExchSimService.PriceLevel(4_998_000, 2));
+    redisSnapshotWriter.recordMarketMake("G_BTCJPY", request);
+    ExchSimService.MarketMakeRequest oneSided = book(300_000, 300_100);
+    oneSided.getAskLevels().clear();
+    redisSnapshotWriter.recordMarketMake("G_ETHJPY", oneSided);
+
+    // When
+    redisSnapshotWriter.flushPending();
+
+    // Then
+    JsonNode book = captureMSet(commandsA).get("latest:book:G_BTCJPY");
+    assertEquals(2, book.get("bids").size());
+    assertEquals(4_999_000, book.get("bids").get(1).get(0).asDouble());
+    assertEquals(1, book.get("bids").get(1).get(1).asDouble());
+    assertEquals(1, book.get("asks").size());
+    Map<String, JsonNode> valuesB = captureMSet(commandsB);
+    assertEquals(List.of("latest:book:G_ETHJPY"), List.copyOf(valuesB.keySet()));
+  }
+
+  @Test
+  void testDirtyStateIsWrittenOncePerInterval() throws Exception {
+    // Given - 初回の書き込み
+    redisPublisherProperties.getSnapshot().setIntervalMs(100);
+    redisSnapshotWriter.recordMarketMake("G_BTCJPY", book(5_000_000, 5_001_000));
+    redisSnapshotWriter.flushPending();
+    verify(commandsA, times(1)).mSet(any());
+
+    // When - 変化がなければ書き込まない
+    redisSnapshotWriter.flushPending();
+
+    // Then
+    verify(commandsA, times(1)).mSet(any());
+
+    // When - 間隔内の更新は保留する
+    redisSnapshotWriter.recordMarketMake("G_BTCJPY", book(5_000_000, 5_002_000));
+    redisSnapshotWriter.recordMarketMake("G_BTCJPY", book(5_000_000, 5_003_000));
+    redisSnapshotWriter.flushPending();
+
+    // Then
+    verify(commandsA, times(1)).mSet(any());
+
+    // When - 間隔が過ぎると最新の1件だけを書く
+    Thread.sleep(150);
+    redisSnapshotWriter.flushPending();
+
+    // Then
+    ArgumentCaptor<Map<byte[], byte[]>> captor = mapCaptor();
+    verify(commandsA, times(2)).mSet(captor.capture());
+    JsonNode bbo = decode(captor.getValue()).get("latest:bbo:G_BTCJPY");
+    assertEquals(5_003_000, bbo.get("ask").asDouble());
+    verifyNoInteractions(templateB);
+  }
+
+  @Test
+  void testPublishPathWritesImmediatelyThenHoldsUntilFlush() throws Exception {
+    // Given
+    redisPublisherProperties.getSnapshot().setIntervalMs(100);
+
+    // When - 配信と同じパイプラインに載せるコマンドを作る
+    Consumer<RedisConnection> first =
+        redisSnapshotWriter.forMarketMake("G_BTCJPY", book(5_000_000, 5_001_000));
+    Consumer<RedisConnection> second =
+        redisSnapshotWriter.forMarketMake("G_BTCJPY", book(5_000_000, 5_002_000));
+
+    // Then - 間隔内の2件目は保留し、定期処理で書き込む
+    assertNotNull(first);
+    assertNull(second);
+    first.accept(connectionA);
+    verify(commandsA, times(1)).mSet(any());
+    Thread.sleep(150);
+    redisSnapshotWriter.flushPending();
+    ArgumentCaptor<Map<byte[], byte[]>> captor = mapCaptor();
+    verify(commandsA, times(2)).mSet(captor.capture());
+    assertEquals(
+        5_002_000, decode(captor.getValue()).get("latest:bbo:G_BTCJPY").get("ask").asDouble());
+  }
+
+  @Test
+  void testDisabledSnapshotWritesNothing() {
+    // Given
+    redisPublisherProperties.getSnapshot().setEnabled(false);
+
+    // When
+    Consumer<RedisConnection> command =
+        redisSnapshotWriter.forTradeInsert("G_BTCJPY", trade(5_000_000, 0.1, "SELL"));
+    redisSnapshotWriter.recordMarketMake("G_BTCJPY", book(5_000_000, 5_001_000));
+    redisSnapshotWriter.flushPending();
+
+    // Then
+    assertNull(command);
+    verifyNoInteractions(templateA, templateB);
+  }
+
+  private Map<String, JsonNode> captureMSet(RedisStringCommands commands) throws Exception {
+    ArgumentCaptor<Map<byte[], byte[]>> captor = mapCaptor();
+    verify(commands).mSet(captor.capture());
+    return decode(captor.getValue());
+  }
+
+  private Map<String, JsonNode> decode(Map<byte[], byte[]> values) throws Exception {
+    Map<String, JsonNode> decoded = new HashMap<>();
+    for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+      decoded.put(
+          new String(entry.getKey(), StandardCharsets.UTF_8),
+          objectMapper.readTree(entry.getValue()));
+    }
+    return decoded;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static ArgumentCaptor<Map<byte[], byte[]>> mapCaptor() {
+    return (ArgumentCaptor) ArgumentCaptor.forClass(Map.class);
+  }
+
+  private static ExchSimService.MarketMakeRequest book(double bid, double ask) {
+    ExchSimService.MarketMakeRequest request = new ExchSimService.MarketMakeRequest();
+    request.setBidLevels(new ArrayList<>(List.of(new ExchSimService.PriceLevel(bid, 0.5))));
+    request.setAskLevels(new ArrayList<>(List.of(new ExchSimService.PriceLevel(ask, 0.3))));
+    return request;
+  }
+
+  private static ExchSimService.TradeInsertRequest trade(
+      double price, double quantity, String side) {
+    ExchSimService.TradeInsertRequest request = new ExchSimService.TradeInsertRequest();
+    request.setPrice(price);
+    request.setQuantity(quantity);
+    request.setSide(side);
+    return request;
+  }
+}
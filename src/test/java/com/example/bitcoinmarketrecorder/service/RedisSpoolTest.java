@@ -0,0 +1,136 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RedisSpoolTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void testMessagesAreReplayedInOrderAcrossSegments() throws Exception {
+    // Given - セグメントが複数に分かれる程度のメッセージを退避
+    RedisSpool spool = new RedisSpool(dir, 1024 * 1024, 512);
+    for (int i = 0; i < 20; i++) {
+      assertTrue(spool.append(newMessage(i)));
+    }
+    spool.flush();
+    assertEquals(20, spool.getRecords());
+    assertTrue(countSegmentFiles() > 1, "Spool should roll over to multiple segments");
+
+    // When
+    List<String> replayed = drain(spool);
+
+    // Then
+    assertEquals(20, replayed.size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals("{\"seq\":" + i + "}", replayed.get(i));
+    }
+    assertTrue(spool.isEmpty());
+    assertEquals(0, spool.getBytes());
+    assertEquals(0, countSegmentFiles());
+  }
+
+  @Test
+  void testUnsentMessagesSurviveRestart() throws Exception {
+    // Given
+    RedisSpool spool = new RedisSpool(dir, 1024 * 1024, 1024 * 1024);
+    for (int i = 0; i < 5; i++) {
+      spool.append(newMessage(i));
+    }
+    spool.close();
+
+    // When - 同じディレクトリで開き直す
+    RedisSpool reopened = new RedisSpool(dir, 1024 * 1024, 1024 * 1024);
+
+    // Then
+    assertEquals(5, reopened.getRecords());
+    RedisSpool.Segment segment = reopened.nextSegment();
+    RedisOutboundMessage first = segment.getMessages().get(0);
+    assertEquals(RedisOutboundMessage.Type.MARKET_MAKE, first.getType());
+    assertEquals("G_BTCJPY", first.getSymbol());
+    assertEquals("market-make-G_BTCJPY", first.getChannel());
+    assertEquals(1000L, first.getTimestamp());
+    assertNull(first.getRequest());
+  }
+
+  @Test
+  void testTruncatedRecordIsNotCountedOnRestart() throws Exception {
+    // Given - 最後のレコードの書き込み途中で停止した
+    RedisSpool spool = new RedisSpool(dir, 1024 * 1024, 1024 * 1024);
+    for (int i = 0; i < 3; i++) {
+      spool.append(newMessage(i));
+    }
+    spool.close();
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.findFirst().orElseThrow();
+    }
+    byte[] bytes = Files.readAllBytes(segment);
+    Files.write(segment, Arrays.copyOf(bytes, bytes.length - 5));
+
+    // When
+    RedisSpool reopened = new RedisSpool(dir, 1024 * 1024, 1024 * 1024);
+
+    // Then - 件数は読み戻せるレコードの数と一致する
+    assertEquals(2, reopened.getRecords());
+    assertEquals(List.of("{\"seq\":0}", "{\"seq\":1}"), drain(reopened));
+    assertTrue(reopened.isEmpty());
+  }
+
+  @Test
+  void testAppendIsRejectedWhenSpoolIsFull() throws Exception {
+    // Given
+    RedisSpool spool = new RedisSpool(dir, 200, 1024);
+
+    // When
+    int accepted = 0;
+    for (int i = 0; i < 20; i++) {
+      if (spool.append(newMessage(i))) {
+        accepted++;
+      }
+    }
+
+    // Then - 容量上限を超えた分は追記されない
+    assertTrue(accepted > 0 && accepted < 20);
+    assertEquals(accepted, spool.getRecords());
+    assertTrue(spool.getBytes() <= 200);
+  }
+
+  private List<String> drain(RedisSpool spool) throws Exception {
+    List<String> messages = new ArrayList<>();
+    RedisSpool.Segment segment;
+    while ((segment = spool.nextSegment()) != null) {
+      for (RedisOutboundMessage message : segment.getMessages()) {
+        messages.add(message.getJsonMessage());
+      }
+      segment.setSent(segment.getMessages().size());
+      spool.remove(segment);
+    }
+    return messages;
+  }
+
+  private long countSegmentFiles() throws Exception {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.count();
+    }
+  }
+
+  private RedisOutboundMessage newMessage(int seq) {
+    return new RedisOutboundMessage(
+        RedisOutboundMessage.Type.MARKET_MAKE,
+        "G_BTCJPY",
+        "market-make-G_BTCJPY",
+        "{\"seq\":" + seq + "}",
+        1000L + seq,
+        null);
+  }
+}
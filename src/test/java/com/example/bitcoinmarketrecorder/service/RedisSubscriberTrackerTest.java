@@ -0,0 +1,127 @@
+package com.example.bitcoinmarketrecorder.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.example.bitcoinmarketrecorder.config.ExchSimProperties;
+import com.example.bitcoinmarketrecorder.config.RedisPublisherProperties;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RedisSubscriberTrackerTest {
+
+  private static final String SYMBOL = "G_BTCJPY";
+  private static final String MARKET_MAKE = "market-make:" + SYMBOL;
+  private static final String TRADE_INSERT = "trade-insert:" + SYMBOL;
+
+  @Mock private RedisShardRouter redisShardRouter;
+
+  @Mock private RedisShard shard;
+
+  @Mock private StatefulRedisConnection<String, String> connection;
+
+  @Mock private RedisCommands<String, String> commands;
+
+  @Spy private RedisPublisherProperties redisPublisherProperties = new RedisPublisherProperties();
+
+  @Spy private ExchSimProperties exchSimProperties = new ExchSimProperties();
+
+  @InjectMocks private RedisSubscriberTracker redisSubscriberTracker;
+
+  @BeforeEach
+  void setUp() {
+    exchSimProperties.setSymbolMapping(Map.of("GMO", Map.of("BTC_JPY", SYMBOL)));
+    lenient().when(redisShardRouter.shardFor(SYMBOL)).thenReturn(shard);
+    lenient().when(shard.getName()).thenReturn("localhost:6379");
+    lenient().when(shard.getAdminConnection()).thenReturn(connection);
+    lenient().when(connection.sync()).thenReturn(commands);
+  }
+
+  @Test
+  void testChannelWithoutSubscribersIsSkipped() {
+    // Given - market-makeだけ購読者がいる
+    when(commands.pubsubNumsub(any(String[].class)))
+        .thenReturn(Map.of(MARKET_MAKE, 1L, TRADE_INSERT, 0L));
+    when(commands.pubsubNumpat()).thenReturn(0L);
+
+    // When
+    redisSubscriberTracker.refresh();
+
+    // Then
+    assertTrue(redisSubscriberTracker.hasMarketMakeSubscribers(SYMBOL));
+    assertFalse(redisSubscriberTracker.hasTradeInsertSubscribers(SYMBOL));
+    assertEquals(0L, redisSubscriberTracker.getSubscriberCount(TRADE_INSERT));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> stats =
+        (Map<String, Object>) redisSubscriberTracker.getStats().get(TRADE_INSERT);
+    assertEquals(1L, stats.get("skipped"));
+  }
+
+  @Test
+  void testPatternSubscriberKeepsAllChannelsPublishing() {
+    // Given - PSUBSCRIBE "trade-insert:*"の購読者はNUMSUBに数えられない
+    when(commands.pubsubNumsub(any(String[].class)))
+        .thenReturn(Map.of(MARKET_MAKE, 0L, TRADE_INSERT, 0L));
+    when(commands.pubsubNumpat()).thenReturn(1L);
+
+    // When
+    redisSubscriberTracker.refresh();
+
+    // Then
+    assertTrue(redisSubscriberTracker.hasMarketMakeSubscribers(SYMBOL));
+    assertTrue(redisSubscriberTracker.hasTradeInsertSubscribers(SYMBOL));
+
+    // When - パターンの購読がなくなる
+    when(commands.pubsubNumpat()).thenReturn(0L);
+    redisSubscriberTracker.refresh();
+
+    // Then
+    assertFalse(redisSubscriberTracker.hasTradeInsertSubscribers(SYMBOL));
+  }
+
+  @Test
+  void testFailedCheckFailsOpen() {
+    // Given - 一度は購読者なしと確認できている
+    when(commands.pubsubNumsub(any(String[].class)))
+        .thenReturn(Map.of(MARKET_MAKE, 0L, TRADE_INSERT, 0L));
+    when(commands.pubsubNumpat()).thenReturn(0L);
+    redisSubscriberTracker.refresh();
+    assertFalse(redisSubscriberTracker.hasMarketMakeSubscribers(SYMBOL));
+
+    // When - 確認に失敗する
+    when(commands.pubsubNumsub(any(String[].class)))
+        .thenThrow(new RuntimeException("connection refused"));
+    redisSubscriberTracker.refresh();
+
+    // Then - 確認できない間は配信する
+    assertTrue(redisSubscriberTracker.hasMarketMakeSubscribers(SYMBOL));
+    assertTrue(redisSubscriberTracker.hasTradeInsertSubscribers(SYMBOL));
+    assertNull(redisSubscriberTracker.getSubscriberCount(MARKET_MAKE));
+  }
+
+  @Test
+  void testUncheckedChannelAndDisabledCheckPublish() {
+    // 未確認のチャンネルは購読者ありとみなす
+    assertTrue(redisSubscriberTracker.hasMarketMakeSubscribers(SYMBOL));
+
+    // Given - 購読者なしと確認した後に確認を無効にする
+    when(commands.pubsubNumsub(any(String[].class)))
+        .thenReturn(Map.of(MARKET_MAKE, 0L, TRADE_INSERT, 0L));
+    when(commands.pubsubNumpat()).thenReturn(0L);
+    redisSubscriberTracker.refresh();
+    redisPublisherProperties.getSubscriberCheck().setEnabled(false);
+
+    // Then
+    assertTrue(redisSubscriberTracker.hasMarketMakeSubscribers(SYMBOL));
+  }
+}
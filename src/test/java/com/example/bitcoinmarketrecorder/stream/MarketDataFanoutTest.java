@@ -0,0 +1,114 @@
+package com.example.bitcoinmarketrecorder.stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.bitcoinmarketrecorder.config.FanoutProperties;
+import com.example.bitcoinmarketrecorder.model.MarketBoard;
+import com.example.bitcoinmarketrecorder.model.Trade;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class MarketDataFanoutTest {
+
+  @Spy private FanoutProperties fanoutProperties = new FanoutProperties();
+
+  @InjectMocks private MarketDataFanout marketDataFanout;
+
+  @Test
+  void testLateSubscriberReceivesSnapshotFirst() {
+    // Given - 接続前に板が届いている
+    marketDataFanout.onMarketBoard(board("BTC", "100"));
+
+    // When
+    FanoutSubscriber subscriber = marketDataFanout.subscribe(Set.of(), Set.of());
+
+    // Then - まず最新の板、続いて接続後の更新を受け取る
+    StepVerifier.create(subscriber.flux(), 0)
+        .thenRequest(1)
+        .assertNext(message -> assertTrue(json(message).contains("[100,1]")))
+        .then(() -> marketDataFanout.onMarketBoard(board("BTC", "101")))
+        .thenRequest(1)
+        .assertNext(message -> assertTrue(json(message).contains("[101,1]")))
+        .thenCancel()
+        .verify();
+    assertEquals(0, marketDataFanout.getStats().get("subscribers"));
+  }
+
+  @Test
+  void testSlowSubscriberGetsOnlyLatestBook() {
+    // Given - 要求していないクライアント
+    FanoutSubscriber subscriber = marketDataFanout.subscribe(Set.of("GMO:BTC"), Set.of("book"));
+
+    // When
+    for (int i = 0; i < 50; i++) {
+      marketDataFanout.onMarketBoard(board("BTC", String.valueOf(100 + i)));
+    }
+    marketDataFanout.onMarketBoard(board("ETH", "1"));
+
+    // Then - 対象銘柄の最新の板1件だけが送られる
+    StepVerifier.create(subscriber.flux(), 0)
+        .thenRequest(10)
+        .assertNext(message -> assertTrue(json(message).contains("[149,1]")))
+        .expectNoEvent(Duration.ofMillis(50))
+        .thenCancel()
+        .verify();
+    assertEquals(49, subscriber.getConflated());
+  }
+
+  @Test
+  void testTradesBeyondBufferAreDropped() {
+    // Given
+    fanoutProperties.setTradeBufferSize(3);
+    FanoutSubscriber subscriber = marketDataFanout.subscribe(Set.of(), Set.of("trade"));
+
+    // When
+    for (int i = 0; i < 5; i++) {
+      marketDataFanout.onTrade(trade(String.valueOf(100 + i)));
+    }
+
+    // Then - 約定は間引かずに先着順で送り、上限を超えた分は破棄する
+    StepVerifier.create(subscriber.flux())
+        .assertNext(message -> assertTrue(json(message).contains("\"price\":100")))
+        .assertNext(message -> assertTrue(json(message).contains("\"price\":101")))
+        .assertNext(message -> assertTrue(json(message).contains("\"price\":102")))
+        .thenCancel()
+        .verify();
+    assertEquals(2, subscriber.getDropped());
+  }
+
+  private static String json(FanoutMessage message) {
+    return new String(message.getJson(), StandardCharsets.UTF_8);
+  }
+
+  private static MarketBoard board(String symbol, String bestBid) {
+    MarketBoard board = new MarketBoard();
+    board.setExchange("GMO");
+    board.setSymbol(symbol);
+    board.setTs(Instant.now());
+    BigDecimal bid = new BigDecimal(bestBid);
+    board.getBids().add(new MarketBoard.PriceLevel(bid, BigDecimal.ONE));
+    board.getAsks().add(new MarketBoard.PriceLevel(bid.add(BigDecimal.ONE), BigDecimal.ONE));
+    return board;
+  }
+
+  private static Trade trade(String price) {
+    Trade trade = new Trade();
+    trade.setExchange("GMO");
+    trade.setSymbol("BTC");
+    trade.setPrice(new BigDecimal(price));
+    trade.setSize(BigDecimal.ONE);
+    trade.setSide("BUY");
+    trade.setTimestamp(Instant.now());
+    return trade;
+  }
+}